@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.os.linux.core.tests.latency;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.latency.SystemCallLatencyAnalysis;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the system call analysis of a trace that is tailed while its
+ * packets are written
+ */
+public class SyscallAnalysisTailingTest {
+
+    private static final @NonNull CtfTestTrace TEST_TRACE = CtfTestTrace.KERNEL;
+    private static final long POLLING_INTERVAL = 100;
+    private static final long TIMEOUT = 60000;
+
+    private File fSourceDirectory;
+    private Path fTraceDirectory;
+    /** The offsets at which the stream files are cut, by file name */
+    private final Map<String, Long> fCutOffsets = new HashMap<>();
+    private KernelCtfTraceStub fTrace;
+
+    /**
+     * Copy the metadata and the packets of the first half of the test trace
+     * to a temporary directory, and open it
+     *
+     * @throws IOException
+     *             if the trace could not be copied
+     * @throws CTFException
+     *             if the test trace could not be read
+     * @throws TmfTraceException
+     *             if the copy could not be opened
+     */
+    @Before
+    public void setUp() throws IOException, CTFException, TmfTraceException {
+        fSourceDirectory = new File(FileLocator.toFileURL(TEST_TRACE.getTraceURL()).getPath());
+        fTraceDirectory = Files.createTempDirectory("tailedtrace");
+
+        CTFTrace source = new CTFTrace(fSourceDirectory);
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (ICTFStream stream : source.getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                for (ICTFPacketDescriptor packet : streamInput.getPacketDescriptors()) {
+                    start = Math.min(start, packet.getTimestampBegin());
+                    end = Math.max(end, packet.getTimestampEnd());
+                }
+            }
+        }
+        long cutTime = start + (end - start) / 2;
+        for (ICTFStream stream : source.getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                long cutOffset = streamInput.getFile().length();
+                for (ICTFPacketDescriptor packet : streamInput.getPacketDescriptors()) {
+                    if (packet.getTimestampEnd() > cutTime) {
+                        cutOffset = packet.getOffsetBytes();
+                        break;
+                    }
+                }
+                fCutOffsets.put(streamInput.getFile().getName(), cutOffset);
+            }
+        }
+
+        for (File file : fSourceDirectory.listFiles()) {
+            if (file.isFile()) {
+                Long cutOffset = fCutOffsets.get(file.getName());
+                appendBytes(file, 0, cutOffset == null ? file.length() : cutOffset);
+            }
+        }
+        fTrace = new KernelCtfTraceStub();
+        fTrace.initTrace(null, fTraceDirectory.toString(), CtfTmfEvent.class);
+    }
+
+    /**
+     * Dispose the trace and delete its copy
+     *
+     * @throws IOException
+     *             if the copy could not be deleted
+     */
+    @After
+    public void tearDown() throws IOException {
+        KernelCtfTraceStub trace = fTrace;
+        if (trace != null) {
+            trace.stopTailing();
+            trace.dispose();
+        }
+        FileUtils.deleteDirectory(fTraceDirectory.toFile());
+    }
+
+    /**
+     * Test that the time range of the trace and the system calls of the
+     * analysis grow when the rest of the packets are written to the trace
+     *
+     * @throws Exception
+     *             if the packets could not be written, or the wait was
+     *             interrupted
+     */
+    @Test
+    public void testTailing() throws Exception {
+        KernelCtfTraceStub trace = fTrace;
+        trace.traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+        trace.startTailing(POLLING_INTERVAL);
+        SystemCallLatencyAnalysis module = null;
+        for (IAnalysisModule mod : TmfTraceUtils.getAnalysisModulesOfClass(trace, SystemCallLatencyAnalysis.class)) {
+            module = (SystemCallLatencyAnalysis) mod;
+        }
+        assertNotNull(module);
+        module.schedule();
+        assertTrue(module.waitForCompletion());
+
+        ISegmentStore<@NonNull ISegment> segmentStore = module.getSegmentStore();
+        assertNotNull(segmentStore);
+        long nbSegments = segmentStore.size();
+        assertTrue(nbSegments > 0);
+        ITmfTimestamp endTime = trace.readEndTime();
+        assertNotNull(endTime);
+        assertTrue(waitFor(() -> trace.getEndTime().equals(endTime)));
+
+        /* Write the packets of the second half of the trace */
+        for (File file : fSourceDirectory.listFiles()) {
+            Long cutOffset = fCutOffsets.get(file.getName());
+            if (cutOffset != null) {
+                appendBytes(file, cutOffset, file.length());
+            }
+        }
+
+        assertTrue(waitFor(() -> trace.getEndTime().compareTo(endTime) > 0));
+        assertTrue(waitFor(() -> segmentStore.size() > nbSegments));
+    }
+
+    private void appendBytes(File file, long from, long to) throws IOException {
+        if (to <= from) {
+            return;
+        }
+        File target = new File(fTraceDirectory.toFile(), file.getName());
+        try (FileChannel in = FileChannel.open(file.toPath());
+                FileOutputStream out = new FileOutputStream(target, true)) {
+            long position = from;
+            while (position < to) {
+                position += in.transferTo(position, to - position, out.getChannel());
+            }
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) {
+                return false;
+            }
+            Thread.sleep(POLLING_INTERVAL);
+        }
+        return true;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  * Copyright (c) 2010, 2011 École Polytechnique de Montréal
  * Copyright (c) 2010, 2011 Alexandre Montplaisir <alexandre.montplaisir@gmail.com>
  *
@@ -13,6 +13,7 @@
 package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel;
 
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -42,6 +43,7 @@ import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * This is the state change input plugin for the state system which handles the
@@ -66,6 +68,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
     // ------------------------------------------------------------------------
 
     private final Map<String, KernelEventHandler> fEventNames;
+    private final Map<String, Set<String>> fRequiredFields;
     private final IKernelAnalysisEventLayout fLayout;
 
     private final KernelEventHandler fSysEntryHandler;
@@ -88,6 +91,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
         super(trace, "Kernel"); //$NON-NLS-1$
         fLayout = layout;
         fEventNames = buildEventNames(layout);
+        fRequiredFields = buildRequiredFields(layout);
 
         fSysEntryHandler = new SysEntryHandler(fLayout);
         fSysExitHandler = new SysExitHandler(fLayout);
@@ -123,6 +127,37 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
         return builder.build();
     }
 
+    /*
+     * The payload fields read by the event handlers. The syscall handlers only
+     * use the event names, so the syscall events need none of their fields.
+     */
+    private static Map<String, Set<String>> buildRequiredFields(IKernelAnalysisEventLayout layout) {
+        ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builder();
+
+        builder.put(layout.eventIrqHandlerEntry(), ImmutableSet.of(layout.fieldIrq()));
+        builder.put(layout.eventIrqHandlerExit(), ImmutableSet.of(layout.fieldIrq()));
+        builder.put(layout.eventSoftIrqEntry(), ImmutableSet.of(layout.fieldVec()));
+        builder.put(layout.eventSoftIrqExit(), ImmutableSet.of(layout.fieldVec()));
+        builder.put(layout.eventSoftIrqRaise(), ImmutableSet.of(layout.fieldVec()));
+        builder.put(layout.eventSchedSwitch(), ImmutableSet.of(layout.fieldPrevComm(), layout.fieldPrevTid(), layout.fieldPrevState(), layout.fieldPrevPrio(),
+                layout.fieldNextComm(), layout.fieldNextTid(), layout.fieldNextPrio()));
+        builder.put(layout.eventSchedPiSetprio(), ImmutableSet.of(layout.fieldTid(), layout.fieldNewPrio()));
+        builder.put(layout.eventSchedProcessFork(), ImmutableSet.of(layout.fieldChildComm(), layout.fieldParentTid(), layout.fieldChildTid()));
+        builder.put(layout.eventSchedProcessFree(), ImmutableSet.of(layout.fieldTid()));
+
+        final String eventStatedumpProcessState = layout.eventStatedumpProcessState();
+        if (eventStatedumpProcessState != null) {
+            builder.put(eventStatedumpProcessState, ImmutableSet.of("tid", "pid", "ppid", "status", "name")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+        }
+
+        Set<String> schedWakeupFields = ImmutableSet.of(layout.fieldTid(), layout.fieldPrio());
+        for (String eventSchedWakeup : layout.eventsSchedWakeup()) {
+            builder.put(eventSchedWakeup, schedWakeupFields);
+        }
+
+        return builder.build();
+    }
+
     // ------------------------------------------------------------------------
     // IStateChangeInput
     // ------------------------------------------------------------------------
@@ -132,6 +167,11 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
         return VERSION;
     }
 
+    @Override
+    public Map<String, Set<String>> getRequiredFields() {
+        return fRequiredFields;
+    }
+
     @Override
     public KernelStateProvider getNewInstance() {
         return new KernelStateProvider(this.getTrace(), fLayout);
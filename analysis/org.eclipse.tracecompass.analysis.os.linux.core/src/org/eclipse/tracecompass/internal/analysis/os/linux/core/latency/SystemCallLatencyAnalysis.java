@@ -34,6 +34,7 @@ import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.segment.ISegmentAspect;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceCompleteness;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -54,6 +55,13 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
     private static final Collection<ISegmentAspect> BASE_ASPECTS =
             ImmutableList.of(SyscallNameAspect.INSTANCE);
 
+    /*
+     * The system calls entered but not exited yet. They are kept between the
+     * requests of a trace that is still growing, where a system call can
+     * start at the end of a request and end in the next one.
+     */
+    private final Map<Integer, SystemCall.InitialInfo> fOngoingSystemCalls = new HashMap<>();
+
     @Override
     public String getId() {
         return ID;
@@ -94,12 +102,14 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
 
     private class SyscallLatencyAnalysisRequest extends AbstractSegmentStoreAnalysisRequest {
 
-        private final Map<Integer, SystemCall.InitialInfo> fOngoingSystemCalls = new HashMap<>();
         private @Nullable IKernelAnalysisEventLayout fLayout;
         private final IProgressMonitor fMonitor = new NullProgressMonitor();
 
         public SyscallLatencyAnalysisRequest(ISegmentStore<ISegment> syscalls) {
             super(syscalls);
+            if (getIndex() == 0) {
+                fOngoingSystemCalls.clear();
+            }
         }
 
         @Override
@@ -166,7 +176,10 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
 
         @Override
         public void handleCompleted() {
-            fOngoingSystemCalls.clear();
+            ITmfTrace trace = getTrace();
+            if (!(trace instanceof ITmfTraceCompleteness) || ((ITmfTraceCompleteness) trace).isComplete()) {
+                fOngoingSystemCalls.clear();
+            }
             super.handleCompleted();
         }
 
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.timing.core.tests.segmentstore;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStoreBinning;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStoreBinning.DurationHistogram;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStoreBinning.ScatterGrid;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+import org.eclipse.tracecompass.segmentstore.core.treemap.TreeMapStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Unit tests for the {@link SegmentStoreBinning} class
+ */
+public class SegmentStoreBinningTest {
+
+    private static final @NonNull ISegment SEGMENT_2_6 = new BasicSegment(2, 6);
+    private static final @NonNull ISegment SEGMENT_4_6 = new BasicSegment(4, 6);
+    private static final @NonNull ISegment SEGMENT_4_8 = new BasicSegment(4, 8);
+    private static final @NonNull ISegment SEGMENT_6_8 = new BasicSegment(6, 8);
+    private static final @NonNull ISegment SEGMENT_10_14 = new BasicSegment(10, 14);
+
+    private static final List<ISegment> SEGMENTS = ImmutableList.of(SEGMENT_2_6, SEGMENT_4_6, SEGMENT_4_8, SEGMENT_6_8, SEGMENT_10_14);
+
+    private TreeMapStore<@NonNull ISegment> fSegmentStore;
+
+    /**
+     * Initialize the segment store
+     */
+    @Before
+    public void setup() {
+        fSegmentStore = new TreeMapStore<>();
+        for (ISegment segment : SEGMENTS) {
+            fSegmentStore.add(checkNotNull(segment));
+        }
+    }
+
+    /**
+     * Dispose of the segment store
+     */
+    @After
+    public void teardown() {
+        fSegmentStore.dispose();
+    }
+
+    /**
+     * Test binning the whole store by start time and duration
+     */
+    @Test
+    public void testBinByStartTime() {
+        List<@NonNull ISegment> startIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        List<@NonNull ISegment> endIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_END_COMPARATOR);
+        ScatterGrid grid = SegmentStoreBinning.binByStartTime(startIndex, endIndex, 0, 15, 4, 2, new NullProgressMonitor());
+        assertNotNull(grid);
+
+        assertEquals(4, grid.getMaxDuration());
+        /* Column 1 has the two short segments in one cell */
+        assertEquals(1, grid.getCount(0, 1));
+        assertEquals(2, grid.getCount(1, 0));
+        assertEquals(1, grid.getCount(1, 1));
+        assertEquals(1, grid.getCount(2, 1));
+        assertEquals(0, grid.getCount(3, 0));
+        assertEquals(SEGMENT_4_6, grid.getRepresentative(1, 0));
+        assertNull(grid.getRepresentative(3, 1));
+
+        assertEquals(ImmutableList.of(SEGMENT_2_6, SEGMENT_4_6, SEGMENT_4_8, SEGMENT_10_14), grid.getRepresentatives());
+    }
+
+    /**
+     * Test that only the segments intersecting the range are binned, and that
+     * the ones starting before the range are in the first column
+     */
+    @Test
+    public void testBinByStartTimeRange() {
+        List<@NonNull ISegment> startIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        List<@NonNull ISegment> endIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_END_COMPARATOR);
+        ScatterGrid grid = SegmentStoreBinning.binByStartTime(startIndex, endIndex, 5, 9, 10, 10, new NullProgressMonitor());
+        assertNotNull(grid);
+        assertEquals(ImmutableList.of(SEGMENT_4_6, SEGMENT_2_6, SEGMENT_6_8), grid.getRepresentatives());
+        assertEquals(4, grid.getMaxDuration());
+        assertEquals(1, grid.getCount(0, 4));
+        assertEquals(2, grid.getCount(0, 8));
+
+        grid = SegmentStoreBinning.binByStartTime(startIndex, endIndex, 7, 9, 10, 10, new NullProgressMonitor());
+        assertNotNull(grid);
+        assertEquals(ImmutableList.of(SEGMENT_6_8, SEGMENT_4_8), grid.getRepresentatives());
+
+        grid = SegmentStoreBinning.binByStartTime(startIndex, endIndex, 15, 20, 10, 10, new NullProgressMonitor());
+        assertNotNull(grid);
+        assertEquals(0, grid.getRepresentatives().size());
+    }
+
+    /**
+     * Test the duration histogram
+     */
+    @Test
+    public void testBinByDuration() {
+        DurationHistogram histogram = SegmentStoreBinning.binByDuration(SEGMENTS, 5, new NullProgressMonitor());
+        assertNotNull(histogram);
+        assertArrayEquals(new long[] { 0, 0, 2, 0, 3 }, histogram.getCounts());
+        assertEquals(2, histogram.getMinDuration());
+        assertEquals(4, histogram.getMaxDuration());
+    }
+
+    /**
+     * Test getting the segments intersecting a range from the start time index
+     */
+    @Test
+    public void testGetIntersectingSegments() {
+        List<@NonNull ISegment> startIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        List<@NonNull ISegment> endIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_END_COMPARATOR);
+        assertEquals(SEGMENTS, SegmentStoreBinning.getIntersectingSegments(startIndex, endIndex, 0, 20));
+        assertEquals(ImmutableList.of(SEGMENT_2_6, SEGMENT_4_6, SEGMENT_4_8), SegmentStoreBinning.getIntersectingSegments(startIndex, endIndex, 0, 5));
+        assertEquals(ImmutableList.of(SEGMENT_4_8, SEGMENT_6_8), SegmentStoreBinning.getIntersectingSegments(startIndex, endIndex, 7, 9));
+        assertEquals(ImmutableList.of(SEGMENT_2_6, SEGMENT_4_6, SEGMENT_4_8, SEGMENT_6_8), SegmentStoreBinning.getIntersectingSegments(startIndex, endIndex, 6, 6));
+        assertEquals(0, SegmentStoreBinning.getIntersectingSegments(startIndex, endIndex, 15, 20).size());
+    }
+
+    /**
+     * Test that cancelled computations do not return a result
+     */
+    @Test
+    public void testCancel() {
+        IProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        List<@NonNull ISegment> startIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        List<@NonNull ISegment> endIndex = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_END_COMPARATOR);
+        assertNull(SegmentStoreBinning.binByStartTime(startIndex, endIndex, 0, 15, 4, 2, monitor));
+        assertNull(SegmentStoreBinning.binByDuration(SEGMENTS, 5, monitor));
+    }
+}
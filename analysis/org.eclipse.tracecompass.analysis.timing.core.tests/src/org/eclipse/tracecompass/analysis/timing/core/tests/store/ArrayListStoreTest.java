@@ -12,6 +12,7 @@ package org.eclipse.tracecompass.analysis.timing.core.tests.store;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -22,6 +23,7 @@ import org.eclipse.tracecompass.internal.analysis.timing.core.store.ArrayListSto
 import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
 import org.eclipse.tracecompass.segmentstore.core.treemap.TreeMapStore;
 import org.junit.After;
 import org.junit.Before;
@@ -281,6 +283,40 @@ public class ArrayListStoreTest {
         assertEquals(0, Iterables.size(intersectingElements));
     }
 
+    /**
+     * Test the getSortedElements() method with the segment comparators
+     */
+    @Test
+    public void testGetSortedElements() {
+        List<ISegment> byStart = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        assertEquals(SEGMENTS, byStart);
+
+        List<ISegment> byLength = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
+        assertEquals(ImmutableList.of(SEGMENT_4_6, SEGMENT_6_8, SEGMENT_2_6, SEGMENT_4_8, SEGMENT_10_14), byLength);
+    }
+
+    /**
+     * Test that the sorted indexes are cached, and invalidated when the store
+     * is modified
+     */
+    @Test
+    public void testSortedElementsCache() {
+        List<ISegment> byStart = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        assertSame(byStart, fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR));
+        List<ISegment> byLength = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
+        assertSame(byLength, fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR));
+
+        ISegment segment = new BasicSegment(1, 2);
+        fSegmentStore.add(segment);
+        List<ISegment> newByStart = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        assertEquals(SEGMENTS.size() + 1, newByStart.size());
+        assertEquals(segment, newByStart.get(0));
+        assertEquals(segment, fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR).get(0));
+        /* The previous snapshots are not modified */
+        assertEquals(SEGMENTS.size(), byStart.size());
+        assertEquals(SEGMENTS.size(), byLength.size());
+    }
+
     /**
      * Testing method getIntersectingElements(long start, long end)
      */
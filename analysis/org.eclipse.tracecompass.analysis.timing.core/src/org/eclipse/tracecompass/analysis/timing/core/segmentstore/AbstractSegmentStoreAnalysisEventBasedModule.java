@@ -18,8 +18,11 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
 /**
  * Abstract class to create an event base segment store analysis. It uses an
@@ -30,8 +33,17 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  */
 public abstract class AbstractSegmentStoreAnalysisEventBasedModule extends AbstractSegmentStoreAnalysisModule {
 
+    private final Object fRequestSyncObj = new Object();
+
     private @Nullable ITmfEventRequest fOngoingRequest = null;
 
+    /** The segment store still being filled while the trace grows */
+    private @Nullable ISegmentStore<ISegment> fLiveSegmentStore = null;
+    private boolean fUpdatePending = false;
+
+    /** The number of events read by the previous requests */
+    private long fNbEventsRead = 0;
+
     /**
      * Returns the analysis request for creating the segment store
      *
@@ -52,15 +64,21 @@ public abstract class AbstractSegmentStoreAnalysisEventBasedModule extends Abstr
     @Override
     protected boolean buildAnalysisSegments(ISegmentStore<ISegment> segmentStore, IProgressMonitor monitor) throws TmfAnalysisException {
         ITmfTrace trace = checkNotNull(getTrace());
-        /* Cancel an ongoing request */
-        ITmfEventRequest req = fOngoingRequest;
-        if ((req != null) && (!req.isCompleted())) {
-            req.cancel();
+        ITmfEventRequest req;
+        synchronized (fRequestSyncObj) {
+            /* Cancel an ongoing request */
+            req = fOngoingRequest;
+            if ((req != null) && (!req.isCompleted())) {
+                req.cancel();
+            }
+            fLiveSegmentStore = null;
+            fUpdatePending = false;
+            fNbEventsRead = 0;
+
+            /* Create a new request */
+            req = createAnalysisRequest(segmentStore);
+            fOngoingRequest = req;
         }
-
-        /* Create a new request */
-        req = createAnalysisRequest(segmentStore);
-        fOngoingRequest = req;
         trace.sendRequest(req);
 
         try {
@@ -72,9 +90,78 @@ public abstract class AbstractSegmentStoreAnalysisEventBasedModule extends Abstr
         if (req.isCancelled() || req.isFailed()) {
             return false;
         }
+        if (!TmfTraceUtils.isCompleteTrace(trace)) {
+            /* Keep filling the segment store as the trace grows */
+            synchronized (fRequestSyncObj) {
+                fLiveSegmentStore = segmentStore;
+                if (fUpdatePending) {
+                    startUpdateRequest();
+                }
+            }
+        }
         return true;
     }
 
+    /**
+     * Signal handler for the trace range updated signal. While the trace is
+     * not complete, the events added to the trace since the last request are
+     * read into the same segment store.
+     *
+     * @param signal
+     *            The incoming signal
+     * @since 1.1
+     */
+    @TmfSignalHandler
+    public void traceRangeUpdated(final TmfTraceRangeUpdatedSignal signal) {
+        if (signal.getTrace() != getTrace()) {
+            return;
+        }
+        synchronized (fRequestSyncObj) {
+            ITmfEventRequest req = fOngoingRequest;
+            if ((req != null && !req.isCompleted()) || fLiveSegmentStore == null) {
+                /*
+                 * Read the new events once the current request is done, or
+                 * once buildAnalysisSegments() handed over the segment store
+                 */
+                fUpdatePending = true;
+                return;
+            }
+            startUpdateRequest();
+        }
+    }
+
+    private void startUpdateRequest() {
+        ISegmentStore<ISegment> segmentStore = fLiveSegmentStore;
+        ITmfTrace trace = getTrace();
+        fUpdatePending = false;
+        if (segmentStore == null || trace == null) {
+            return;
+        }
+        ITmfEventRequest req = createAnalysisRequest(segmentStore);
+        fOngoingRequest = req;
+        trace.sendRequest(req);
+    }
+
+    private void requestCompleted(ISegmentStore<ISegment> segmentStore, long nbRead) {
+        ITmfTrace trace = getTrace();
+        boolean update;
+        synchronized (fRequestSyncObj) {
+            fNbEventsRead += nbRead;
+            update = (segmentStore == fLiveSegmentStore);
+            if (trace == null || TmfTraceUtils.isCompleteTrace(trace)) {
+                /* No more events will come */
+                fLiveSegmentStore = null;
+                segmentStore.close(false);
+            } else if (update && fUpdatePending) {
+                startUpdateRequest();
+            }
+        }
+        if (update) {
+            /* The segments of the new events were added to the segment store */
+            sendUpdate(segmentStore);
+        }
+    }
+
     /**
      * Abstract event request to fill a a segment store
      */
@@ -89,7 +176,7 @@ public abstract class AbstractSegmentStoreAnalysisEventBasedModule extends Abstr
          *            a segment store to fill
          */
         public AbstractSegmentStoreAnalysisRequest(ISegmentStore<ISegment> segmentStore) {
-            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND, AbstractSegmentStoreAnalysisEventBasedModule.this.getDependencyLevel());
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, fNbEventsRead, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND, AbstractSegmentStoreAnalysisEventBasedModule.this.getDependencyLevel());
             /*
              * We do NOT make a copy here! We want to modify the list that was
              * passed in parameter.
@@ -109,7 +196,7 @@ public abstract class AbstractSegmentStoreAnalysisEventBasedModule extends Abstr
         @Override
         public void handleSuccess() {
             super.handleSuccess();
-            closeSegmentStore(false);
+            requestCompleted(fSegmentStore, getNbRead());
         }
 
         @Override
@@ -32,6 +32,7 @@ import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.segment.ISegmentAspect;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
 /**
  * Abstract analysis module to generate a segment store. It is a base class that
@@ -137,7 +138,8 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
     protected boolean executeAnalysis(IProgressMonitor monitor) throws TmfAnalysisException {
         ITmfTrace trace = checkNotNull(getTrace());
 
-        final @Nullable String dataFileName = getDataFileName();
+        /* The segments of a trace that is still growing are not saved */
+        final @Nullable String dataFileName = TmfTraceUtils.isCompleteTrace(trace) ? getDataFileName() : null;
         if (dataFileName != null) {
             /* See if the data file already exists on disk */
             String dir = TmfTraceManager.getSupplementaryFileDir(trace);
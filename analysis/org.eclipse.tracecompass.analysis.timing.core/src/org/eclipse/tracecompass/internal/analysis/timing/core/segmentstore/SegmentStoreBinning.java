@@ -0,0 +1,461 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+
+/**
+ * Utility methods to reduce a large number of segments to a number of bins
+ * that depends on the size of the display instead of the number of segments.
+ * The bins are computed in parallel, and the computations stop early if their
+ * progress monitor is cancelled, for example when the user zooms again.
+ */
+public final class SegmentStoreBinning {
+
+    /** Number of elements to process between checks of the monitor */
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 16;
+
+    /** Number of chunks per processor for the unordered computations */
+    private static final int CHUNKS_PER_PROCESSOR = 4;
+
+    private SegmentStoreBinning() {
+        // Do nothing
+    }
+
+    /**
+     * Grid of segments, with one column per time interval and one row per
+     * duration interval. Each cell holds the number of segments it contains,
+     * as well as the segment of maximum duration which represents the cell.
+     */
+    public static final class ScatterGrid {
+        private final int fWidth;
+        private final int fHeight;
+        private final long fMaxDuration;
+        private final int[] fCounts;
+        private final @Nullable ISegment[] fRepresentatives;
+
+        private ScatterGrid(int width, int height, long maxDuration, int[] counts, @Nullable ISegment[] representatives) {
+            fWidth = width;
+            fHeight = height;
+            fMaxDuration = maxDuration;
+            fCounts = counts;
+            fRepresentatives = representatives;
+        }
+
+        /**
+         * Get the number of columns (time intervals) of the grid
+         *
+         * @return The width of the grid
+         */
+        public int getWidth() {
+            return fWidth;
+        }
+
+        /**
+         * Get the number of rows (duration intervals) of the grid
+         *
+         * @return The height of the grid
+         */
+        public int getHeight() {
+            return fHeight;
+        }
+
+        /**
+         * Get the maximum duration of the segments in the grid
+         *
+         * @return The maximum duration, or 0 if the grid is empty
+         */
+        public long getMaxDuration() {
+            return fMaxDuration;
+        }
+
+        /**
+         * Get the number of segments in a cell
+         *
+         * @param column
+         *            The column of the cell
+         * @param row
+         *            The row of the cell
+         * @return The number of segments in this cell
+         */
+        public int getCount(int column, int row) {
+            return fCounts[column * fHeight + row];
+        }
+
+        /**
+         * Get the segment of maximum duration in a cell
+         *
+         * @param column
+         *            The column of the cell
+         * @param row
+         *            The row of the cell
+         * @return The representative segment, or null if the cell is empty
+         */
+        public @Nullable ISegment getRepresentative(int column, int row) {
+            return fRepresentatives[column * fHeight + row];
+        }
+
+        /**
+         * Get the representative segments of all the non-empty cells, ordered
+         * by column
+         *
+         * @return The representative segments
+         */
+        public List<ISegment> getRepresentatives() {
+            List<ISegment> representatives = new ArrayList<>();
+            for (ISegment segment : fRepresentatives) {
+                if (segment != null) {
+                    representatives.add(segment);
+                }
+            }
+            return representatives;
+        }
+    }
+
+    /**
+     * Histogram of the durations of segments
+     */
+    public static final class DurationHistogram {
+        private final long[] fCounts;
+        private final long fMinDuration;
+        private final long fMaxDuration;
+
+        private DurationHistogram(long[] counts, long minDuration, long maxDuration) {
+            fCounts = counts;
+            fMinDuration = minDuration;
+            fMaxDuration = maxDuration;
+        }
+
+        /**
+         * Get the number of segments in each bin. Bin 'i' contains the
+         * segments whose duration is in the range [i * (max + 1) / n, (i + 1)
+         * * (max + 1) / n[, n being the number of bins.
+         *
+         * @return The segment counts per bin
+         */
+        public long[] getCounts() {
+            return fCounts;
+        }
+
+        /**
+         * Get the minimum duration of the segments
+         *
+         * @return The minimum duration
+         */
+        public long getMinDuration() {
+            return fMinDuration;
+        }
+
+        /**
+         * Get the maximum duration of the segments
+         *
+         * @return The maximum duration
+         */
+        public long getMaxDuration() {
+            return fMaxDuration;
+        }
+    }
+
+    /**
+     * Reduce the segments intersecting a time range to a grid of time and
+     * duration cells. The segments are read directly from the segment store's
+     * start and end time indexes, so only the segments in the range are
+     * visited. The segments that start before the range but end in it are put
+     * in the first column. Each column is processed independently, in
+     * parallel.
+     *
+     * @param <E>
+     *            The type of segments
+     * @param startIndex
+     *            The segments, sorted by start time. The list should support
+     *            efficient random access.
+     * @param endIndex
+     *            The same segments, sorted by end time. The list should
+     *            support efficient random access.
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range, inclusive
+     * @param width
+     *            The number of time intervals
+     * @param height
+     *            The number of duration intervals
+     * @param monitor
+     *            The progress monitor, to cancel the computation
+     * @return The grid, or null if the computation was cancelled
+     */
+    public static <E extends ISegment> @Nullable ScatterGrid binByStartTime(List<E> startIndex, List<E> endIndex, long start, long end, int width, int height, IProgressMonitor monitor) {
+        if (end < start || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid grid: [" + start + ',' + end + "] " + width + 'x' + height); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        /*
+         * Find the range of segments that belong to each column. The
+         * intersecting segments are sorted by start time, those starting
+         * before the range come first and go to the first column.
+         */
+        List<E> segments = getIntersectingSegments(startIndex, endIndex, start, end);
+        int last = segments.size();
+        double timePerColumn = ((double) end - start + 1) / width;
+        int[] bounds = new int[width + 1];
+        bounds[0] = 0;
+        bounds[width] = last;
+        for (int column = 1; column < width; column++) {
+            long columnStart = start + (long) Math.ceil(column * timePerColumn);
+            bounds[column] = lowerBound(segments, columnStart, bounds[column - 1], last);
+        }
+
+        /* First pass: find the maximum duration, to scale the rows */
+        long[] columnMax = new long[width];
+        IntStream.range(0, width).parallel().forEach(column -> {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            long max = 0;
+            for (int i = bounds[column]; i < bounds[column + 1]; i++) {
+                if (isCanceled(monitor, i)) {
+                    return;
+                }
+                max = Math.max(max, segments.get(i).getLength());
+            }
+            columnMax[column] = max;
+        });
+        if (monitor.isCanceled()) {
+            return null;
+        }
+        long maxDuration = 0;
+        for (long max : columnMax) {
+            maxDuration = Math.max(maxDuration, max);
+        }
+
+        /* Second pass: fill the cells, each column is written by one thread */
+        double rowsPerDuration = height / (maxDuration + 1.0);
+        int[] counts = new int[width * height];
+        @Nullable ISegment[] representatives = new @Nullable ISegment[width * height];
+        IntStream.range(0, width).parallel().forEach(column -> {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            for (int i = bounds[column]; i < bounds[column + 1]; i++) {
+                if (isCanceled(monitor, i)) {
+                    return;
+                }
+                ISegment segment = segments.get(i);
+                long duration = segment.getLength();
+                int row = Math.min((int) (duration * rowsPerDuration), height - 1);
+                int cell = column * height + row;
+                counts[cell]++;
+                ISegment representative = representatives[cell];
+                if (representative == null || duration > representative.getLength()) {
+                    representatives[cell] = segment;
+                }
+            }
+        });
+        if (monitor.isCanceled()) {
+            return null;
+        }
+        return new ScatterGrid(width, height, maxDuration, counts, representatives);
+    }
+
+    /**
+     * Compute the histogram of the durations of segments. The segments are
+     * split in chunks that are counted in parallel, then merged.
+     *
+     * @param segments
+     *            The segments, in any order. The list should support efficient
+     *            random access.
+     * @param nbBins
+     *            The number of bins of the histogram
+     * @param monitor
+     *            The progress monitor, to cancel the computation
+     * @return The histogram, or null if the computation was cancelled
+     */
+    public static @Nullable DurationHistogram binByDuration(List<? extends ISegment> segments, int nbBins, IProgressMonitor monitor) {
+        if (nbBins <= 0) {
+            throw new IllegalArgumentException("Invalid number of bins: " + nbBins); //$NON-NLS-1$
+        }
+        int size = segments.size();
+        int nbChunks = Math.max(1, Math.min(size, Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR));
+        int chunkSize = (size + nbChunks - 1) / nbChunks;
+
+        /* First pass: find the duration range */
+        long[] chunkMin = new long[nbChunks];
+        long[] chunkMax = new long[nbChunks];
+        IntStream.range(0, nbChunks).parallel().forEach(chunk -> {
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            int chunkEnd = Math.min(size, (chunk + 1) * chunkSize);
+            for (int i = chunk * chunkSize; i < chunkEnd; i++) {
+                if (isCanceled(monitor, i)) {
+                    return;
+                }
+                long duration = segments.get(i).getLength();
+                min = Math.min(min, duration);
+                max = Math.max(max, duration);
+            }
+            chunkMin[chunk] = min;
+            chunkMax[chunk] = max;
+        });
+        if (monitor.isCanceled()) {
+            return null;
+        }
+        long minDuration = Long.MAX_VALUE;
+        long maxDuration = 0;
+        for (int chunk = 0; chunk < nbChunks; chunk++) {
+            minDuration = Math.min(minDuration, chunkMin[chunk]);
+            maxDuration = Math.max(maxDuration, chunkMax[chunk]);
+        }
+
+        /* Second pass: count the segments of each chunk, then merge */
+        double binsPerDuration = nbBins / (maxDuration + 1.0);
+        long[][] chunkCounts = new long[nbChunks][];
+        IntStream.range(0, nbChunks).parallel().forEach(chunk -> {
+            long[] counts = new long[nbBins];
+            int chunkEnd = Math.min(size, (chunk + 1) * chunkSize);
+            for (int i = chunk * chunkSize; i < chunkEnd; i++) {
+                if (isCanceled(monitor, i)) {
+                    return;
+                }
+                int bin = Math.min((int) (segments.get(i).getLength() * binsPerDuration), nbBins - 1);
+                counts[bin]++;
+            }
+            chunkCounts[chunk] = counts;
+        });
+        if (monitor.isCanceled()) {
+            return null;
+        }
+        long[] counts = new long[nbBins];
+        for (long[] partial : chunkCounts) {
+            if (partial != null) {
+                for (int bin = 0; bin < nbBins; bin++) {
+                    counts[bin] += partial[bin];
+                }
+            }
+        }
+        return new DurationHistogram(counts, (size == 0 ? 0 : minDuration), maxDuration);
+    }
+
+    /**
+     * Get the segments intersecting a time range, from the segment store's
+     * start and end time indexes. The segments starting before the range are
+     * found by scanning whichever is shorter of the segments starting before
+     * the range in the start time index, or the segments ending in or after
+     * the range in the end time index. When no segment ends before the range,
+     * which is the case when the range starts before the first segment, the
+     * result is a view of the start time index instead of a copy.
+     *
+     * @param <E>
+     *            The type of segments
+     * @param startIndex
+     *            The segments, sorted by start time. The list should support
+     *            efficient random access.
+     * @param endIndex
+     *            The same segments, sorted by end time. The list should
+     *            support efficient random access.
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range, inclusive
+     * @return The segments intersecting the range, sorted by start time
+     */
+    public static <E extends ISegment> List<E> getIntersectingSegments(List<E> startIndex, List<E> endIndex, long start, long end) {
+        int last = upperBound(startIndex, end, 0, startIndex.size());
+        int first = lowerBound(startIndex, start, 0, last);
+        int firstEnding = lowerBoundByEnd(endIndex, start);
+        if (firstEnding == 0) {
+            /* All the segments starting before the range intersect it */
+            return startIndex.subList(0, last);
+        }
+        List<E> intersecting = new ArrayList<>();
+        if (first <= endIndex.size() - firstEnding) {
+            for (int i = 0; i < first; i++) {
+                E segment = startIndex.get(i);
+                if (segment.getEnd() >= start) {
+                    intersecting.add(segment);
+                }
+            }
+        } else {
+            for (int i = firstEnding; i < endIndex.size(); i++) {
+                E segment = endIndex.get(i);
+                if (segment.getStart() < start) {
+                    intersecting.add(segment);
+                }
+            }
+            intersecting.sort(SegmentComparators.INTERVAL_START_COMPARATOR);
+        }
+        intersecting.addAll(startIndex.subList(first, last));
+        return intersecting;
+    }
+
+    private static boolean isCanceled(IProgressMonitor monitor, int index) {
+        return (index % CANCEL_CHECK_INTERVAL == 0) && monitor.isCanceled();
+    }
+
+    /**
+     * Find the index of the first segment starting at or after a time, in a
+     * list sorted by start time
+     */
+    private static int lowerBound(List<? extends ISegment> segments, long time, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).getStart() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the index of the first segment ending at or after a time, in a list
+     * sorted by end time
+     */
+    private static int lowerBoundByEnd(List<? extends ISegment> segments, long time) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).getEnd() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the index of the first segment starting strictly after a time, in a
+     * list sorted by start time
+     */
+    private static int upperBound(List<? extends ISegment> segments, long time, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).getStart() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
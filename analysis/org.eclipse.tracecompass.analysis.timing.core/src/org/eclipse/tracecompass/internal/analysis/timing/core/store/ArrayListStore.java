@@ -12,11 +12,14 @@ package org.eclipse.tracecompass.internal.analysis.timing.core.store;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -25,6 +28,7 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
 
 import com.google.common.collect.ImmutableList;
 
@@ -43,6 +47,10 @@ import com.google.common.collect.ImmutableList;
  * that if you want several segments with the same start and end times, make
  * sure their compareTo() differentiates them.
  *
+ * Sorted views requested through {@link #getSortedElements(Comparator)} are
+ * built lazily and cached until the store is modified. The view by start time
+ * is the store's own order, so it does not need to be sorted.
+ *
  * Removal operations are not supported.
  *
  * @param <E>
@@ -64,7 +72,13 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
 
     private final List<E> fStore;
 
-    private @Nullable transient Iterable<E> fLastSnapshot = null;
+    private @Nullable transient List<E> fLastSnapshot = null;
+
+    /**
+     * Cache of the sorted views of the store, per comparator. Any modification
+     * of the store invalidates all of them.
+     */
+    private final transient Map<Comparator<ISegment>, List<E>> fSortedIndexes = new ConcurrentHashMap<>();
 
     /**
      * Constructor
@@ -97,17 +111,34 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
     public Iterator<E> iterator() {
         fLock.readLock().lock();
         try {
-            Iterable<E> lastSnapshot = fLastSnapshot;
-            if (lastSnapshot == null) {
-                lastSnapshot = ImmutableList.copyOf(fStore);
-                fLastSnapshot = lastSnapshot;
-            }
-            return checkNotNull(lastSnapshot.iterator());
+            return checkNotNull(getSnapshot().iterator());
         } finally {
             fLock.readLock().unlock();
         }
     }
 
+    /**
+     * Get the list of all the elements ordered by start time. Should be called
+     * while holding the read lock.
+     */
+    private List<E> getSnapshot() {
+        List<E> lastSnapshot = fLastSnapshot;
+        if (lastSnapshot == null) {
+            lastSnapshot = ImmutableList.copyOf(fStore);
+            fLastSnapshot = lastSnapshot;
+        }
+        return lastSnapshot;
+    }
+
+    /**
+     * Invalidate the snapshot and the sorted views after a modification.
+     * Should be called while holding the write lock.
+     */
+    private void invalidateViews() {
+        fLastSnapshot = null;
+        fSortedIndexes.clear();
+    }
+
     @Override
     public boolean add(@Nullable E val) {
         if (val == null) {
@@ -121,6 +152,7 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
             for (int i = size() - 1; i > 0 && COMPARATOR.compare(val, fStore.get(i - 1)) < 0; i--) {
                 Collections.swap(fStore, i, i - 1);
             }
+            invalidateViews();
             return true;
         } finally {
             fLock.writeLock().unlock();
@@ -222,6 +254,7 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
         fLock.writeLock().lock();
         try {
             fStore.clear();
+            invalidateViews();
         } finally {
             fLock.writeLock().unlock();
         }
@@ -255,11 +288,47 @@ public class ArrayListStore<@NonNull E extends ISegment> implements ISegmentStor
         }
     }
 
+    @Override
+    public List<E> getSortedElements(Comparator<ISegment> order) {
+        fLock.readLock().lock();
+        try {
+            List<E> index = fSortedIndexes.get(order);
+            if (index == null) {
+                index = buildSortedIndex(order);
+                fSortedIndexes.put(order, index);
+            }
+            return index;
+        } finally {
+            fLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Build a sorted view of the store. Should be called while holding the
+     * read lock.
+     */
+    private List<E> buildSortedIndex(Comparator<ISegment> order) {
+        List<E> snapshot = getSnapshot();
+        if (order == SegmentComparators.INTERVAL_START_COMPARATOR) {
+            /* The snapshot is already in start time order */
+            return snapshot;
+        }
+        /*
+         * The parallel sort is stable, so elements that compare equal keep
+         * their start time ordering.
+         */
+        @SuppressWarnings("unchecked")
+        E[] elements = (E[]) snapshot.toArray(new ISegment[snapshot.size()]);
+        Arrays.parallelSort(elements, order);
+        return checkNotNull(Collections.unmodifiableList(Arrays.asList(elements)));
+    }
+
     @Override
     public void dispose() {
         fLock.writeLock().lock();
         try {
             fStore.clear();
+            invalidateViews();
         } finally {
             fLock.writeLock().unlock();
         }
@@ -14,13 +14,15 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.nullToEmptyStrin
 import java.text.Format;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ControlAdapter;
+import org.eclipse.swt.events.ControlEvent;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Composite;
@@ -29,6 +31,8 @@ import org.eclipse.tracecompass.analysis.timing.core.segmentstore.IAnalysisProgr
 import org.eclipse.tracecompass.analysis.timing.core.segmentstore.ISegmentStoreProvider;
 import org.eclipse.tracecompass.analysis.timing.ui.views.segmentstore.SubSecondTimeWithUnitFormat;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStoreBinning;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStoreBinning.DurationHistogram;
 import org.eclipse.tracecompass.internal.analysis.timing.ui.views.segmentstore.density.MouseDragZoomProvider;
 import org.eclipse.tracecompass.internal.analysis.timing.ui.views.segmentstore.density.MouseSelectionProvider;
 import org.eclipse.tracecompass.internal.analysis.timing.ui.views.segmentstore.density.SimpleTooltipProvider;
@@ -55,10 +59,6 @@ import org.swtchart.ISeriesSet;
 import org.swtchart.LineStyle;
 import org.swtchart.Range;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
-
 /**
  * Displays the segment store provider data in a density chart.
  *
@@ -71,6 +71,8 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
 
     private static final Format DENSITY_TIME_FORMATTER = new SubSecondTimeWithUnitFormat();
     private static final RGB BAR_COLOR = new RGB(0x42, 0x85, 0xf4);
+    private static final int BAR_WIDTH = 4;
+    private static final int DEFAULT_NB_BARS = 100;
     private final Chart fChart;
     private final MouseDragZoomProvider fDragZoomProvider;
     private final MouseSelectionProvider fDragProvider;
@@ -81,6 +83,8 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
     private @Nullable ISegmentStoreProvider fSegmentStoreProvider;
     private TmfTimeRange fCurrentTimeRange = TmfTimeRange.NULL_RANGE;
     private List<ISegmentStoreDensityViewerDataListener> fListeners;
+    private volatile @Nullable IProgressMonitor fComputeMonitor = null;
+    private volatile int fNbBars = DEFAULT_NB_BARS;
 
     /**
      * Constructs a new density viewer.
@@ -98,6 +102,13 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
         fChart.getAxisSet().getYAxis(0).getTitle().setText(nullToEmptyString(Messages.AbstractSegmentStoreDensityViewer_CountAxisLabel));
         fChart.getAxisSet().getXAxis(0).getGrid().setStyle(LineStyle.DOT);
         fChart.getAxisSet().getYAxis(0).getGrid().setStyle(LineStyle.DOT);
+        /* The number of bars is needed by the binning, outside the UI thread */
+        fChart.getPlotArea().addControlListener(new ControlAdapter() {
+            @Override
+            public void controlResized(@Nullable ControlEvent e) {
+                fNbBars = Math.max(1, fChart.getPlotArea().getBounds().width / BAR_WIDTH);
+            }
+        });
 
         fDragZoomProvider = new MouseDragZoomProvider(this);
         fDragZoomProvider.register();
@@ -125,8 +136,9 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
         return TmfTraceManager.getInstance().getActiveTrace();
     }
 
-    private void updateDisplay(List<ISegment> data) {
-        if (data.isEmpty()) {
+    private void updateDisplay(DurationHistogram histogram) {
+        long[] counts = histogram.getCounts();
+        if (fChart.isDisposed() || counts.length == 0) {
             return;
         }
         IBarSeries series = (IBarSeries) fChart.getSeriesSet().createSeries(SeriesType.BAR, Messages.AbstractSegmentStoreDensityViewer_SeriesLabel);
@@ -134,25 +146,17 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
         series.setBarPadding(0);
 
         series.setBarColor(new Color(Display.getDefault(), BAR_COLOR));
-        int barWidth = 4;
-        final int width = fChart.getPlotArea().getBounds().width / barWidth;
+        final int width = counts.length;
         double[] xOrigSeries = new double[width];
         double[] yOrigSeries = new double[width];
-        Arrays.fill(yOrigSeries, 1.0);
-        long maxLength = data.get(data.size() - 1).getLength();
-        double maxFactor = 1.0 / (maxLength + 1.0);
-        long minX = Long.MAX_VALUE;
-        for (ISegment segment : data) {
-            double xBox = segment.getLength() * maxFactor * width;
-            yOrigSeries[(int) xBox]++;
-            minX = Math.min(minX, segment.getLength());
-        }
+        long maxLength = histogram.getMaxDuration();
+        long minX = histogram.getMinDuration();
         double timeWidth = (double) maxLength / (double) width;
-        for (int i = 0; i < width; i++) {
-            xOrigSeries[i] = i * timeWidth;
-        }
         double maxY = Double.MIN_VALUE;
         for (int i = 0; i < width; i++) {
+            xOrigSeries[i] = i * timeWidth;
+            /* Start at 1 for the logarithmic scale */
+            yOrigSeries[i] = 1.0 + counts[i];
             maxY = Math.max(maxY, yOrigSeries[i]);
         }
         if (minX == maxLength) {
@@ -189,7 +193,7 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
      *            a range of latency durations
      */
     public void select(Range durationRange) {
-        computeDataAsync(fCurrentTimeRange, durationRange).thenAccept((data) -> {
+        computeDataAsync(fCurrentTimeRange, durationRange, new NullProgressMonitor()).thenAccept((data) -> {
             for (ISegmentStoreDensityViewerDataListener listener : fListeners) {
                 listener.dataSelectionChanged(data);
             }
@@ -203,14 +207,29 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
      *            a range of latency durations
      */
     public void zoom(Range durationRange) {
-        computeDataAsync(fCurrentTimeRange, durationRange).thenAccept((data) -> applyData(data));
+        updateData(fCurrentTimeRange, durationRange);
     }
 
-    private CompletableFuture<@Nullable List<ISegment>> computeDataAsync(final TmfTimeRange timeRange, final Range durationRange) {
-        return CompletableFuture.supplyAsync(() -> computeData(timeRange, durationRange));
+    /**
+     * Compute the data and histogram of a range in the background, cancelling
+     * the computation of the previously requested range if it is still
+     * running.
+     */
+    private void updateData(final TmfTimeRange timeRange, final Range durationRange) {
+        IProgressMonitor monitor = new NullProgressMonitor();
+        IProgressMonitor previousMonitor = fComputeMonitor;
+        fComputeMonitor = monitor;
+        if (previousMonitor != null) {
+            previousMonitor.setCanceled(true);
+        }
+        computeDataAsync(timeRange, durationRange, monitor).thenAccept((data) -> applyData(data, monitor));
+    }
+
+    private CompletableFuture<@Nullable List<ISegment>> computeDataAsync(final TmfTimeRange timeRange, final Range durationRange, final IProgressMonitor monitor) {
+        return CompletableFuture.supplyAsync(() -> computeData(timeRange, durationRange, monitor));
     }
 
-    private @Nullable List<ISegment> computeData(final TmfTimeRange timeRange, final Range durationRange) {
+    private @Nullable List<ISegment> computeData(final TmfTimeRange timeRange, final Range durationRange, final IProgressMonitor monitor) {
         final ISegmentStoreProvider segmentProvider = fSegmentStoreProvider;
         if (segmentProvider == null) {
             return null;
@@ -220,29 +239,66 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
             return null;
         }
 
-        Iterator<ISegment> intersectingElements = segStore.getIntersectingElements(timeRange.getStartTime().getValue(), timeRange.getEndTime().getValue()).iterator();
+        /*
+         * Read the segments from the store's start and end time indexes, which
+         * are cached, so that the whole range is a view of the start time index
+         * and not a copy.
+         */
+        List<ISegment> startIndex = segStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        List<ISegment> endIndex = segStore.getSortedElements(SegmentComparators.INTERVAL_END_COMPARATOR);
+        List<ISegment> intersectingElements = SegmentStoreBinning.getIntersectingSegments(startIndex, endIndex, timeRange.getStartTime().getValue(), timeRange.getEndTime().getValue());
+        if (durationRange.lower <= Double.MIN_VALUE && durationRange.upper >= Double.MAX_VALUE) {
+            return intersectingElements;
+        }
 
-        if (durationRange.lower > Double.MIN_VALUE || durationRange.upper < Double.MAX_VALUE) {
-            Predicate<? super ISegment> predicate = new Predicate<ISegment>() {
-                @Override
-                public boolean apply(@Nullable ISegment input) {
-                    return input != null && input.getLength() >= durationRange.lower && input.getLength() <= durationRange.upper;
-                }
-            };
-            intersectingElements = Iterators.filter(intersectingElements, predicate);
+        List<ISegment> data = new ArrayList<>();
+        for (int i = 0; i < intersectingElements.size(); i++) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            ISegment segment = intersectingElements.get(i);
+            if (segment.getLength() >= durationRange.lower && segment.getLength() <= durationRange.upper) {
+                data.add(segment);
+            }
         }
+        return data;
+    }
 
-        return Lists.newArrayList(intersectingElements);
+    private void applyData(final @Nullable List<ISegment> data, final IProgressMonitor monitor) {
+        if (data == null || monitor.isCanceled()) {
+            return;
+        }
+        /* Bin the durations here rather than in the UI thread */
+        DurationHistogram histogram = SegmentStoreBinning.binByDuration(data, fNbBars, monitor);
+        if (histogram == null) {
+            return;
+        }
+        if (!data.isEmpty()) {
+            Display.getDefault().asyncExec(() -> updateDisplay(histogram));
+        }
+        if (fListeners.isEmpty()) {
+            return;
+        }
+        List<ISegment> sortedData = sortByLength(data);
+        for (ISegmentStoreDensityViewerDataListener l : fListeners) {
+            l.dataChanged(sortedData);
+        }
     }
 
-    private void applyData(final @Nullable List<ISegment> data) {
-        if (data != null) {
-            Collections.sort(data, SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
-            Display.getDefault().asyncExec(() -> updateDisplay(data));
-            for (ISegmentStoreDensityViewerDataListener l : fListeners) {
-                l.dataChanged(data);
-            }
+    /**
+     * Sort the segments by duration for the data listeners. When the data is
+     * the whole segment store, the store's cached duration index is used.
+     */
+    private List<ISegment> sortByLength(List<ISegment> data) {
+        final ISegmentStoreProvider segmentProvider = fSegmentStoreProvider;
+        final ISegmentStore<ISegment> segStore = (segmentProvider == null ? null : segmentProvider.getSegmentStore());
+        if (segStore != null && segStore.size() == data.size()) {
+            /* The store only grows, so it holds the same segments */
+            return segStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
         }
+        ISegment[] segments = data.toArray(new ISegment[data.size()]);
+        Arrays.parallelSort(segments, SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
+        return NonNullUtils.checkNotNull(Arrays.asList(segments));
     }
 
     /**
@@ -266,7 +322,7 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
     }
 
     private void updateWithRange(final TmfTimeRange range) {
-        computeDataAsync(range, new Range(Double.MIN_VALUE, Double.MAX_VALUE)).thenAccept((data) -> applyData(data));
+        updateData(range, new Range(Double.MIN_VALUE, Double.MAX_VALUE));
     }
 
     @Override
@@ -280,6 +336,10 @@ public abstract class AbstractSegmentStoreDensityViewer extends TmfViewer {
     }
 
     private void internalDispose() {
+        IProgressMonitor monitor = fComputeMonitor;
+        if (monitor != null) {
+            monitor.setCanceled(true);
+        }
         if (fSegmentStoreProvider != null && fListener != null) {
             fSegmentStoreProvider.removeListener(fListener);
         }
@@ -1,5 +1,5 @@
 /******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -23,7 +23,7 @@ public interface ISegmentStoreDensityViewerDataListener {
      * Notification that the data changed in the viewer.
      *
      * @param newData
-     *            the new data
+     *            the new data, sorted by duration
      */
     void dataChanged(List<ISegment> newData);
 
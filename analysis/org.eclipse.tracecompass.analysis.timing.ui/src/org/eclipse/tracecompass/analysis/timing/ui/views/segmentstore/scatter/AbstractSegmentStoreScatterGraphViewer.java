@@ -14,7 +14,6 @@
 package org.eclipse.tracecompass.analysis.timing.ui.views.segmentstore.scatter;
 
 import java.text.Format;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -32,6 +31,8 @@ import org.eclipse.tracecompass.analysis.timing.core.segmentstore.IAnalysisProgr
 import org.eclipse.tracecompass.analysis.timing.core.segmentstore.ISegmentStoreProvider;
 import org.eclipse.tracecompass.analysis.timing.ui.views.segmentstore.SubSecondTimeWithUnitFormat;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStoreBinning;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStoreBinning.ScatterGrid;
 import org.eclipse.tracecompass.internal.analysis.timing.ui.Activator;
 import org.eclipse.tracecompass.internal.analysis.timing.ui.views.segmentstore.scatter.Messages;
 import org.eclipse.tracecompass.internal.analysis.timing.ui.views.segmentstore.scatter.SegmentStoreScatterGraphTooltipProvider;
@@ -74,7 +75,10 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
     private static final Format FORMAT = new SubSecondTimeWithUnitFormat();
 
     private final class CompactingSegmentStoreQuery extends Job {
-        private static final long MAX_POINTS = 1000;
+        /** Number of time intervals of the binning grid */
+        private static final int MAX_POINTS = 1000;
+        /** Number of duration intervals of the binning grid */
+        private static final int MAX_DURATION_BINS = 500;
         private final TmfTimeRange fCurrentRange;
 
         private CompactingSegmentStoreQuery(TmfTimeRange currentRange) {
@@ -107,12 +111,19 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
 
             final long startTime = fCurrentRange.getStartTime().getValue();
             final long endTime = fCurrentRange.getEndTime().getValue();
-            fPixelStart = startTime;
-            fPixelSize = (endTime - startTime) / MAX_POINTS;
-            final Iterable<ISegment> intersectingElements = segStore.getIntersectingElements(startTime, endTime);
 
-            final List<ISegment> list = convertIterableToList(intersectingElements, statusMonitor);
-            final List<ISegment> displayData = (!list.isEmpty()) ? compactList(startTime, list, statusMonitor) : list;
+            /*
+             * Reduce the segments to one point per cell of a grid the size of
+             * the display, reading them directly from the start and end time
+             * indexes.
+             */
+            final List<ISegment> startIndex = segStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+            final List<ISegment> endIndex = segStore.getSortedElements(SegmentComparators.INTERVAL_END_COMPARATOR);
+            final ScatterGrid grid = SegmentStoreBinning.binByStartTime(startIndex, endIndex, startTime, Math.max(startTime, endTime), MAX_POINTS, MAX_DURATION_BINS, statusMonitor);
+            if (grid == null || statusMonitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            final List<ISegment> displayData = grid.getRepresentatives();
 
             setWindowRange(startTimeInNanos, endTimeInNanos);
             redraw(statusMonitor, startTime, endTime, displayData);
@@ -134,57 +145,6 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
                 }
             });
         }
-
-        private List<ISegment> compactList(final long startTime, final List<ISegment> listToCompact, final IProgressMonitor statusMonitor) {
-            List<ISegment> displayData = new ArrayList<>();
-            ISegment last = listToCompact.get(0);
-            if (last.getStart() >= startTime) {
-                displayData.add(last);
-            }
-            for (ISegment next : listToCompact) {
-                if (next.getStart() < startTime) {
-                    continue;
-                }
-                if (statusMonitor.isCanceled()) {
-                    return Collections.EMPTY_LIST;
-                }
-                if (!overlaps(last, next)) {
-                    displayData.add(next);
-                    last = next;
-                }
-            }
-            return displayData;
-        }
-
-        private List<ISegment> convertIterableToList(final Iterable<ISegment> iterable, final IProgressMonitor statusMonitor) {
-            final List<ISegment> list = new ArrayList<>();
-            for (ISegment seg : iterable) {
-                if (statusMonitor.isCanceled()) {
-                    return Collections.EMPTY_LIST;
-                }
-                list.add(seg);
-            }
-            Collections.sort(list, SegmentComparators.INTERVAL_START_COMPARATOR);
-            return list;
-        }
-
-        private boolean overlaps(ISegment last, ISegment next) {
-            long timePerPix = fPixelSize;
-            final long start = last.getStart();
-            final long pixelStart = fPixelStart;
-            final long pixelDuration = start - pixelStart;
-            long startPixBoundL = pixelDuration / timePerPix * timePerPix + pixelStart;
-            long startPixBoundR = startPixBoundL + timePerPix;
-            final long currentStart = next.getStart();
-            if (currentStart >= startPixBoundL && currentStart <= startPixBoundR) {
-                long length = last.getLength();
-                long lengthNext = next.getLength();
-                long lengthLow = length / timePerPix * timePerPix;
-                long lengthHigh = lengthLow + timePerPix;
-                return (lengthNext >= lengthLow && lengthNext <= lengthHigh);
-            }
-            return false;
-        }
     }
 
     // ------------------------------------------------------------------------
@@ -207,9 +167,6 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
         }
     }
 
-    private long fPixelSize = -1;
-
-    private long fPixelStart = 0;
     /**
      * Data to display
      */
@@ -290,12 +247,8 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
             }
             fDisplayData = Collections.EMPTY_LIST;
         } else {
-            Collection<ISegment> elements = (Collection<ISegment>) dataInput.getIntersectingElements(currentStart, currentEnd);
-            // getIntersectingElements can return an unsorted iterable, make
-            // sure our collection is sorted
-            ArrayList<ISegment> list = new ArrayList<>(elements);
-            Collections.sort(list, SegmentComparators.INTERVAL_START_COMPARATOR);
-            fDisplayData = list;
+            /* The display data is computed by the compacting job */
+            fDisplayData = Collections.EMPTY_LIST;
         }
         setWindowRange(currentStart, currentEnd);
         updateRange(currentRange);
@@ -480,7 +433,8 @@ public abstract class AbstractSegmentStoreScatterGraphViewer extends TmfCommonXL
 
     private void updateRange(final @Nullable TmfTimeRange timeRange) {
         Job compactingJob = fCompactingJob;
-        if (compactingJob != null && compactingJob.getState() == Job.RUNNING) {
+        if (compactingJob != null) {
+            /* Stop binning a range that is not displayed anymore */
             compactingJob.cancel();
         }
         compactingJob = new CompactingSegmentStoreQuery(NonNullUtils.checkNotNull(timeRange));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,11 +13,14 @@
 
 package org.eclipse.tracecompass.internal.analysis.timing.ui.views.segmentstore.table;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNullContents;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -25,9 +28,12 @@ import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
 import org.eclipse.tracecompass.tmf.ui.viewers.table.ISortingLazyContentProvider;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 /**
  * Content provider for the latency table viewers.
@@ -38,9 +44,24 @@ import com.google.common.collect.Iterables;
 public class SegmentStoreContentProvider implements ISortingLazyContentProvider {
 
     /**
-     * Array of all the segments in the segment store of the current trace
+     * Comparators for which the segment store can provide a sorted index, so
+     * that the descending order can be served by reversing it.
      */
-    private ISegment @Nullable [] fSegmentArray = null;
+    private static final Set<Comparator<ISegment>> INDEXED_COMPARATORS = ImmutableSet.of(
+            SegmentComparators.INTERVAL_START_COMPARATOR,
+            SegmentComparators.INTERVAL_END_COMPARATOR,
+            SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
+
+    /**
+     * List of all the segments in the segment store of the current trace, in
+     * the current sort order
+     */
+    private @Nullable List<? extends ISegment> fSegmentList = null;
+
+    /**
+     * Segment store of the current trace, if the input is a segment store
+     */
+    private @Nullable ISegmentStore<?> fSegmentStore = null;
 
     /**
      * Table viewer of the latency table viewer
@@ -55,15 +76,16 @@ public class SegmentStoreContentProvider implements ISortingLazyContentProvider
     @Override
     public void updateElement(int index) {
         final TableViewer tableViewer = fTableViewer;
-        final ISegment @Nullable [] segmentArray = fSegmentArray;
-        if (tableViewer != null && segmentArray != null) {
-            tableViewer.replace(segmentArray[index], index);
+        final List<? extends ISegment> segmentList = fSegmentList;
+        if (tableViewer != null && segmentList != null) {
+            tableViewer.replace(segmentList.get(index), index);
         }
     }
 
     @Override
     public void dispose() {
-        fSegmentArray = null;
+        fSegmentList = null;
+        fSegmentStore = null;
         fTableViewer = null;
         fComparator = null;
     }
@@ -71,37 +93,42 @@ public class SegmentStoreContentProvider implements ISortingLazyContentProvider
     @Override
     public void inputChanged(@Nullable Viewer viewer, @Nullable Object oldInput, @Nullable Object newInput) {
         fTableViewer = (TableViewer) viewer;
-        if (newInput instanceof Collection<?> || newInput instanceof ISegmentStore) {
+        fSegmentStore = null;
+        if (newInput instanceof ISegmentStore) {
+            ISegmentStore<?> segmentStore = (ISegmentStore<?>) newInput;
+            fSegmentStore = segmentStore;
+            fSegmentList = getSortedSegments(segmentStore, fComparator);
+        } else if (newInput instanceof Collection<?>) {
             @SuppressWarnings("unchecked")
-            Collection<ISegment> segmentStore = (Collection<@NonNull ISegment>) newInput;
-            ISegment[] array = Iterables.toArray(segmentStore, ISegment.class);
+            Collection<ISegment> segments = (Collection<@NonNull ISegment>) newInput;
+            ISegment[] array = Iterables.toArray(segments, ISegment.class);
             @NonNull ISegment[] checkedArray = checkNotNullContents(array);
             if (fComparator != null) {
-                Arrays.sort(checkedArray, fComparator);
+                Arrays.parallelSort(checkedArray, fComparator);
             }
-            fSegmentArray = checkedArray;
+            fSegmentList = Arrays.asList(checkedArray);
         } else if (newInput instanceof ISegment[]) {
             /*
              * Ensure that there are no null elements in the array, so we can
-             * set it back to fSegmentArray, which does not allow nulls.
+             * set it back to fSegmentList, which does not allow nulls.
              */
             @NonNull ISegment[] checkedArray = checkNotNullContents((@Nullable ISegment[]) newInput);
             if (fComparator != null) {
-                Arrays.sort(checkedArray, fComparator);
+                Arrays.parallelSort(checkedArray, fComparator);
             }
-            fSegmentArray = checkedArray;
+            fSegmentList = Arrays.asList(checkedArray);
         } else {
-            fSegmentArray = null;
+            fSegmentList = null;
         }
     }
 
     @Override
     public void setSortOrder(@Nullable Comparator<?> comparator) {
-        @NonNull ISegment @Nullable [] segmentArray = fSegmentArray;
+        List<? extends ISegment> segmentList = fSegmentList;
         if (comparator == null) {
             return;
         }
-        if (segmentArray == null) {
+        if (segmentList == null) {
             return;
         }
         final TableViewer tableViewer = fTableViewer;
@@ -111,17 +138,40 @@ public class SegmentStoreContentProvider implements ISortingLazyContentProvider
         @SuppressWarnings("unchecked")
         Comparator<ISegment> comp = (Comparator<ISegment>) comparator;
         fComparator = comp;
-        Arrays.sort(segmentArray, fComparator);
+        ISegmentStore<?> segmentStore = fSegmentStore;
+        if (segmentStore != null) {
+            fSegmentList = getSortedSegments(segmentStore, comp);
+        } else {
+            @NonNull ISegment[] array = checkNotNullContents(segmentList.toArray(new ISegment[segmentList.size()]));
+            Arrays.parallelSort(array, comp);
+            fSegmentList = Arrays.asList(array);
+        }
         tableViewer.refresh();
     }
 
+    /**
+     * Get the segments of a segment store in the order of a comparator, using
+     * the store's sorted indexes. Descending orders of the indexed comparators
+     * reuse the ascending index instead of building a new one.
+     */
+    private static List<? extends ISegment> getSortedSegments(ISegmentStore<?> segmentStore, @Nullable Comparator<ISegment> comparator) {
+        if (comparator == null) {
+            return segmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        }
+        Comparator<ISegment> reversed = comparator.reversed();
+        if (INDEXED_COMPARATORS.contains(reversed)) {
+            return checkNotNull(Lists.reverse(segmentStore.getSortedElements(checkNotNull(reversed))));
+        }
+        return segmentStore.getSortedElements(comparator);
+    }
+
     /**
      * Get the segment count
      *
      * @return the segment count
      */
     public int getSegmentCount() {
-        ISegment[] segmentArray = fSegmentArray;
-        return (segmentArray == null ? 0 : segmentArray.length);
+        List<? extends ISegment> segmentList = fSegmentList;
+        return (segmentList == null ? 0 : segmentList.size());
     }
 }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.io;
+
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.junit.Test;
+
+/**
+ * Benchmark of the {@link BitBuffer} reads of integers, one at a time or in
+ * bulk, aligned or not, in both byte orders
+ */
+public class BitBufferBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF BitBuffer Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 50;
+    private static final int INNER_LOOP_COUNT = 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Benchmark reading aligned big-endian integers one at a time
+     */
+    @Test
+    public void testGetAlignedBE() {
+        readIntegers("get-aligned-be", ByteOrder.BIG_ENDIAN, 0, false);
+    }
+
+    /**
+     * Benchmark reading aligned little-endian integers one at a time
+     */
+    @Test
+    public void testGetAlignedLE() {
+        readIntegers("get-aligned-le", ByteOrder.LITTLE_ENDIAN, 0, false);
+    }
+
+    /**
+     * Benchmark reading unaligned big-endian integers one at a time
+     */
+    @Test
+    public void testGetUnalignedBE() {
+        readIntegers("get-unaligned-be", ByteOrder.BIG_ENDIAN, 3, false);
+    }
+
+    /**
+     * Benchmark reading unaligned little-endian integers one at a time
+     */
+    @Test
+    public void testGetUnalignedLE() {
+        readIntegers("get-unaligned-le", ByteOrder.LITTLE_ENDIAN, 3, false);
+    }
+
+    /**
+     * Benchmark reading aligned big-endian integers in bulk
+     */
+    @Test
+    public void testGetBulkBE() {
+        readIntegers("get-bulk-be", ByteOrder.BIG_ENDIAN, 0, true);
+    }
+
+    /**
+     * Benchmark reading aligned little-endian integers in bulk
+     */
+    @Test
+    public void testGetBulkLE() {
+        readIntegers("get-bulk-le", ByteOrder.LITTLE_ENDIAN, 0, true);
+    }
+
+    private static void readIntegers(String testName, ByteOrder byteOrder, int offset, boolean bulk) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            buffer.put(i, (byte) i);
+        }
+        BitBuffer input = new BitBuffer(buffer, byteOrder);
+        int[] lengths = { Byte.SIZE, Short.SIZE, Integer.SIZE, Long.SIZE };
+        long sum = 0;
+
+        try {
+            for (int loop = 0; loop < LOOP_COUNT; loop++) {
+                pm.start();
+                for (int inner = 0; inner < INNER_LOOP_COUNT; inner++) {
+                    for (int length : lengths) {
+                        int count = (BUFFER_SIZE * Byte.SIZE - offset) / length;
+                        input.position(offset);
+                        if (bulk) {
+                            long[] values = new long[count];
+                            input.get(values, length, false);
+                            sum += values[count - 1];
+                        } else {
+                            for (int i = 0; i < count; i++) {
+                                sum += input.get(length, false);
+                            }
+                        }
+                    }
+                }
+                pm.stop();
+            }
+        } catch (CTFException e) {
+            fail(e.getMessage());
+        }
+        /* Use the values so that the reads are not optimized out */
+        if (sum == 0) {
+            fail("No value read");
+        }
+        pm.commit();
+    }
+}
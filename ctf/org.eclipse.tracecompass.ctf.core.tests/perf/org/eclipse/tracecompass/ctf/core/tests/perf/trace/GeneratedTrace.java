@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.UUID;
+
+/**
+ * A generated CTF trace in a temporary directory, with a given number of
+ * stream files of small packets containing one event each.
+ */
+class GeneratedTrace implements AutoCloseable {
+
+    private static final int PACKET_SIZE = 256;
+    private static final int CONTENT_SIZE = 32;
+
+    private final File fDirectory;
+
+    /**
+     * Generate the trace
+     *
+     * @param nbStreams
+     *            the number of stream files
+     * @param nbPackets
+     *            the number of packets per stream file
+     * @throws IOException
+     *             if the trace could not be written
+     */
+    public GeneratedTrace(int nbStreams, int nbPackets) throws IOException {
+        fDirectory = Files.createTempDirectory("generatedtrace").toFile();
+        UUID uuid = UUID.randomUUID();
+        try (PrintWriter pw = new PrintWriter(new File(fDirectory, "metadata"))) {
+            pw.println("/*CTF 1.8*/");
+            pw.println("typealias integer { size = 8; align = 8; signed = false; base = 10; } := uint8_t;");
+            pw.println("typealias integer { size = 32; align = 32; signed = false; base = hex; } := uint32_t;");
+            pw.println("trace {");
+            pw.println(" major = 1;");
+            pw.println(" minor = 8;");
+            pw.println(" uuid = \"" + uuid.toString() + "\";");
+            pw.println(" byte_order = le;");
+            pw.println(" packet.header := struct {");
+            pw.println("  uint32_t magic;");
+            pw.println("  uint8_t uuid[16];");
+            pw.println(" };");
+            pw.println("};");
+            pw.println("stream {");
+            pw.println(" packet.context := struct {");
+            pw.println("  uint32_t packet_size;");
+            pw.println("  uint32_t content_size;");
+            pw.println(" };");
+            pw.println("};");
+            pw.println("event {");
+            pw.println(" name = thing;");
+            pw.println(" fields := struct { uint32_t f; };");
+            pw.println("};");
+        }
+
+        /* Packet header, packet context and one event, then padding */
+        ByteBuffer packet = ByteBuffer.allocate(PACKET_SIZE);
+        packet.order(ByteOrder.LITTLE_ENDIAN);
+        packet.putInt(0xc1fc1fc1);
+        packet.order(ByteOrder.BIG_ENDIAN);
+        packet.putLong(uuid.getMostSignificantBits());
+        packet.putLong(uuid.getLeastSignificantBits());
+        packet.order(ByteOrder.LITTLE_ENDIAN);
+        packet.putInt(PACKET_SIZE * Byte.SIZE);
+        packet.putInt(CONTENT_SIZE * Byte.SIZE);
+        packet.putInt(42);
+
+        for (int stream = 0; stream < nbStreams; stream++) {
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(new File(fDirectory, "channel_" + stream)))) {
+                for (int i = 0; i < nbPackets; i++) {
+                    os.write(packet.array());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the trace directory
+     *
+     * @return the trace directory
+     */
+    public File getDirectory() {
+        return fDirectory;
+    }
+
+    /**
+     * Delete the trace
+     */
+    @Override
+    public void close() {
+        for (File file : fDirectory.listFiles()) {
+            file.delete();
+        }
+        fDirectory.delete();
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.junit.Test;
+
+/**
+ * Benchmark of the merge of the streams of a trace by the CTF trace reader.
+ * The traces have the same number of events, spread over more and more
+ * streams.
+ */
+public class TraceMergeBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF Merge Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 25;
+    private static final int NB_EVENTS = 512 * 400;
+
+    /**
+     * Benchmark merging 8 streams
+     */
+    @Test
+    public void test8Streams() {
+        mergeStreams(8);
+    }
+
+    /**
+     * Benchmark merging 64 streams
+     */
+    @Test
+    public void test64Streams() {
+        mergeStreams(64);
+    }
+
+    /**
+     * Benchmark merging 512 streams
+     */
+    @Test
+    public void test512Streams() {
+        mergeStreams(512);
+    }
+
+    private static void mergeStreams(int nbStreams) {
+        String testName = "merge-" + nbStreams + "-streams";
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+
+        try (GeneratedTrace generatedTrace = new GeneratedTrace(nbStreams, NB_EVENTS / nbStreams)) {
+            CTFTrace trace = new CTFTrace(generatedTrace.getDirectory());
+            for (int loop = 0; loop < LOOP_COUNT; loop++) {
+                pm.start();
+                long count = 0;
+                try (CTFTraceReader traceReader = new CTFTraceReader(trace);) {
+                    while (traceReader.hasMoreEvents()) {
+                        count++;
+                        traceReader.advance();
+                    }
+                }
+                pm.stop();
+                assertEquals(NB_EVENTS, count);
+            }
+        } catch (CTFException | IOException e) {
+            fail(e.getMessage());
+        }
+        pm.commit();
+    }
+}
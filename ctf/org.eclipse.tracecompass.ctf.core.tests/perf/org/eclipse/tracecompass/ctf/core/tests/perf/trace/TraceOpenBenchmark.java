@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
+
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.junit.Test;
+
+/**
+ * Benchmark of the time to open a CTF trace, that is to parse its metadata and
+ * build the packet index of its stream files, depending on the number of
+ * stream files. The traces are generated, every stream file has the same
+ * number of packets.
+ */
+public class TraceOpenBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF Open Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 20;
+
+    private static final int NB_PACKETS = 4000;
+
+    /**
+     * Benchmark opening a trace with 1 stream file
+     */
+    @Test
+    public void testOneStream() {
+        openTrace(1, "open-1-stream", false);
+    }
+
+    /**
+     * Benchmark opening a trace with 8 stream files
+     */
+    @Test
+    public void test8Streams() {
+        openTrace(8, "open-8-streams", false);
+    }
+
+    /**
+     * Benchmark opening a trace with 64 stream files
+     */
+    @Test
+    public void test64Streams() {
+        openTrace(64, "open-64-streams", true);
+    }
+
+    private static void openTrace(int nbStreams, String testName, boolean inGlobalSummary) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.ELAPSED_PROCESS);
+
+        if (inGlobalSummary) {
+            perf.tagAsGlobalSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.ELAPSED_PROCESS);
+        }
+
+        try (GeneratedTrace trace = new GeneratedTrace(nbStreams, NB_PACKETS)) {
+            for (int loop = 0; loop < LOOP_COUNT; loop++) {
+                pm.start();
+                new CTFTrace(trace.getDirectory()).indexPackets();
+                pm.stop();
+            }
+        } catch (CTFException | IOException e) {
+            fail(e.getMessage());
+        }
+        pm.commit();
+    }
+}
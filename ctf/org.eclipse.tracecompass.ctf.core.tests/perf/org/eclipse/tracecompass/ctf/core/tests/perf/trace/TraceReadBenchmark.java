@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,6 +15,8 @@ package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
 
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+
 import org.eclipse.test.performance.Dimension;
 import org.eclipse.test.performance.Performance;
 import org.eclipse.test.performance.PerformanceMeter;
@@ -37,13 +39,17 @@ public class TraceReadBenchmark {
     private static final String TEST_SUITE_NAME = "CTF Read Benchmark";
     private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
     private static final int LOOP_COUNT = 100;
+    private static final int NB_STREAMS = 8;
+    private static final int NB_PACKETS = 20000;
+    private static final int NB_STREAMS_READ_AHEAD = 32;
+    private static final int NB_PACKETS_READ_AHEAD = 2000;
 
     /**
      * Benchmark reading the trace "kernel"
      */
     @Test
     public void testKernelTrace() {
-        readTrace(CtfTestTrace.KERNEL, "trace-kernel", true);
+        readTrace(CtfTestTrace.KERNEL, "trace-kernel", true, false);
     }
 
     /**
@@ -51,23 +57,87 @@ public class TraceReadBenchmark {
      */
     @Test
     public void testKernelVmTrace() {
-        readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm", false);
+        readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm", false, false);
+    }
+
+    /**
+     * Benchmark reading the trace "kernel_vm" with its streams decoded ahead
+     * by worker threads
+     */
+    @Test
+    public void testKernelVmTraceReadAhead() {
+        readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-read-ahead", false, true);
+    }
+
+    /**
+     * Benchmark reading a generated trace with many small packets, where
+     * getting the buffer of each packet is a large part of the read time
+     */
+    @Test
+    public void testSmallPacketsTrace() {
+        try (GeneratedTrace trace = new GeneratedTrace(NB_STREAMS, NB_PACKETS)) {
+            readTrace(() -> new CTFTrace(trace.getDirectory()), "trace-small-packets", false, false);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Benchmark reading a generated trace with many streams, decoded on the
+     * reading thread
+     */
+    @Test
+    public void testManyStreamsTrace() {
+        try (GeneratedTrace trace = new GeneratedTrace(NB_STREAMS_READ_AHEAD, NB_PACKETS_READ_AHEAD)) {
+            readTrace(() -> new CTFTrace(trace.getDirectory()), "trace-32-streams", false, false);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Benchmark reading a generated trace with many streams, decoded ahead by
+     * worker threads. The elapsed time should go down with the number of
+     * cores.
+     */
+    @Test
+    public void testManyStreamsTraceReadAhead() {
+        try (GeneratedTrace trace = new GeneratedTrace(NB_STREAMS_READ_AHEAD, NB_PACKETS_READ_AHEAD)) {
+            readTrace(() -> new CTFTrace(trace.getDirectory()), "trace-32-streams-read-ahead", false, true);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the trace to read, the opening is part of the measured time
+     */
+    @FunctionalInterface
+    private interface TraceOpener {
+        CTFTrace open() throws CTFException;
+    }
+
+    private static void readTrace(CtfTestTrace testTrace, String testName, boolean inGlobalSummary, boolean readAhead) {
+        readTrace(() -> CtfTestTraceUtils.getTrace(testTrace), testName, inGlobalSummary, readAhead);
     }
 
-    private static void readTrace(CtfTestTrace testTrace, String testName, boolean inGlobalSummary) {
+    private static void readTrace(TraceOpener traceOpener, String testName, boolean inGlobalSummary, boolean readAhead) {
         Performance perf = Performance.getDefault();
         PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
-        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+        /* Reading ahead uses more CPU time to take less elapsed time */
+        Dimension dimension = readAhead ? Dimension.ELAPSED_PROCESS : Dimension.CPU_TIME;
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, dimension);
 
         if (inGlobalSummary) {
-            perf.tagAsGlobalSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+            perf.tagAsGlobalSummary(pm, TEST_SUITE_NAME + ':' + testName, dimension);
         }
 
         for (int loop = 0; loop < LOOP_COUNT; loop++) {
             pm.start();
             try {
-                CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+                CTFTrace trace = traceOpener.open();
                 try (CTFTraceReader traceReader = new CTFTraceReader(trace);) {
+                    traceReader.setReadAhead(readAhead);
 
                     while (traceReader.hasMoreEvents()) {
                         IEventDefinition ed = traceReader.getCurrentEventDef();
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.types;
+
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.junit.Test;
+
+/**
+ * Benchmark of the decoding of enum fields, like the system call IDs of the
+ * kernel events, from one thread or from several threads at once
+ */
+public class EnumDeclarationBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF Enum Decode Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 25;
+    private static final int NB_LABELS = 400;
+    private static final int NB_VALUES = 256 * 1024;
+    private static final int NB_THREADS = 4;
+
+    /**
+     * Benchmark decoding a dense enum, with consecutive values
+     */
+    @Test
+    public void testDenseEnum() {
+        decodeEnum("dense", 1, 1);
+    }
+
+    /**
+     * Benchmark decoding a sparse enum, with values far apart
+     */
+    @Test
+    public void testSparseEnum() {
+        decodeEnum("sparse", 100, 1);
+    }
+
+    /**
+     * Benchmark decoding a dense enum from several threads
+     */
+    @Test
+    public void testDenseEnumConcurrent() {
+        decodeEnum("dense-concurrent", 1, NB_THREADS);
+    }
+
+    private static void decodeEnum(String testName, int stride, int nbThreads) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.ELAPSED_PROCESS);
+
+        IntegerDeclaration containerType = IntegerDeclaration.createDeclaration(Integer.SIZE, false, 10,
+                ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", Integer.SIZE);
+        EnumDeclaration declaration = new EnumDeclaration(containerType);
+        for (int i = 0; i < NB_LABELS; i++) {
+            declaration.add(i * stride, i * stride, "label" + i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(NB_VALUES * Integer.BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < NB_VALUES; i++) {
+            buffer.putInt((i * 7919 % NB_LABELS) * stride);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            for (int loop = 0; loop < LOOP_COUNT; loop++) {
+                pm.start();
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (int thread = 0; thread < nbThreads; thread++) {
+                    futures.add(executor.submit(() -> decodeAll(declaration, buffer.duplicate())));
+                }
+                for (Future<Integer> future : futures) {
+                    if (future.get() != NB_VALUES) {
+                        fail("Unknown enum value");
+                    }
+                }
+                pm.stop();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            fail(e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        pm.commit();
+    }
+
+    private static int decodeAll(EnumDeclaration declaration, ByteBuffer buffer) throws CTFException {
+        BitBuffer input = new BitBuffer(buffer, ByteOrder.LITTLE_ENDIAN);
+        int found = 0;
+        for (int i = 0; i < NB_VALUES; i++) {
+            if (declaration.createDefinition(null, "id", input).getStringValue() != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
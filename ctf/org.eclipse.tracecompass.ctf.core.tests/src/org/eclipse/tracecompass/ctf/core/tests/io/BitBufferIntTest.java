@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -546,6 +546,51 @@ public class BitBufferIntTest {
         }
     }
 
+    /**
+     * Test {@link BitBuffer#get(long[], int, boolean)} against reading the
+     * integers one by one, aligned or not, in both byte orders.
+     *
+     * @throws CTFException
+     *             Not expected
+     */
+    @Test
+    public void testGetBulk() throws CTFException {
+        for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            for (int length : new int[] { 3, 8, 12, 16, 32, 33, 64 }) {
+                for (boolean signed : new boolean[] { false, true }) {
+                    for (int offset : new int[] { 0, 5, 8 }) {
+                        BitBuffer buffer = createBuffer(128);
+                        buffer.setByteOrder(byteOrder);
+                        long[] values = new long[(128 * 8 - offset) / length];
+                        buffer.position(offset);
+                        buffer.get(values, length, signed);
+                        long end = buffer.position();
+
+                        buffer.position(offset);
+                        for (int i = 0; i < values.length; i++) {
+                            assertEquals(buffer.get(length, signed), values[i]);
+                        }
+                        assertEquals(buffer.position(), end);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test {@link BitBuffer#get(long[], int, boolean)} reading past the end of
+     * the buffer. An exception should be thrown and nothing read.
+     *
+     * @throws CTFException
+     *             Expected
+     */
+    @Test(expected = CTFException.class)
+    public void testGetBulk_invalid() throws CTFException {
+        BitBuffer buffer = createBuffer(16);
+        buffer.position(8);
+        buffer.get(new long[2], 64, false);
+    }
+
     /**
      * Test {@link BitBuffer#putInt} with an out-of-bounds length. An exception
      * should be thrown.
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.eclipse.tracecompass.internal.ctf.core.MappedWindowPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The class <code>MappedWindowPoolTest</code> contains tests for the class
+ * <code>{@link MappedWindowPool}</code>.
+ */
+@SuppressWarnings("javadoc")
+public class MappedWindowPoolTest {
+
+    private static final int WINDOW_SIZE = 4096;
+    private static final int MAX_WINDOWS = 2;
+    private static final int NB_WINDOWS = 5;
+    private static final int REGION_SIZE = 100;
+
+    private Path fFile;
+    private FileChannel fFileChannel;
+    private MappedWindowPool fPool;
+
+    @Before
+    public void setUp() throws IOException {
+        /* The regions are all mapped individually on Windows */
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        fFile = Files.createTempFile("windows", null);
+        byte[] content = new byte[NB_WINDOWS * WINDOW_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(fFile, content);
+        fFileChannel = FileChannel.open(fFile, StandardOpenOption.READ);
+        fPool = new MappedWindowPool(fFileChannel, WINDOW_SIZE, MAX_WINDOWS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (fPool != null) {
+            fPool.clear();
+            fFileChannel.close();
+            Files.delete(fFile);
+        }
+    }
+
+    private static long window(int i) {
+        return (long) i * WINDOW_SIZE;
+    }
+
+    private static void assertRegion(long position, ByteBuffer buffer) {
+        assertEquals(0, buffer.position());
+        assertEquals(REGION_SIZE, buffer.capacity());
+        for (int i = 0; i < REGION_SIZE; i++) {
+            assertEquals((byte) (position + i), buffer.get(i));
+        }
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        for (int i = 0; i < NB_WINDOWS; i++) {
+            long position = window(i) + 10;
+            assertRegion(position, fPool.map(position, REGION_SIZE));
+        }
+        /* The least recently used windows were evicted */
+        assertEquals(MAX_WINDOWS, fPool.getNbWindows());
+    }
+
+    @Test
+    public void testAcquiredWindowNotEvicted() throws IOException {
+        assertRegion(window(0), fPool.acquire(window(0), REGION_SIZE));
+        assertRegion(window(1), fPool.acquire(window(1), REGION_SIZE));
+        for (int i = 2; i < NB_WINDOWS; i++) {
+            assertRegion(window(i), fPool.map(window(i), REGION_SIZE));
+        }
+        /* The windows in use are kept, with the most recently used one */
+        assertEquals(MAX_WINDOWS + 1, fPool.getNbWindows());
+        assertRegion(window(0), fPool.map(window(0), REGION_SIZE));
+
+        /* Once released, a window is evicted like the others */
+        fPool.release(window(0), REGION_SIZE);
+        assertEquals(MAX_WINDOWS, fPool.getNbWindows());
+        fPool.release(window(1), REGION_SIZE);
+        assertEquals(MAX_WINDOWS, fPool.getNbWindows());
+    }
+
+    @Test
+    public void testAllWindowsAcquired() throws IOException {
+        for (int i = 0; i < NB_WINDOWS; i++) {
+            fPool.acquire(window(i), REGION_SIZE);
+        }
+        /* No window in use is evicted */
+        assertEquals(NB_WINDOWS, fPool.getNbWindows());
+
+        /* The windows are evicted as they are released */
+        for (int i = 0; i < NB_WINDOWS - MAX_WINDOWS; i++) {
+            fPool.release(window(i), REGION_SIZE);
+            assertEquals(NB_WINDOWS - i - 1, fPool.getNbWindows());
+        }
+        fPool.release(window(NB_WINDOWS - 1), REGION_SIZE);
+        assertEquals(MAX_WINDOWS, fPool.getNbWindows());
+    }
+
+    @Test
+    public void testSeveralRegionsOfAWindow() throws IOException {
+        fPool.acquire(window(0), REGION_SIZE);
+        fPool.acquire(window(0) + REGION_SIZE, REGION_SIZE);
+        fPool.acquire(window(1), REGION_SIZE);
+        fPool.map(window(2), REGION_SIZE);
+        assertEquals(MAX_WINDOWS + 1, fPool.getNbWindows());
+
+        /* The window is still in use by the second region */
+        fPool.release(window(0), REGION_SIZE);
+        assertEquals(MAX_WINDOWS + 1, fPool.getNbWindows());
+        fPool.release(window(0) + REGION_SIZE, REGION_SIZE);
+        assertEquals(MAX_WINDOWS, fPool.getNbWindows());
+        fPool.release(window(1), REGION_SIZE);
+    }
+
+    @Test
+    public void testRegionAcrossWindows() throws IOException {
+        long position = window(1) - REGION_SIZE / 2;
+        assertRegion(position, fPool.acquire(position, REGION_SIZE));
+        /* It is mapped on its own */
+        assertEquals(0, fPool.getNbWindows());
+        fPool.release(position, REGION_SIZE);
+        assertEquals(0, fPool.getNbWindows());
+    }
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.List;
+
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache.CachedIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The class <code>CTFStreamInputPacketIndexCacheTest</code> contains tests for
+ * the class <code>{@link StreamInputPacketIndexCache}</code>.
+ */
+@SuppressWarnings("javadoc")
+public class CTFStreamInputPacketIndexCacheTest {
+
+    private File fDirectory;
+    private File fStreamFile;
+    private File fCacheFile;
+    private StreamInputPacketIndex fIndex;
+
+    @Before
+    public void setUp() throws IOException {
+        fDirectory = Files.createTempDirectory("packetcache").toFile();
+        fStreamFile = new File(fDirectory, "stream");
+        fCacheFile = new File(fDirectory, "stream" + StreamInputPacketIndexCache.EXTENSION);
+        try (FileOutputStream fos = new FileOutputStream(fStreamFile)) {
+            fos.write(new byte[64]);
+        }
+        fIndex = new StreamInputPacketIndex();
+        fIndex.append(new StreamInputPacketIndexEntry(0, 256, 200, 10, 20, 0, "CPU1", 1, 96,
+                ImmutableMap.of(CTFStrings.CPU_ID, 1L, CTFStrings.TIMESTAMP_BEGIN, 10L, CTFStrings.TIMESTAMP_END, 20L)));
+        fIndex.append(new StreamInputPacketIndexEntry(256, 256, 256, 20, 30, 3, null, -1, 352,
+                ImmutableMap.of("mode", new AbstractMap.SimpleImmutableEntry<>("overwrite", 2L), "name", "chan", "ratio", 0.5)));
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : fDirectory.listFiles()) {
+            file.delete();
+        }
+        fDirectory.delete();
+    }
+
+    @Test
+    public void testWriteRead() {
+        assertTrue(StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex));
+        CachedIndex cachedIndex = StreamInputPacketIndexCache.read(fCacheFile, fStreamFile);
+        assertNotNull(cachedIndex);
+        assertTrue(cachedIndex.isComplete(fStreamFile));
+
+        List<ICTFPacketDescriptor> entries = cachedIndex.getEntries();
+        assertEquals(fIndex.size(), entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ICTFPacketDescriptor expected = fIndex.getElement(i);
+            ICTFPacketDescriptor actual = entries.get(i);
+            assertEquals(expected.getOffsetBits(), actual.getOffsetBits());
+            assertEquals(expected.getOffsetBytes(), actual.getOffsetBytes());
+            assertEquals(expected.getPacketSizeBits(), actual.getPacketSizeBits());
+            assertEquals(expected.getContentSizeBits(), actual.getContentSizeBits());
+            assertEquals(expected.getTimestampBegin(), actual.getTimestampBegin());
+            assertEquals(expected.getTimestampEnd(), actual.getTimestampEnd());
+            assertEquals(expected.getLostEvents(), actual.getLostEvents());
+            assertEquals(expected.getTarget(), actual.getTarget());
+            assertEquals(expected.getTargetId(), actual.getTargetId());
+            assertEquals(expected.getPayloadStartBits(), actual.getPayloadStartBits());
+            assertEquals(expected.getAttributes(), actual.getAttributes());
+        }
+    }
+
+    @Test
+    public void testNoCache() {
+        assertNull(StreamInputPacketIndexCache.read(fCacheFile, fStreamFile));
+    }
+
+    @Test
+    public void testGrownStream() throws IOException {
+        assertTrue(StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex));
+        try (FileOutputStream fos = new FileOutputStream(fStreamFile, true)) {
+            fos.write(new byte[64]);
+        }
+        CachedIndex cachedIndex = StreamInputPacketIndexCache.read(fCacheFile, fStreamFile);
+        assertNotNull(cachedIndex);
+        assertFalse(cachedIndex.isComplete(fStreamFile));
+        assertEquals(2, cachedIndex.getEntries().size());
+    }
+
+    @Test
+    public void testShrunkStream() throws IOException {
+        assertTrue(StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex));
+        try (FileOutputStream fos = new FileOutputStream(fStreamFile)) {
+            fos.write(new byte[32]);
+        }
+        assertNull(StreamInputPacketIndexCache.read(fCacheFile, fStreamFile));
+    }
+
+    @Test
+    public void testModifiedStream() {
+        assertTrue(StreamInputPacketIndexCache.write(fCacheFile, fStreamFile, fIndex));
+        assertTrue(fStreamFile.setLastModified(fStreamFile.lastModified() - 10000));
+        assertNull(StreamInputPacketIndexCache.read(fCacheFile, fStreamFile));
+    }
+
+    @Test
+    public void testCorruptedCache() throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(fCacheFile)) {
+            fos.write(new byte[] { 1, 2, 3 });
+        }
+        assertNull(StreamInputPacketIndexCache.read(fCacheFile, fStreamFile));
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,10 +13,14 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
@@ -32,6 +36,7 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFResponse;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
@@ -73,21 +78,24 @@ public class CTFStreamInputReaderTest {
     }
 
     private static CTFStreamInputReader getStreamInputReader() throws CTFException {
+        CTFStreamInput streamInput = getStreamInput();
+        return (streamInput == null ? null : new CTFStreamInputReader(streamInput));
+    }
+
+    private static CTFStreamInput getStreamInput() throws CTFException {
         CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
         ICTFStream s = trace.getStream((long) 0);
         Set<CTFStreamInput> streamInput = s.getStreamInputs();
-        CTFStreamInputReader retVal = null;
         for (CTFStreamInput si : streamInput) {
             /*
              * For the tests, we'll use the stream input corresponding to the
              * CPU 0
              */
             if (si.getFilename().endsWith("0_0")) {
-                retVal = new CTFStreamInputReader(si);
-                break;
+                return si;
             }
         }
-        return retVal;
+        return null;
     }
 
     /**
@@ -229,4 +237,63 @@ public class CTFStreamInputReaderTest {
             fixture.setCurrentEvent(eventDefinition);
         }
     }
+
+    /**
+     * Test that the readers of a stream input share its mappings, which stay
+     * usable as long as one of them is open.
+     *
+     * @throws CTFException
+     *             error
+     * @throws IOException
+     *             file not there
+     */
+    @Test
+    public void testSharedMappings() throws CTFException, IOException {
+        CTFStreamInput streamInput = getStreamInput();
+        assertNotNull(streamInput);
+        try (CTFStreamInputReader reader = new CTFStreamInputReader(streamInput)) {
+            new CTFStreamInputReader(streamInput).close();
+            /* The mappings are still usable by the other reader */
+            reader.goToLastEvent();
+            assertNotNull(reader.getCurrentEvent());
+        }
+        /* The mappings are created again for a new reader */
+        try (CTFStreamInputReader reader = new CTFStreamInputReader(streamInput)) {
+            assertEquals(CTFResponse.OK, reader.readNextEvent());
+            assertNotNull(reader.getCurrentEvent());
+        }
+    }
+
+    /**
+     * Test that the CPU and the packet reader are those of the current event
+     * when the events are read ahead, not those of the packet being decoded
+     *
+     * @throws CTFException
+     *             error
+     * @throws IOException
+     *             file not there
+     */
+    @Test
+    public void testReadAheadPacketReader() throws CTFException, IOException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (CTFStreamInputReader reader = getStreamInputReader()) {
+            reader.setReadAhead(executor);
+            int nbPackets = 0;
+            ICTFPacketDescriptor previousPacket = null;
+            while (reader.readNextEvent() == CTFResponse.OK) {
+                IEventDefinition event = reader.getCurrentEvent();
+                assertNotNull(event);
+                ICTFPacketDescriptor packet = reader.getCurrentPacketReader().getCurrentPacket();
+                assertSame(event.getPacketAttributes(), packet.getAttributes());
+                assertEquals(event.getCPU(), reader.getCPU());
+                if (packet != previousPacket) {
+                    nbPackets++;
+                    previousPacket = packet;
+                }
+            }
+            assertTrue(nbPackets > 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,10 @@
 package org.eclipse.tracecompass.ctf.core.tests.trace;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -25,11 +27,15 @@ import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileAttribute;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -157,4 +163,59 @@ public class CTFTraceGrowingStreamTest {
             assertNull(reader.getCurrentEventDef());
         }
     }
+
+    /**
+     * Test indexing the packets written to a stream file after the trace was
+     * opened, a partially written packet is only indexed once complete
+     *
+     * @throws IOException won't happen
+     */
+    @Test
+    public void testIndexNewPackets() throws IOException {
+        CTFStreamInput streamInput = getStreamInputs().iterator().next();
+        assertFalse(fFixture.indexNewPackets());
+        long timestampEnd = streamInput.getTimestampEnd();
+
+        try (FileOutputStream fos = new FileOutputStream(fGrowingStream, true)) {
+            fos.write(fPackets[1], 0, 16);
+        }
+        assertFalse(fFixture.indexNewPackets());
+        assertEquals(timestampEnd, streamInput.getTimestampEnd());
+
+        try (FileOutputStream fos = new FileOutputStream(fGrowingStream, true)) {
+            fos.write(fPackets[1], 16, 16);
+        }
+        assertTrue(fFixture.indexNewPackets());
+        assertFalse(fFixture.indexNewPackets());
+    }
+
+    /**
+     * Test that a stream file created after the trace was opened is added to
+     * its stream, once its first packet is written
+     *
+     * @throws IOException won't happen
+     */
+    @Test
+    public void testIndexNewStreamFile() throws IOException {
+        File newStream = new File(fCtfDirectory.toString() + "/" + "stream_1");
+        try (FileOutputStream fos = new FileOutputStream(newStream)) {
+            fos.write(fPackets[1], 0, 8);
+        }
+        assertFalse(fFixture.indexNewPackets());
+        assertEquals(1, getStreamInputs().size());
+
+        try (FileOutputStream fos = new FileOutputStream(newStream, true)) {
+            fos.write(fPackets[1], 8, 24);
+        }
+        assertTrue(fFixture.indexNewPackets());
+        assertEquals(2, getStreamInputs().size());
+    }
+
+    private Set<CTFStreamInput> getStreamInputs() {
+        Set<CTFStreamInput> streamInputs = new HashSet<>();
+        for (ICTFStream stream : fFixture.getStreams()) {
+            streamInputs.addAll(stream.getStreamInputs());
+        }
+        return streamInputs;
+    }
 }
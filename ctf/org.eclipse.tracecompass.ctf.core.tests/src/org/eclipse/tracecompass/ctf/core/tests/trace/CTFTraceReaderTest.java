@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,9 +16,15 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
@@ -298,6 +304,122 @@ public class CTFTraceReaderTest {
         assertTrue(result);
     }
 
+    /**
+     * Test that the events read ahead are the same, in the same order, as the
+     * events read on the calling thread, including after a seek
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testReadAhead() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+        List<String> expected;
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            expected = readEvents(reader);
+        }
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            reader.setReadAhead(true);
+            assertTrue(reader.isReadAhead());
+            assertEquals(expected, readEvents(reader));
+
+            reader.seek(0);
+            for (int i = 0; i < expected.size() / 2; i++) {
+                reader.advance();
+            }
+            /* Stopping the read-ahead goes back to the current event */
+            reader.setReadAhead(false);
+            List<String> actual = readEvents(reader);
+            assertEquals(expected.subList(expected.size() / 2, expected.size()), actual);
+        }
+    }
+
+    /**
+     * Test that the event filter only lets through the events of the selected
+     * types and the lost events, in the same order and with the same
+     * timestamps as when all the events are read, and that it is independent
+     * of the fields to decode
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testEventFilter() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+        String eventName;
+        List<String> expected = new ArrayList<>();
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            eventName = reader.getCurrentEventDef().getDeclaration().getName();
+            for (String event : readEvents(reader)) {
+                if (event.endsWith(" " + eventName) || event.endsWith(" " + CTFStrings.LOST_EVENT_NAME)) {
+                    expected.add(event);
+                }
+            }
+        }
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            reader.setEventFilter(Collections.singleton(eventName));
+            reader.setRequiredFields(Collections.emptyMap());
+            reader.seek(0);
+            assertEquals(expected, readEvents(reader));
+        }
+        try (CTFTraceReader reader = new CTFTraceReader(trace)) {
+            /* The fields to decode do not drop any event */
+            reader.setRequiredFields(Collections.emptyMap());
+            reader.seek(0);
+            List<String> events = readEvents(reader);
+            assertTrue(events.containsAll(expected));
+            assertTrue(events.size() > expected.size());
+        }
+    }
+
+    /**
+     * Test that the readers with events are ordered by the timestamp of their
+     * current event, the reader of the current event first, and that the list
+     * is not changed when the reader advances
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testGetStreamInputReadersByTime() throws CTFException {
+        try (OrderedTraceReader reader = new OrderedTraceReader(CtfTestTraceUtils.getTrace(testTrace))) {
+            for (int i = 0; i < 100; i++) {
+                List<CTFStreamInputReader> readers = reader.getStreamInputReadersByTime();
+                assertEquals(reader.getTopStream(), readers.get(0));
+                long previous = Long.MIN_VALUE;
+                for (CTFStreamInputReader streamReader : readers) {
+                    long timestamp = streamReader.getCurrentEvent().getTimestamp();
+                    assertTrue(timestamp >= previous);
+                    previous = timestamp;
+                }
+                List<CTFStreamInputReader> copy = new ArrayList<>(readers);
+                reader.advance();
+                assertEquals(copy, readers);
+            }
+        }
+    }
+
+    private static class OrderedTraceReader extends CTFTraceReader {
+        public OrderedTraceReader(CTFTrace trace) throws CTFException {
+            super(trace);
+        }
+
+        @Override
+        public List<CTFStreamInputReader> getStreamInputReadersByTime() {
+            return super.getStreamInputReadersByTime();
+        }
+    }
+
+    private static List<String> readEvents(CTFTraceReader reader) throws CTFException {
+        List<String> events = new ArrayList<>();
+        while (reader.hasMoreEvents()) {
+            IEventDefinition event = reader.getCurrentEventDef();
+            events.add(event.getTimestamp() + " " + event.getCPU() + " " + event.getDeclaration().getName());
+            reader.advance();
+        }
+        return events;
+    }
+
     /**
      * @return
      */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -30,6 +30,7 @@ import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceWriter;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
 import org.junit.BeforeClass;
@@ -214,6 +215,37 @@ public class CTFTraceWriterTest {
             }
     }
 
+    /**
+     * Test various time ranges, caching the packet indexes of the new trace
+     */
+    @Test
+    public void testKernelTraceCacheDirectory() {
+        try {
+            CTFTrace trace = CtfTestTraceUtils.getTrace(CtfTestTrace.KERNEL);
+            CTFTraceWriter ctfWriter = new CTFTraceWriter(checkNotNull(trace));
+            String traceName = createTraceName(fName + "-cached");
+            File cacheDirectory = new File(traceName + "-cache");
+            ctfWriter.copyPackets(fStartTime, fEndTime, traceName, cacheDirectory);
+
+            for (int i = 0; i < 2; i++) {
+                File cacheFile = new File(cacheDirectory, "channel_" + i + StreamInputPacketIndexCache.EXTENSION);
+                assertEquals("cache" + i, getChannelFile(traceName, i).exists(), cacheFile.exists());
+            }
+
+            CTFTrace outTrace = new CTFTrace(new File(traceName), cacheDirectory);
+            int count = 0;
+            try (CTFTraceReader reader = new CTFTraceReader(outTrace)) {
+                while (reader.hasMoreEvents()) {
+                    count++;
+                    reader.advance();
+                }
+            }
+            assertEquals(toString(), fNbEvents, count);
+        } catch (CTFException e) {
+            fail(e.getMessage());
+        }
+    }
+
     private static File getChannelFile(String path, int id) {
         File channel = new File(path + Utils.SEPARATOR + "channel_" + String.valueOf(id));
         return channel;
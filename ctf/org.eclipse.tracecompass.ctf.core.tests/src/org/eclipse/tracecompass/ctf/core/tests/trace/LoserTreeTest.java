@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.ctf.core.trace.LoserTree;
+import org.junit.Test;
+
+/**
+ * The class <code>LoserTreeTest</code> contains tests for the class
+ * <code>{@link LoserTree}</code>.
+ */
+@SuppressWarnings("javadoc")
+public class LoserTreeTest {
+
+    /**
+     * A sorted source of timestamps
+     */
+    private static class Source {
+        private final long[] fValues;
+        private int fIndex = 0;
+
+        public Source(long... values) {
+            fValues = values;
+        }
+
+        public long current() {
+            return fValues[fIndex];
+        }
+
+        public boolean next() {
+            fIndex++;
+            return fIndex < fValues.length;
+        }
+    }
+
+    private static List<Long> merge(LoserTree<Source> tree) {
+        List<Long> merged = new ArrayList<>();
+        Source top = tree.peek();
+        while (top != null) {
+            merged.add(top.current());
+            if (top.next()) {
+                tree.updateTop(top.current());
+            } else {
+                tree.removeTop();
+            }
+            top = tree.peek();
+        }
+        return merged;
+    }
+
+    /**
+     * Test merging random sources against sorting all their values, for
+     * numbers of sources that are and are not powers of two
+     */
+    @Test
+    public void testMerge() {
+        Random random = new Random(42);
+        for (int nbSources : new int[] { 1, 2, 3, 7, 8, 13, 64, 100 }) {
+            LoserTree<Source> tree = new LoserTree<>();
+            List<Long> expected = new ArrayList<>();
+            for (int i = 0; i < nbSources; i++) {
+                long[] values = new long[1 + random.nextInt(50)];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = random.nextInt(1000);
+                    expected.add(values[j]);
+                }
+                Arrays.sort(values);
+                Source source = new Source(values);
+                tree.add(source, source.current());
+            }
+            assertEquals(nbSources, tree.size());
+            Collections.sort(expected);
+            assertEquals(expected, merge(tree));
+            assertEquals(0, tree.size());
+        }
+    }
+
+    /**
+     * Test that the timestamps are compared as unsigned values
+     */
+    @Test
+    public void testUnsigned() {
+        LoserTree<Source> tree = new LoserTree<>();
+        Source negative = new Source(-1L);
+        Source positive = new Source(Long.MAX_VALUE);
+        Source zero = new Source(0L);
+        tree.add(negative, negative.current());
+        tree.add(positive, positive.current());
+        tree.add(zero, zero.current());
+        assertEquals(Arrays.asList(0L, Long.MAX_VALUE, -1L), merge(tree));
+    }
+
+    /**
+     * Test that the sources with the same timestamp come out in the order
+     * they were added, also after removing some of them
+     */
+    @Test
+    public void testTies() {
+        LoserTree<Source> tree = new LoserTree<>();
+        Source[] sources = new Source[5];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new Source(10, 20);
+            tree.add(sources[i], 10);
+        }
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(sources[i], tree.peek());
+            sources[i].next();
+            tree.updateTop(20);
+        }
+        tree.removeTop();
+        tree.removeTop();
+        assertEquals(sources[2], tree.peek());
+        assertEquals(Arrays.asList(sources[2], sources[3], sources[4]), tree.getItems());
+    }
+
+    /**
+     * Test clearing the tree and adding sources again, as when seeking
+     */
+    @Test
+    public void testClear() {
+        LoserTree<Source> tree = new LoserTree<>();
+        for (int i = 0; i < 40; i++) {
+            tree.add(new Source(i), 40 - i);
+        }
+        tree.removeTop();
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertNull(tree.peek());
+
+        Source first = new Source(5, 6);
+        Source second = new Source(3, 7);
+        tree.add(first, first.current());
+        tree.add(second, second.current());
+        assertEquals(Arrays.asList(3L, 5L, 6L, 7L), merge(tree));
+    }
+}
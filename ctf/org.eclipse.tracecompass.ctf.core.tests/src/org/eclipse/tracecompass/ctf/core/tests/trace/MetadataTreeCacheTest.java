@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.tree.CommonTree;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataTreeCache;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The class <code>MetadataTreeCacheTest</code> contains tests for the class
+ * <code>{@link MetadataTreeCache}</code>.
+ */
+@SuppressWarnings("javadoc")
+public class MetadataTreeCacheTest {
+
+    private static final String METADATA_TEXT = "trace { major = 1; };";
+
+    private static final int TRACE = 1;
+    private static final int EXPRESSION = 2;
+    private static final int IDENTIFIER = 3;
+    private static final int LITERAL = 4;
+
+    private File fDirectory;
+    private File fCacheFile;
+    private byte[] fDigest;
+    private CommonTree fTree;
+
+    @Before
+    public void setUp() throws IOException {
+        fDirectory = Files.createTempDirectory("metadatacache").toFile();
+        fCacheFile = new File(fDirectory, MetadataTreeCache.FILE_NAME);
+        fDigest = MetadataTreeCache.digest(METADATA_TEXT);
+
+        fTree = new CommonTree();
+        CommonTree trace = node(TRACE, "trace");
+        CommonTree expression = node(EXPRESSION, null);
+        expression.addChild(node(IDENTIFIER, "major"));
+        expression.addChild(node(LITERAL, "1"));
+        trace.addChild(expression);
+        fTree.addChild(trace);
+    }
+
+    @After
+    public void tearDown() {
+        deleteAll(fDirectory);
+    }
+
+    private static CommonTree node(int type, String text) {
+        CommonToken token = new CommonToken(type, text);
+        token.setLine(1);
+        token.setCharPositionInLine(type);
+        return new CommonTree(token);
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testWriteRead() {
+        assertNotNull(fDigest);
+        assertTrue(MetadataTreeCache.write(fCacheFile, fDigest, fTree));
+        CommonTree tree = MetadataTreeCache.read(fCacheFile, fDigest);
+        assertNotNull(tree);
+        assertEquals(fTree.toStringTree(), tree.toStringTree());
+        assertTrue(tree.isNil());
+
+        CommonTree expression = (CommonTree) tree.getChild(0).getChild(0);
+        assertEquals(EXPRESSION, expression.getType());
+        assertSame(tree.getChild(0), expression.getParent());
+        CommonTree literal = (CommonTree) expression.getChild(1);
+        assertEquals(LITERAL, literal.getType());
+        assertEquals("1", literal.getText());
+        assertEquals(1, literal.getLine());
+        assertEquals(LITERAL, literal.getCharPositionInLine());
+    }
+
+    @Test
+    public void testNoCache() {
+        assertNull(MetadataTreeCache.read(fCacheFile, fDigest));
+    }
+
+    @Test
+    public void testModifiedMetadata() {
+        assertTrue(MetadataTreeCache.write(fCacheFile, fDigest, fTree));
+        byte[] digest = MetadataTreeCache.digest(METADATA_TEXT + " ");
+        assertNotNull(digest);
+        assertNull(MetadataTreeCache.read(fCacheFile, digest));
+    }
+
+    @Test
+    public void testCorruptedCache() throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(fCacheFile)) {
+            fos.write(new byte[] { 1, 2, 3 });
+        }
+        assertNull(MetadataTreeCache.read(fCacheFile, fDigest));
+    }
+
+    @Test
+    public void testTruncatedCache() throws IOException {
+        assertTrue(MetadataTreeCache.write(fCacheFile, fDigest, fTree));
+        byte[] content = Files.readAllBytes(fCacheFile.toPath());
+        try (FileOutputStream fos = new FileOutputStream(fCacheFile)) {
+            fos.write(content, 0, content.length - 4);
+        }
+        assertNull(MetadataTreeCache.read(fCacheFile, fDigest));
+    }
+
+    /*
+     * The root node starts after the magic number, the version and the digest
+     * with its length. It has no token, so its child count follows its first
+     * byte. Its first child has a token, whose type precedes the length of
+     * its text.
+     */
+    private int rootChildCountOffset() {
+        return Integer.BYTES + Integer.BYTES + 1 + fDigest.length + 1;
+    }
+
+    private void overwriteInt(int offset, int value) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fCacheFile, "rw")) {
+            file.seek(offset);
+            file.writeInt(value);
+        }
+    }
+
+    @Test
+    public void testInvalidChildCount() throws IOException {
+        assertTrue(MetadataTreeCache.write(fCacheFile, fDigest, fTree));
+        overwriteInt(rootChildCountOffset(), Integer.MAX_VALUE);
+        assertNull(MetadataTreeCache.read(fCacheFile, fDigest));
+        overwriteInt(rootChildCountOffset(), -2);
+        assertNull(MetadataTreeCache.read(fCacheFile, fDigest));
+    }
+
+    @Test
+    public void testInvalidStringLength() throws IOException {
+        assertTrue(MetadataTreeCache.write(fCacheFile, fDigest, fTree));
+        int textLengthOffset = rootChildCountOffset() + Integer.BYTES + 1 + Integer.BYTES;
+        overwriteInt(textLengthOffset, Integer.MAX_VALUE - 8);
+        assertNull(MetadataTreeCache.read(fCacheFile, fDigest));
+    }
+
+    @Test
+    public void testTrace() throws CTFException {
+        File path = new File(CtfTestTraceUtils.getTrace(CtfTestTrace.KERNEL).getPath());
+        File cacheDirectory = new File(fDirectory, "trace");
+        assertFalse(new File(cacheDirectory, MetadataTreeCache.FILE_NAME).exists());
+
+        CTFTrace parsed = new CTFTrace(path, cacheDirectory);
+        assertTrue(new File(cacheDirectory, MetadataTreeCache.FILE_NAME).isFile());
+        CTFTrace cached = new CTFTrace(path, cacheDirectory);
+
+        assertEquals(parsed.getUUID(), cached.getUUID());
+        assertEquals(parsed.getByteOrder(), cached.getByteOrder());
+        assertEquals(parsed.getEnvironment(), cached.getEnvironment());
+        assertEquals(parsed.getClock().getName(), cached.getClock().getName());
+        assertEquals(parsed.getOffset(), cached.getOffset());
+        assertEquals(parsed.nbStreams(), cached.nbStreams());
+        for (ICTFStream stream : parsed.getStreams()) {
+            ICTFStream cachedStream = cached.getStream(stream.getId());
+            assertNotNull(cachedStream);
+            assertEquals(stream.getEventDeclarations().size(), cachedStream.getEventDeclarations().size());
+        }
+    }
+}
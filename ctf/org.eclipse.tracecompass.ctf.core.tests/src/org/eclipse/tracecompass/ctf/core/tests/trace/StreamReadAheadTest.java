@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamReadAhead;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The class <code>StreamReadAheadTest</code> contains tests for the class
+ * <code>{@link StreamReadAhead}</code>.
+ */
+@SuppressWarnings("javadoc")
+public class StreamReadAheadTest {
+
+    private static final int NB_EVENTS = 10000;
+
+    private ExecutorService fExecutor;
+
+    @Before
+    public void setUp() {
+        /* Fewer threads than streams */
+        fExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        fExecutor.shutdownNow();
+    }
+
+    private static StreamReadAhead.IEventSource createSource(long nbEvents, long errorAt) {
+        AtomicLong next = new AtomicLong();
+        EventDeclaration declaration = new EventDeclaration();
+        return () -> {
+            long timestamp = next.getAndIncrement();
+            if (timestamp == errorAt) {
+                throw new CTFException("error at " + timestamp);
+            }
+            if (timestamp >= nbEvents) {
+                return null;
+            }
+            return new EventDefinition(declaration, 0, timestamp, null, null, null, null, null, null);
+        };
+    }
+
+    @Test
+    public void testOrder() throws CTFException {
+        StreamReadAhead first = new StreamReadAhead(fExecutor, createSource(NB_EVENTS, -1));
+        StreamReadAhead second = new StreamReadAhead(fExecutor, createSource(NB_EVENTS / 2, -1));
+        for (long i = 0; i < NB_EVENTS; i++) {
+            IEventDefinition event = first.next();
+            assertNotNull(event);
+            assertEquals(i, event.getTimestamp());
+            if (i < NB_EVENTS / 2) {
+                IEventDefinition other = second.next();
+                assertNotNull(other);
+                assertEquals(i, other.getTimestamp());
+            }
+        }
+        assertNull(first.next());
+        assertNull(first.next());
+        assertNull(second.next());
+    }
+
+    @Test
+    public void testError() throws CTFException {
+        StreamReadAhead readAhead = new StreamReadAhead(fExecutor, createSource(NB_EVENTS, 1000));
+        for (long i = 0; i < 1000; i++) {
+            assertNotNull(readAhead.next());
+        }
+        try {
+            readAhead.next();
+            fail();
+        } catch (CTFException e) {
+            assertEquals("error at 1000", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCancel() throws CTFException {
+        AtomicLong read = new AtomicLong();
+        StreamReadAhead.IEventSource source = createSource(NB_EVENTS, -1);
+        StreamReadAhead readAhead = new StreamReadAhead(fExecutor, () -> {
+            read.incrementAndGet();
+            return source.readNextEvent();
+        });
+        assertNotNull(readAhead.next());
+        readAhead.cancel();
+        long nbRead = read.get();
+        /* The buffer is bounded */
+        assertTrue(nbRead < NB_EVENTS);
+        fExecutor.shutdown();
+        try {
+            assertTrue(fExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            fail(e.getMessage());
+        }
+        assertEquals(nbRead, read.get());
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,8 @@ import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
@@ -31,6 +33,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
 import org.eclipse.tracecompass.ctf.core.tests.io.Util;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.IntegerArrayDefinition;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -88,6 +91,55 @@ public class ArrayDeclaration2Test {
         assertNotNull(result);
     }
 
+    /**
+     * Test that an array of contiguous integers is decoded in bulk, and that
+     * its definitions are the same as the ones of the integers
+     *
+     * @throws CTFException
+     *             error in the bitbuffer
+     */
+    @Test
+    public void testCreateDefinitionIntegers() throws CTFException {
+        IntegerDeclaration elemType = IntegerDeclaration.createDeclaration(16, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 16);
+        ArrayDeclaration integers = new ArrayDeclaration(3, elemType);
+        byte[] array = { 0, 0, 0x01, 0x02, (byte) 0xff, (byte) 0xff, 0x2a, 0x00 };
+        BitBuffer bb = new BitBuffer(ByteBuffer.wrap(array));
+        bb.position(8);
+        AbstractArrayDefinition result = integers.createDefinition(null, "a", bb);
+
+        assertTrue(result instanceof IntegerArrayDefinition);
+        assertEquals(3, result.getLength());
+        assertEquals(8 * 8, bb.position());
+        IntegerArrayDefinition integerArray = (IntegerArrayDefinition) result;
+        assertEquals(0x0201, integerArray.getValue(0));
+        assertEquals(-1, integerArray.getValue(1));
+        assertEquals(42, integerArray.getValue(2));
+        assertEquals(elemType, result.getDefinitions().get(1).getDeclaration());
+        assertEquals("[513, -1, 42]", result.toString());
+    }
+
+    /**
+     * Test that an array of UTF-8 characters decoded in bulk is rendered as
+     * text, up to the first null character
+     *
+     * @throws CTFException
+     *             error in the bitbuffer
+     */
+    @Test
+    public void testCreateDefinitionCharacters() throws CTFException {
+        /* Bit-aligned characters are not read as a byte array */
+        IntegerDeclaration elemType = IntegerDeclaration.createDeclaration(8, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.UTF8, "", 1);
+        ArrayDeclaration characters = new ArrayDeclaration(8, elemType);
+        byte[] text = "h\u00e9llo".getBytes(StandardCharsets.UTF_8);
+        byte[] array = Arrays.copyOf(text, 8);
+        BitBuffer bb = new BitBuffer(ByteBuffer.wrap(array));
+        AbstractArrayDefinition result = characters.createDefinition(null, "a", bb);
+
+        assertTrue(result instanceof IntegerArrayDefinition);
+        assertEquals(8, result.getLength());
+        assertEquals("h\u00e9llo", result.toString());
+    }
+
     /**
      * Run the Declaration getElementType() method test.
      */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -121,6 +121,72 @@ public class EnumDeclarationTest {
         assertNull(fixture.query(5));
     }
 
+    /**
+     * Test querying an enum with values far apart, and out of order
+     */
+    @Test
+    public void testQuerySparse() {
+        assertTrue(fixture.add(100000, 100009, "high"));
+        assertTrue(fixture.add(-5000, -4000, "negative"));
+        assertTrue(fixture.add(7, 7, "seven"));
+        assertTrue(fixture.add(Long.MAX_VALUE, Long.MAX_VALUE, "max"));
+        assertEquals("negative", fixture.query(-5000));
+        assertEquals("negative", fixture.query(-4000));
+        assertNull(fixture.query(-3999));
+        assertNull(fixture.query(6));
+        assertEquals("seven", fixture.query(7));
+        assertNull(fixture.query(8));
+        assertEquals("high", fixture.query(100005));
+        assertNull(fixture.query(100010));
+        assertEquals("max", fixture.query(Long.MAX_VALUE));
+        assertNull(fixture.query(Long.MIN_VALUE));
+    }
+
+    /**
+     * Test that the values added after a query are found
+     */
+    /**
+     * Test an enum with dense ranges that end at Long.MAX_VALUE
+     */
+    @Test
+    public void testQueryMaxValue() {
+        assertTrue(fixture.add(Long.MAX_VALUE, Long.MAX_VALUE, "max"));
+        assertEquals("max", fixture.query(Long.MAX_VALUE));
+        assertNull(fixture.query(Long.MAX_VALUE - 1));
+
+        EnumDeclaration declaration = new EnumDeclaration(IntegerDeclaration.INT_64B_DECL);
+        assertTrue(declaration.add(Long.MAX_VALUE - 9, Long.MAX_VALUE - 2, "low"));
+        assertTrue(declaration.add(Long.MAX_VALUE - 1, Long.MAX_VALUE, "high"));
+        assertNull(declaration.query(Long.MAX_VALUE - 10));
+        assertEquals("low", declaration.query(Long.MAX_VALUE - 9));
+        assertEquals("low", declaration.query(Long.MAX_VALUE - 2));
+        assertEquals("high", declaration.query(Long.MAX_VALUE - 1));
+        assertEquals("high", declaration.query(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testAddAfterQuery() {
+        assertTrue(fixture.add(0, 1, "fork"));
+        assertNull(fixture.query(2));
+        assertTrue(fixture.add(2, 3, "tork"));
+        assertEquals("tork", fixture.query(2));
+        assertEquals("fork", fixture.query(1));
+    }
+
+    /**
+     * Test a range added around an existing one, the first added range wins
+     */
+    @Test
+    public void testQueryEnclosing() {
+        assertTrue(fixture.add(5, 6, "inner"));
+        assertTrue(fixture.add(0, 10, "outer"));
+        assertEquals("outer", fixture.query(0));
+        assertEquals("inner", fixture.query(5));
+        assertEquals("inner", fixture.query(6));
+        assertEquals("outer", fixture.query(10));
+        assertNull(fixture.query(11));
+    }
+
     /**
      * Tests adding two of the same elements
      */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,11 +14,14 @@ package org.eclipse.tracecompass.ctf.core.tests.types;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.io.StringCache;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
 import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
 import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
@@ -89,6 +92,45 @@ public class StringDeclarationTest {
         assertNotNull(result);
     }
 
+    /**
+     * Test reading consecutive UTF-8 strings, with and without a string cache
+     *
+     * @throws CTFException
+     *             out of buffer exception
+     */
+    @Test
+    public void testCreateDefinitionUtf8() throws CTFException {
+        StringDeclaration utf8 = StringDeclaration.getStringDeclaration(Encoding.UTF8);
+        byte[] hello = "h\u00e9llo w\u00f6rld \u20ac".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2 * hello.length + 3);
+        buffer.put(hello).put((byte) 0).put(hello).put((byte) 0).put((byte) 0);
+
+        BitBuffer bb = new BitBuffer(buffer);
+        StringDefinition first = utf8.createDefinition(null, "s", bb);
+        assertEquals("h\u00e9llo w\u00f6rld \u20ac", first.getValue());
+        assertEquals((hello.length + 1) * 8, bb.position());
+
+        bb.setStringCache(new StringCache(16));
+        bb.position(0);
+        String cached = utf8.createDefinition(null, "s", bb).getValue();
+        assertEquals(first.getValue(), cached);
+        assertSame(cached, utf8.createDefinition(null, "s", bb).getValue());
+        assertEquals("", utf8.createDefinition(null, "s", bb).getValue());
+        assertEquals(buffer.capacity() * 8, bb.position());
+    }
+
+    /**
+     * Test reading a string without a terminating null byte
+     *
+     * @throws CTFException
+     *             expected
+     */
+    @Test(expected = CTFException.class)
+    public void testCreateDefinitionUnterminated() throws CTFException {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 'a', 'b', 'c' });
+        fixture.createDefinition(null, "s", new BitBuffer(buffer));
+    }
+
     /**
      * Run the Encoding getEncoding() method test.
      */
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDecoder;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The class <code>StructDecoderTest</code> contains tests for the class
+ * <code>{@link StructDecoder}</code>, and for the struct definitions created
+ * from the values it decodes.
+ */
+public class StructDecoderTest {
+
+    private static final byte[] BYTES = {
+            (byte) 0xfe, 0x00, 0x12, 0x34, 0x56, 0x78, 0x00, 0x00,
+            0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, (byte) 0x88,
+            0x2a, (byte) 0xab, (byte) 0xcd, 0x00, 0x00, 0x00, 0x00, 0x00 };
+
+    private StructDeclaration fixture;
+    private EnumDeclaration fEnum;
+
+    /**
+     * Perform pre-test initialization.
+     */
+    @Before
+    public void setUp() {
+        fEnum = new EnumDeclaration(IntegerDeclaration.UINT_8_DECL);
+        fEnum.add(0, 41, "low");
+        fEnum.add(42, 255, "high");
+
+        fixture = new StructDeclaration(8);
+        fixture.addField("s8", IntegerDeclaration.createDeclaration(8, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8));
+        fixture.addField("u32", IntegerDeclaration.createDeclaration(32, false, 16, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 16));
+        fixture.addField("s64", IntegerDeclaration.createDeclaration(64, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 64));
+        fixture.addField("enum", fEnum);
+        fixture.addField("u16", IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8));
+    }
+
+    /**
+     * Test that a struct of integers and enums can be compiled and that one
+     * with a string cannot
+     */
+    @Test
+    public void testCompile() {
+        assertNotNull(StructDecoder.compile(fixture));
+
+        StructDeclaration withString = new StructDeclaration(8);
+        withString.addField("u32", IntegerDeclaration.UINT_32B_DECL);
+        withString.addField("str", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        assertNull(StructDecoder.compile(withString));
+    }
+
+    /**
+     * Test the decoded values against reading the fields one by one
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testDecode() throws CTFException {
+        StructDecoder decoder = StructDecoder.compile(fixture);
+        assertNotNull(decoder);
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(BYTES));
+        long[] values = decoder.decode(input);
+        assertEquals(19 * 8, input.position());
+        assertEquals(ByteOrder.BIG_ENDIAN, input.getByteOrder());
+
+        BitBuffer expectedInput = new BitBuffer(ByteBuffer.wrap(BYTES));
+        int i = 0;
+        for (String field : fixture.getFieldsList()) {
+            IntegerDeclaration integer = fixture.getField(field) instanceof EnumDeclaration ? fEnum.getContainerType() : (IntegerDeclaration) fixture.getField(field);
+            assertNotNull(integer);
+            IntegerDefinition expected = integer.createDefinition(null, field, expectedInput);
+            assertEquals(field, expected.getValue(), values[i++]);
+        }
+        assertEquals((byte) 0xfe, values[0]);
+        assertEquals(0x12345678L, values[1]);
+        assertEquals(0x8807060504030201L, values[2]);
+        assertEquals(0x2a, values[3]);
+        assertEquals(0xcdab, values[4]);
+    }
+
+    /**
+     * Test the definitions of a decoded struct
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testCreateDefinition() throws CTFException {
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(BYTES));
+        StructDefinition result = fixture.createDefinition(null, ILexicalScope.FIELDS, input);
+        assertEquals(fixture.getFieldsList(), result.getFieldNames());
+        assertEquals(-2L, ((IntegerDefinition) result.getDefinition("s8")).getValue());
+        assertEquals(0x12345678L, ((IntegerDefinition) result.lookupDefinition("u32")).getValue());
+        IntegerDefinition s64 = (IntegerDefinition) result.getDefinition("s64");
+        assertEquals(0x8807060504030201L, s64.getValue());
+        assertEquals(fixture.getField("s64"), s64.getDeclaration());
+        EnumDefinition enumDef = (EnumDefinition) result.getDefinition("enum");
+        assertEquals("high", enumDef.getValue());
+        assertEquals(42L, enumDef.getIntegerValue().longValue());
+        assertEquals(0xcdabL, ((IntegerDefinition) result.getDefinition("u16")).getValue());
+        assertTrue(result.toString().contains("u16 = 52651"));
+    }
+}
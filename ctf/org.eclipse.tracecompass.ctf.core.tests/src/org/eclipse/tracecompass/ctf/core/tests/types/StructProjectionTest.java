@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.Set;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructProjection;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The class <code>StructProjectionTest</code> contains tests for the class
+ * <code>{@link StructProjection}</code>, and for the struct definitions read
+ * with only some of their fields.
+ */
+public class StructProjectionTest {
+
+    private static final byte[] BYTES = {
+            0x02, 0x00, 0x00, 0x01, 0x00, 0x0a, 0x0b, 0x0c, 0x0d,
+            0x11, 0x22, 'a', 'b', 0x00, 0x12, 0x34 };
+
+    private static final Set<String> REQUIRED = ImmutableSet.of("pad", "x");
+
+    private StructDeclaration fixture;
+
+    /**
+     * Perform pre-test initialization.
+     */
+    @Before
+    public void setUp() {
+        IntegerDeclaration uint8 = IntegerDeclaration.createDeclaration(8, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8);
+        fixture = new StructDeclaration(8);
+        fixture.addField("len", uint8);
+        fixture.addField("_pad", IntegerDeclaration.createDeclaration(32, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8));
+        fixture.addField("arr", new ArrayDeclaration(4, uint8));
+        fixture.addField("seq", new SequenceDeclaration("len", uint8));
+        fixture.addField("str", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        fixture.addField("x", IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8));
+    }
+
+    /**
+     * Test which fields are skipped
+     */
+    @Test
+    public void testCompile() {
+        StructProjection projection = StructProjection.compile(fixture, REQUIRED);
+        assertTrue(projection.hasSkippedFields());
+        /* Length of the sequence */
+        assertFalse(projection.isSkipped(0));
+        /* Required without its underscore */
+        assertFalse(projection.isSkipped(1));
+        assertTrue(projection.isSkipped(2));
+        /* Variable size */
+        assertFalse(projection.isSkipped(3));
+        assertFalse(projection.isSkipped(4));
+        /* Required */
+        assertFalse(projection.isSkipped(5));
+
+        StructProjection all = StructProjection.compile(fixture, ImmutableSet.of("arr", "x", "_pad"));
+        assertFalse(all.hasSkippedFields());
+    }
+
+    /**
+     * Test reading a struct with only some of its fields
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testCreateFieldDefinition() throws CTFException {
+        BitBuffer fullInput = new BitBuffer(ByteBuffer.wrap(BYTES));
+        StructDefinition full = fixture.createFieldDefinition(null, null, ILexicalScope.FIELDS, fullInput, null);
+        assertNotNull(full.getDefinition("arr"));
+
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(BYTES));
+        StructDefinition result = fixture.createFieldDefinition(null, null, ILexicalScope.FIELDS, input, REQUIRED);
+        assertEquals(fullInput.position(), input.position());
+        assertNull(result.getDefinition("arr"));
+        assertEquals(2L, ((IntegerDefinition) result.getDefinition("len")).getValue());
+        assertEquals(0x100L, ((IntegerDefinition) result.getDefinition("_pad")).getValue());
+        assertNotNull(result.getDefinition("seq"));
+        assertEquals("ab", ((StringDefinition) result.getDefinition("str")).getValue());
+        assertEquals(0x1234L, ((IntegerDefinition) result.getDefinition("x")).getValue());
+        assertFalse(result.toString().contains("arr"));
+    }
+
+    /**
+     * Test that every fixed-size field that is not referenced is skipped when
+     * no field is required
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testEmptyRequiredFields() throws CTFException {
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(BYTES));
+        StructDefinition result = fixture.createFieldDefinition(null, null, ILexicalScope.FIELDS, input, Collections.emptySet());
+        assertNull(result.getDefinition("arr"));
+        assertNull(result.getDefinition("_pad"));
+        assertNull(result.getDefinition("x"));
+        assertEquals(2L, ((IntegerDefinition) result.getDefinition("len")).getValue());
+        assertEquals("ab", ((StringDefinition) result.getDefinition("str")).getValue());
+        assertEquals(BYTES.length * 8, input.position());
+    }
+}
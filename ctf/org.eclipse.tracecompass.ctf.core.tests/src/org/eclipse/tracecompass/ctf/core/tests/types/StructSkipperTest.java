@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructSkipper;
+import org.junit.Test;
+
+/**
+ * The class <code>StructSkipperTest</code> contains tests for the class
+ * <code>{@link StructSkipper}</code>.
+ */
+public class StructSkipperTest {
+
+    private static final byte[] BYTES = {
+            0x03, 0x00, 0x00, 0x00, 0x01, 0x02, 0x03, 0x04,
+            0x05, 0x06, 0x07, 0x08, 'a', 'b', 'c', 0x00,
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 };
+
+    private static final IntegerDeclaration UINT_8 = IntegerDeclaration.createDeclaration(8, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8);
+    private static final IntegerDeclaration UINT_32 = IntegerDeclaration.createDeclaration(32, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 32);
+
+    /**
+     * Test skipping a struct of fixed size
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testFixedSize() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("a", UINT_8);
+        declaration.addField("b", UINT_32);
+        declaration.addField("c", new ArrayDeclaration(3, UINT_8));
+        declaration.addField("d", UINT_32);
+
+        StructSkipper skipper = StructSkipper.compile(declaration);
+        assertNotNull(skipper);
+        assertTrue(skipper.isFixedSize());
+        assertSkip(declaration, skipper, 0);
+        /* The struct is aligned on its largest field */
+        assertSkip(declaration, skipper, 8);
+    }
+
+    /**
+     * Test skipping a struct with strings and sequences
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testVariableSize() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("_len", UINT_8);
+        declaration.addField("seq", new SequenceDeclaration("len", UINT_32));
+        declaration.addField("str", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        declaration.addField("x", UINT_8);
+
+        StructSkipper skipper = StructSkipper.compile(declaration);
+        assertNotNull(skipper);
+        assertFalse(skipper.isFixedSize());
+        assertSkip(declaration, skipper, 0);
+    }
+
+    /**
+     * Test the structs that cannot be skipped without decoding them
+     */
+    @Test
+    public void testNotSkippable() {
+        StructDeclaration timestamp = new StructDeclaration(8);
+        timestamp.addField("timestamp", UINT_32);
+        assertNull(StructSkipper.compile(timestamp));
+
+        StructDeclaration outerLength = new StructDeclaration(8);
+        outerLength.addField("seq", new SequenceDeclaration("stream.event.context.len", UINT_8));
+        assertNull(StructSkipper.compile(outerLength));
+
+        StructDeclaration nested = new StructDeclaration(8);
+        nested.addField("inner", new StructDeclaration(8));
+        assertNull(StructSkipper.compile(nested));
+    }
+
+    private static void assertSkip(StructDeclaration declaration, StructSkipper skipper, long start) throws CTFException {
+        BitBuffer expected = new BitBuffer(ByteBuffer.wrap(BYTES));
+        expected.position(start);
+        declaration.createDefinition(null, ILexicalScope.FIELDS, expected);
+
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(BYTES));
+        input.position(start);
+        skipper.skip(input);
+        assertEquals(expected.position(), input.position());
+    }
+}
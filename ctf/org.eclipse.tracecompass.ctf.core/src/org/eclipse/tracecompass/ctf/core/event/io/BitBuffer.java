@@ -1,5 +1,5 @@
 /*******************************************************************************.
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -18,8 +18,10 @@ package org.eclipse.tracecompass.ctf.core.event.io;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 
 /**
@@ -54,6 +56,7 @@ public final class BitBuffer {
      */
     private long fPosition;
     private ByteOrder fByteOrder;
+    private @Nullable StringCache fStringCache = null;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -146,6 +149,15 @@ public final class BitBuffer {
      *             exception will be raised.
      */
     public long get(int length, boolean signed) throws CTFException {
+        /*
+         * Fast path for the byte-aligned integers of 8, 16, 32 and 64 bits,
+         * read straight from the byte buffer in its byte order
+         */
+        if (((fPosition & (BIT_CHAR - 1)) == 0) && isWordLength(length) && canRead(length)) {
+            long retVal = getAligned((int) (fPosition / BIT_CHAR), length, signed);
+            fPosition += length;
+            return retVal;
+        }
         if (length > BIT_LONG) {
             throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
         }
@@ -170,6 +182,82 @@ public final class BitBuffer {
         return (signed ? retVal : (retVal & INT_MASK));
     }
 
+    /**
+     * Relative bulk <i>get</i> method for reading contiguous integers of
+     * <i>length</i> bits.
+     *
+     * Reads as many integers as the length of the destination array, starting
+     * at the current position. This is equivalent to calling
+     * {@link #get(int, boolean)} for each of them, but the bounds are checked
+     * once and byte-aligned integers of 8, 16, 32 and 64 bits are read
+     * straight from the byte buffer. The current position is increased of
+     * <i>length</i> bits per integer.
+     *
+     * @param dst
+     *            the array of values to fill
+     * @param length
+     *            The length in bits of each integer
+     * @param signed
+     *            The sign extended flag
+     * @throws CTFException
+     *             An error occurred reading the data. If more than 64 bits
+     *             per integer are requested, or the buffer is read beyond its
+     *             end, this exception will be raised.
+     * @since 2.1
+     */
+    public void get(long @NonNull [] dst, int length, boolean signed) throws CTFException {
+        if (length > BIT_LONG) {
+            throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
+        }
+        long size = (long) dst.length * length;
+        if (fPosition + size > fBitCapacity) {
+            throw new CTFException("Cannot read the integers, " + //$NON-NLS-1$
+                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
+                    "Requested:" + size + " Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (((fPosition & (BIT_CHAR - 1)) == 0) && isWordLength(length)) {
+            int index = (int) (fPosition / BIT_CHAR);
+            int step = length / BIT_CHAR;
+            for (int i = 0; i < dst.length; i++) {
+                dst[i] = getAligned(index, length, signed);
+                index += step;
+            }
+            fPosition += size;
+            return;
+        }
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = get(length, signed);
+        }
+    }
+
+    private static boolean isWordLength(int length) {
+        return (length == BIT_CHAR) || (length == BIT_SHORT) || (length == BIT_INT) || (length == BIT_LONG);
+    }
+
+    /*
+     * Read an integer of 8, 16, 32 or 64 bits at a byte index, the bounds must
+     * already be checked
+     */
+    private long getAligned(int index, int length, boolean signed) {
+        switch (length) {
+        case BIT_CHAR: {
+            byte val = fBuffer.get(index);
+            return signed ? val : (val & BYTE_MASK);
+        }
+        case BIT_SHORT: {
+            short val = fBuffer.getShort(index);
+            return signed ? val : (val & SHORT_MASK);
+        }
+        case BIT_INT: {
+            int val = fBuffer.getInt(index);
+            return signed ? val : (val & INT_MASK);
+        }
+        case BIT_LONG:
+        default:
+            return fBuffer.getLong(index);
+        }
+    }
+
     /**
      * Relative bulk <i>get</i> method.
      *
@@ -191,6 +279,52 @@ public final class BitBuffer {
         fPosition += dst.length * BIT_CHAR;
     }
 
+    /**
+     * Relative <i>get</i> method for reading a null-terminated string.
+     *
+     * Reads the bytes starting at the current position, which must be
+     * byte-aligned, up to the first null byte, and decodes them with the given
+     * charset. The bytes are scanned directly in the byte buffer. If a string
+     * cache is set, the string is looked up in it before being decoded. The
+     * current position is moved after the null byte.
+     *
+     * @param charset
+     *            the charset of the string
+     * @return The string read from the buffer, without its null byte
+     * @throws CTFException
+     *             An error occurred reading the data. If the position is not
+     *             byte-aligned or there is no null byte before the end of the
+     *             buffer, this exception will be raised.
+     * @since 2.1
+     */
+    public @NonNull String getString(@NonNull Charset charset) throws CTFException {
+        if ((fPosition & (BIT_CHAR - 1)) != 0) {
+            throw new CTFException("Cannot read a string at an unaligned position: " + fPosition); //$NON-NLS-1$
+        }
+        final ByteBuffer buffer = fBuffer;
+        final int start = (int) (fPosition / BIT_CHAR);
+        final int capacity = buffer.capacity();
+        int end = start;
+        int hash = 0;
+        while (true) {
+            if (end >= capacity) {
+                throw new CTFException("Cannot read the string, " + //$NON-NLS-1$
+                        "the buffer does not have a terminating null byte. " + //$NON-NLS-1$
+                        "Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$
+            }
+            byte b = buffer.get(end);
+            if (b == 0) {
+                break;
+            }
+            hash = StringCache.hash(hash, b);
+            end++;
+        }
+        StringCache cache = fStringCache;
+        String value = (cache != null) ? cache.get(buffer, start, end - start, hash, charset) : StringCache.decode(buffer, start, end - start, charset);
+        fPosition = (end + 1L) * BIT_CHAR;
+        return value;
+    }
+
     /**
      * Relative <i>get</i> method for reading integer of <i>length</i> bits.
      *
@@ -639,6 +773,28 @@ public final class BitBuffer {
         return fPosition;
     }
 
+    /**
+     * Sets the cache of the strings read from this buffer. A cache can be
+     * shared by the buffers of the packets of a stream.
+     *
+     * @param stringCache
+     *            the string cache, or null to decode every string
+     * @since 2.1
+     */
+    public void setStringCache(@Nullable StringCache stringCache) {
+        fStringCache = stringCache;
+    }
+
+    /**
+     * Gets the cache of the strings read from this buffer
+     *
+     * @return the string cache, or null if every string is decoded
+     * @since 2.1
+     */
+    public @Nullable StringCache getStringCache() {
+        return fStringCache;
+    }
+
     /**
      * Gets the byte buffer
      *
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.event.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * A bounded cache of the strings read by {@link BitBuffer#getString}, so that
+ * the strings that repeat in a stream, like process names and file names,
+ * share one instance and are not decoded again.
+ * <p>
+ * The cache is direct-mapped on the hash of the bytes of the strings: a new
+ * string replaces the one in its slot. A string found in the cache is
+ * compared in place with the bytes of the buffer, without allocating
+ * anything. Long strings are not cached.
+ * <p>
+ * A cache can be shared by the bit buffers of the packets of a stream, but is
+ * not thread-safe: it must only be used by one thread at a time.
+ *
+ * @since 2.1
+ */
+public final class StringCache {
+
+    private static final int MAX_LENGTH = 256;
+
+    private final byte[][] fKeys;
+    private final @NonNull String[] fValues;
+    private final Charset[] fCharsets;
+    private final int fMask;
+
+    /**
+     * Constructor
+     *
+     * @param size
+     *            the maximum number of strings in the cache, rounded up to a
+     *            power of two
+     */
+    public StringCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        fKeys = new byte[capacity][];
+        fValues = new @NonNull String[capacity];
+        fCharsets = new Charset[capacity];
+        fMask = capacity - 1;
+    }
+
+    /**
+     * Get the string of the bytes of a buffer, from the cache or by decoding
+     * them
+     *
+     * @param buffer
+     *            the buffer
+     * @param offset
+     *            the index of the first byte
+     * @param length
+     *            the number of bytes
+     * @param hash
+     *            the hash of the bytes, computed as {@link #hash}
+     * @param charset
+     *            the charset of the string
+     * @return the string
+     */
+    @NonNull String get(@NonNull ByteBuffer buffer, int offset, int length, int hash, @NonNull Charset charset) {
+        if (length > MAX_LENGTH) {
+            return decode(buffer, offset, length, charset);
+        }
+        int slot = (hash ^ (hash >>> 16)) & fMask;
+        byte[] key = fKeys[slot];
+        if (key != null && key.length == length && fCharsets[slot] == charset && matches(key, buffer, offset)) {
+            return fValues[slot];
+        }
+        key = new byte[length];
+        for (int i = 0; i < length; i++) {
+            key[i] = buffer.get(offset + i);
+        }
+        String value = new String(key, charset);
+        fKeys[slot] = key;
+        fValues[slot] = value;
+        fCharsets[slot] = charset;
+        return value;
+    }
+
+    /**
+     * Update the hash of the bytes of a string with its next byte
+     *
+     * @param hash
+     *            the hash of the previous bytes
+     * @param b
+     *            the next byte
+     * @return the new hash
+     */
+    static int hash(int hash, byte b) {
+        return 31 * hash + b;
+    }
+
+    /**
+     * Decode the bytes of a buffer into a string, without caching it
+     *
+     * @param buffer
+     *            the buffer
+     * @param offset
+     *            the index of the first byte
+     * @param length
+     *            the number of bytes
+     * @param charset
+     *            the charset of the string
+     * @return the string
+     */
+    static @NonNull String decode(@NonNull ByteBuffer buffer, int offset, int length, @NonNull Charset charset) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, charset);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, charset);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int offset) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
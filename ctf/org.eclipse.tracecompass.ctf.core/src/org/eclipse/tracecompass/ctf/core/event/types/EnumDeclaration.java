@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -13,9 +13,11 @@
 package org.eclipse.tracecompass.ctf.core.event.types;
 
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -212,12 +214,14 @@ public final class EnumDeclaration extends Declaration implements ISimpleDatatyp
     }
 
     /*
-     * Maps integer range -> string. A simple list for now, but feel free to
-     * optimize it. Babeltrace suggests an interval tree.
+     * Maps integer range -> string. The ranges are added while the metadata is
+     * parsed, and an immutable index of them is built on the first query, so
+     * the queries done while reading the events need no locking.
      */
     private class EnumTable {
 
-        private final List<LabelAndRange> ranges = new LinkedList<>();
+        private final List<LabelAndRange> ranges = new ArrayList<>();
+        private volatile @Nullable RangeIndex fIndex = null;
 
         public EnumTable() {
         }
@@ -237,6 +241,7 @@ public final class EnumDeclaration extends Declaration implements ISimpleDatatyp
             }
 
             ranges.add(newRange);
+            fIndex = null;
 
             return true;
         }
@@ -248,13 +253,21 @@ public final class EnumDeclaration extends Declaration implements ISimpleDatatyp
          *            the value to query
          * @return the label corresponding to that value
          */
-        public synchronized @Nullable String query(long value) {
-            for (LabelAndRange r : ranges) {
-                if (r.intersects(value)) {
-                    return r.getLabel();
-                }
+        public @Nullable String query(long value) {
+            RangeIndex index = fIndex;
+            if (index == null) {
+                index = buildIndex();
             }
-            return null;
+            return index.query(value);
+        }
+
+        private synchronized RangeIndex buildIndex() {
+            RangeIndex index = fIndex;
+            if (index == null) {
+                index = new RangeIndex(ranges);
+                fIndex = index;
+            }
+            return index;
         }
 
         @Override
@@ -292,6 +305,108 @@ public final class EnumDeclaration extends Declaration implements ISimpleDatatyp
 
     }
 
+    /*
+     * Immutable lookup structure of the ranges. Small and dense enums, like
+     * the ones of the event IDs, are looked up directly in an array of
+     * labels, the others by a binary search on the sorted ranges.
+     */
+    private static final class RangeIndex {
+
+        private static final int MAX_DENSE_SPAN = 4096;
+
+        private final long[] fLows;
+        private final long[] fHighs;
+        private final @Nullable String[] fLabels;
+        /* Labels of the values from fLows[0], if the enum is dense */
+        private final @Nullable String @Nullable [] fDense;
+        /* The ranges overlap, they are searched in the order they were added */
+        private final boolean fOverlap;
+
+        public RangeIndex(List<LabelAndRange> ranges) {
+            int size = ranges.size();
+            LabelAndRange[] sorted = ranges.toArray(new LabelAndRange[size]);
+            Arrays.sort(sorted, Comparator.comparingLong((LabelAndRange range) -> range.low));
+            boolean overlap = false;
+            for (int i = 1; i < size; i++) {
+                if (sorted[i].low <= sorted[i - 1].high) {
+                    overlap = true;
+                }
+            }
+            LabelAndRange[] order = overlap ? ranges.toArray(new LabelAndRange[size]) : sorted;
+            fLows = new long[size];
+            fHighs = new long[size];
+            fLabels = new @Nullable String[size];
+            for (int i = 0; i < size; i++) {
+                fLows[i] = order[i].low;
+                fHighs[i] = order[i].high;
+                fLabels[i] = order[i].getLabel();
+            }
+            fOverlap = overlap;
+            fDense = overlap ? null : buildDense();
+        }
+
+        private @Nullable String @Nullable [] buildDense() {
+            int size = fLows.length;
+            if (size == 0) {
+                return null;
+            }
+            long max = fHighs[0];
+            for (int i = 1; i < size; i++) {
+                max = Math.max(max, fHighs[i]);
+            }
+            long span = max - fLows[0];
+            /* A negative span overflowed */
+            if (span < 0 || span >= MAX_DENSE_SPAN) {
+                return null;
+            }
+            @Nullable String[] dense = new @Nullable String[(int) span + 1];
+            long first = fLows[0];
+            for (int i = 0; i < size; i++) {
+                /* Loop on the offsets, the values can end at Long.MAX_VALUE */
+                int end = (int) (fHighs[i] - first);
+                for (int offset = (int) (fLows[i] - first); offset <= end; offset++) {
+                    dense[offset] = fLabels[i];
+                }
+            }
+            return dense;
+        }
+
+        public @Nullable String query(long value) {
+            final long[] lows = fLows;
+            if (fOverlap) {
+                for (int i = 0; i < lows.length; i++) {
+                    if (value >= lows[i] && value <= fHighs[i]) {
+                        return fLabels[i];
+                    }
+                }
+                return null;
+            }
+            @Nullable String[] dense = fDense;
+            if (dense != null) {
+                long offset = value - lows[0];
+                if (offset < 0 || offset >= dense.length) {
+                    return null;
+                }
+                return dense[(int) offset];
+            }
+            /* Last range starting at or before the value */
+            int low = 0;
+            int high = lows.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (lows[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (high >= 0 && value <= fHighs[high]) {
+                return fLabels[high];
+            }
+            return null;
+        }
+    }
+
     private static class LabelAndRange {
 
         private final long low, high;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,6 +12,9 @@
 
 package org.eclipse.tracecompass.ctf.core.event.types;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
@@ -42,6 +45,7 @@ public class StringDeclaration extends Declaration {
 
     private static final int BITS_PER_BYTE = Byte.SIZE;
     private final Encoding fEncoding;
+    private final Charset fCharset;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -55,6 +59,11 @@ public class StringDeclaration extends Declaration {
      */
     private StringDeclaration(Encoding encoding) {
         fEncoding = encoding;
+        /*
+         * ASCII strings are decoded byte per char, like before, UTF-8 is the
+         * default
+         */
+        fCharset = (encoding == Encoding.ASCII) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
     }
 
     /**
@@ -131,13 +140,8 @@ public class StringDeclaration extends Declaration {
         /* Offset the buffer position wrt the current alignment */
         alignRead(input);
 
-        StringBuilder sb = new StringBuilder();
-        char c = (char) input.get(BITS_PER_BYTE, false);
-        while (c != 0) {
-            sb.append(c);
-            c = (char) input.get(BITS_PER_BYTE, false);
-        }
-        return sb.toString();
+        /* Scan for the null byte and decode the string in one go */
+        return input.getString(fCharset);
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -14,6 +14,7 @@ package org.eclipse.tracecompass.ctf.core.event.types;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IStatus;
@@ -24,6 +25,10 @@ import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDecoder;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructProjection;
+
+import com.google.common.collect.ImmutableList;
 
 /**
  * A CTF structure declaration.
@@ -57,6 +62,16 @@ public class StructDeclaration extends Declaration {
     /** maximum bit alignment */
     private long fMaxAlign;
 
+    /** Field names, shared by the definitions */
+    private @Nullable List<@NonNull String> fFieldNameList = null;
+
+    /** Specialized decoder, if the fields are all integers */
+    private @Nullable StructDecoder fDecoder = null;
+    private boolean fDecoderCompiled = false;
+
+    /** Last projection used to read this struct */
+    private volatile @Nullable StructProjection fProjection = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -124,6 +139,34 @@ public class StructDeclaration extends Declaration {
         return Arrays.asList(fFieldNames);
     }
 
+    /**
+     * Get the field declaration at a given index
+     *
+     * @param index
+     *            the index of the field, in declaration order
+     * @return the declaration of the field
+     */
+    IDeclaration getField(int index) {
+        return fFields[index];
+    }
+
+    private @NonNull List<@NonNull String> getFieldNameList() {
+        List<@NonNull String> fieldNameList = fFieldNameList;
+        if (fieldNameList == null) {
+            fieldNameList = ImmutableList.copyOf(fFieldNames);
+            fFieldNameList = fieldNameList;
+        }
+        return fieldNameList;
+    }
+
+    private @Nullable StructDecoder getDecoder() {
+        if (!fDecoderCompiled) {
+            fDecoder = StructDecoder.compile(this);
+            fDecoderCompiled = true;
+        }
+        return fDecoder;
+    }
+
     @Override
     public long getAlignment() {
         return this.fMaxAlign;
@@ -178,10 +221,14 @@ public class StructDeclaration extends Declaration {
     public StructDefinition createDefinition(IDefinitionScope definitionScope,
             ILexicalScope fieldScope, @NonNull BitBuffer input) throws CTFException {
         alignRead(input);
+        StructDecoder decoder = getDecoder();
+        if (decoder != null) {
+            return new StructDefinition(this, definitionScope, fieldScope, fieldScope.getName(), getFieldNameList(), decoder.decode(input));
+        }
         final Definition[] myFields = new Definition[fFields.length];
 
         StructDefinition structDefinition = new StructDefinition(this, definitionScope,
-                fieldScope, fieldScope.getName(), Arrays.asList(fFieldNames), myFields);
+                fieldScope, fieldScope.getName(), getFieldNameList(), myFields);
         fillStruct(input, myFields, structDefinition);
         return structDefinition;
     }
@@ -209,6 +256,10 @@ public class StructDeclaration extends Declaration {
         fFieldNames = names;
         fFields = fields;
         fMaxAlign = Math.max(fMaxAlign, declaration.getAlignment());
+        fFieldNameList = null;
+        fDecoder = null;
+        fDecoderCompiled = false;
+        fProjection = null;
     }
 
     private void fillStruct(@NonNull BitBuffer input, final IDefinition[] myFields, StructDefinition structDefinition) throws CTFException {
@@ -220,6 +271,27 @@ public class StructDeclaration extends Declaration {
         }
     }
 
+    private void fillStruct(@NonNull BitBuffer input, final IDefinition[] myFields, StructDefinition structDefinition, StructProjection projection) throws CTFException {
+        final @NonNull String[] fieldNames = fFieldNames;
+        final @NonNull IDeclaration[] fields = fFields;
+        for (int i = 0; i < fields.length; i++) {
+            if (projection.isSkipped(i)) {
+                projection.skip(i, input);
+            } else {
+                myFields[i] = fields[i].createDefinition(structDefinition, fieldNames[i], input);
+            }
+        }
+    }
+
+    private @NonNull StructProjection getProjection(@NonNull Set<String> requiredFields) {
+        StructProjection projection = fProjection;
+        if (projection == null || (projection.getRequiredFields() != requiredFields && !projection.getRequiredFields().equals(requiredFields))) {
+            projection = StructProjection.compile(this, requiredFields);
+            fProjection = projection;
+        }
+        return projection;
+    }
+
     /**
      * Special constructor for fields
      *
@@ -238,13 +310,22 @@ public class StructDeclaration extends Declaration {
      */
     public StructDefinition createFieldDefinition(ICompositeDefinition eventHeaderDef, IDefinitionScope definitionScope, ILexicalScope fields, @NonNull BitBuffer input) throws CTFException {
         alignRead(input);
-        final Definition[] myFields = new Definition[fFields.length];
         IDefinitionScope merged = definitionScope;
         if (eventHeaderDef != null) {
             merged = new InternalDef(definitionScope, eventHeaderDef);
         }
+        StructDecoder decoder = getDecoder();
+        if (decoder != null) {
+            StructDefinition structDefinition = new StructDefinition(this, merged,
+                    fields, fields.getName(), getFieldNameList(), decoder.decode(input));
+            if (merged instanceof InternalDef) {
+                ((InternalDef) merged).setDefinition(structDefinition);
+            }
+            return structDefinition;
+        }
+        final Definition[] myFields = new Definition[fFields.length];
         StructDefinition structDefinition = new StructDefinition(this, merged,
-                fields, fields.getName(), Arrays.asList(fFieldNames), myFields);
+                fields, fields.getName(), getFieldNameList(), myFields);
         if (merged instanceof InternalDef) {
             InternalDef internalDef = (InternalDef) merged;
             internalDef.setDefinition(structDefinition);
@@ -253,6 +334,51 @@ public class StructDeclaration extends Declaration {
         return structDefinition;
     }
 
+    /**
+     * Special constructor for fields, which only decodes the fields that are
+     * required. The other fields whose size is fixed are skipped and have no
+     * definition in the returned struct.
+     *
+     * @param eventHeaderDef
+     *            the event header, used for scopes
+     * @param definitionScope
+     *            the definition scope, in this case, the trace
+     * @param fields
+     *            event fields
+     * @param input
+     *            the input {@link BitBuffer}
+     * @param requiredFields
+     *            the names of the fields to decode, or null to decode all of
+     *            them
+     * @return the fields definition
+     * @throws CTFException
+     *             something went wrong
+     * @since 2.1
+     */
+    public StructDefinition createFieldDefinition(ICompositeDefinition eventHeaderDef, IDefinitionScope definitionScope, ILexicalScope fields, @NonNull BitBuffer input, @Nullable Set<String> requiredFields) throws CTFException {
+        /* Integer-only structs are decoded without creating definitions */
+        if (requiredFields == null || getDecoder() != null) {
+            return createFieldDefinition(eventHeaderDef, definitionScope, fields, input);
+        }
+        StructProjection projection = getProjection(requiredFields);
+        if (!projection.hasSkippedFields()) {
+            return createFieldDefinition(eventHeaderDef, definitionScope, fields, input);
+        }
+        alignRead(input);
+        IDefinitionScope merged = definitionScope;
+        if (eventHeaderDef != null) {
+            merged = new InternalDef(definitionScope, eventHeaderDef);
+        }
+        final Definition[] myFields = new Definition[fFields.length];
+        StructDefinition structDefinition = new StructDefinition(this, merged,
+                fields, fields.getName(), getFieldNameList(), myFields);
+        if (merged instanceof InternalDef) {
+            ((InternalDef) merged).setDefinition(structDefinition);
+        }
+        fillStruct(input, myFields, structDefinition, projection);
+        return structDefinition;
+    }
+
     private static final Pattern EVENT_HEADER = Pattern.compile(ILexicalScope.EVENT_HEADER.getPath().replaceAll("\\.", "\\\\.") + "\\."); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
 
     static class InternalDef implements IDefinitionScope {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -50,6 +50,13 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
     private final Definition[] fDefinitions;
     private Map<String, Definition> fDefinitionsMap = null;
 
+    /**
+     * Values of the integer fields read by a specialized decoder, from which
+     * the definitions are created when they are accessed. Null if the
+     * definitions were created when the struct was read.
+     */
+    private final long[] fValues;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -74,6 +81,7 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
         super(declaration, definitionScope, structFieldName);
         fFieldNames = ImmutableList.copyOf(declaration.getFieldsList());
         fDefinitions = definitions;
+        fValues = null;
         if (fFieldNames.isEmpty()) {
             fDefinitionsMap = Collections.EMPTY_MAP;
         }
@@ -106,6 +114,40 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
         super(declaration, definitionScope, structFieldName, scope);
         fFieldNames = ImmutableList.copyOf(fieldNames);
         fDefinitions = definitions;
+        fValues = null;
+        if (fFieldNames.isEmpty()) {
+            fDefinitionsMap = Collections.EMPTY_MAP;
+        }
+    }
+
+    /**
+     * Constructor for a struct of integer and enum fields whose values were
+     * read by a specialized decoder. The definitions of the fields are
+     * created when they are accessed.
+     *
+     * @param declaration
+     *            the parent declaration
+     * @param definitionScope
+     *            the parent scope
+     * @param scope
+     *            the scope of this variable
+     * @param structFieldName
+     *            the field name
+     * @param fieldNames
+     *            the list of fields
+     * @param values
+     *            the values of the fields, in declaration order
+     */
+    StructDefinition(@NonNull StructDeclaration declaration,
+            IDefinitionScope definitionScope,
+            @NonNull ILexicalScope scope,
+            @NonNull String structFieldName,
+            @NonNull List<@NonNull String> fieldNames,
+            long[] values) {
+        super(declaration, definitionScope, structFieldName, scope);
+        fFieldNames = ImmutableList.copyOf(fieldNames);
+        fDefinitions = new Definition[values.length];
+        fValues = values;
         if (fFieldNames.isEmpty()) {
             fDefinitionsMap = Collections.EMPTY_MAP;
         }
@@ -121,8 +163,9 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
             /* Build the definitions map */
             Builder<String, Definition> mapBuilder = new ImmutableMap.Builder<>();
             for (int i = 0; i < fFieldNames.size(); i++) {
-                if (fDefinitions[i] != null) {
-                    mapBuilder.put(fFieldNames.get(i), fDefinitions[i]);
+                Definition definition = getDefinition(i);
+                if (definition != null) {
+                    mapBuilder.put(fFieldNames.get(i), definition);
                 }
             }
             fDefinitionsMap = mapBuilder.build();
@@ -130,6 +173,24 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
         return fDefinitionsMap.get(fieldName);
     }
 
+    private Definition getDefinition(int index) {
+        Definition definition = fDefinitions[index];
+        final long[] values = fValues;
+        if (definition == null && values != null) {
+            IDeclaration declaration = getDeclaration().getField(index);
+            @NonNull String fieldName = fFieldNames.get(index);
+            if (declaration instanceof EnumDeclaration) {
+                EnumDeclaration enumDeclaration = (EnumDeclaration) declaration;
+                IntegerDefinition value = new IntegerDefinition(enumDeclaration.getContainerType(), this, fieldName, values[index]);
+                definition = new EnumDefinition(enumDeclaration, this, fieldName, value);
+            } else {
+                definition = new IntegerDefinition((IntegerDeclaration) declaration, this, fieldName, values[index]);
+            }
+            fDefinitions[index] = definition;
+        }
+        return definition;
+    }
+
     @Override
     public @NonNull List<@NonNull String> getFieldNames() {
         return fFieldNames;
@@ -156,9 +217,13 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
         builder.append("{ "); //$NON-NLS-1$
 
         List<String> fields = new LinkedList<>();
-        for (String field : fFieldNames) {
-            String appendee = field + " = " + lookupDefinition(field).toString(); //$NON-NLS-1$
-            fields.add(appendee);
+        for (int i = 0; i < fFieldNames.size(); i++) {
+            /* Fields skipped by a projection have no definition */
+            Definition definition = getDefinition(i);
+            if (definition != null) {
+                String appendee = fFieldNames.get(i) + " = " + definition.toString(); //$NON-NLS-1$
+                fields.add(appendee);
+            }
         }
         Joiner joiner = Joiner.on(", ").skipNulls(); //$NON-NLS-1$
         builder.append(joiner.join(fields));
@@ -186,19 +251,22 @@ public final class StructDefinition extends ScopedDefinition implements IComposi
          */
         int val = fFieldNames.indexOf(lookupPath);
         if (val != -1) {
-            return fDefinitions[val];
+            return getDefinition(val);
         }
         String lookupUnderscored = "_" + lookupPath; //$NON-NLS-1$
         val = fFieldNames.indexOf(lookupUnderscored);
         if (val != -1) {
-            return fDefinitions[val];
+            return getDefinition(val);
         }
-        for (IDefinition child : fDefinitions) {
-            if (child instanceof ScopedDefinition) {
-                if (!child.equals(defintionToExclude)) {
-                    IDefinition def = ((ScopedDefinition) child).lookupDefinition(lookupPath);
-                    if (def instanceof Definition) {
-                        return (Definition) def;
+        /* Decoded structs only have integer fields, which are not scoped */
+        if (fValues == null) {
+            for (IDefinition child : fDefinitions) {
+                if (child instanceof ScopedDefinition) {
+                    if (!child.equals(defintionToExclude)) {
+                        IDefinition def = ((ScopedDefinition) child).lookupDefinition(lookupPath);
+                        if (def instanceof Definition) {
+                            return (Definition) def;
+                        }
                     }
                 }
             }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -18,6 +18,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.UUID;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -32,8 +33,11 @@ import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.MappedWindowPool;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache.CachedIndex;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
@@ -88,6 +92,29 @@ public class CTFStreamInput implements IDefinitionScope {
      */
     private long fLostSoFar = 0;
 
+    /**
+     * Whether the packet index cache was already looked up
+     */
+    private boolean fIndexCacheRead = false;
+
+    /**
+     * Number of packets in the packet index cache file
+     */
+    private int fCachedPackets = 0;
+
+    /**
+     * The large mappings of the file, shared by the readers of this stream
+     * input, and the file channel they map. They are created for the first
+     * reader and released with the last one.
+     */
+    private @Nullable MappedWindowPool fMappedWindows = null;
+    private @Nullable FileChannel fMappedFileChannel = null;
+
+    /**
+     * Number of readers using the mappings of the file
+     */
+    private int fMappedWindowsRefCount = 0;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -147,6 +174,17 @@ public class CTFStreamInput implements IDefinitionScope {
         return fIndex;
     }
 
+    /**
+     * Get the packets of the stream file that are indexed so far
+     *
+     * @return a copy of the packet descriptors, sorted by increasing begin
+     *         timestamp
+     * @since 2.1
+     */
+    public List<ICTFPacketDescriptor> getPacketDescriptors() {
+        return fIndex.getElements();
+    }
+
     /**
      * Gets the filename of the streamInput file.
      *
@@ -208,6 +246,57 @@ public class CTFStreamInput implements IDefinitionScope {
 
     }
 
+    /**
+     * Get the mappings of the file shared by the readers of this stream input,
+     * creating them for the first reader. Every call must be matched by a call
+     * to {@link #releaseMappedWindows()}.
+     *
+     * @return the mappings of the file
+     * @throws CTFException
+     *             If the file cannot be opened
+     */
+    synchronized MappedWindowPool acquireMappedWindows() throws CTFException {
+        MappedWindowPool mappedWindows = fMappedWindows;
+        if (mappedWindows == null) {
+            FileChannel fileChannel;
+            try {
+                fileChannel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new CTFIOException(e);
+            }
+            mappedWindows = new MappedWindowPool(fileChannel);
+            fMappedFileChannel = fileChannel;
+            fMappedWindows = mappedWindows;
+        }
+        fMappedWindowsRefCount++;
+        return mappedWindows;
+    }
+
+    /**
+     * Release the mappings of the file for a reader. When the last reader
+     * releases them, the file channel is closed and the windows are unmapped
+     * once the slices taken from them are no longer used.
+     *
+     * @throws IOException
+     *             If the file channel cannot be closed
+     */
+    synchronized void releaseMappedWindows() throws IOException {
+        fMappedWindowsRefCount--;
+        if (fMappedWindowsRefCount > 0) {
+            return;
+        }
+        MappedWindowPool mappedWindows = fMappedWindows;
+        FileChannel fileChannel = fMappedFileChannel;
+        fMappedWindows = null;
+        fMappedFileChannel = null;
+        if (mappedWindows != null) {
+            mappedWindows.clear();
+        }
+        if (fileChannel != null) {
+            fileChannel.close();
+        }
+    }
+
     /**
      * Adds the next packet header index entry to the index of a stream input.
      *
@@ -218,22 +307,136 @@ public class CTFStreamInput implements IDefinitionScope {
      * @throws CTFException
      *             If there was a problem reading the packed header
      */
-    public boolean addPacketHeaderIndex() throws CTFException {
-        long currentPosBits = 0L;
-        if (!fIndex.isEmpty()) {
-            ICTFPacketDescriptor pos = fIndex.lastElement();
-            if (pos == null) {
-                throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
-            }
-            currentPosBits = pos.getOffsetBits() + pos.getPacketSizeBits();
+    public synchronized boolean addPacketHeaderIndex() throws CTFException {
+        if (fIndex.isEmpty()) {
+            readIndexCache();
         }
+        long currentPosBits = getIndexedSizeBits();
         if (currentPosBits < getStreamSizeBits()) {
             fIndex.append(createPacketIndexEntry(currentPosBits));
             return true;
         }
+        writeIndexCache();
         return false;
     }
 
+    /**
+     * Add the packets that were completely written to the stream file since
+     * it was last indexed, for a trace that is still being written. A packet
+     * that is only partially written is not an error, it is left out until a
+     * later call finds it complete.
+     *
+     * @return the number of packets added to the index
+     * @since 2.1
+     */
+    public synchronized int indexNewPackets() {
+        if (fIndex.isEmpty()) {
+            readIndexCache();
+        }
+        int added = 0;
+        long currentPosBits = getIndexedSizeBits();
+        while (currentPosBits < getStreamSizeBits()) {
+            /* Parsing the packet context updates these even if it fails */
+            long lostSoFar = fLostSoFar;
+            long timestampEnd = fTimestampEnd;
+            ICTFPacketDescriptor packet;
+            try {
+                packet = createPacketIndexEntry(currentPosBits);
+            } catch (CTFException | RuntimeException e) {
+                fLostSoFar = lostSoFar;
+                fTimestampEnd = timestampEnd;
+                break;
+            }
+            fIndex.append(packet);
+            currentPosBits = packet.getOffsetBits() + packet.getPacketSizeBits();
+            added++;
+        }
+        return added;
+    }
+
+    private long getIndexedSizeBits() {
+        if (fIndex.isEmpty()) {
+            return 0L;
+        }
+        ICTFPacketDescriptor pos = fIndex.lastElement();
+        if (pos == null) {
+            throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
+        }
+        return pos.getOffsetBits() + pos.getPacketSizeBits();
+    }
+
+    private @Nullable File getIndexCacheFile() {
+        File directory = getStream().getTrace().getPacketIndexCacheDirectory();
+        if (directory == null) {
+            return null;
+        }
+        return new File(directory, fFileName + StreamInputPacketIndexCache.EXTENSION);
+    }
+
+    /**
+     * Fill the empty index with the packets of the cache file, if there is a
+     * valid one. If the stream file grew since it was cached, the last cached
+     * packet is read again to make sure the cache is for this file, and the
+     * rest of the file will be indexed normally.
+     */
+    private synchronized void readIndexCache() {
+        if (fIndexCacheRead || !fIndex.isEmpty()) {
+            return;
+        }
+        fIndexCacheRead = true;
+        File cacheFile = getIndexCacheFile();
+        if (cacheFile == null) {
+            return;
+        }
+        CachedIndex cachedIndex = StreamInputPacketIndexCache.read(cacheFile, fFile);
+        if (cachedIndex == null || cachedIndex.getEntries().isEmpty()) {
+            return;
+        }
+        List<ICTFPacketDescriptor> entries = cachedIndex.getEntries();
+        int lastIndex = entries.size() - 1;
+        ICTFPacketDescriptor last = entries.get(lastIndex);
+        long lostSoFar = 0;
+        for (int i = 0; i < lastIndex; i++) {
+            lostSoFar += entries.get(i).getLostEvents();
+        }
+        if (cachedIndex.isComplete(fFile)) {
+            fLostSoFar = lostSoFar + last.getLostEvents();
+            setTimestampEnd(last.getTimestampEnd());
+        } else {
+            /* Parsing the last packet also updates the lost events count */
+            fLostSoFar = lostSoFar;
+            try {
+                ICTFPacketDescriptor current = createPacketIndexEntry(last.getOffsetBits());
+                if (current.getPacketSizeBits() != last.getPacketSizeBits() ||
+                        current.getTimestampBegin() != last.getTimestampBegin() ||
+                        current.getTimestampEnd() != last.getTimestampEnd() ||
+                        current.getLostEvents() != last.getLostEvents()) {
+                    fLostSoFar = 0;
+                    return;
+                }
+            } catch (CTFException e) {
+                fLostSoFar = 0;
+                return;
+            }
+        }
+        fIndex.appendAll(entries);
+        fCachedPackets = fIndex.size();
+    }
+
+    /**
+     * Save the index to the cache file once the whole stream file is indexed,
+     * if it has new packets since the cache was read.
+     */
+    private synchronized void writeIndexCache() {
+        if (fIndex.size() == fCachedPackets) {
+            return;
+        }
+        File cacheFile = getIndexCacheFile();
+        if (cacheFile != null && StreamInputPacketIndexCache.write(cacheFile, fFile, fIndex)) {
+            fCachedPackets = fIndex.size();
+        }
+    }
+
     private long getStreamSizeBits() {
         return fFile.length() * Byte.SIZE;
     }
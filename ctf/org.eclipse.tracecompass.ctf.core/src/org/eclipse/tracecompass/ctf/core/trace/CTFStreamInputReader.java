@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -15,10 +15,11 @@ package org.eclipse.tracecompass.ctf.core.trace;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
-import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -27,12 +28,14 @@ import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.io.StringCache;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
-import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.internal.ctf.core.MappedWindowPool;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.NullPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamReadAhead;
 
 /**
  * A CTF trace event reader. Reads the events of a trace file.
@@ -46,6 +49,8 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private static final int BITS_PER_BYTE = Byte.SIZE;
 
+    private static final int STRING_CACHE_SIZE = 1024;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -57,7 +62,24 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private final CTFStreamInput fStreamInput;
 
-    private final @Nullable FileChannel fFileChannel;
+    /**
+     * The large mappings of the file, shared with the other readers of the
+     * stream input, from which the packets are sliced. Null once the reader is
+     * closed.
+     */
+    private @Nullable MappedWindowPool fMappedWindows;
+
+    /**
+     * The region of the file of the current packet, in bytes, acquired from
+     * the mappings of the file. The position is -1 if there is none.
+     */
+    private long fPacketPosition = -1;
+    private long fPacketSize = 0;
+
+    /**
+     * The strings read from this trace file, shared by its packets
+     */
+    private final StringCache fStringCache = new StringCache(STRING_CACHE_SIZE);
 
     /**
      * The packet reader used to read packets from this trace file.
@@ -75,6 +97,12 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private @Nullable IEventDefinition fCurrentEvent = null;
 
+    /**
+     * Number of events before the current one with the same timestamp, to find
+     * the current event back after a read-ahead
+     */
+    private int fRankAtTimestamp = 0;
+
     private int fId;
 
     /**
@@ -82,6 +110,33 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private boolean fLive = false;
 
+    /**
+     * Payload fields to decode per event name, null to decode all of them
+     */
+    private @Nullable Map<String, Set<String>> fRequiredFields = null;
+
+    /**
+     * Names of the events to read, null to read all of them
+     */
+    private @Nullable Set<String> fEventFilter = null;
+
+    /**
+     * Executor on which the events are decoded ahead, null to decode them when
+     * they are read
+     */
+    private @Nullable Executor fReadAheadExecutor = null;
+
+    /**
+     * The running read-ahead, which owns the packet reader while it is set
+     */
+    private @Nullable StreamReadAhead fReadAhead = null;
+
+    /**
+     * The packet reader of the current event when it was read ahead, since
+     * the packet reader can then be further in the stream
+     */
+    private @Nullable IPacketReader fReadAheadPacketReader = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -96,11 +151,7 @@ public class CTFStreamInputReader implements AutoCloseable {
     public CTFStreamInputReader(CTFStreamInput streamInput) throws CTFException {
         fStreamInput = streamInput;
         fFile = fStreamInput.getFile();
-        try {
-            fFileChannel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
-        } catch (IOException e) {
-            throw new CTFIOException(e);
-        }
+        fMappedWindows = fStreamInput.acquireMappedWindows();
         try {
             /*
              * Get the iterator on the packet index.
@@ -118,7 +169,7 @@ public class CTFStreamInputReader implements AutoCloseable {
                 }
             }
             ICTFPacketDescriptor packet = getPacket();
-            fPacketReader = getCurrentPacketReader(packet);
+            setPacketReader(packet);
         } catch (Exception e) {
             try {
                 close();
@@ -129,20 +180,63 @@ public class CTFStreamInputReader implements AutoCloseable {
         }
     }
 
-    private IPacketReader getCurrentPacketReader(@Nullable ICTFPacketDescriptor packet) throws CTFException {
+    /**
+     * Change the packet reader to read a packet, and release the region of the
+     * previous packet
+     */
+    private void setPacketReader(@Nullable ICTFPacketDescriptor packet) throws CTFException {
         IPacketReader ctfPacketReader = NullPacketReader.INSTANCE;
+        long position = -1;
+        long size = 0;
         if (packet != null) {
-            long size = packet.getContentSizeBits();
-            if (size < 0) {
+            long sizeBits = packet.getContentSizeBits();
+            if (sizeBits < 0) {
                 throw new CTFIOException("Cannot have negative sized buffers."); //$NON-NLS-1$
             }
-            BitBuffer bitBuffer = new BitBuffer(getByteBufferAt(packet.getOffsetBits(), size));
-            bitBuffer.position(packet.getPayloadStartBits());
-            IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
-            CTFTrace trace = getStreamInput().getStream().getTrace();
-            ctfPacketReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            MappedWindowPool mappedWindows = fMappedWindows;
+            if (mappedWindows == null) {
+                throw new CTFIOException("The stream input reader is closed"); //$NON-NLS-1$
+            }
+            position = packet.getOffsetBits() / BITS_PER_BYTE;
+            size = (sizeBits + BITS_PER_BYTE - 1) / BITS_PER_BYTE;
+            ByteBuffer map;
+            try {
+                map = mappedWindows.acquire(position, size);
+            } catch (IOException e) {
+                throw new CTFIOException(e.getMessage(), e);
+            }
+            try {
+                BitBuffer bitBuffer = new BitBuffer(map);
+                bitBuffer.position(packet.getPayloadStartBits());
+                bitBuffer.setStringCache(fStringCache);
+                IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
+                CTFTrace trace = getStreamInput().getStream().getTrace();
+                CTFPacketReader packetReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+                packetReader.setRequiredFields(fRequiredFields);
+                packetReader.setEventFilter(fEventFilter);
+                ctfPacketReader = packetReader;
+            } catch (CTFException | RuntimeException e) {
+                mappedWindows.release(position, size);
+                throw e;
+            }
+        }
+        releasePacket();
+        fPacketReader = ctfPacketReader;
+        fPacketPosition = position;
+        fPacketSize = size;
+    }
+
+    /**
+     * Release the region of the current packet, so that its window can be
+     * evicted
+     */
+    private void releasePacket() {
+        MappedWindowPool mappedWindows = fMappedWindows;
+        if (mappedWindows != null && fPacketPosition >= 0) {
+            mappedWindows.release(fPacketPosition, fPacketSize);
         }
-        return ctfPacketReader;
+        fPacketPosition = -1;
+        fPacketSize = 0;
     }
 
     /**
@@ -159,9 +253,13 @@ public class CTFStreamInputReader implements AutoCloseable {
      * @since 2.0
      */
     public ByteBuffer getByteBufferAt(long position, long size) throws CTFException {
+        MappedWindowPool mappedWindows = fMappedWindows;
+        if (mappedWindows == null) {
+            throw new CTFIOException("The stream input reader is closed"); //$NON-NLS-1$
+        }
         ByteBuffer map;
         try {
-            map = SafeMappedByteBuffer.map(fFileChannel, MapMode.READ_ONLY, position / BITS_PER_BYTE, (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
+            map = mappedWindows.map(position / BITS_PER_BYTE, (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
         } catch (IOException e) {
             throw new CTFIOException(e.getMessage(), e);
         }
@@ -172,18 +270,21 @@ public class CTFStreamInputReader implements AutoCloseable {
     }
 
     /**
-     * Dispose the StreamInputReader, closes the file channel and its packet
-     * reader
+     * Dispose the StreamInputReader, releases the mappings of the file and
+     * its packet reader
      *
      * @throws IOException
      *             If an I/O error occurs
      */
     @Override
     public void close() throws IOException {
-        if (fFileChannel != null) {
-            fFileChannel.close();
-        }
+        cancelReadAhead();
+        releasePacket();
         fPacketReader = NullPacketReader.INSTANCE;
+        if (fMappedWindows != null) {
+            fMappedWindows = null;
+            fStreamInput.releaseMappedWindows();
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -222,12 +323,13 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     /**
      * Gets the CPU of a stream. It's the same as the one in /proc or running
-     * the asm CPUID instruction
+     * the asm CPUID instruction. It is the CPU of the packet of the current
+     * event.
      *
      * @return The CPU id (a number)
      */
     public int getCPU() {
-        return fPacketReader.getCPU();
+        return getCurrentPacketReader().getCPU();
     }
 
     /**
@@ -263,6 +365,14 @@ public class CTFStreamInputReader implements AutoCloseable {
      *            whether the trace is read live or not
      */
     public void setLive(boolean live) {
+        if (live) {
+            /* Events are not read ahead of a live trace */
+            try {
+                stopReadAhead();
+            } catch (CTFException e) {
+                Activator.logError(e.getMessage(), e);
+            }
+        }
         fLive = live;
     }
 
@@ -275,6 +385,60 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fLive;
     }
 
+    /**
+     * Set the payload fields that need to be decoded, per event name. The
+     * fixed-size fields of an event that are not in its set are skipped and
+     * have no definition. The payload of the events that have no required
+     * field, including the events whose name is not in the map, is stepped
+     * over as a whole. These events are still read, see
+     * {@link #setEventFilter(Set)} to drop them.
+     *
+     * @param requiredFields
+     *            the names of the required fields per event name, or null to
+     *            decode all the fields of every event
+     * @since 2.1
+     */
+    public void setRequiredFields(@Nullable Map<String, Set<String>> requiredFields) {
+        if (fReadAhead != null && !Objects.equals(requiredFields, fRequiredFields)) {
+            /* The events decoded ahead used the previous fields */
+            try {
+                stopReadAhead();
+            } catch (CTFException e) {
+                Activator.logError(e.getMessage(), e);
+            }
+        }
+        fRequiredFields = requiredFields;
+        IPacketReader packetReader = fPacketReader;
+        if (packetReader instanceof CTFPacketReader) {
+            ((CTFPacketReader) packetReader).setRequiredFields(requiredFields);
+        }
+    }
+
+    /**
+     * Set the event types to read. The other events are stepped over without
+     * decoding their payload, and are never the current event. Lost events
+     * are always read. This applies to the events read after the current one.
+     *
+     * @param eventNames
+     *            the names of the events to read, or null to read all of them
+     * @since 2.1
+     */
+    public void setEventFilter(@Nullable Set<String> eventNames) {
+        if (fReadAhead != null && !Objects.equals(eventNames, fEventFilter)) {
+            /* The events decoded ahead used the previous filter */
+            try {
+                stopReadAhead();
+            } catch (CTFException e) {
+                Activator.logError(e.getMessage(), e);
+            }
+        }
+        fEventFilter = eventNames;
+        IPacketReader packetReader = fPacketReader;
+        if (packetReader instanceof CTFPacketReader) {
+            ((CTFPacketReader) packetReader).setEventFilter(eventNames);
+        }
+    }
+
     /**
      * Get the event context of the stream
      *
@@ -287,6 +451,61 @@ public class CTFStreamInputReader implements AutoCloseable {
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
+    /**
+     * Set the executor on which the events of this stream are decoded ahead
+     * of the reader, into a bounded buffer. The events are returned in the
+     * same order. Events are not read ahead of a live trace.
+     *
+     * @param executor
+     *            the executor, or null to decode the events when they are
+     *            read
+     * @throws CTFException
+     *             if the reader could not go back to its current event after
+     *             stopping the read-ahead
+     * @since 2.1
+     */
+    public void setReadAhead(@Nullable Executor executor) throws CTFException {
+        if (executor != fReadAheadExecutor) {
+            stopReadAhead();
+            fReadAheadExecutor = executor;
+        }
+    }
+
+    /**
+     * Stop reading ahead, and go back to the state right after the current
+     * event. The read-ahead starts again with the next read.
+     */
+    private void stopReadAhead() throws CTFException {
+        if (!cancelReadAhead()) {
+            return;
+        }
+        IEventDefinition currentEvent = fCurrentEvent;
+        if (currentEvent != null) {
+            int rank = fRankAtTimestamp;
+            seek(currentEvent.getTimestamp());
+            for (int i = 0; i < rank; i++) {
+                readNextEventDirect();
+            }
+        }
+    }
+
+    /**
+     * Stop reading ahead, leaving the packet reader wherever the read-ahead
+     * was.
+     *
+     * @return true if there was a read-ahead
+     */
+    private boolean cancelReadAhead() {
+        StreamReadAhead readAhead = fReadAhead;
+        if (readAhead == null) {
+            return false;
+        }
+        readAhead.cancel();
+        fReadAhead = null;
+        fReadAheadPacketReader = null;
+        return true;
+    }
+
     /**
      * Reads the next event in the current event variable.
      *
@@ -295,29 +514,84 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFResponse readNextEvent() throws CTFException {
+        final Executor executor = fReadAheadExecutor;
+        if (executor == null || fLive) {
+            return readNextEventDirect();
+        }
+        StreamReadAhead readAhead = fReadAhead;
+        if (readAhead == null) {
+            readAhead = new StreamReadAhead(executor, new StreamReadAhead.IEventSource() {
+                @Override
+                public @Nullable IEventDefinition readNextEvent() throws CTFException {
+                    return decodeNextEvent();
+                }
 
-        /*
-         * Change packet if needed
-         */
-        if (!fPacketReader.hasMoreEvents()) {
-            final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
-            if (prevPacket != null || fLive) {
-                goToNextPacket();
-            }
-
+                @Override
+                public IPacketReader getPacketReader() {
+                    return fPacketReader;
+                }
+            });
+            fReadAhead = readAhead;
+        }
+        IEventDefinition event = readAhead.next();
+        IPacketReader packetReader = readAhead.getPacketReader();
+        if (packetReader != null) {
+            fReadAheadPacketReader = packetReader;
         }
+        updateCurrentEvent(event);
+        return event != null ? CTFResponse.OK : CTFResponse.FINISH;
+    }
 
-        /*
-         * If an event is available, read it.
-         */
-        if (fPacketReader.hasMoreEvents()) {
-            setCurrentEvent(fPacketReader.readNextEvent());
+    private CTFResponse readNextEventDirect() throws CTFException {
+        IEventDefinition event = decodeNextEvent();
+        updateCurrentEvent(event);
+        if (event != null) {
             return CTFResponse.OK;
         }
-        this.setCurrentEvent(null);
         return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
     }
 
+    private @Nullable IEventDefinition decodeNextEvent() throws CTFException {
+        while (true) {
+            /*
+             * Change packet if needed
+             */
+            if (!fPacketReader.hasMoreEvents()) {
+                final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
+                if (prevPacket != null || fLive) {
+                    goToNextPacket();
+                }
+
+            }
+
+            /*
+             * If an event is available, read it.
+             */
+            IPacketReader packetReader = fPacketReader;
+            if (!packetReader.hasMoreEvents()) {
+                return null;
+            }
+            if (!(packetReader instanceof CTFPacketReader)) {
+                return packetReader.readNextEvent();
+            }
+            IEventDefinition event = ((CTFPacketReader) packetReader).readNextAcceptedEvent();
+            if (event != null) {
+                return event;
+            }
+            /* The rest of the packet was dropped by the event filter */
+        }
+    }
+
+    private void updateCurrentEvent(@Nullable IEventDefinition event) {
+        IEventDefinition previousEvent = fCurrentEvent;
+        if (event != null && previousEvent != null && event.getTimestamp() == previousEvent.getTimestamp()) {
+            fRankAtTimestamp++;
+        } else {
+            fRankAtTimestamp = 0;
+        }
+        fCurrentEvent = event;
+    }
+
     /**
      * Change the current packet of the packet reader to the next one.
      *
@@ -328,17 +602,19 @@ public class CTFStreamInputReader implements AutoCloseable {
         fPacketIndex++;
         // did we already index the packet?
         while (getPacketSize() < (fPacketIndex + 1)) {
-            // go to the next packet if there is one, index it at the same time
-            if (fStreamInput.addPacketHeaderIndex()) {
-                fPacketIndex = getPacketSize() - 1;
-            } else {
-                fPacketReader = NullPacketReader.INSTANCE;
+            /*
+             * Go to the next packet if there is one, index it at the same
+             * time. The index can also be extended by another reader or by
+             * the live indexing of the trace, so the loop stops as soon as
+             * the packet exists.
+             */
+            if (!fStreamInput.addPacketHeaderIndex()) {
+                setPacketReader(null);
                 return;
             }
-
         }
         ICTFPacketDescriptor packet = getPacket();
-        fPacketReader = getCurrentPacketReader(packet);
+        setPacketReader(packet);
 
     }
 
@@ -362,6 +638,8 @@ public class CTFStreamInputReader implements AutoCloseable {
     public long seek(long timestamp) throws CTFException {
         long offset = 0;
 
+        cancelReadAhead();
+
         gotoPacket(timestamp);
 
         /*
@@ -390,10 +668,10 @@ public class CTFStreamInputReader implements AutoCloseable {
          * - found the first event with a timestamp greater or equal the given
          * timestamp.
          */
-        readNextEvent();
+        readNextEventDirect();
         IEventDefinition currentEvent = getCurrentEvent();
         while (currentEvent != null && (currentEvent.getTimestamp() < timestamp)) {
-            readNextEvent();
+            readNextEventDirect();
             currentEvent = getCurrentEvent();
             offset++;
         }
@@ -441,7 +719,7 @@ public class CTFStreamInputReader implements AutoCloseable {
         /*
          * Go to last indexed packet
          */
-        fPacketReader = getCurrentPacketReader(getPacket());
+        setPacketReader(getPacket());
 
         /*
          * Keep going until you cannot
@@ -456,7 +734,7 @@ public class CTFStreamInputReader implements AutoCloseable {
          */
         for (int pos = lastPacketIndex; pos > 0; pos--) {
             fPacketIndex = pos;
-            fPacketReader = getCurrentPacketReader(getPacket());
+            setPacketReader(getPacket());
 
             if (fPacketReader.hasMoreEvents()) {
                 break;
@@ -469,7 +747,7 @@ public class CTFStreamInputReader implements AutoCloseable {
         IEventDefinition prevEvent = null;
         while (fCurrentEvent != null) {
             prevEvent = fCurrentEvent;
-            readNextEvent();
+            readNextEventDirect();
         }
         /*
          * Go back to the previous event
@@ -486,6 +764,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     public void setCurrentEvent(@Nullable IEventDefinition currentEvent) {
         fCurrentEvent = currentEvent;
+        fRankAtTimestamp = 0;
     }
 
     /**
@@ -503,12 +782,17 @@ public class CTFStreamInputReader implements AutoCloseable {
     }
 
     /**
-     * Get the current packet reader
+     * Get the current packet reader, the reader of the packet of the current
+     * event
      *
      * @return the packetReader
      * @since 2.0
      */
     public IPacketReader getCurrentPacketReader() {
+        IPacketReader packetReader = fReadAheadPacketReader;
+        if (packetReader != null) {
+            return packetReader;
+        }
         return fPacketReader;
     }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,9 +16,7 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,8 +25,9 @@ import java.nio.file.StandardOpenOption;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
-import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexCache;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 
 /**
  * A CTF Stream output writer. Reads the packets of a given CTFStreamInput and
@@ -48,8 +47,6 @@ public class CTFStreamOutputWriter {
     @Nullable
     private final CTFStreamInput fStreamInput;
     @NonNull
-    private final CTFStreamPacketOutputWriter fStreamPacketOutputWriter;
-    @NonNull
     private final File fOutFile;
 
     // ------------------------------------------------------------------------
@@ -76,8 +73,6 @@ public class CTFStreamOutputWriter {
         } catch (IOException e) {
             throw new CTFIOException("Output file can't be created: " + outFilePath, e); //$NON-NLS-1$
         }
-
-        fStreamPacketOutputWriter = new CTFStreamPacketOutputWriter();
     }
 
     /**
@@ -96,26 +91,70 @@ public class CTFStreamOutputWriter {
      * @since 1.0
      */
     public void copyPackets(long startTime, long endTime) throws CTFException {
+        copyPackets(startTime, endTime, null);
+    }
+
+    /**
+     * Copies packets from the relevant input this input stream to a
+     * corresponding output stream based on a given time range, like
+     * {@link #copyPackets(long, long)}. Consecutive packets are transferred
+     * directly from the input file to the output file, without going through
+     * a buffer.
+     * <p>
+     * If a cache directory is given, the packet index of the output stream is
+     * saved in it, so that the new trace can be opened without reading its
+     * packet headers.
+     *
+     * @param startTime
+     *            the start time for packets to be written
+     * @param endTime
+     *            the end time for packets to be written
+     * @param packetIndexCacheDirectory
+     *            the directory where to cache the packet index of the output
+     *            stream, or null to not cache it
+     * @throws CTFException
+     *             if a reading or writing error occurs
+     * @since 2.1
+     */
+    public void copyPackets(long startTime, long endTime, @Nullable File packetIndexCacheDirectory) throws CTFException {
         CTFStreamInput streamInput = fStreamInput;
         if (streamInput == null) {
             throw new CTFIOException("StreamInput is null. Can't copy packets"); //$NON-NLS-1$
         }
 
+        StreamInputPacketIndex outIndex = new StreamInputPacketIndex();
         try (FileChannel fc = checkNotNull(FileChannel.open(fOutFile.toPath(), StandardOpenOption.WRITE))) {
             StreamInputPacketIndex index = streamInput.getIndex();
-            int count = 0;
+            long outOffset = 0;
+            long runStart = 0;
+            long runLength = 0;
             try (FileChannel source = FileChannel.open(streamInput.getFile().toPath(), StandardOpenOption.READ)) {
                 for (int i = 0; i < index.size(); i++) {
                     ICTFPacketDescriptor entry = index.getElement(i);
                     if ((entry.getTimestampEnd() >= startTime) && (entry.getTimestampBegin() <= endTime)) {
-                        ByteBuffer buffer = SafeMappedByteBuffer.map(source, MapMode.READ_ONLY, entry.getOffsetBytes(), entry.getPacketSizeBits() / Byte.SIZE);
-                        fStreamPacketOutputWriter.writePacket(buffer, fc);
-                        count++;
+                        long offset = entry.getOffsetBytes();
+                        long size = entry.getPacketSizeBits() / Byte.SIZE;
+                        /* Packets that follow each other are copied at once */
+                        if (runLength > 0 && runStart + runLength != offset) {
+                            transfer(source, runStart, runLength, fc);
+                            runLength = 0;
+                        }
+                        if (runLength == 0) {
+                            runStart = offset;
+                        }
+                        runLength += size;
+                        outIndex.append(new StreamInputPacketIndexEntry(outOffset * Byte.SIZE, entry.getPacketSizeBits(), entry.getContentSizeBits(),
+                                entry.getTimestampBegin(), entry.getTimestampEnd(), entry.getLostEvents(), entry.getTarget(), entry.getTargetId(),
+                                entry.getPayloadStartBits(), entry.getAttributes()));
+                        outOffset += size;
                     }
                 }
+                if (runLength > 0) {
+                    transfer(source, runStart, runLength, fc);
+                }
             }
 
-            if (count == 0 && fOutFile.exists()) {
+            if (outIndex.isEmpty() && fOutFile.exists()) {
                 boolean deleteResult = fOutFile.delete();
                 if (!deleteResult) {
                     throw new CTFIOException("Could not delete " + fOutFile.getAbsolutePath()); //$NON-NLS-1$
@@ -124,6 +163,22 @@ public class CTFStreamOutputWriter {
         } catch (IOException e) {
             throw new CTFIOException("Error copying packets: " + e.toString(), e); //$NON-NLS-1$
         }
+
+        if (packetIndexCacheDirectory != null && !outIndex.isEmpty()) {
+            File cacheFile = new File(packetIndexCacheDirectory, fOutFile.getName() + StreamInputPacketIndexCache.EXTENSION);
+            StreamInputPacketIndexCache.write(cacheFile, fOutFile, outIndex);
+        }
+    }
+
+    private static void transfer(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long nbBytes = source.transferTo(position + transferred, count - transferred, target);
+            if (nbBytes <= 0) {
+                throw new IOException("Packet past the end of the stream file"); //$NON-NLS-1$
+            }
+            transferred += nbBytes;
+        }
     }
 
     /**
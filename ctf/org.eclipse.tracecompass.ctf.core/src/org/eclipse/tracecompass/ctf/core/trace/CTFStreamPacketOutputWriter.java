@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -20,7 +20,11 @@ import java.nio.channels.FileChannel;
  *
  * @author Bernd Hufmann
  * @since 1.0
+ * @deprecated The packets are now copied by
+ *             {@link CTFStreamOutputWriter#copyPackets(long, long)}, which
+ *             transfers them between the file channels directly.
  */
+@Deprecated
 public class CTFStreamPacketOutputWriter {
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -23,14 +23,21 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.ctf.core.CTFException;
@@ -47,6 +54,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataStrings;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
@@ -135,6 +143,12 @@ public class CTFTrace implements IDefinitionScope {
      */
     private final Map<String, CTFClock> fClocks = new HashMap<>();
 
+    /**
+     * Directory where the packet indexes of the stream files and the parsed
+     * metadata are cached, null if they are not cached
+     */
+    private File fPacketIndexCacheDirectory = null;
+
     /** Handlers for the metadata files */
     private static final FileFilter METADATA_FILE_FILTER = new MetadataFileFilter();
     private static final Comparator<File> METADATA_COMPARATOR = new MetadataComparator();
@@ -166,7 +180,25 @@ public class CTFTrace implements IDefinitionScope {
      *             If no CTF trace was found at the path
      */
     public CTFTrace(File path) throws CTFException {
+        this(path, null);
+    }
+
+    /**
+     * Trace constructor, with a directory to cache the packet indexes of the
+     * stream files and the parsed metadata.
+     *
+     * @param path
+     *            Filesystem path of the trace directory.
+     * @param packetIndexCacheDirectory
+     *            Directory where the packet indexes and the parsed metadata
+     *            are cached, or null to disable the cache
+     * @throws CTFException
+     *             If no CTF trace was found at the path
+     * @since 2.1
+     */
+    public CTFTrace(File path, File packetIndexCacheDirectory) throws CTFException {
         fPath = path;
+        fPacketIndexCacheDirectory = packetIndexCacheDirectory;
         final Metadata metadata = new Metadata(this);
 
         /* Set up the internal containers for this trace */
@@ -213,6 +245,63 @@ public class CTFTrace implements IDefinitionScope {
         }
     }
 
+    /**
+     * Build the packet index of all the stream inputs now, instead of lazily,
+     * one packet at a time, as the readers advance. The index of each stream
+     * input is independent, so they are built in parallel, by at most one
+     * thread per processor. A stream input with a bad packet is indexed up to
+     * that packet, and the readers report the error when they get there.
+     *
+     * This reads the header of every packet of the trace, so it should only be
+     * called for a trace that is going to be read, not one that is only being
+     * validated.
+     *
+     * @throws CTFException
+     *             If the indexing was interrupted
+     * @since 2.1
+     */
+    public void indexPackets() throws CTFException {
+        List<CTFStreamInput> streamInputs = new ArrayList<>();
+        for (ICTFStream stream : getStreams()) {
+            streamInputs.addAll(stream.getStreamInputs());
+        }
+        int nbThreads = Math.min(streamInputs.size(), Runtime.getRuntime().availableProcessors());
+        if (nbThreads <= 1) {
+            for (CTFStreamInput streamInput : streamInputs) {
+                indexStreamInput(streamInput);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CTFStreamInput streamInput : streamInputs) {
+                futures.add(executor.submit(() -> indexStreamInput(streamInput)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTFException(e);
+        } catch (ExecutionException e) {
+            throw new CTFException("Failed to index stream input", e.getCause()); //$NON-NLS-1$
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void indexStreamInput(CTFStreamInput streamInput) {
+        try {
+            while (streamInput.addPacketHeaderIndex()) {
+                /* Index the whole file */
+            }
+        } catch (CTFException e) {
+            /* Stop indexing at the bad packet */
+            Activator.logError("Failed to index the packets of " + streamInput.getFilename(), e); //$NON-NLS-1$
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Getters/Setters/Predicates
     // ------------------------------------------------------------------------
@@ -396,6 +485,32 @@ public class CTFTrace implements IDefinitionScope {
         return fPacketHeaderDecl;
     }
 
+    /**
+     * Get the directory where the packet indexes of the stream files are
+     * cached
+     *
+     * @return the cache directory, or null if the packet indexes are not
+     *         cached
+     * @since 2.1
+     */
+    public File getPacketIndexCacheDirectory() {
+        return fPacketIndexCacheDirectory;
+    }
+
+    /**
+     * Set the directory where the packet indexes of the stream files are
+     * cached. When it is set, the packet descriptors of each stream file are
+     * saved once the file is fully indexed, and reloaded instead of reading
+     * the packet headers again the next time the trace is opened.
+     *
+     * @param directory
+     *            the cache directory, or null to disable the cache
+     * @since 2.1
+     */
+    public void setPacketIndexCacheDirectory(File directory) {
+        fPacketIndexCacheDirectory = directory;
+    }
+
     /**
      * Method getTraceDirectory gets the trace directory
      *
@@ -587,6 +702,65 @@ public class CTFTrace implements IDefinitionScope {
         openStreamInput(streamFile);
     }
 
+    /**
+     * Index the data written to the trace directory since the trace was
+     * opened, or since this was last called, for a trace that is still being
+     * written. The new stream files are added to their streams, and the
+     * packets completely written to the stream files are added to their
+     * packet indexes. The readers of the trace pick up the new stream files
+     * when they are updated.
+     *
+     * @return true if new packets were indexed
+     * @since 2.1
+     */
+    public synchronized boolean indexNewPackets() {
+        boolean updated = false;
+        File path = fPath;
+        if (path != null) {
+            Set<File> knownFiles = new HashSet<>();
+            for (ICTFStream stream : getStreams()) {
+                for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                    knownFiles.add(streamInput.getFile());
+                }
+            }
+            File[] files = path.listFiles(METADATA_FILE_FILTER);
+            if (files != null) {
+                Arrays.sort(files, METADATA_COMPARATOR);
+                for (File streamFile : files) {
+                    if (!knownFiles.contains(streamFile)) {
+                        updated |= openNewStreamInput(streamFile);
+                    }
+                }
+            }
+        }
+        for (ICTFStream stream : getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                updated |= (streamInput.indexNewPackets() > 0);
+            }
+        }
+        return updated;
+    }
+
+    private boolean openNewStreamInput(File streamFile) {
+        ICTFStream stream;
+        try {
+            stream = openStreamInput(streamFile);
+        } catch (CTFException | RuntimeException e) {
+            /* The first packet header may not be completely written yet */
+            return false;
+        }
+        if (stream == null) {
+            /* Still empty */
+            return false;
+        }
+        for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+            if (streamInput.getFile().equals(streamFile)) {
+                addStream(streamInput);
+            }
+        }
+        return true;
+    }
+
     /**
      * Registers a new stream to the trace.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -20,13 +20,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.trace.LoserTree;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputReaderTimestampComparator;
 
 /**
@@ -42,6 +49,33 @@ public class CTFTraceReader implements AutoCloseable {
 
     private static final int MIN_PRIO_SIZE = 16;
 
+    /**
+     * Time after which the idle read-ahead threads stop, in seconds
+     */
+    private static final long READ_AHEAD_KEEP_ALIVE = 10;
+
+    /**
+     * The threads decoding the events ahead, at most one per processor,
+     * shared by all the readers. A stream has at most one task queued or
+     * running at a time, so the number of tasks is bounded by the number of
+     * streams read ahead.
+     */
+    private static final class ReadAheadExecutor {
+        private static final ExecutorService INSTANCE;
+
+        static {
+            int nbThreads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads,
+                    READ_AHEAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, "CTF read-ahead"); //$NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            INSTANCE = executor;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -57,9 +91,9 @@ public class CTFTraceReader implements AutoCloseable {
     private final List<CTFStreamInputReader> fStreamInputReaders = Collections.synchronizedList(new ArrayList<CTFStreamInputReader>());
 
     /**
-     * Priority queue to order the trace file readers by timestamp.
+     * Tournament tree to order the trace file readers by timestamp.
      */
-    private PriorityQueue<CTFStreamInputReader> fPrio;
+    private final LoserTree<CTFStreamInputReader> fPrio = new LoserTree<>();
 
     /**
      * Array to count the number of event per trace file.
@@ -81,6 +115,21 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private boolean fClosed = false;
 
+    /**
+     * Payload fields to decode per event name, null to decode all of them
+     */
+    private @Nullable Map<String, Set<String>> fRequiredFields = null;
+
+    /**
+     * Names of the events to read, null to read all of them
+     */
+    private @Nullable Set<String> fEventFilter = null;
+
+    /**
+     * Whether the events of the streams are decoded ahead
+     */
+    private boolean fReadAhead = false;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -103,7 +152,7 @@ public class CTFTraceReader implements AutoCloseable {
         createStreamInputReaders();
 
         /**
-         * Populate the timestamp-based priority queue.
+         * Populate the timestamp-based tournament tree.
          */
         populateStreamInputReaderHeap();
 
@@ -131,6 +180,9 @@ public class CTFTraceReader implements AutoCloseable {
         newReader = new CTFTraceReader(fTrace);
         newReader.fStartTime = fStartTime;
         newReader.setEndTime(fEndTime);
+        newReader.setRequiredFields(fRequiredFields);
+        newReader.setEventFilter(fEventFilter);
+        newReader.setReadAhead(isReadAhead());
         return newReader;
     }
 
@@ -180,11 +232,43 @@ public class CTFTraceReader implements AutoCloseable {
 
     /**
      * Get the priority queue of this trace reader.
+     * <p>
+     * The readers are not kept in a priority queue anymore. Every call builds
+     * a new queue from the input readers that have events, which is not
+     * updated when the trace reader advances. Removing readers from it, or
+     * adding readers to it, has no effect on the trace reader.
      *
-     * @return The priority queue of input readers
+     * @return A copy of the input readers that have events, in a priority
+     *         queue
+     * @deprecated Use {@link #getTopStream()} to get the reader of the
+     *             current event, or {@link #getStreamInputReadersByTime()}
+     *             to get all the readers that have events.
      */
+    @Deprecated
     protected PriorityQueue<CTFStreamInputReader> getPrio() {
-        return fPrio;
+        List<CTFStreamInputReader> readers = getStreamInputReadersByTime();
+        PriorityQueue<CTFStreamInputReader> prio = new PriorityQueue<>(Math.max(readers.size(), MIN_PRIO_SIZE), new StreamInputReaderTimestampComparator());
+        prio.addAll(readers);
+        return prio;
+    }
+
+    /**
+     * Get the input readers that have events, ordered by the timestamp of
+     * their current event. The first one is the {@link #getTopStream()}.
+     *
+     * @return A new unmodifiable list of the readers, that is not updated
+     *         when the trace reader advances
+     * @since 2.1
+     */
+    protected List<CTFStreamInputReader> getStreamInputReadersByTime() {
+        List<CTFStreamInputReader> readers = new ArrayList<>(fPrio.getItems());
+        /* Stable, the readers with the same timestamp keep the order of the tree */
+        readers.sort(new StreamInputReaderTimestampComparator());
+        CTFStreamInputReader top = fPrio.peek();
+        if (top != null && readers.remove(top)) {
+            readers.add(0, top);
+        }
+        return Collections.unmodifiableList(readers);
     }
 
     // ------------------------------------------------------------------------
@@ -233,7 +317,7 @@ public class CTFTraceReader implements AutoCloseable {
     }
 
     /**
-     * Update the priority queue to make it match the parent trace
+     * Update the tournament tree to make it match the parent trace
      *
      * @throws CTFException
      *             An error occured
@@ -249,6 +333,9 @@ public class CTFTraceReader implements AutoCloseable {
                 try (CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput))) {
                     if (!fStreamInputReaders.contains(streamInputReader)) {
                         CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput));
+                        streamInputReaderToAdd.setRequiredFields(fRequiredFields);
+                        streamInputReaderToAdd.setEventFilter(fEventFilter);
+                        streamInputReaderToAdd.setReadAhead(getReadAheadExecutor());
                         streamInputReaderToAdd.readNextEvent();
                         fStreamInputReaders.add(streamInputReaderToAdd);
                         readers.add(streamInputReaderToAdd);
@@ -261,7 +348,10 @@ public class CTFTraceReader implements AutoCloseable {
         long[] temp = fEventCountPerTraceFile;
         fEventCountPerTraceFile = new long[readers.size() + temp.length];
         for (CTFStreamInputReader reader : readers) {
-            fPrio.add(reader);
+            IEventDefinition currentEvent = reader.getCurrentEvent();
+            if (currentEvent != null) {
+                fPrio.add(reader, currentEvent.getTimestamp());
+            }
         }
         System.arraycopy(temp, 0, fEventCountPerTraceFile, 0, temp.length);
     }
@@ -281,37 +371,24 @@ public class CTFTraceReader implements AutoCloseable {
     }
 
     /**
-     * Initializes the priority queue used to choose the trace file with the
+     * Initializes the tournament tree used to choose the trace file with the
      * lower next event timestamp.
      *
      * @throws CTFException
      *             if an error occurs
      */
     private void populateStreamInputReaderHeap() throws CTFException {
-        if (fStreamInputReaders.isEmpty()) {
-            fPrio = new PriorityQueue<>(MIN_PRIO_SIZE,
-                    new StreamInputReaderTimestampComparator());
-            return;
-        }
-
-        /*
-         * Create the priority queue with a size twice as bigger as the number
-         * of reader in order to avoid constant resizing.
-         */
-        fPrio = new PriorityQueue<>(
-                Math.max(fStreamInputReaders.size() * 2, MIN_PRIO_SIZE),
-                new StreamInputReaderTimestampComparator());
-
         int pos = 0;
 
         for (CTFStreamInputReader reader : fStreamInputReaders) {
             /*
-             * Add each trace file reader in the priority queue, if we are able
-             * to read an event from it.
+             * Add each trace file reader in the tournament tree, if we are
+             * able to read an event from it.
              */
             CTFResponse readNextEvent = reader.readNextEvent();
-            if (readNextEvent == CTFResponse.OK || readNextEvent == CTFResponse.WAIT) {
-                fPrio.add(reader);
+            IEventDefinition currentEvent = reader.getCurrentEvent();
+            if ((readNextEvent == CTFResponse.OK || readNextEvent == CTFResponse.WAIT) && currentEvent != null) {
+                fPrio.add(reader, currentEvent.getTimestamp());
 
                 fEventCountPerTraceFile[pos] = 0;
                 reader.setName(pos);
@@ -343,12 +420,12 @@ public class CTFTraceReader implements AutoCloseable {
      */
     public boolean advance() throws CTFException {
         /*
-         * Remove the reader from the top of the priority queue.
+         * Get the reader at the top of the tournament tree.
          */
-        CTFStreamInputReader top = fPrio.poll();
+        CTFStreamInputReader top = fPrio.peek();
 
         /*
-         * If the queue was empty.
+         * If the tree was empty.
          */
         if (top == null) {
             return false;
@@ -358,15 +435,15 @@ public class CTFTraceReader implements AutoCloseable {
          */
         switch (top.readNextEvent()) {
         case OK: {
-            /*
-             * Add it back in the queue.
-             */
-            fPrio.add(top);
             /*
              * We're in OK, there's a guaranteed top#getCurrentEvent() unless another
              * thread does something bad.
              */
             IEventDefinition currentEvent = checkNotNull(top.getCurrentEvent());
+            /*
+             * Replay its matches with the timestamp of its new event.
+             */
+            fPrio.updateTop(currentEvent.getTimestamp());
             final long topEnd = fTrace.timestampCyclesToNanos(currentEvent.getTimestamp());
             setEndTime(Math.max(topEnd, getEndTime()));
             fEventCountPerTraceFile[top.getName()]++;
@@ -374,17 +451,21 @@ public class CTFTraceReader implements AutoCloseable {
             break;
         }
         case WAIT: {
-            fPrio.add(top);
+            /*
+             * The reader keeps its current event, its place is unchanged.
+             */
             break;
         }
         case FINISH:
+            fPrio.removeTop();
             break;
         case ERROR:
         default:
             // something bad happend
+            fPrio.removeTop();
         }
         /*
-         * If there is no reader in the queue, it means the trace reader reached
+         * If there is no reader in the tree, it means the trace reader reached
          * the end of the trace.
          */
         return hasMoreEvents();
@@ -419,7 +500,7 @@ public class CTFTraceReader implements AutoCloseable {
      */
     public boolean seek(long timestamp) throws CTFException {
         /*
-         * Remove all the trace readers from the priority queue
+         * Remove all the trace readers from the tournament tree
          */
         fPrio.clear();
         for (CTFStreamInputReader streamInputReader : fStreamInputReaders) {
@@ -429,10 +510,11 @@ public class CTFTraceReader implements AutoCloseable {
             streamInputReader.seek(timestamp);
 
             /*
-             * Add it to the priority queue if there is a current event.
+             * Add it to the tournament tree if there is a current event.
              */
-            if (streamInputReader.getCurrentEvent() != null) {
-                fPrio.add(streamInputReader);
+            IEventDefinition currentEvent = streamInputReader.getCurrentEvent();
+            if (currentEvent != null) {
+                fPrio.add(streamInputReader, currentEvent.getTimestamp());
             }
         }
         return hasMoreEvents();
@@ -518,7 +600,7 @@ public class CTFTraceReader implements AutoCloseable {
      *            whether the trace is live
      */
     public void setLive(boolean live) {
-        for (CTFStreamInputReader s : fPrio) {
+        for (CTFStreamInputReader s : fPrio.getItems()) {
             s.setLive(live);
         }
     }
@@ -532,6 +614,111 @@ public class CTFTraceReader implements AutoCloseable {
         return getTopStream().isLive();
     }
 
+    /**
+     * Set the payload fields that need to be decoded, per event name. The
+     * fixed-size fields of an event that are not in its set are skipped and
+     * have no definition. The payload of the events that have no required
+     * field, including the events whose name is not in the map, is stepped
+     * over as a whole, but these events are still read: this is not a filter,
+     * see {@link #setEventFilter(Set)}. This applies to the events read after
+     * the current one.
+     *
+     * @param requiredFields
+     *            the names of the required fields per event name, or null to
+     *            decode all the fields of every event
+     * @since 2.1
+     */
+    public void setRequiredFields(@Nullable Map<String, Set<String>> requiredFields) {
+        fRequiredFields = requiredFields;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setRequiredFields(requiredFields);
+            }
+        }
+    }
+
+    /**
+     * Set the event types to read. The events of the other types are dropped
+     * by the stream readers before they are created: only their header and
+     * contexts are read, and their payload is stepped over. Lost events are
+     * always read. This applies to the events read after the current one.
+     *
+     * @param eventNames
+     *            the names of the events to read, or null to read all of them
+     * @since 2.1
+     */
+    public void setEventFilter(@Nullable Set<String> eventNames) {
+        fEventFilter = eventNames;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setEventFilter(eventNames);
+            }
+        }
+    }
+
+    /**
+     * Get the event types to read
+     *
+     * @return the names of the events to read, or null if all of them are
+     *         read
+     * @since 2.1
+     */
+    public @Nullable Set<String> getEventFilter() {
+        return fEventFilter;
+    }
+
+    /**
+     * Set whether the events of each stream are decoded ahead by worker
+     * threads. The threads are shared by all the readers, at most one per
+     * processor. The events are buffered per stream
+     * and merged in the same order as when they are decoded on the reading
+     * thread. Events are not read ahead of a live trace.
+     *
+     * @param readAhead
+     *            true to decode the events ahead
+     * @throws CTFException
+     *             if a stream could not go back to its current event after
+     *             stopping the read-ahead
+     * @since 2.1
+     */
+    public void setReadAhead(boolean readAhead) throws CTFException {
+        if (readAhead == fReadAhead) {
+            return;
+        }
+        fReadAhead = readAhead;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                reader.setReadAhead(getReadAheadExecutor());
+            }
+        }
+    }
+
+    private @Nullable ExecutorService getReadAheadExecutor() {
+        return fReadAhead ? ReadAheadExecutor.INSTANCE : null;
+    }
+
+    /**
+     * Get whether the events of each stream are decoded ahead by worker
+     * threads
+     *
+     * @return true if the events are decoded ahead
+     * @since 2.1
+     */
+    public boolean isReadAhead() {
+        return fReadAhead;
+    }
+
+    /**
+     * Get the payload fields that need to be decoded, per event name
+     *
+     * @return the names of the required fields per event name, or null if
+     *         all the fields of every event are decoded
+     * @since 2.1
+     */
+    public @Nullable Map<String, Set<String>> getRequiredFields() {
+        return fRequiredFields;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -593,7 +780,7 @@ public class CTFTraceReader implements AutoCloseable {
      * @since 1.0
      */
     public void populateIndex() throws CTFException {
-        for (CTFStreamInputReader sir : fPrio) {
+        for (CTFStreamInputReader sir : fPrio.getItems()) {
             sir.goToLastEvent();
         }
         seek(0);
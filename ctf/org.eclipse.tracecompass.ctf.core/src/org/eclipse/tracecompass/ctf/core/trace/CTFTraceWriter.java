@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,11 +16,20 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataTreeCache;
 
 /**
  * A CTF trace reader. Reads the events of a trace.
@@ -75,6 +84,33 @@ public class CTFTraceWriter {
      *            If a reading or writing error occurs
      */
     public void copyPackets(long startTime, long endTime, String newTracePath) throws CTFException {
+        copyPackets(startTime, endTime, newTracePath, null);
+    }
+
+    /**
+     * Copies packets from the relevant input to the output trace based on a
+     * given time range, like {@link #copyPackets(long, long, String)}. The
+     * stream files are copied in parallel, by at most one thread per
+     * processor.
+     * <p>
+     * If a cache directory is given, the packet indexes of the output stream
+     * files and the parsed metadata are saved in it, so that the new trace
+     * opens as fast as the original one when it is given the same directory.
+     *
+     * @param startTime
+     *            start time of packets to be included in output trace
+     * @param endTime
+     *            end time of packets to be included in the output trace
+     * @param newTracePath
+     *            the path of the new trace to be written
+     * @param cacheDirectory
+     *            the cache directory of the new trace, or null to not cache
+     *            anything
+     * @throws CTFException
+     *             If a reading or writing error occurs
+     * @since 2.1
+     */
+    public void copyPackets(long startTime, long endTime, String newTracePath, @Nullable File cacheDirectory) throws CTFException {
         CTFTrace trace = fInTrace;
         if (trace != null) {
             long adjustedStart = startTime - trace.getClock().getClockOffset();
@@ -97,15 +133,75 @@ public class CTFTraceWriter {
             } catch (IOException e) {
                 throw new CTFIOException("Error copying metadata: " + e.toString(), e); //$NON-NLS-1$
             }
+            if (cacheDirectory != null) {
+                copyMetadataCache(trace, cacheDirectory);
+            }
 
             // Copy packets
+            List<CTFStreamInput> streamInputs = new ArrayList<>();
             for (ICTFStream stream : trace.getStreams()) {
                 Set<CTFStreamInput> inputs = stream.getStreamInputs();
-                for (CTFStreamInput s : inputs) {
-                    CTFStreamOutputWriter streamOutputwriter = new CTFStreamOutputWriter(checkNotNull(s), out);
-                    streamOutputwriter.copyPackets(adjustedStart, adjustedEnd);
-                }
+                streamInputs.addAll(inputs);
+            }
+            copyStreamInputs(streamInputs, out, adjustedStart, adjustedEnd, cacheDirectory);
+        }
+    }
+
+    /**
+     * The metadata is copied as is, so its parsed tree can be reused by the
+     * new trace
+     */
+    private static void copyMetadataCache(CTFTrace trace, File cacheDirectory) {
+        File inCacheDirectory = trace.getPacketIndexCacheDirectory();
+        if (inCacheDirectory == null) {
+            return;
+        }
+        File source = new File(inCacheDirectory, MetadataTreeCache.FILE_NAME);
+        if (source.isFile() && (cacheDirectory.isDirectory() || cacheDirectory.mkdirs())) {
+            try {
+                Files.copy(source.toPath(), new File(cacheDirectory, MetadataTreeCache.FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                /* The new trace will parse its metadata */
+            }
+        }
+    }
+
+    private static void copyStreamInputs(List<CTFStreamInput> streamInputs, File out, long startTime, long endTime, @Nullable File cacheDirectory) throws CTFException {
+        int nbThreads = Math.min(streamInputs.size(), Runtime.getRuntime().availableProcessors());
+        if (nbThreads <= 1) {
+            for (CTFStreamInput streamInput : streamInputs) {
+                copyStreamInput(checkNotNull(streamInput), out, startTime, endTime, cacheDirectory);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CTFStreamInput streamInput : streamInputs) {
+                futures.add(executor.submit(() -> {
+                    copyStreamInput(checkNotNull(streamInput), out, startTime, endTime, cacheDirectory);
+                    return null;
+                }));
             }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTFException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CTFException) {
+                throw (CTFException) cause;
+            }
+            throw new CTFException("Error copying packets", cause); //$NON-NLS-1$
+        } finally {
+            executor.shutdownNow();
         }
     }
+
+    private static void copyStreamInput(@NonNull CTFStreamInput streamInput, File out, long startTime, long endTime, @Nullable File cacheDirectory) throws CTFException {
+        CTFStreamOutputWriter streamOutputwriter = new CTFStreamOutputWriter(streamInput, checkNotNull(out));
+        streamOutputwriter.copyPackets(startTime, endTime, cacheDirectory);
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -44,6 +44,7 @@ import org.eclipse.tracecompass.ctf.parser.CTFParser;
 import org.eclipse.tracecompass.ctf.parser.CTFParser.parse_return;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.CtfAntlrException;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.IOStructGen;
+import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataTreeCache;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
@@ -68,6 +69,8 @@ public class Metadata {
 
     private static final int BITS_PER_BYTE = Byte.SIZE;
 
+    private static final int TEXT_BUFFER_SIZE = 8192;
+
     /**
      * Name of the metadata file in the trace directory
      */
@@ -142,25 +145,21 @@ public class Metadata {
     // ------------------------------------------------------------------------
 
     /**
-     * Parse the metadata file.
+     * Parse the metadata file. If the trace has a cache directory, the parsed
+     * metadata is cached there and reused as long as the metadata does not
+     * change.
      *
      * @throws CTFException
      *             If there was a problem parsing the metadata
      */
     public void parseFile() throws CTFException {
 
-        /*
-         * Reader. It will contain a StringReader if we are using packet-based
-         * metadata and it will contain a FileReader if we have text-based
-         * metadata.
-         */
-
         try (FileInputStream fis = new FileInputStream(getMetadataPath());
-                FileChannel metadataFileChannel = fis.getChannel();
-                /* Check if metadata is packet-based, if not it is text based */
-                Reader metadataTextInput = (isPacketBased(metadataFileChannel) ? readBinaryMetaData(metadataFileChannel) : new FileReader(fis.getFD()));) {
+                FileChannel metadataFileChannel = fis.getChannel();) {
 
-            readMetaDataText(metadataTextInput);
+            /* Check if metadata is packet-based, if not it is text based */
+            String metadataText = isPacketBased(metadataFileChannel) ? readBinaryMetaData(metadataFileChannel) : readTextMetaData(fis);
+            generate(getTree(metadataText));
 
         } catch (FileNotFoundException e) {
             throw new CTFException("Cannot find metadata file!", e); //$NON-NLS-1$
@@ -171,7 +170,7 @@ public class Metadata {
         }
     }
 
-    private Reader readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
+    private String readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
         /* Create StringBuffer to receive metadata text */
         StringBuffer metadataText = new StringBuffer();
 
@@ -186,8 +185,19 @@ public class Metadata {
                     metadataText);
         }
 
-        /* Wrap the metadata string with a StringReader */
-        return new StringReader(metadataText.toString());
+        return metadataText.toString();
+    }
+
+    private static String readTextMetaData(FileInputStream fis) throws IOException {
+        try (Reader metadataTextInput = new FileReader(fis.getFD())) {
+            StringBuilder metadataText = new StringBuilder();
+            char[] buffer = new char[TEXT_BUFFER_SIZE];
+            int nbRead;
+            while ((nbRead = metadataTextInput.read(buffer)) >= 0) {
+                metadataText.append(buffer, 0, nbRead);
+            }
+            return metadataText.toString();
+        }
     }
 
     /**
@@ -258,8 +268,29 @@ public class Metadata {
     }
 
     private void readMetaDataText(Reader metadataTextInput) throws IOException, RecognitionException, ParseException {
-        CommonTree tree = createAST(metadataTextInput);
+        generate(createAST(metadataTextInput));
+    }
+
+    /**
+     * Get the parsed tree of the metadata text, from the cache of the trace if
+     * the same text was parsed before
+     */
+    private CommonTree getTree(String metadataText) throws IOException, RecognitionException {
+        File cacheDirectory = fTrace.getPacketIndexCacheDirectory();
+        byte[] digest = (cacheDirectory == null) ? null : MetadataTreeCache.digest(metadataText);
+        if (cacheDirectory == null || digest == null) {
+            return createAST(new StringReader(metadataText));
+        }
+        File cacheFile = new File(cacheDirectory, MetadataTreeCache.FILE_NAME);
+        CommonTree tree = MetadataTreeCache.read(cacheFile, digest);
+        if (tree == null) {
+            tree = createAST(new StringReader(metadataText));
+            MetadataTreeCache.write(cacheFile, digest, tree);
+        }
+        return tree;
+    }
 
+    private void generate(CommonTree tree) throws ParseException {
         /* Generate IO structures (declarations) */
         fTreeParser = new IOStructGen(tree, NonNullUtils.checkNotNull(fTrace));
         fTreeParser.generate();
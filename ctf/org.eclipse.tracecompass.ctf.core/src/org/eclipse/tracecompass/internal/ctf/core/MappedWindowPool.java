@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A pool of large read-only mappings of a file, from which the smaller
+ * regions that are read, like the packets of a CTF stream, are sliced. Mapping
+ * every packet separately costs a system call per packet and leaves many small
+ * mappings for the garbage collector to unmap, which dominates the read time
+ * of traces with small packets.
+ * <p>
+ * The windows are aligned on their size. The regions that are read for a
+ * while, like the current packet of a reader, are taken with
+ * {@link #acquire(long, long)} and given back with {@link #release(long, long)}:
+ * a window is only evicted when no region acquired from it is still in use, so
+ * that it is not mapped again while it is being read. When there are too many
+ * windows, the least recently used of the windows that are not in use are
+ * evicted, and the pool can grow over its maximum until regions are released.
+ * <p>
+ * An evicted window stays mapped as long as slices of it are still
+ * referenced, since a slice references the mapping it was taken from; it is
+ * unmapped by the garbage collector afterwards. Regions that span two windows,
+ * and all regions on platforms where files are not mapped, are mapped
+ * individually with {@link SafeMappedByteBuffer}.
+ */
+public final class MappedWindowPool {
+
+    /** Default size of the windows, 64 MiB */
+    public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /** Default maximum number of windows kept in the pool */
+    public static final int DEFAULT_MAX_WINDOWS = 4;
+
+    private final FileChannel fFileChannel;
+    private final long fWindowSize;
+    private final int fMaxWindows;
+    /**
+     * The windows by start position, from the least recently used. They are
+     * moved to the end when they are mapped, but not when they are released.
+     */
+    private final Map<Long, Window> fWindows;
+
+    /** A mapped window and the number of regions acquired from it */
+    private static final class Window {
+        private final ByteBuffer fBuffer;
+        private int fRefCount;
+
+        public Window(ByteBuffer buffer, int refCount) {
+            fBuffer = buffer;
+            fRefCount = refCount;
+        }
+    }
+
+    /**
+     * Constructor with the default window size and count
+     *
+     * @param fileChannel
+     *            the file channel to map, it must stay open while the pool is
+     *            used
+     */
+    public MappedWindowPool(FileChannel fileChannel) {
+        this(fileChannel, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_WINDOWS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fileChannel
+     *            the file channel to map, it must stay open while the pool is
+     *            used
+     * @param windowSize
+     *            the size of the windows in bytes, at most
+     *            {@link Integer#MAX_VALUE}
+     * @param maxWindows
+     *            the maximum number of windows kept in the pool
+     */
+    public MappedWindowPool(FileChannel fileChannel, long windowSize, int maxWindows) {
+        if (windowSize <= 0 || windowSize > Integer.MAX_VALUE || maxWindows <= 0) {
+            throw new IllegalArgumentException("Invalid window pool: " + maxWindows + " windows of " + windowSize + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        fFileChannel = fileChannel;
+        fWindowSize = windowSize;
+        fMaxWindows = maxWindows;
+        fWindows = new LinkedHashMap<>();
+    }
+
+    /**
+     * Get a read-only buffer of a region of the file. The position of the
+     * buffer is 0 and its capacity is the size of the region. The window of
+     * the region is not held, see {@link #acquire(long, long)}.
+     *
+     * @param position
+     *            the position of the region in the file, in bytes
+     * @param size
+     *            the size of the region, in bytes
+     * @return the buffer of the region
+     * @throws IOException
+     *             if the region could not be mapped
+     */
+    public synchronized ByteBuffer map(long position, long size) throws IOException {
+        return map(position, size, false);
+    }
+
+    /**
+     * Get a read-only buffer of a region of the file, and hold its window in
+     * the pool until the region is released. Every call must be matched by a
+     * call to {@link #release(long, long)} with the same region.
+     *
+     * @param position
+     *            the position of the region in the file, in bytes
+     * @param size
+     *            the size of the region, in bytes
+     * @return the buffer of the region, as returned by
+     *         {@link #map(long, long)}
+     * @throws IOException
+     *             if the region could not be mapped
+     */
+    public synchronized ByteBuffer acquire(long position, long size) throws IOException {
+        return map(position, size, true);
+    }
+
+    /**
+     * Release a region acquired with {@link #acquire(long, long)}. Its window
+     * can be evicted once no other region of it is in use.
+     *
+     * @param position
+     *            the position of the region in the file, in bytes
+     * @param size
+     *            the size of the region, in bytes
+     */
+    public synchronized void release(long position, long size) {
+        long windowStart = getWindowStart(position);
+        if (isMappedIndividually(windowStart, position + size)) {
+            return;
+        }
+        Window window = fWindows.get(windowStart);
+        /* The window may have been cleared since the region was acquired */
+        if (window != null && window.fRefCount > 0) {
+            window.fRefCount--;
+            if (window.fRefCount == 0) {
+                evict();
+            }
+        }
+    }
+
+    private ByteBuffer map(long position, long size, boolean acquire) throws IOException {
+        long windowStart = getWindowStart(position);
+        long end = position + size;
+        if (isMappedIndividually(windowStart, end)) {
+            return SafeMappedByteBuffer.map(fFileChannel, MapMode.READ_ONLY, position, size);
+        }
+        Window window = fWindows.get(windowStart);
+        if (window == null || windowStart + window.fBuffer.capacity() < end) {
+            /*
+             * Map up to the end of the file, which may have grown since the
+             * window was mapped. The regions acquired from the previous
+             * mapping hold the new one.
+             */
+            long mapSize = Math.max(end, Math.min(windowStart + fWindowSize, fFileChannel.size())) - windowStart;
+            window = new Window(fFileChannel.map(MapMode.READ_ONLY, windowStart, mapSize), window == null ? 0 : window.fRefCount);
+        }
+        /* Move it to the end, as the most recently used */
+        fWindows.remove(windowStart);
+        fWindows.put(windowStart, window);
+        if (acquire) {
+            window.fRefCount++;
+        }
+        evict();
+        ByteBuffer slice = window.fBuffer.duplicate();
+        int offset = (int) (position - windowStart);
+        slice.position(offset);
+        slice.limit(offset + (int) size);
+        return slice.slice();
+    }
+
+    private long getWindowStart(long position) {
+        return position - (position % fWindowSize);
+    }
+
+    private boolean isMappedIndividually(long windowStart, long end) {
+        return SafeMappedByteBuffer.IS_WIN32 || end > windowStart + fWindowSize;
+    }
+
+    /**
+     * Evict the least recently used windows that are not in use, while there
+     * are too many windows. The most recently used window is kept.
+     */
+    private void evict() {
+        Iterator<Window> windows = fWindows.values().iterator();
+        int remaining = fWindows.size();
+        while (fWindows.size() > fMaxWindows && --remaining > 0) {
+            if (windows.next().fRefCount == 0) {
+                windows.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of windows in the pool
+     *
+     * @return the number of windows
+     */
+    public synchronized int getNbWindows() {
+        return fWindows.size();
+    }
+
+    /**
+     * Remove all the windows from the pool. They are unmapped once the slices
+     * taken from them are no longer used.
+     */
+    public synchronized void clear() {
+        fWindows.clear();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.internal.ctf.core.event;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -33,6 +34,7 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructSkipper;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
 
@@ -76,6 +78,10 @@ public class EventDeclaration implements IEventDeclaration {
 
     private int fId = (int) UNSET_EVENT_ID;
 
+    /** Skipper of the payload, for the events that are filtered out */
+    private @Nullable StructSkipper fPayloadSkipper = null;
+    private boolean fPayloadSkipperCompiled = false;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -109,11 +115,138 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public EventDefinition createDefinition(StructDeclaration streamEventContextDecl, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp)
             throws CTFException {
+        return createDefinition(streamEventContextDecl, packetDescriptor, packetContext, eventHeaderDef, input, prevTimestamp, null);
+    }
+
+    /**
+     * Creates an instance of EventDefinition corresponding to this
+     * declaration, only decoding the payload fields that are required.
+     *
+     * @param streamEventContextDecl
+     *            event context
+     * @param packetDescriptor
+     *            current packet
+     * @param packetContext
+     *            packet context
+     * @param eventHeaderDef
+     *            The event header definition
+     * @param input
+     *            the bitbuffer input source
+     * @param prevTimestamp
+     *            The timestamp when the event was taken
+     * @param requiredFields
+     *            the names of the payload fields to decode, or null to decode
+     *            all of them
+     * @return A new EventDefinition.
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public EventDefinition createDefinition(StructDeclaration streamEventContextDecl, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp,
+            @Nullable Set<String> requiredFields) throws CTFException {
         final CTFStream stream = fStream;
         final CTFTrace trace = stream == null ? null : stream.getTrace();
         StructDefinition streamEventContext = streamEventContextDecl != null ? streamEventContextDecl.createDefinition(trace, ILexicalScope.STREAM_EVENT_CONTEXT, input) : null;
         StructDefinition eventContext = fContext != null ? fContext.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.CONTEXT, input) : null;
-        StructDefinition eventPayload = fFields != null ? fFields.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.FIELDS, input) : null;
+        StructDefinition eventPayload = fFields != null ? fFields.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.FIELDS, input, requiredFields) : null;
+        return createEventDefinition(packetDescriptor, packetContext, eventHeaderDef, prevTimestamp, streamEventContext, eventContext, eventPayload);
+    }
+
+    /**
+     * Creates an instance of EventDefinition corresponding to this
+     * declaration, stepping over its payload without decoding it, for the
+     * events none of whose fields are required. The event definition has no
+     * payload fields, unless the layout of the payload requires it to be read.
+     *
+     * @param streamEventContextDecl
+     *            event context
+     * @param packetDescriptor
+     *            current packet
+     * @param packetContext
+     *            packet context
+     * @param eventHeaderDef
+     *            The event header definition
+     * @param input
+     *            the bitbuffer input source
+     * @param prevTimestamp
+     *            The timestamp when the event was taken
+     * @return A new EventDefinition.
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public EventDefinition createDefinitionWithoutPayload(StructDeclaration streamEventContextDecl, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp)
+            throws CTFException {
+        final CTFStream stream = fStream;
+        final CTFTrace trace = stream == null ? null : stream.getTrace();
+        StructDefinition streamEventContext = streamEventContextDecl != null ? streamEventContextDecl.createDefinition(trace, ILexicalScope.STREAM_EVENT_CONTEXT, input) : null;
+        StructDefinition eventContext = fContext != null ? fContext.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.CONTEXT, input) : null;
+        StructDefinition eventPayload = skipPayload(eventHeaderDef, trace, input);
+        return createEventDefinition(packetDescriptor, packetContext, eventHeaderDef, prevTimestamp, streamEventContext, eventContext, eventPayload);
+    }
+
+    /**
+     * Steps over an event of this declaration without creating its
+     * definition, for the events that are filtered out. The contexts are read,
+     * since they can hold the timestamp, and the payload is skipped without
+     * being decoded, unless its layout requires it to be read.
+     *
+     * @param streamEventContextDecl
+     *            event context
+     * @param eventHeaderDef
+     *            The event header definition
+     * @param input
+     *            the bitbuffer input source
+     * @param prevTimestamp
+     *            The timestamp of the previous event
+     * @return The timestamp of the event that was skipped
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public long skipDefinition(StructDeclaration streamEventContextDecl, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp) throws CTFException {
+        final CTFStream stream = fStream;
+        final CTFTrace trace = stream == null ? null : stream.getTrace();
+        if (streamEventContextDecl != null) {
+            streamEventContextDecl.createDefinition(trace, ILexicalScope.STREAM_EVENT_CONTEXT, input);
+        }
+        StructDefinition eventContext = fContext != null ? fContext.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.CONTEXT, input) : null;
+        StructDefinition eventPayload = skipPayload(eventHeaderDef, trace, input);
+        return calculateTimestamp(eventHeaderDef, prevTimestamp, eventPayload, eventContext);
+    }
+
+    /**
+     * Step over the payload
+     *
+     * @return the fields that had to be decoded to step over the payload, or
+     *         null if it was skipped without decoding it
+     */
+    private @Nullable StructDefinition skipPayload(ICompositeDefinition eventHeaderDef, @Nullable CTFTrace trace, @NonNull BitBuffer input) throws CTFException {
+        StructDeclaration fields = fFields;
+        if (fields == null) {
+            return null;
+        }
+        StructSkipper skipper = getPayloadSkipper();
+        if (skipper != null) {
+            skipper.skip(input);
+            return null;
+        }
+        /* The layout must be walked, decode what cannot be skipped */
+        return fields.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.FIELDS, input, Collections.emptySet());
+    }
+
+    private @Nullable StructSkipper getPayloadSkipper() {
+        if (!fPayloadSkipperCompiled) {
+            StructDeclaration fields = fFields;
+            fPayloadSkipper = fields == null ? null : StructSkipper.compile(fields);
+            fPayloadSkipperCompiled = true;
+        }
+        return fPayloadSkipper;
+    }
+
+    private EventDefinition createEventDefinition(ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, long prevTimestamp, StructDefinition streamEventContext, StructDefinition eventContext,
+            StructDefinition eventPayload)
+            throws CTFIOException {
         long timestamp = calculateTimestamp(eventHeaderDef, prevTimestamp, eventPayload, eventContext);
 
         int cpu = (int) packetDescriptor.getTargetId();
@@ -217,6 +350,8 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setFields(StructDeclaration fields) {
         fFields = fields;
+        fPayloadSkipper = null;
+        fPayloadSkipperCompiled = false;
     }
 
     @Override
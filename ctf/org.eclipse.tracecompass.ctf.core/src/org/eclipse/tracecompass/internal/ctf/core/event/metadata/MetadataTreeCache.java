@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.CommonTree;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Persistent cache of the parsed metadata of a trace. The tree produced by the
+ * TSDL parser is written to a compact binary file, along with a digest of the
+ * metadata text it was parsed from, so that reopening a trace does not need to
+ * lex and parse its metadata again. The declarations are still generated from
+ * the tree, since they refer to the trace, its streams and its clocks.
+ * <p>
+ * The cache is only returned for the exact same metadata text. A trace whose
+ * metadata grew, like a live trace, is parsed again and its cache replaced.
+ */
+@NonNullByDefault
+public final class MetadataTreeCache {
+
+    /** Name of the cache file */
+    public static final String FILE_NAME = "metadata.tree"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0xC1FDA7A5;
+    private static final int VERSION = 1;
+
+    private static final String DIGEST_ALGORITHM = "SHA-1"; //$NON-NLS-1$
+
+    /** The smallest node: a boolean without token and a child count */
+    private static final int MIN_NODE_SIZE = 1 + Integer.BYTES;
+
+    private MetadataTreeCache() {
+        // Do nothing
+    }
+
+    /**
+     * Compute the key of a metadata text in the cache
+     *
+     * @param metadataText
+     *            the metadata text
+     * @return the digest of the text, or null if it cannot be computed
+     */
+    public static byte @Nullable [] digest(String metadataText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            return digest.digest(metadataText.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the cached tree of a metadata text
+     *
+     * @param cacheFile
+     *            the cache file
+     * @param digest
+     *            the digest of the metadata text, from {@link #digest}
+     * @return the parsed tree, or null if there is no cache or if it was
+     *         written for another metadata text
+     */
+    public static @Nullable CommonTree read(File cacheFile, byte[] digest) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] cachedDigest = new byte[in.readUnsignedByte()];
+            in.readFully(cachedDigest);
+            if (!Arrays.equals(digest, cachedDigest)) {
+                return null;
+            }
+            return readNode(in, cacheFile.length());
+        } catch (IOException | RuntimeException e) {
+            /* A corrupted cache is simply ignored, the metadata will be parsed */
+            return null;
+        }
+    }
+
+    /**
+     * Write the parsed tree of a metadata text to the cache file. The cache is
+     * first written to a temporary file, so an interrupted write never leaves
+     * a partial cache behind.
+     *
+     * @param cacheFile
+     *            the cache file
+     * @param digest
+     *            the digest of the metadata text, from {@link #digest}
+     * @param tree
+     *            the tree parsed from the metadata text
+     * @return true if the cache was written
+     */
+    public static boolean write(File cacheFile, byte[] digest, CommonTree tree) {
+        File parent = cacheFile.getParentFile();
+        if (parent == null || !(parent.isDirectory() || parent.mkdirs())) {
+            return false;
+        }
+        File tempFile = new File(parent, cacheFile.getName() + ".tmp"); //$NON-NLS-1$
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeByte(digest.length);
+                out.write(digest);
+                writeNode(out, tree);
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, CommonTree node) throws IOException {
+        Token token = node.getToken();
+        out.writeBoolean(token != null);
+        if (token != null) {
+            out.writeInt(token.getType());
+            writeString(out, token.getText());
+            out.writeInt(token.getLine());
+            out.writeInt(token.getCharPositionInLine());
+        }
+        int count = node.getChildCount();
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            writeNode(out, (CommonTree) node.getChild(i));
+        }
+    }
+
+    /*
+     * The counts and lengths are checked against the size of the file before
+     * anything is allocated, so a corrupted cache cannot exhaust the memory.
+     */
+    private static CommonTree readNode(DataInputStream in, long fileSize) throws IOException {
+        CommonTree node;
+        if (in.readBoolean()) {
+            CommonToken token = new CommonToken(in.readInt(), readString(in, fileSize));
+            token.setLine(in.readInt());
+            token.setCharPositionInLine(in.readInt());
+            node = new CommonTree(token);
+        } else {
+            node = new CommonTree();
+        }
+        int count = in.readInt();
+        if (count < 0 || count > fileSize / MIN_NODE_SIZE) {
+            throw new IOException("Invalid child count " + count); //$NON-NLS-1$
+        }
+        for (int i = 0; i < count; i++) {
+            node.addChild(readNode(in, fileSize));
+        }
+        return node;
+    }
+
+    /* Strings of any length, unlike writeUTF */
+    private static void writeString(DataOutputStream out, @Nullable String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static @Nullable String readString(DataInputStream in, long fileSize) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > fileSize) {
+            throw new IOException("Invalid string length " + length); //$NON-NLS-1$
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
+import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.Definition;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An array or sequence of integers, decoded in bulk into an array of values.
+ * The definitions of the elements are only created if they are accessed.
+ */
+@NonNullByDefault
+public final class IntegerArrayDefinition extends AbstractArrayDefinition {
+
+    private static final int MAX_INTEGER_LENGTH = 64;
+
+    private final IntegerDeclaration fElemType;
+    private final long[] fValues;
+    private transient @Nullable List<Definition> fDefs;
+
+    /**
+     * Constructor
+     *
+     * @param declaration
+     *            the array or sequence declaration
+     * @param elemType
+     *            the declaration of the elements
+     * @param definitionScope
+     *            the definition scope
+     * @param fieldName
+     *            the field name
+     * @param values
+     *            the values of the elements
+     */
+    public IntegerArrayDefinition(CompoundDeclaration declaration,
+            IntegerDeclaration elemType,
+            @Nullable IDefinitionScope definitionScope,
+            String fieldName,
+            long[] values) {
+        super(declaration, definitionScope, fieldName);
+        fElemType = elemType;
+        fValues = values;
+    }
+
+    /**
+     * Decode the integers of an array or sequence in one call, if they are
+     * contiguous: their size must be a multiple of their alignment, so that
+     * only the first one needs to be aligned.
+     *
+     * @param declaration
+     *            the array or sequence declaration
+     * @param definitionScope
+     *            the definition scope
+     * @param fieldName
+     *            the field name
+     * @param input
+     *            the input buffer, positioned before the first element
+     * @param length
+     *            the number of elements
+     * @return the definition, or null if the elements are not contiguous
+     *         integers, in which case nothing was read
+     * @throws CTFException
+     *             if the elements could not be read
+     */
+    public static @Nullable IntegerArrayDefinition read(CompoundDeclaration declaration,
+            @Nullable IDefinitionScope definitionScope,
+            String fieldName,
+            BitBuffer input,
+            int length) throws CTFException {
+        if (!(declaration.getElementType() instanceof IntegerDeclaration)) {
+            return null;
+        }
+        IntegerDeclaration elemType = (IntegerDeclaration) declaration.getElementType();
+        int elemLength = elemType.getLength();
+        long alignment = elemType.getAlignment();
+        if (elemLength > MAX_INTEGER_LENGTH || (elemLength % alignment) != 0) {
+            return null;
+        }
+        long mask = alignment - 1;
+        long pos = input.position();
+        if ((pos & mask) != 0) {
+            input.position((pos + mask) & ~mask);
+        }
+        long[] values = new long[length];
+        ByteOrder previousByteOrder = input.getByteOrder();
+        input.setByteOrder(elemType.getByteOrder());
+        input.get(values, elemLength, elemType.isSigned());
+        input.setByteOrder(previousByteOrder);
+        return new IntegerArrayDefinition(declaration, elemType, definitionScope, fieldName, values);
+    }
+
+    @Override
+    public int getLength() {
+        return fValues.length;
+    }
+
+    @Override
+    public synchronized List<Definition> getDefinitions() {
+        List<Definition> defs = fDefs;
+        if (defs == null) {
+            ImmutableList.Builder<Definition> builder = new ImmutableList.Builder<>();
+            for (int i = 0; i < fValues.length; i++) {
+                String fieldName = getFieldName() + '[' + i + ']';
+                builder.add(new IntegerDefinition(fElemType, getDefinitionScope(), fieldName, fValues[i]));
+            }
+            defs = builder.build();
+            fDefs = defs;
+        }
+        return defs;
+    }
+
+    /**
+     * Get the value of an element
+     *
+     * @param index
+     *            the index of the element
+     * @return the value of the element
+     */
+    public long getValue(int index) {
+        return fValues[index];
+    }
+
+    @Override
+    public String toString() {
+        if (((CompoundDeclaration) getDeclaration()).isString()) {
+            return decodeString();
+        }
+        StringBuilder b = new StringBuilder();
+        b.append('[');
+        Joiner joiner = Joiner.on(", ").skipNulls(); //$NON-NLS-1$
+        b.append(joiner.join(getDefinitions()));
+        b.append(']');
+        return b.toString();
+    }
+
+    /**
+     * Decode the characters of an encoded array, up to the first null
+     * character, like a byte array
+     */
+    private String decodeString() {
+        int length = 0;
+        while (length < fValues.length && fValues[length] != 0) {
+            length++;
+        }
+        if (fElemType.getLength() == Byte.SIZE) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) fValues[i];
+            }
+            Charset charset = (fElemType.getEncoding() == Encoding.ASCII ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+            return new String(bytes, charset);
+        }
+        StringBuilder b = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            b.append((char) fValues[i]);
+        }
+        return b.toString();
+    }
+}
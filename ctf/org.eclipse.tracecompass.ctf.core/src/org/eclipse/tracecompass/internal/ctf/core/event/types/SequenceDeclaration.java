@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2014, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -124,6 +124,10 @@ public class SequenceDeclaration extends CompoundDeclaration {
             input.get(data);
             return new ByteArrayDefinition(this, definitionScope, fieldName, data);
         }
+        AbstractArrayDefinition integers = IntegerArrayDefinition.read(this, definitionScope, fieldName, input, (int) length);
+        if (integers != null) {
+            return integers;
+        }
         Collection<String> collection = fPaths.get(fieldName);
         while (collection.size() < length) {
             fPaths.put(fieldName, fieldName + '[' + collection.size() + ']');
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteOrder;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+
+/**
+ * A decoder specialized for the layout of a struct whose fields are all
+ * integers or enums, which is the case of most event payloads and contexts
+ * once they are flattened by the {@link StructDeclarationFlattener}.
+ * <p>
+ * The length, signedness, byte order and alignment of every field are
+ * resolved once, when the decoder is compiled. Decoding then reads the fields
+ * straight from the {@link BitBuffer} into an array of values, without
+ * walking the declarations or creating a definition per field. The
+ * definitions are only created if the fields are accessed.
+ * <p>
+ * Only integers of at most 64 bits and enums are supported. A struct with any
+ * other field, such as a string, an array, a sequence, a variant, a float or a
+ * nested struct, gets no decoder and is read by the generic path of
+ * {@link StructDeclaration}. The gain is in reading the events, most of whose
+ * fields are never accessed: reading every field of an event creates the same
+ * definitions as the generic path.
+ */
+public final class StructDecoder {
+
+    private static final int MAX_INTEGER_LENGTH = 64;
+
+    private final int[] fLengths;
+    private final boolean[] fSigned;
+    private final ByteOrder[] fByteOrders;
+    private final long[] fAlignMasks;
+
+    private StructDecoder(int[] lengths, boolean[] signed, ByteOrder[] byteOrders, long[] alignMasks) {
+        fLengths = lengths;
+        fSigned = signed;
+        fByteOrders = byteOrders;
+        fAlignMasks = alignMasks;
+    }
+
+    /**
+     * Compile the decoder of a struct
+     *
+     * @param declaration
+     *            the struct declaration
+     * @return the decoder, or null if the struct has fields that are not
+     *         integers or enums
+     */
+    public static @Nullable StructDecoder compile(@NonNull StructDeclaration declaration) {
+        int nbFields = 0;
+        for (String name : declaration.getFieldsList()) {
+            if (getInteger(declaration.getField(name)) == null) {
+                return null;
+            }
+            nbFields++;
+        }
+        int[] lengths = new int[nbFields];
+        boolean[] signed = new boolean[nbFields];
+        ByteOrder[] byteOrders = new ByteOrder[nbFields];
+        long[] alignMasks = new long[nbFields];
+        int i = 0;
+        for (String name : declaration.getFieldsList()) {
+            IDeclaration field = declaration.getField(name);
+            IntegerDeclaration integer = getInteger(field);
+            if (field == null || integer == null) {
+                return null;
+            }
+            lengths[i] = integer.getLength();
+            signed[i] = integer.isSigned();
+            byteOrders[i] = integer.getByteOrder();
+            alignMasks[i] = Math.max(field.getAlignment(), integer.getAlignment()) - 1;
+            i++;
+        }
+        return new StructDecoder(lengths, signed, byteOrders, alignMasks);
+    }
+
+    private static @Nullable IntegerDeclaration getInteger(@Nullable IDeclaration field) {
+        IntegerDeclaration integer = null;
+        if (field instanceof IntegerDeclaration) {
+            integer = (IntegerDeclaration) field;
+        } else if (field instanceof EnumDeclaration) {
+            integer = ((EnumDeclaration) field).getContainerType();
+        }
+        if (integer == null || integer.getLength() > MAX_INTEGER_LENGTH) {
+            return null;
+        }
+        return integer;
+    }
+
+    /**
+     * Decode the fields of the struct. The input must already be aligned on
+     * the struct.
+     *
+     * @param input
+     *            the input buffer
+     * @return the values of the fields, in declaration order. The values of
+     *         enums are the values of their container integer.
+     * @throws CTFException
+     *             if the buffer could not be read
+     */
+    public long[] decode(@NonNull BitBuffer input) throws CTFException {
+        final int[] lengths = fLengths;
+        final long[] values = new long[lengths.length];
+        ByteOrder previousByteOrder = input.getByteOrder();
+        ByteOrder byteOrder = previousByteOrder;
+        for (int i = 0; i < lengths.length; i++) {
+            long mask = fAlignMasks[i];
+            long pos = input.position();
+            if ((pos & mask) != 0) {
+                input.position((pos + mask) & ~mask);
+            }
+            if (fByteOrders[i] != byteOrder) {
+                byteOrder = fByteOrders[i];
+                input.setByteOrder(byteOrder);
+            }
+            values[i] = input.get(lengths[i], fSigned[i]);
+        }
+        if (byteOrder != previousByteOrder) {
+            input.setByteOrder(previousByteOrder);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * The fields of a struct that can be skipped when only some of its fields are
+ * needed. A field is skipped if it was not requested (with or without its
+ * leading underscore), if its size is known from its declaration (integers,
+ * enums and arrays of integers) and if no sequence or variant of the struct
+ * refers to it.
+ * <p>
+ * Skipped fields are stepped over by moving the position of the input, no
+ * definition is created for them.
+ */
+public final class StructProjection {
+
+    private final Set<String> fRequiredFields;
+    private final boolean[] fSkipped;
+    private final long[] fSizes;
+    private final long[] fAlignMasks;
+    private final boolean fHasSkippedFields;
+
+    private StructProjection(Set<String> requiredFields, boolean[] skipped, long[] sizes, long[] alignMasks, boolean hasSkippedFields) {
+        fRequiredFields = requiredFields;
+        fSkipped = skipped;
+        fSizes = sizes;
+        fAlignMasks = alignMasks;
+        fHasSkippedFields = hasSkippedFields;
+    }
+
+    /**
+     * Compile the projection of a struct
+     *
+     * @param declaration
+     *            the struct declaration
+     * @param requiredFields
+     *            the names of the fields that must be decoded
+     * @return the projection
+     */
+    public static @NonNull StructProjection compile(@NonNull StructDeclaration declaration, @NonNull Set<String> requiredFields) {
+        Set<String> referencedFields = new HashSet<>();
+        /* The timestamp can be looked up in the payload */
+        addReference(CTFStrings.TIMESTAMP, referencedFields);
+        collectReferences(declaration, referencedFields);
+
+        int nbFields = Iterables.size(declaration.getFieldsList());
+        boolean[] skipped = new boolean[nbFields];
+        long[] sizes = new long[nbFields];
+        long[] alignMasks = new long[nbFields];
+        boolean hasSkippedFields = false;
+        int i = 0;
+        for (String name : declaration.getFieldsList()) {
+            IDeclaration field = declaration.getField(name);
+            long size = getFixedSize(field);
+            if (field != null && size >= 0 && !isRequired(name, requiredFields) && !referencedFields.contains(name)) {
+                skipped[i] = true;
+                sizes[i] = size;
+                alignMasks[i] = field.getAlignment() - 1;
+                hasSkippedFields = true;
+            }
+            i++;
+        }
+        return new StructProjection(requiredFields, skipped, sizes, alignMasks, hasSkippedFields);
+    }
+
+    private static boolean isRequired(String name, Set<String> requiredFields) {
+        /* Fields can be declared with a leading underscore, like in lookups */
+        return requiredFields.contains(name) || (name.startsWith("_") && requiredFields.contains(name.substring(1))); //$NON-NLS-1$
+    }
+
+    private static void collectReferences(@Nullable IDeclaration declaration, Set<String> referencedFields) {
+        if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String name : struct.getFieldsList()) {
+                collectReferences(struct.getField(name), referencedFields);
+            }
+        } else if (declaration instanceof VariantDeclaration) {
+            VariantDeclaration variant = (VariantDeclaration) declaration;
+            addReference(variant.getTag(), referencedFields);
+            for (IDeclaration field : variant.getFields().values()) {
+                collectReferences(field, referencedFields);
+            }
+        } else if (declaration instanceof SequenceDeclaration) {
+            SequenceDeclaration sequence = (SequenceDeclaration) declaration;
+            addReference(sequence.getLengthName(), referencedFields);
+            collectReferences(sequence.getElementType(), referencedFields);
+        } else if (declaration instanceof ArrayDeclaration) {
+            collectReferences(((ArrayDeclaration) declaration).getElementType(), referencedFields);
+        }
+    }
+
+    private static void addReference(@Nullable String path, Set<String> referencedFields) {
+        if (path != null) {
+            /* Only the last element of a path can be a field of this struct */
+            String name = path.substring(path.lastIndexOf('.') + 1);
+            referencedFields.add(name);
+            referencedFields.add('_' + name);
+        }
+    }
+
+    private static long getFixedSize(@Nullable IDeclaration field) {
+        if (field instanceof IntegerDeclaration) {
+            return ((IntegerDeclaration) field).getLength();
+        } else if (field instanceof EnumDeclaration) {
+            return ((EnumDeclaration) field).getContainerType().getLength();
+        } else if (field instanceof ArrayDeclaration) {
+            ArrayDeclaration array = (ArrayDeclaration) field;
+            IDeclaration elemType = array.getElementType();
+            if (elemType instanceof IntegerDeclaration) {
+                IntegerDeclaration elem = (IntegerDeclaration) elemType;
+                /* The elements are contiguous if their size is aligned */
+                if (elem.getLength() % elem.getAlignment() == 0) {
+                    return (long) array.getLength() * elem.getLength();
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the required fields this projection was compiled for
+     *
+     * @return the names of the required fields
+     */
+    public Set<String> getRequiredFields() {
+        return fRequiredFields;
+    }
+
+    /**
+     * Whether any field is skipped by this projection
+     *
+     * @return true if at least one field is skipped
+     */
+    public boolean hasSkippedFields() {
+        return fHasSkippedFields;
+    }
+
+    /**
+     * Whether a field is skipped
+     *
+     * @param index
+     *            the index of the field, in declaration order
+     * @return true if the field is skipped
+     */
+    public boolean isSkipped(int index) {
+        return fSkipped[index];
+    }
+
+    /**
+     * Step over a skipped field
+     *
+     * @param index
+     *            the index of the field, in declaration order
+     * @param input
+     *            the input buffer
+     * @throws CTFException
+     *             if the field goes past the end of the buffer
+     */
+    public void skip(int index, @NonNull BitBuffer input) throws CTFException {
+        long mask = fAlignMasks[index];
+        long pos = (input.position() + mask) & ~mask;
+        input.position(pos + fSizes[index]);
+    }
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+
+/**
+ * Steps over a whole struct without decoding it, for the payloads of the
+ * events that are filtered out.
+ * <p>
+ * If all the fields of the struct have a fixed size, the size of the struct is
+ * computed once and skipping is a single move of the position. Otherwise, the
+ * fields are walked: strings are scanned up to their terminator and only the
+ * lengths of the sequences are read. Structs with other kinds of fields, or
+ * whose sequences have their length outside of the struct, cannot be skipped
+ * this way.
+ */
+public final class StructSkipper {
+
+    private static final int BITS_PER_BYTE = 8;
+
+    private static final int FIXED = 0;
+    private static final int LENGTH = 1;
+    private static final int STRING = 2;
+    private static final int SEQUENCE = 3;
+
+    private final long fStructAlignMask;
+    private final long fFixedSize;
+    private final int[] fKinds;
+    private final long[] fAlignMasks;
+    /* Size for the fixed fields, element size for the sequences */
+    private final long[] fSizes;
+    /* Integer length for the lengths, index of the length for the sequences */
+    private final int[] fArgs;
+    private final ByteOrder[] fByteOrders;
+
+    private StructSkipper(long structAlignMask, long fixedSize, int[] kinds, long[] alignMasks, long[] sizes, int[] args, ByteOrder[] byteOrders) {
+        fStructAlignMask = structAlignMask;
+        fFixedSize = fixedSize;
+        fKinds = kinds;
+        fAlignMasks = alignMasks;
+        fSizes = sizes;
+        fArgs = args;
+        fByteOrders = byteOrders;
+    }
+
+    /**
+     * Compile the skipper of a struct
+     *
+     * @param declaration
+     *            the struct declaration
+     * @return the skipper, or null if the struct cannot be skipped without
+     *         decoding it
+     */
+    public static @Nullable StructSkipper compile(@NonNull StructDeclaration declaration) {
+        List<String> names = new ArrayList<>();
+        List<IDeclaration> fields = new ArrayList<>();
+        for (String name : declaration.getFieldsList()) {
+            IDeclaration field = declaration.getField(name);
+            if (field == null || isTimestamp(name)) {
+                /* The timestamp of the event can be in the payload */
+                return null;
+            }
+            names.add(name);
+            fields.add(field);
+        }
+
+        int nbFields = fields.size();
+        int[] kinds = new int[nbFields];
+        long[] alignMasks = new long[nbFields];
+        long[] sizes = new long[nbFields];
+        int[] args = new int[nbFields];
+        ByteOrder[] byteOrders = new ByteOrder[nbFields];
+        boolean fixed = true;
+        for (int i = 0; i < nbFields; i++) {
+            IDeclaration field = fields.get(i);
+            alignMasks[i] = field.getAlignment() - 1;
+            if (field instanceof StringDeclaration) {
+                kinds[i] = STRING;
+                fixed = false;
+            } else if (field instanceof SequenceDeclaration) {
+                SequenceDeclaration sequence = (SequenceDeclaration) field;
+                long elemSize = getElementSize(sequence.getElementType());
+                int lengthIndex = indexOf(names, sequence.getLengthName(), i);
+                if (elemSize < 0 || lengthIndex < 0 || !(fields.get(lengthIndex) instanceof IntegerDeclaration)) {
+                    return null;
+                }
+                IntegerDeclaration length = (IntegerDeclaration) fields.get(lengthIndex);
+                if (length.isSigned() || length.getLength() >= Long.SIZE) {
+                    return null;
+                }
+                kinds[lengthIndex] = LENGTH;
+                args[lengthIndex] = length.getLength();
+                byteOrders[lengthIndex] = length.getByteOrder();
+                kinds[i] = SEQUENCE;
+                sizes[i] = elemSize;
+                args[i] = lengthIndex;
+                alignMasks[i] = Math.max(field.getAlignment(), sequence.getElementType().getAlignment()) - 1;
+                fixed = false;
+            } else {
+                long size = getFixedSize(field);
+                if (size < 0) {
+                    return null;
+                }
+                kinds[i] = FIXED;
+                sizes[i] = size;
+            }
+        }
+
+        long fixedSize = -1;
+        if (fixed) {
+            /* The struct is aligned on its largest field alignment */
+            long pos = 0;
+            for (int i = 0; i < nbFields; i++) {
+                pos = align(pos, alignMasks[i]) + sizes[i];
+            }
+            fixedSize = pos;
+        }
+        return new StructSkipper(declaration.getAlignment() - 1, fixedSize, kinds, alignMasks, sizes, args, byteOrders);
+    }
+
+    private static boolean isTimestamp(String name) {
+        return name.equals(CTFStrings.TIMESTAMP) || name.equals('_' + CTFStrings.TIMESTAMP);
+    }
+
+    private static int indexOf(List<String> names, String lengthName, int before) {
+        /* Only the last element of a path can be a field of this struct */
+        String name = lengthName.substring(lengthName.lastIndexOf('.') + 1);
+        for (int i = 0; i < before; i++) {
+            String fieldName = names.get(i);
+            if (fieldName.equals(name) || fieldName.equals('_' + name) || name.equals('_' + fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long getFixedSize(IDeclaration field) {
+        if (field instanceof IntegerDeclaration) {
+            return ((IntegerDeclaration) field).getLength();
+        } else if (field instanceof EnumDeclaration) {
+            return ((EnumDeclaration) field).getContainerType().getLength();
+        } else if (field instanceof FloatDeclaration) {
+            FloatDeclaration floatDeclaration = (FloatDeclaration) field;
+            return floatDeclaration.getExponent() + floatDeclaration.getMantissa();
+        } else if (field instanceof ArrayDeclaration) {
+            ArrayDeclaration array = (ArrayDeclaration) field;
+            long elemSize = getElementSize(array.getElementType());
+            if (elemSize >= 0) {
+                return array.getLength() * elemSize;
+            }
+        }
+        return -1;
+    }
+
+    private static long getElementSize(IDeclaration elemType) {
+        if (elemType instanceof IntegerDeclaration) {
+            IntegerDeclaration elem = (IntegerDeclaration) elemType;
+            /* The elements are contiguous if their size is aligned */
+            if (elem.getLength() % elem.getAlignment() == 0) {
+                return elem.getLength();
+            }
+        }
+        return -1;
+    }
+
+    private static long align(long pos, long mask) {
+        return (pos + mask) & ~mask;
+    }
+
+    /**
+     * Whether the struct has a fixed size
+     *
+     * @return true if the struct is skipped by its precomputed size
+     */
+    public boolean isFixedSize() {
+        return fFixedSize >= 0;
+    }
+
+    /**
+     * Step over the struct
+     *
+     * @param input
+     *            the input buffer
+     * @throws CTFException
+     *             if the struct goes past the end of the buffer
+     */
+    public void skip(@NonNull BitBuffer input) throws CTFException {
+        long pos = align(input.position(), fStructAlignMask);
+        if (fFixedSize >= 0) {
+            input.position(pos + fFixedSize);
+            return;
+        }
+        final int[] kinds = fKinds;
+        long[] lengths = null;
+        for (int i = 0; i < kinds.length; i++) {
+            pos = align(pos, fAlignMasks[i]);
+            switch (kinds[i]) {
+            case LENGTH:
+                input.position(pos);
+                if (lengths == null) {
+                    lengths = new long[kinds.length];
+                }
+                ByteOrder previousByteOrder = input.getByteOrder();
+                input.setByteOrder(fByteOrders[i]);
+                lengths[i] = input.get(fArgs[i], false);
+                input.setByteOrder(previousByteOrder);
+                pos = input.position();
+                break;
+            case STRING:
+                input.position(pos);
+                while (input.get(BITS_PER_BYTE, false) != 0) {
+                    /* Scan up to the terminator */
+                }
+                pos = input.position();
+                break;
+            case SEQUENCE:
+                if (lengths == null) {
+                    throw new CTFException("Sequence length field not found"); //$NON-NLS-1$
+                }
+                long length = lengths[fArgs[i]];
+                if (length > Integer.MAX_VALUE) {
+                    throw new CTFException("Sequence length too long " + length); //$NON-NLS-1$
+                }
+                pos += length * fSizes[i];
+                break;
+            case FIXED:
+            default:
+                pos += fSizes[i];
+                break;
+            }
+        }
+        input.position(pos);
+    }
+}
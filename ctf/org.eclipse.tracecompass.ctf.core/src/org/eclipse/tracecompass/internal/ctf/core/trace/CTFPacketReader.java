@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,7 +12,10 @@
 
 package org.eclipse.tracecompass.internal.ctf.core.trace;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -75,6 +78,13 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     private @Nullable ICompositeDefinition fEventHeader;
 
+    private @Nullable Map<String, Set<String>> fRequiredFields;
+
+    private @Nullable Set<String> fEventFilter;
+
+    /** Whether the events are dropped by the event filter, by event id */
+    private boolean @Nullable [] fDroppedEvents;
+
     /**
      * Constructor
      *
@@ -107,6 +117,44 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         fTracePacketHeader = packetHeader;
     }
 
+    /**
+     * Set the payload fields to decode, per event name. The fixed-size fields
+     * that are not required are skipped. The payload of the events that have
+     * no required field, including the events whose name is not in the map,
+     * is stepped over as a whole. These events are still read, see
+     * {@link #setEventFilter(Set)} to drop them.
+     *
+     * @param requiredFields
+     *            the names of the required fields per event name, or null to
+     *            decode all the fields of every event
+     */
+    public void setRequiredFields(@Nullable Map<String, Set<String>> requiredFields) {
+        fRequiredFields = requiredFields;
+    }
+
+    /**
+     * Set the event types to read. The other events are dropped by
+     * {@link #readNextAcceptedEvent()}: only their header and contexts are
+     * read, their payload is stepped over and no definition is created for
+     * them. Lost events are never dropped.
+     *
+     * @param eventNames
+     *            the names of the events to read, or null to read all of them
+     */
+    public void setEventFilter(@Nullable Set<String> eventNames) {
+        boolean[] droppedEvents = null;
+        if (eventNames != null) {
+            /* Resolve the event names once, events are read by id */
+            droppedEvents = new boolean[fDeclarations.size()];
+            for (int i = 0; i < droppedEvents.length; i++) {
+                IEventDeclaration declaration = fDeclarations.get(i);
+                droppedEvents[i] = declaration != null && !eventNames.contains(declaration.getName());
+            }
+        }
+        fEventFilter = eventNames;
+        fDroppedEvents = droppedEvents;
+    }
+
     @Override
     public int getCPU() {
         return (int) fPacketContext.getTargetId();
@@ -119,7 +167,6 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     @Override
     public EventDefinition readNextEvent() throws CTFException {
-        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
         final long posStart = fInput.position();
         /*
          * Return the Lost Event after all other events in this packet. We need
@@ -129,7 +176,49 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
             fHasLost = false;
             return createLostEvent(fPacketContext);
         }
+        return readEvent(getEventDeclaration(readEventHeader()), posStart);
+    }
 
+    /**
+     * Read the next event that is not dropped by the event filter. The events
+     * that are dropped are stepped over.
+     *
+     * @return the next event, or null if all the remaining events of the
+     *         packet are dropped
+     * @throws CTFException
+     *             if an error occurs
+     */
+    public @Nullable EventDefinition readNextAcceptedEvent() throws CTFException {
+        boolean[] droppedEvents = fDroppedEvents;
+        if (droppedEvents == null) {
+            return readNextEvent();
+        }
+        while (hasMoreEvents()) {
+            final long posStart = fInput.position();
+            if (fHasLost && (posStart >= fPacketContext.getContentSizeBits())) {
+                fHasLost = false;
+                return createLostEvent(fPacketContext);
+            }
+            int eventID = readEventHeader();
+            EventDeclaration declaration = getEventDeclaration(eventID);
+            if (!isDropped(droppedEvents, eventID, declaration)) {
+                return readEvent(declaration, posStart);
+            }
+            fLastTimestamp = declaration.skipDefinition(fStreamContext, fEventHeader, fInput, fLastTimestamp);
+            if (posStart == fInput.position()) {
+                throw new CTFIOException("Empty event not allowed, event: " + declaration.getName()); //$NON-NLS-1$
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the header of the next event
+     *
+     * @return the id of the event
+     */
+    private int readEventHeader() throws CTFException {
+        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
         fEventHeader = null;
         /* Read the stream event header. */
         final IDeclaration streamEventHeaderDecl = fStreamEventHeaderDecl;
@@ -174,13 +263,44 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         if (eventID == IEventDeclaration.UNSET_EVENT_ID && fDeclarations.size() == 1) {
             eventID = 0;
         }
+        return eventID;
+    }
+
+    private boolean isDropped(boolean[] droppedEvents, int eventID, EventDeclaration declaration) {
+        if (eventID < droppedEvents.length) {
+            return droppedEvents[eventID];
+        }
+        /* The declaration was added after the filter was set */
+        Set<String> eventFilter = fEventFilter;
+        return eventFilter != null && !eventFilter.contains(declaration.getName());
+    }
+
+    private EventDeclaration getEventDeclaration(int eventID) throws CTFIOException {
         /* Get the right event definition using the event id. */
         IEventDeclaration eventDeclaration = fDeclarations.get(eventID);
         if (!(eventDeclaration instanceof EventDeclaration)) {
             throw new CTFIOException("Incorrect event id : " + eventID); //$NON-NLS-1$
         }
-        EventDeclaration declaration = (EventDeclaration) eventDeclaration;
-        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        return (EventDeclaration) eventDeclaration;
+    }
+
+    /**
+     * Read the contexts and payload of an event whose header was read
+     */
+    private EventDefinition readEvent(EventDeclaration declaration, long posStart) throws CTFException {
+        Map<String, Set<String>> requiredFields = fRequiredFields;
+        EventDefinition eventDef;
+        if (requiredFields == null) {
+            eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        } else {
+            Set<String> eventRequiredFields = requiredFields.getOrDefault(declaration.getName(), Collections.emptySet());
+            if (eventRequiredFields.isEmpty()) {
+                /* None of the fields are read, step over the whole payload */
+                eventDef = declaration.createDefinitionWithoutPayload(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+            } else {
+                eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp, eventRequiredFields);
+            }
+        }
         fLastTimestamp = eventDef.getTimestamp();
         /*
          * Set the event timestamp using the timestamp calculated by
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -15,9 +15,9 @@ package org.eclipse.tracecompass.internal.ctf.core.trace;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
@@ -68,9 +68,10 @@ public class CTFStream implements ICTFStream {
     private boolean fStreamIdSet = false;
 
     /**
-     * The inputs associated to this stream
+     * The inputs associated to this stream. Inputs can be added while the
+     * trace is being read, when new stream files appear.
      */
-    private final Set<CTFStreamInput> fInputs = new HashSet<>();
+    private final Set<CTFStreamInput> fInputs = new CopyOnWriteArraySet<>();
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A tournament tree of losers, to merge sorted sources by their current
+ * timestamp. The timestamps are unsigned, like the CTF timestamps.
+ * <p>
+ * Every internal node keeps the source that lost the match played there, and
+ * the overall winner is kept on top. When the key of the winner changes, or
+ * when the winner is removed, only the matches on the path from its leaf to
+ * the root are replayed: one comparison of primitive longs per level and no
+ * object is allocated. Sources with the same key come out in the order they
+ * were added.
+ * <p>
+ * Adding sources or clearing the tree rebuilds it on the next access.
+ *
+ * @param <T>
+ *            the type of the sources
+ */
+public final class LoserTree<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* The leaves, in the order they were added */
+    private @Nullable Object[] fItems = new Object[INITIAL_CAPACITY];
+    /* Keys of the leaves, with the sign bit flipped to compare them signed */
+    private long[] fKeys = new long[INITIAL_CAPACITY];
+    private boolean[] fActive = new boolean[INITIAL_CAPACITY];
+    private int fNbLeaves = 0;
+    private int fSize = 0;
+
+    /* Losers of the internal nodes 1 to fNbLeaves - 1, winner in 0 */
+    private int[] fTree = new int[INITIAL_CAPACITY];
+    private boolean fDirty = false;
+
+    /**
+     * Add a source
+     *
+     * @param item
+     *            the source
+     * @param key
+     *            the timestamp of its current element
+     */
+    public void add(@NonNull T item, long key) {
+        if (fNbLeaves == fItems.length) {
+            int capacity = fNbLeaves * 2;
+            fItems = Arrays.copyOf(fItems, capacity);
+            fKeys = Arrays.copyOf(fKeys, capacity);
+            fActive = Arrays.copyOf(fActive, capacity);
+        }
+        fItems[fNbLeaves] = item;
+        fKeys[fNbLeaves] = key ^ Long.MIN_VALUE;
+        fActive[fNbLeaves] = true;
+        fNbLeaves++;
+        fSize++;
+        fDirty = true;
+    }
+
+    /**
+     * Remove all the sources
+     */
+    public void clear() {
+        Arrays.fill(fItems, 0, fNbLeaves, null);
+        fNbLeaves = 0;
+        fSize = 0;
+        fDirty = true;
+    }
+
+    /**
+     * Get the number of sources
+     *
+     * @return the number of sources
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get the source with the smallest key
+     *
+     * @return the source, or null if there are no sources
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable T peek() {
+        if (fSize == 0) {
+            return null;
+        }
+        return (T) fItems[winner()];
+    }
+
+    /**
+     * Change the key of the source with the smallest key, after it moved to
+     * its next element
+     *
+     * @param key
+     *            the timestamp of its new current element
+     */
+    public void updateTop(long key) {
+        if (fSize == 0) {
+            return;
+        }
+        int leaf = winner();
+        fKeys[leaf] = key ^ Long.MIN_VALUE;
+        replay(leaf);
+    }
+
+    /**
+     * Remove the source with the smallest key, after it ran out of elements
+     */
+    public void removeTop() {
+        if (fSize == 0) {
+            return;
+        }
+        int leaf = winner();
+        fActive[leaf] = false;
+        fItems[leaf] = null;
+        fSize--;
+        replay(leaf);
+    }
+
+    /**
+     * Get the sources, in the order they were added
+     *
+     * @return a copy of the list of sources
+     */
+    @SuppressWarnings("unchecked")
+    public List<@NonNull T> getItems() {
+        List<@NonNull T> items = new ArrayList<>(fSize);
+        for (int i = 0; i < fNbLeaves; i++) {
+            if (fActive[i]) {
+                items.add((@NonNull T) fItems[i]);
+            }
+        }
+        return items;
+    }
+
+    private int winner() {
+        if (fDirty) {
+            rebuild();
+        }
+        return fTree[0];
+    }
+
+    private boolean beats(int a, int b) {
+        if (!fActive[a]) {
+            return false;
+        }
+        if (!fActive[b]) {
+            return true;
+        }
+        long keyA = fKeys[a];
+        long keyB = fKeys[b];
+        return keyA < keyB || (keyA == keyB && a < b);
+    }
+
+    private void replay(int leaf) {
+        int winner = leaf;
+        final int[] tree = fTree;
+        for (int node = (leaf + fNbLeaves) >>> 1; node > 0; node >>>= 1) {
+            int loser = tree[node];
+            if (beats(loser, winner)) {
+                tree[node] = winner;
+                winner = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    private void rebuild() {
+        compact();
+        int n = fNbLeaves;
+        if (fTree.length < Math.max(n, 1)) {
+            fTree = new int[fItems.length];
+        }
+        if (n == 0) {
+            fTree[0] = 0;
+            fDirty = false;
+            return;
+        }
+        /* Winners of the nodes, leaf i being node n + i */
+        int[] winners = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            winners[n + i] = i;
+        }
+        for (int node = n - 1; node > 0; node--) {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if (beats(a, b)) {
+                winners[node] = a;
+                fTree[node] = b;
+            } else {
+                winners[node] = b;
+                fTree[node] = a;
+            }
+        }
+        fTree[0] = winners[1];
+        fDirty = false;
+    }
+
+    /* Drop the removed leaves, keeping the order of the others */
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < fNbLeaves; i++) {
+            if (fActive[i]) {
+                fItems[j] = fItems[i];
+                fKeys[j] = fKeys[i];
+                fActive[j] = true;
+                j++;
+            }
+        }
+        Arrays.fill(fItems, j, fNbLeaves, null);
+        fNbLeaves = j;
+    }
+}
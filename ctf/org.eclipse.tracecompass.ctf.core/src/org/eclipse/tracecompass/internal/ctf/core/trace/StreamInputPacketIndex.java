@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -134,6 +134,15 @@ public class StreamInputPacketIndex {
         return index;
     }
 
+    /**
+     * Get a copy of the elements of the index
+     *
+     * @return the elements, sorted by increasing begin timestamp
+     */
+    public synchronized List<ICTFPacketDescriptor> getElements() {
+        return new ArrayList<>(fEntries);
+    }
+
     /**
      * Get the last element of the index
      *
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMap.Builder;
+
+/**
+ * Persistent cache of the packet index of a stream file. The packet
+ * descriptors are written to a compact binary file, along with the size and
+ * modification time of the stream file when it was indexed, so that reopening
+ * a trace does not need to read every packet header and context again.
+ * <p>
+ * A cache written for a smaller version of the same stream file is still
+ * returned, since packets are only ever appended to a stream. It is up to the
+ * caller to validate the last packet and to index the rest of the file.
+ */
+@NonNullByDefault
+public final class StreamInputPacketIndexCache {
+
+    /** Extension of the cache files */
+    public static final String EXTENSION = ".packets"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0xC1FD1DE5;
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_LONG = 0;
+    private static final byte TYPE_DOUBLE = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_ENUM = 3;
+
+    /**
+     * Content of a cache file
+     */
+    public static final class CachedIndex {
+        private final long fFileSize;
+        private final long fLastModified;
+        private final List<ICTFPacketDescriptor> fEntries;
+
+        private CachedIndex(long fileSize, long lastModified, List<ICTFPacketDescriptor> entries) {
+            fFileSize = fileSize;
+            fLastModified = lastModified;
+            fEntries = entries;
+        }
+
+        /**
+         * Get the packet descriptors, in file order
+         *
+         * @return the packet descriptors
+         */
+        public List<ICTFPacketDescriptor> getEntries() {
+            return fEntries;
+        }
+
+        /**
+         * Whether the stream file was not modified since it was indexed. If
+         * it was, only the last packet needs to be validated and the packets
+         * after it need to be indexed.
+         *
+         * @param streamFile
+         *            the stream file
+         * @return true if the cached index covers the whole stream file
+         */
+        public boolean isComplete(File streamFile) {
+            return fFileSize == streamFile.length() && fLastModified == streamFile.lastModified();
+        }
+    }
+
+    private StreamInputPacketIndexCache() {
+        // Do nothing
+    }
+
+    /**
+     * Read the cached index of a stream file
+     *
+     * @param cacheFile
+     *            the cache file
+     * @param streamFile
+     *            the stream file that was indexed
+     * @return the cached index, or null if there is no cache or if it cannot
+     *         be used for this stream file
+     */
+    public static @Nullable CachedIndex read(File cacheFile, File streamFile) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            /* The stream file shrank or was replaced, the cache is stale */
+            if (fileSize > streamFile.length() || (fileSize == streamFile.length() && lastModified != streamFile.lastModified())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<ICTFPacketDescriptor> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(readEntry(in));
+            }
+            return new CachedIndex(fileSize, lastModified, entries);
+        } catch (IOException | IllegalArgumentException e) {
+            /* A corrupted cache is simply ignored, the file will be indexed */
+            return null;
+        }
+    }
+
+    /**
+     * Write the index of a stream file to its cache file. The cache is first
+     * written to a temporary file, so an interrupted write never leaves a
+     * partial cache behind.
+     *
+     * @param cacheFile
+     *            the cache file
+     * @param streamFile
+     *            the stream file that was indexed
+     * @param index
+     *            the index of the stream file
+     * @return true if the cache was written
+     */
+    public static boolean write(File cacheFile, File streamFile, StreamInputPacketIndex index) {
+        File parent = cacheFile.getParentFile();
+        if (parent == null || !(parent.isDirectory() || parent.mkdirs())) {
+            return false;
+        }
+        File tempFile = new File(parent, cacheFile.getName() + ".tmp"); //$NON-NLS-1$
+        long fileSize = streamFile.length();
+        long lastModified = streamFile.lastModified();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fileSize);
+                out.writeLong(lastModified);
+                int count = index.size();
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    writeEntry(out, index.getElement(i));
+                }
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, ICTFPacketDescriptor entry) throws IOException {
+        out.writeLong(entry.getOffsetBits());
+        out.writeLong(entry.getPacketSizeBits());
+        out.writeLong(entry.getContentSizeBits());
+        out.writeLong(entry.getTimestampBegin());
+        out.writeLong(entry.getTimestampEnd());
+        out.writeLong(entry.getLostEvents());
+        out.writeLong(entry.getPayloadStartBits());
+        out.writeLong(entry.getTargetId());
+        String target = entry.getTarget();
+        out.writeBoolean(target != null);
+        if (target != null) {
+            out.writeUTF(target);
+        }
+        Map<String, Object> attributes = entry.getAttributes();
+        out.writeInt(attributes.size());
+        for (Entry<String, Object> attribute : attributes.entrySet()) {
+            out.writeUTF(attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof Long) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof String) {
+                out.writeByte(TYPE_STRING);
+                out.writeUTF((String) value);
+            } else if (value instanceof Entry && ((Entry<?, ?>) value).getKey() instanceof String && ((Entry<?, ?>) value).getValue() instanceof Long) {
+                Entry<?, ?> enumValue = (Entry<?, ?>) value;
+                out.writeByte(TYPE_ENUM);
+                out.writeUTF((String) enumValue.getKey());
+                out.writeLong((Long) enumValue.getValue());
+            } else {
+                throw new IllegalArgumentException("Cannot cache packet attribute " + attribute.getKey()); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private static ICTFPacketDescriptor readEntry(DataInputStream in) throws IOException {
+        long offsetBits = in.readLong();
+        long packetSizeBits = in.readLong();
+        long contentSizeBits = in.readLong();
+        long timestampBegin = in.readLong();
+        long timestampEnd = in.readLong();
+        long lostEvents = in.readLong();
+        long payloadStartBits = in.readLong();
+        long targetId = in.readLong();
+        String target = in.readBoolean() ? in.readUTF() : null;
+        int nbAttributes = in.readInt();
+        Builder<String, Object> attributes = ImmutableMap.builder();
+        for (int i = 0; i < nbAttributes; i++) {
+            String key = in.readUTF();
+            byte type = in.readByte();
+            switch (type) {
+            case TYPE_LONG:
+                attributes.put(key, in.readLong());
+                break;
+            case TYPE_DOUBLE:
+                attributes.put(key, in.readDouble());
+                break;
+            case TYPE_STRING:
+                attributes.put(key, in.readUTF());
+                break;
+            case TYPE_ENUM:
+                String name = in.readUTF();
+                attributes.put(key, new AbstractMap.SimpleImmutableEntry<>(name, in.readLong()));
+                break;
+            default:
+                throw new IOException("Unknown attribute type " + type); //$NON-NLS-1$
+            }
+        }
+        return new StreamInputPacketIndexEntry(offsetBits, packetSizeBits, contentSizeBits,
+                timestampBegin, timestampEnd, lostEvents, target, targetId, payloadStartBits, attributes.build());
+    }
+}
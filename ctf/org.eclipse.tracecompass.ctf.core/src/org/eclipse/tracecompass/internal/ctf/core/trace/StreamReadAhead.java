@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+
+/**
+ * Decodes the events of a stream ahead of its reader, on the threads of an
+ * executor, into a bounded buffer of batches of events.
+ * <p>
+ * A single task decodes a batch at a time, and the next task is only
+ * submitted once the batch is buffered and if the buffer is not full. No task
+ * waits for the reader, so any number of streams can share an executor with
+ * fewer threads. The events are returned in the order of the stream, each
+ * with the packet reader that decoded it.
+ */
+@NonNullByDefault
+public final class StreamReadAhead {
+
+    /**
+     * The source of the events, called from the threads of the executor
+     */
+    @FunctionalInterface
+    public interface IEventSource {
+        /**
+         * Decode the next event of the stream
+         *
+         * @return the event, or null at the end of the stream
+         * @throws CTFException
+         *             if the event could not be read
+         */
+        @Nullable IEventDefinition readNextEvent() throws CTFException;
+
+        /**
+         * Get the packet reader of the last event decoded
+         *
+         * @return the packet reader, or null if it is not known
+         */
+        default @Nullable IPacketReader getPacketReader() {
+            return null;
+        }
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final int MAX_BATCHES = 8;
+
+    private static final class Batch {
+        private final @Nullable IEventDefinition[] fEvents;
+        private final @Nullable IPacketReader[] fPacketReaders;
+        private final int fSize;
+        private final boolean fLast;
+        private final @Nullable CTFException fError;
+
+        public Batch(@Nullable IEventDefinition[] events, @Nullable IPacketReader[] packetReaders, int size, boolean last, @Nullable CTFException error) {
+            fEvents = events;
+            fPacketReaders = packetReaders;
+            fSize = size;
+            fLast = last;
+            fError = error;
+        }
+    }
+
+    private final Executor fExecutor;
+    private final IEventSource fSource;
+
+    /* Guarded by this */
+    private final Deque<Batch> fBatches = new ArrayDeque<>();
+    private boolean fScheduled = false;
+    private boolean fDone = false;
+    private volatile boolean fCancelled = false;
+
+    /* Only used by the reader thread */
+    private @Nullable Batch fCurrent = null;
+    private int fIndex = 0;
+    private @Nullable IPacketReader fPacketReader = null;
+
+    /**
+     * Constructor. Nothing is decoded until the first event is requested.
+     *
+     * @param executor
+     *            the executor on which the events are decoded
+     * @param source
+     *            the source of the events. It is only called by one thread
+     *            at a time, and not anymore once this read-ahead is
+     *            cancelled.
+     */
+    public StreamReadAhead(Executor executor, IEventSource source) {
+        fExecutor = executor;
+        fSource = source;
+    }
+
+    /**
+     * Get the next event of the stream, waiting for it to be decoded if needed
+     *
+     * @return the event, or null at the end of the stream
+     * @throws CTFException
+     *             if the event could not be read, or if the wait was
+     *             interrupted
+     */
+    public @Nullable IEventDefinition next() throws CTFException {
+        Batch batch = fCurrent;
+        while (batch == null || fIndex >= batch.fSize) {
+            if (batch != null && batch.fLast) {
+                CTFException error = batch.fError;
+                if (error != null) {
+                    throw error;
+                }
+                return null;
+            }
+            batch = take();
+            fCurrent = batch;
+            fIndex = 0;
+        }
+        fPacketReader = batch.fPacketReaders[fIndex];
+        return batch.fEvents[fIndex++];
+    }
+
+    /**
+     * Get the packet reader that decoded the last event returned by
+     * {@link #next()}. The packet reader of the source can already be further
+     * in the stream.
+     *
+     * @return the packet reader, or null if no event was returned yet or if
+     *         the source does not know it
+     */
+    public @Nullable IPacketReader getPacketReader() {
+        return fPacketReader;
+    }
+
+    /**
+     * Stop decoding and wait for the running task to finish. The events that
+     * were decoded ahead are dropped.
+     */
+    public synchronized void cancel() {
+        fCancelled = true;
+        boolean interrupted = false;
+        /* The source cannot be used while a task is still using it */
+        while (fScheduled) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        fBatches.clear();
+        fCurrent = null;
+        fPacketReader = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized Batch take() throws CTFException {
+        Batch batch = fBatches.poll();
+        while (batch == null) {
+            schedule();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CTFException(e);
+            }
+            batch = fBatches.poll();
+        }
+        schedule();
+        return batch;
+    }
+
+    /* Must be called with the lock held */
+    private void schedule() {
+        if (fScheduled || fDone || fCancelled || fBatches.size() >= MAX_BATCHES) {
+            return;
+        }
+        fScheduled = true;
+        try {
+            fExecutor.execute(this::decodeBatch);
+        } catch (RejectedExecutionException e) {
+            fScheduled = false;
+            fDone = true;
+            fBatches.add(new Batch(new @Nullable IEventDefinition[0], new @Nullable IPacketReader[0], 0, true, new CTFException("Read-ahead executor is shut down", e))); //$NON-NLS-1$
+        }
+    }
+
+    private void decodeBatch() {
+        @Nullable IEventDefinition[] events = new @Nullable IEventDefinition[BATCH_SIZE];
+        @Nullable IPacketReader[] packetReaders = new @Nullable IPacketReader[BATCH_SIZE];
+        int size = 0;
+        boolean last = false;
+        CTFException error = null;
+        try {
+            while (size < BATCH_SIZE && !fCancelled) {
+                IEventDefinition event = fSource.readNextEvent();
+                if (event == null) {
+                    last = true;
+                    break;
+                }
+                packetReaders[size] = fSource.getPacketReader();
+                events[size++] = event;
+            }
+        } catch (CTFException e) {
+            error = e;
+            last = true;
+        } catch (RuntimeException e) {
+            error = new CTFException(e);
+            last = true;
+        }
+        synchronized (this) {
+            fScheduled = false;
+            if (!fCancelled) {
+                fBatches.add(new Batch(events, packetReaders, size, last, error));
+                fDone = last;
+                schedule();
+            }
+            notifyAll();
+        }
+    }
+}
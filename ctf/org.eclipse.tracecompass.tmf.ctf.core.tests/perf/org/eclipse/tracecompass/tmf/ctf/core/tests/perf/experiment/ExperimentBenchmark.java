@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -30,6 +30,7 @@ import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
 import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfExperimentStub;
@@ -56,6 +57,10 @@ public class ExperimentBenchmark {
     private static final int SAMPLE_SIZE_SLOW = 20;
     private static final int SAMPLE_SIZE = 100;
 
+    private static final int[] MERGE_NB_TRACES = { 2, 32, 200 };
+    private static final int MERGE_SAMPLE_SIZE = 10;
+    private static final int MERGE_NB_READERS = 2;
+
     private TmfExperimentStub fExperiment;
 
     /**
@@ -106,6 +111,69 @@ public class ExperimentBenchmark {
         }
     }
 
+    /**
+     * Benchmark the merge of the events of the traces of an experiment, read
+     * by several readers at the same time, each with its own context
+     */
+    @Test
+    public void benchmarkExperimentMerge() {
+        runMerge("Merge", false);
+    }
+
+    /**
+     * Benchmark the merge of the events of the traces of an experiment, with
+     * the events of the streams decoded ahead on worker threads. The elapsed
+     * time is measured, to compare with {@link #benchmarkExperimentMerge()}
+     * as the number of traces grows.
+     */
+    @Test
+    public void benchmarkExperimentMergeReadAhead() {
+        runMerge("Merge read-ahead", true);
+    }
+
+    private void runMerge(String name, boolean readAhead) {
+        Performance perf = Performance.getDefault();
+
+        for (int numTraces : MERGE_NB_TRACES) {
+            PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + name + " " + numTraces + " traces");
+            perf.tagAsSummary(pm, "Experiment " + name + ":" + numTraces + " traces", Dimension.ELAPSED_PROCESS);
+
+            init(numTraces);
+            for (ITmfTrace trace : fExperiment.getTraces()) {
+                ((CtfTmfTrace) trace).setReadAhead(readAhead);
+            }
+            for (int s = 0; s < MERGE_SAMPLE_SIZE; s++) {
+                Thread[] readers = new Thread[MERGE_NB_READERS];
+                for (int i = 0; i < readers.length; i++) {
+                    readers[i] = new Thread(() -> readAll(fExperiment));
+                }
+
+                pm.start();
+                for (Thread reader : readers) {
+                    reader.start();
+                }
+                try {
+                    for (Thread reader : readers) {
+                        reader.join();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pm.stop();
+            }
+            fExperiment.dispose();
+            pm.commit();
+        }
+    }
+
+    private static void readAll(ITmfTrace experiment) {
+        ITmfContext context = experiment.seekEvent(0L);
+        while (experiment.getNext(context) != null) {
+            /* Only the merge is measured */
+        }
+        context.dispose();
+    }
+
     /**
      * Initialization
      *
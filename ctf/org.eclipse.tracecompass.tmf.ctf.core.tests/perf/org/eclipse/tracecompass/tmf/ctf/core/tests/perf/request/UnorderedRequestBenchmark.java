@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.perf.request;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfUnorderedEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Benchmark counting the events of a kernel trace per type, with an ordered
+ * request and with an unordered request whose partitions are decoded
+ * concurrently. The elapsed time is measured.
+ */
+public class UnorderedRequestBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass#Unordered request benchmark#";
+    private static final @NonNull CtfTestTrace TEST_TRACE = CtfTestTrace.KERNEL;
+    private static final int SAMPLE_SIZE = 10;
+
+    /**
+     * Dispose the trace
+     */
+    @After
+    public void tearDown() {
+        CtfTmfTestTraceUtils.dispose(TEST_TRACE);
+    }
+
+    /**
+     * Benchmark the ordered request, read by a single thread
+     */
+    @Test
+    public void benchmarkOrderedRequest() {
+        runRequests("Ordered", () -> new OrderedCountRequest());
+    }
+
+    /**
+     * Benchmark the unordered request, read in as many partitions as there
+     * are processors
+     */
+    @Test
+    public void benchmarkUnorderedRequest() {
+        runRequests("Unordered", () -> new UnorderedCountRequest());
+    }
+
+    private static void runRequests(String name, Supplier<TmfEventRequest> requests) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + name);
+        perf.tagAsSummary(pm, "Request " + name, Dimension.ELAPSED_PROCESS);
+
+        CtfTmfTrace trace = CtfTmfTestTraceUtils.getTrace(TEST_TRACE);
+        /* The partitions are split over the indexed time range */
+        trace.indexTrace(true);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            TmfEventRequest request = requests.get();
+            pm.start();
+            trace.sendRequest(request);
+            try {
+                request.waitForCompletion();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pm.stop();
+            assertEquals(TEST_TRACE.getNbEvents(), request.getNbRead());
+        }
+        pm.commit();
+    }
+
+    private static void count(Map<String, Long> counts, ITmfEvent event) {
+        counts.merge(event.getName(), 1L, Long::sum);
+    }
+
+    private static class OrderedCountRequest extends TmfEventRequest {
+        private final Map<String, Long> fCounts = new HashMap<>();
+
+        public OrderedCountRequest() {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND);
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            count(fCounts, event);
+        }
+    }
+
+    private static class UnorderedCountRequest extends TmfUnorderedEventRequest<Map<String, Long>> {
+
+        public UnorderedCountRequest() {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, ExecutionType.BACKGROUND);
+        }
+
+        @Override
+        protected Map<String, Long> createAccumulator() {
+            return new HashMap<>();
+        }
+
+        @Override
+        protected void accumulate(Map<String, Long> counts, ITmfEvent event) {
+            count(counts, event);
+        }
+
+        @Override
+        protected Map<String, Long> merge(Map<String, Long> first, Map<String, Long> second) {
+            second.forEach((type, count) -> first.merge(type, count, Long::sum));
+            return first;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -17,7 +17,9 @@ package org.eclipse.tracecompass.tmf.ctf.core.tests.event;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Set;
 
@@ -118,6 +120,33 @@ public class CtfTmfEventTest {
         assertNotNull(result.getValue());
     }
 
+    /**
+     * Test that a field looked up alone is the same as the field of the whole
+     * content
+     */
+    @Test
+    public void testGetFieldBeforeFields() {
+        ITmfEventField field = fixture.getContent().getField(VALID_FIELD);
+        Collection<String> names = fixture.getContent().getFieldNames();
+        Collection<? extends ITmfEventField> fields = fixture.getContent().getFields();
+
+        assertEquals(fields.size(), names.size());
+        assertTrue(fields.contains(field));
+        assertEquals(field, fixture.getContent().getField(VALID_FIELD));
+        assertNull(fixture.getContent().getField("bozo"));
+    }
+
+    /**
+     * Test reading the values of the fields without the content
+     */
+    @Test
+    public void testGetFieldValues() {
+        assertEquals(4132L, fixture.getLongFieldValue(VALID_FIELD, -1L));
+        assertEquals(-1L, fixture.getLongFieldValue("bozo", -1L));
+        assertNull(fixture.getStringFieldValue(VALID_FIELD));
+        assertEquals(-1L, nullEvent.getLongFieldValue(VALID_FIELD, -1L));
+    }
+
     /**
      * Run the HashMap<String, CTFEventField> getFields() method test.
      */
@@ -175,6 +204,20 @@ public class CtfTmfEventTest {
         assertEquals("exit_syscall", type.toString());
     }
 
+    /**
+     * Test that the type of an event has the fields of its declaration, which
+     * are the ones of the whole content
+     */
+    @Test
+    public void testTypeFields() {
+        ITmfEventType type = fixture.getType();
+        ITmfEventField root = type.getRootField();
+        assertNotNull(root);
+        assertEquals(new ArrayList<>(fixture.getContent().getFieldNames()), new ArrayList<>(root.getFieldNames()));
+        assertTrue(fixture.getTrace().getContainedEventTypes().stream()
+                .anyMatch(registered -> registered.getName().equals(type.getName())));
+    }
+
     /**
      * Test the custom CTF attributes methods. The test trace doesn't have any,
      * so the list of attributes should be empty.
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIteratorManager;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocation;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The class <code>CtfIteratorManagerTest</code> contains tests for the class
+ * <code>{@link CtfIteratorManager}</code>.
+ */
+public class CtfIteratorManagerTest {
+
+    private static final @NonNull CtfTestTrace testTrace = CtfTestTrace.KERNEL;
+
+    private CtfTmfTrace fTrace;
+    private CtfIteratorManager fManager;
+
+    /**
+     * Perform pre-test initialization.
+     */
+    @Before
+    public void setUp() {
+        fTrace = CtfTmfTestTraceUtils.getTrace(testTrace);
+        fManager = new CtfIteratorManager(fTrace, 2);
+    }
+
+    /**
+     * Perform post-test clean-up.
+     */
+    @After
+    public void tearDown() {
+        fManager.dispose();
+        CtfTmfTestTraceUtils.dispose(testTrace);
+    }
+
+    private CtfTmfContext createContext(long timestamp) {
+        CtfTmfContext context = new CtfTmfContext(fTrace);
+        context.setLocation(new CtfLocation(timestamp, 0L));
+        return context;
+    }
+
+    /**
+     * Test that a context keeps its iterator
+     */
+    @Test
+    public void testHit() {
+        CtfTmfContext context = createContext(fTrace.getStartTime().getValue());
+        CtfIterator iterator = fManager.getIterator(context);
+        assertEquals(0, fManager.getHitCount());
+        assertSame(iterator, fManager.getIterator(context));
+        assertSame(iterator, fManager.getIterator(context));
+        assertEquals(2, fManager.getHitCount());
+        assertEquals(1, fManager.size());
+    }
+
+    /**
+     * Test that the least recently used iterator is taken back
+     */
+    @Test
+    public void testLeastRecentlyUsed() {
+        long start = fTrace.getStartTime().getValue();
+        CtfTmfContext first = createContext(start);
+        CtfTmfContext second = createContext(start);
+        CtfTmfContext third = createContext(start);
+
+        CtfIterator firstIterator = fManager.getIterator(first);
+        CtfIterator secondIterator = fManager.getIterator(second);
+        assertNotSame(firstIterator, secondIterator);
+        assertSame(firstIterator, fManager.getIterator(first));
+
+        /* The second context is the least recently used */
+        assertSame(secondIterator, fManager.getIterator(third));
+        assertEquals(1, fManager.getEvictionCount());
+        assertEquals(2, fManager.size());
+        assertSame(firstIterator, fManager.getIterator(first));
+    }
+
+    /**
+     * Test that an iterator taken back is seeked to the location of its new
+     * context, and only if needed
+     */
+    @Test
+    public void testSeek() {
+        long start = fTrace.getStartTime().getValue();
+        long later = fTrace.getStartTime().getValue() + 1000000L;
+        CtfTmfContext first = createContext(start);
+        CtfTmfContext second = createContext(later);
+        fManager.getIterator(first);
+        fManager.getIterator(second);
+        long seeks = fManager.getSeekCount();
+
+        /* An iterator already at the location of the new context is reused */
+        CtfTmfContext third = createContext(later);
+        CtfIterator iterator = fManager.getIterator(third);
+        assertEquals(seeks, fManager.getSeekCount());
+        assertEquals(third.getLocation(), iterator.getLocation());
+
+        CtfTmfContext fourth = createContext(start);
+        iterator = fManager.getIterator(fourth);
+        assertEquals(fourth.getLocation(), iterator.getLocation());
+    }
+
+    /**
+     * Test that a removed context gets a new iterator
+     */
+    @Test
+    public void testRemove() {
+        CtfTmfContext context = createContext(fTrace.getStartTime().getValue());
+        CtfIterator iterator = fManager.getIterator(context);
+        fManager.removeIterator(context);
+        assertEquals(0, fManager.size());
+        assertNotSame(iterator, fManager.getIterator(context));
+    }
+}
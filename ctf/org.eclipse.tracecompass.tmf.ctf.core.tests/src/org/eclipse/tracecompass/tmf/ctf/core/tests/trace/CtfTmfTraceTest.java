@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -429,6 +429,42 @@ public class CtfTmfTraceTest {
         assertFalse(eventNames.containsAll(Arrays.asList(names)));
     }
 
+    /**
+     * Test that a private context reads the events from the requested time,
+     * in order, independently of the contexts of the trace
+     */
+    @Test
+    public void testPrivateContext() {
+        final long start = fixture.getStartTime().toNanos();
+        final long time = start + (fixture.getEndTime().toNanos() - start) / 2;
+        ITmfContext context = fixture.createPrivateContext(TmfTimestamp.fromNanos(time));
+        assertNotNull(context);
+        ITmfContext sharedContext = fixture.seekEvent(0L);
+        CtfTmfEvent first = fixture.getNext(sharedContext);
+        assertNotNull(first);
+
+        CtfTmfEvent event = fixture.readNext(context);
+        assertNotNull(event);
+        assertTrue(event.getTimestamp().toNanos() >= time);
+        long previous = event.getTimestamp().toNanos();
+        for (int i = 0; i < 1000; i++) {
+            event = fixture.readNext(context);
+            assertNotNull(event);
+            assertTrue(event.getTimestamp().toNanos() >= previous);
+            previous = event.getTimestamp().toNanos();
+        }
+        assertEquals(ITmfContext.UNKNOWN_RANK, context.getRank());
+        context.dispose();
+
+        /* The shared context did not move */
+        assertEquals(1L, sharedContext.getRank());
+        CtfTmfEvent second = fixture.getNext(sharedContext);
+        assertNotNull(second);
+        assertTrue(second.getTimestamp().compareTo(first.getTimestamp()) >= 0);
+        assertTrue(second.getTimestamp().toNanos() < time);
+        sharedContext.dispose();
+    }
+
     /**
      * Run the String getHostId() method test
      */
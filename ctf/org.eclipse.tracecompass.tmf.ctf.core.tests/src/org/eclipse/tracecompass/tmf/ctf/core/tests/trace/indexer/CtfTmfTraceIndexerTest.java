@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.trace.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.indexer.CtfTmfTraceIndexer;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link CtfTmfTraceIndexer}
+ */
+public class CtfTmfTraceIndexerTest {
+
+    private static final @NonNull CtfTestTrace TEST_TRACE = CtfTestTrace.KERNEL;
+    private static final long TIMEOUT = 60;
+
+    private CtfTmfTrace fTrace;
+
+    /**
+     * A trace whose indexer can block the count of the events after the first
+     * one, until it is released
+     */
+    private static class IndexerTraceStub extends CtfTmfTrace {
+        private final boolean fRefineRanks;
+        private final CountDownLatch fBlocked = new CountDownLatch(1);
+        private final CountDownLatch fRelease;
+
+        public IndexerTraceStub(boolean refineRanks, boolean block) {
+            fRefineRanks = refineRanks;
+            fRelease = new CountDownLatch(block ? 1 : 0);
+        }
+
+        @Override
+        protected ITmfTraceIndexer createIndexer(int interval) {
+            return new CtfTmfTraceIndexer(this, interval, fRefineRanks) {
+                @Override
+                protected void refine(ITmfEvent event) {
+                    super.refine(event);
+                    fBlocked.countDown();
+                    try {
+                        fRelease.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+        }
+
+        public boolean isIndexing() {
+            return getIndexer().isIndexing();
+        }
+
+        public void waitForIndexing() throws InterruptedException {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+            while (isIndexing() && System.nanoTime() < end) {
+                Thread.sleep(10);
+            }
+            assertFalse(isIndexing());
+        }
+    }
+
+    private static IndexerTraceStub openTrace(boolean refineRanks, boolean block) throws IOException, TmfTraceException {
+        String tracePath = FileLocator.toFileURL(TEST_TRACE.getTraceURL()).getPath();
+        IndexerTraceStub trace = new IndexerTraceStub(refineRanks, block);
+        trace.initTrace(null, tracePath, CtfTmfEvent.class);
+        return trace;
+    }
+
+    /**
+     * Dispose the trace
+     */
+    @After
+    public void tearDown() {
+        if (fTrace != null) {
+            fTrace.dispose();
+            fTrace = null;
+        }
+        CtfTmfTestTraceUtils.dispose(TEST_TRACE);
+    }
+
+    /**
+     * Test that the end time read from the last packets is the one found by
+     * reading the whole trace
+     */
+    @Test
+    public void testReadEndTime() {
+        CtfTmfTrace trace = CtfTmfTestTraceUtils.getTrace(TEST_TRACE);
+        ITmfTimestamp endTime = trace.readEndTime();
+        assertNotNull(endTime);
+        trace.indexTrace(true);
+        assertEquals(TEST_TRACE.getNbEvents(), trace.getNbEvents());
+        assertEquals(trace.getEndTime(), endTime);
+    }
+
+    /**
+     * Test that the time range is known, and that the trace can be seeked by
+     * time and by rank, while the count of the events is blocked after the
+     * first one. A seek by time through a packet that is not counted yet has
+     * an unknown rank, and a rank found by reading forward is the same once
+     * the events are counted.
+     *
+     * @throws Exception
+     *             if the trace could not be opened, or the wait was
+     *             interrupted
+     */
+    @Test
+    public void testSeekWhileIndexing() throws Exception {
+        IndexerTraceStub trace = openTrace(true, true);
+        fTrace = trace;
+        ITmfTimestamp endTime = trace.readEndTime();
+        assertNotNull(endTime);
+        final long rank = 1000;
+        ITmfTimestamp rankTime;
+        try {
+            trace.indexTrace(false);
+            assertTrue(trace.fBlocked.await(TIMEOUT, TimeUnit.SECONDS));
+            assertTrue(trace.isIndexing());
+            assertEquals(endTime, trace.getEndTime());
+
+            /* The end of the trace is found through the packets */
+            ITmfContext context = trace.seekEvent(endTime);
+            assertEquals(ITmfContext.UNKNOWN_RANK, context.getRank());
+            ITmfEvent event = trace.getNext(context);
+            assertNotNull(event);
+            assertEquals(endTime, event.getTimestamp());
+            context.dispose();
+
+            /* A rank that is not counted yet is read from the start */
+            context = trace.seekEvent(rank);
+            assertEquals(rank, context.getRank());
+            event = trace.getNext(context);
+            assertNotNull(event);
+            rankTime = event.getTimestamp();
+            context.dispose();
+
+            /* The count did not move */
+            assertTrue(trace.isIndexing());
+            assertTrue(trace.getNbEvents() <= rank + 1);
+        } finally {
+            trace.fRelease.countDown();
+        }
+
+        trace.waitForIndexing();
+        assertEquals(TEST_TRACE.getNbEvents(), trace.getNbEvents());
+
+        /* The same rank is the same event once the events are counted */
+        ITmfContext context = trace.seekEvent(rank);
+        assertEquals(rank, context.getRank());
+        ITmfEvent event = trace.getNext(context);
+        assertNotNull(event);
+        assertEquals(rankTime, event.getTimestamp());
+        context.dispose();
+
+        /* The event at a rank is the one found by reading from the start */
+        long middle = trace.getNbEvents() / 2;
+        context = trace.seekEvent(0L);
+        for (long i = 0; i < middle; i++) {
+            assertNotNull(trace.getNext(context));
+        }
+        ITmfEvent expected = trace.getNext(context);
+        assertNotNull(expected);
+        context.dispose();
+        context = trace.seekEvent(middle);
+        assertEquals(middle, context.getRank());
+        ITmfEvent actual = trace.getNext(context);
+        assertNotNull(actual);
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        context.dispose();
+
+        /* A seek by time now has the exact rank */
+        context = trace.seekEvent(expected.getTimestamp());
+        assertTrue(context.getRank() >= 0 && context.getRank() <= middle);
+        context.dispose();
+    }
+
+    /**
+     * Test that the trace can be seeked by time and by rank when the events
+     * are not counted, and that no rank is made up
+     *
+     * @throws Exception
+     *             if the trace could not be opened
+     */
+    @Test
+    public void testWithoutCount() throws Exception {
+        IndexerTraceStub trace = openTrace(false, false);
+        fTrace = trace;
+        ITmfTimestamp endTime = trace.readEndTime();
+        assertNotNull(endTime);
+        trace.indexTrace(true);
+        assertFalse(trace.isIndexing());
+        assertEquals(1, trace.fBlocked.getCount());
+        assertEquals(endTime, trace.getEndTime());
+        assertEquals(0, trace.getNbEvents());
+
+        ITmfContext context = trace.seekEvent(endTime);
+        assertEquals(ITmfContext.UNKNOWN_RANK, context.getRank());
+        ITmfEvent event = trace.getNext(context);
+        assertNotNull(event);
+        assertEquals(endTime, event.getTimestamp());
+        context.dispose();
+        assertEquals(0, trace.getNbEvents());
+
+        context = trace.seekEvent(1000L);
+        assertEquals(1000L, context.getRank());
+        assertNotNull(trace.getNext(context));
+        context.dispose();
+        assertEquals(1001L, trace.getNbEvents());
+    }
+}
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.indexer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocation;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocationInfo;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+
+/**
+ * The indexer of the CTF traces. The packet indexes of the stream files
+ * already know where every packet starts and the time range it covers, so the
+ * checkpoints are the beginnings of the packets, and the trace does not have
+ * to be read to find its time range or to seek it by time.
+ * <p>
+ * CTF packet contexts only count discarded events, not the events they hold,
+ * so a rank estimated from the packets could not be exact, and TmfTrace would
+ * record any rank it is given as exact. Unless disabled by the
+ * {@link #REFINE_RANKS_PROPERTY} system property, a background request counts
+ * the events, in order, and the checkpoints it passes get their exact rank.
+ * Until then, a seek by time to a checkpoint returns an unknown rank, and a
+ * seek by rank starts from the last counted checkpoint before it and reads
+ * forward.
+ */
+public class CtfTmfTraceIndexer implements ITmfTraceIndexer {
+
+    /**
+     * System property to disable the background count of the events that
+     * gives their ranks to the checkpoints
+     */
+    public static final String REFINE_RANKS_PROPERTY = "org.eclipse.tracecompass.tmf.ctf.core.refineRanks"; //$NON-NLS-1$
+
+    /**
+     * The beginning of a packet, the rank of its first event is known once the
+     * events before it are counted
+     */
+    private static final class PacketCheckpoint {
+        private final long fTimestamp;
+        private long fRank = ITmfContext.UNKNOWN_RANK;
+
+        public PacketCheckpoint(long timestamp) {
+            fTimestamp = timestamp;
+        }
+    }
+
+    private final CtfTmfTrace fTrace;
+    private final int fInterval;
+    private final boolean fRefineRanks;
+
+    /* Guarded by this */
+    private final Map<ICTFPacketDescriptor, PacketCheckpoint> fCheckpointsByPacket = new IdentityHashMap<>();
+    private PacketCheckpoint[] fCheckpoints = new PacketCheckpoint[0];
+    /* The number of leading checkpoints whose rank is counted */
+    private int fNbRefined = 0;
+    /* The number of events counted so far */
+    private long fNbCounted = 0;
+    private boolean fIsIndexing = false;
+    private @Nullable ITmfEventRequest fRequest = null;
+
+    private volatile @Nullable ITmfTimestamp fEndTime = null;
+
+    /**
+     * Constructor, with the refinement of the ranks set by the
+     * {@link #REFINE_RANKS_PROPERTY} system property
+     *
+     * @param trace
+     *            the trace to index
+     * @param interval
+     *            the number of events between two updates of the trace
+     *            attributes while the events are counted
+     */
+    public CtfTmfTraceIndexer(CtfTmfTrace trace, int interval) {
+        this(trace, interval, Boolean.parseBoolean(System.getProperty(REFINE_RANKS_PROPERTY, Boolean.TRUE.toString())));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace to index
+     * @param interval
+     *            the number of events between two updates of the trace
+     *            attributes while the events are counted
+     * @param refineRanks
+     *            true to count the events in the background to give their
+     *            ranks to the checkpoints, false to only seek by rank from the
+     *            start of the trace
+     */
+    public CtfTmfTraceIndexer(CtfTmfTrace trace, int interval, boolean refineRanks) {
+        fTrace = trace;
+        fInterval = Math.max(1, interval);
+        fRefineRanks = refineRanks;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        ITmfEventRequest request = fRequest;
+        if (request != null && !request.isCompleted()) {
+            request.cancel();
+        }
+    }
+
+    @Override
+    public synchronized boolean isIndexing() {
+        return fIsIndexing;
+    }
+
+    // ------------------------------------------------------------------------
+    // Building the index
+    // ------------------------------------------------------------------------
+
+    /**
+     * Build the checkpoints from the packets indexed so far, and signal the
+     * time range of the trace. The events are then counted in the background,
+     * from where the previous count stopped, whatever the offset and range.
+     */
+    @Override
+    public void buildIndex(long offset, TmfTimeRange range, boolean waitForCompletion) {
+        synchronized (this) {
+            if (fIsIndexing) {
+                return;
+            }
+            fIsIndexing = true;
+            updateCheckpoints();
+        }
+        fEndTime = fTrace.readEndTime();
+        signalTimeRange();
+
+        if (!fRefineRanks) {
+            synchronized (this) {
+                fIsIndexing = false;
+            }
+            return;
+        }
+
+        long startRank;
+        synchronized (this) {
+            startRank = fNbCounted;
+        }
+        ITmfEventRequest request = new TmfEventRequest(ITmfEvent.class,
+                TmfTimeRange.ETERNITY, startRank, ITmfEventRequest.ALL_DATA,
+                ITmfEventRequest.ExecutionType.BACKGROUND) {
+            @Override
+            public void handleData(final ITmfEvent event) {
+                super.handleData(event);
+                refine(event);
+                if ((getNbRead() % fInterval) == 0) {
+                    signalTimeRange();
+                }
+            }
+
+            @Override
+            public void handleSuccess() {
+                signalTimeRange();
+            }
+
+            @Override
+            public void handleCompleted() {
+                synchronized (CtfTmfTraceIndexer.this) {
+                    fIsIndexing = false;
+                }
+                super.handleCompleted();
+            }
+        };
+        synchronized (this) {
+            fRequest = request;
+        }
+        fTrace.sendRequest(request);
+        if (waitForCompletion) {
+            try {
+                request.waitForCompletion();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Add the checkpoints of the new packets, keeping the ranks already
+     * counted. Must be called with the lock held.
+     */
+    private void updateCheckpoints() {
+        List<@NonNull ICTFPacketDescriptor> packets = fTrace.getPacketDescriptors();
+        if (packets.size() == fCheckpoints.length) {
+            return;
+        }
+        List<PacketCheckpoint> checkpoints = new ArrayList<>(packets.size());
+        for (ICTFPacketDescriptor packet : packets) {
+            PacketCheckpoint checkpoint = fCheckpointsByPacket.computeIfAbsent(packet,
+                    p -> new PacketCheckpoint(fTrace.timestampCyclesToNanos(p.getTimestampBegin())));
+            checkpoints.add(checkpoint);
+        }
+        checkpoints.sort(Comparator.comparingLong(checkpoint -> checkpoint.fTimestamp));
+
+        fCheckpoints = checkpoints.toArray(new PacketCheckpoint[checkpoints.size()]);
+        fNbRefined = 0;
+        while (fNbRefined < fCheckpoints.length && fCheckpoints[fNbRefined].fRank != ITmfContext.UNKNOWN_RANK) {
+            fNbRefined++;
+        }
+    }
+
+    /**
+     * Count an event read by the background request, in order, and give their
+     * rank to the checkpoints at or before it
+     *
+     * @param event
+     *            the event
+     */
+    protected synchronized void refine(ITmfEvent event) {
+        ITmfTimestamp timestamp = event.getTimestamp();
+        while (fNbRefined < fCheckpoints.length && getTimestamp(fCheckpoints[fNbRefined]).compareTo(timestamp) <= 0) {
+            fCheckpoints[fNbRefined].fRank = fNbCounted;
+            fNbRefined++;
+        }
+        fNbCounted++;
+    }
+
+    /**
+     * Signal the time range of the trace, up to the end time read from the
+     * last packets, and the number of events counted so far
+     */
+    private void signalTimeRange() {
+        ITmfTimestamp startTime = fTrace.getStartTime();
+        if (startTime.equals(TmfTimestamp.BIG_BANG)) {
+            return;
+        }
+        ITmfTimestamp endTime = fTrace.getEndTime();
+        ITmfTimestamp lastTime = fEndTime;
+        if (lastTime != null && lastTime.compareTo(endTime) > 0) {
+            endTime = lastTime;
+        }
+        long nbEvents;
+        synchronized (this) {
+            nbEvents = fNbCounted;
+        }
+        fTrace.broadcast(new TmfTraceUpdatedSignal(this, fTrace, new TmfTimeRange(startTime, endTime), nbEvents));
+    }
+
+    /**
+     * The checkpoints come from the packet indexes, and their ranks from the
+     * background request, so the events read by the other contexts are not
+     * indexed.
+     */
+    @Override
+    public void updateIndex(ITmfContext context, ITmfTimestamp timestamp) {
+        // Do nothing
+    }
+
+    // ------------------------------------------------------------------------
+    // Seeking
+    // ------------------------------------------------------------------------
+
+    @Override
+    public ITmfContext seekIndex(ITmfTimestamp timestamp) {
+        if (timestamp == null) {
+            return fTrace.seekEvent(0L);
+        }
+        PacketCheckpoint checkpoint = null;
+        long rank = 0;
+        synchronized (this) {
+            /* The last checkpoint at or before the timestamp */
+            int low = 0;
+            int high = fCheckpoints.length - 1;
+            int index = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (getTimestamp(fCheckpoints[mid]).compareTo(timestamp) <= 0) {
+                    index = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (index >= 0) {
+                checkpoint = fCheckpoints[index];
+                /* The rank is only known once the events before it are counted */
+                rank = (index < fNbRefined ? checkpoint.fRank : ITmfContext.UNKNOWN_RANK);
+            }
+        }
+        return restoreCheckpoint(checkpoint, rank);
+    }
+
+    @Override
+    public ITmfContext seekIndex(long rank) {
+        if (rank < 0) {
+            return fTrace.seekEvent(0L);
+        }
+        PacketCheckpoint checkpoint = null;
+        long checkpointRank = 0;
+        synchronized (this) {
+            /*
+             * Only the counted checkpoints have a rank, the trace reads
+             * forward from the last one before the requested rank
+             */
+            int high = fNbRefined - 1;
+            int low = 0;
+            int index = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (fCheckpoints[mid].fRank <= rank) {
+                    index = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (index >= 0) {
+                checkpoint = fCheckpoints[index];
+                checkpointRank = checkpoint.fRank;
+            }
+        }
+        return restoreCheckpoint(checkpoint, checkpointRank);
+    }
+
+    /**
+     * Position the trace at the given checkpoint, or at the start of the trace
+     * with rank 0 if there is none. Called without the lock, so that the lock
+     * of the trace is never taken while it is held.
+     */
+    private ITmfContext restoreCheckpoint(@Nullable PacketCheckpoint checkpoint, long rank) {
+        ITmfLocation location = (checkpoint == null ? null : new CtfLocation(new CtfLocationInfo(checkpoint.fTimestamp, 0L)));
+        ITmfContext context = fTrace.seekEvent(location);
+        context.setRank(checkpoint == null ? 0 : rank);
+        return context;
+    }
+
+    private ITmfTimestamp getTimestamp(PacketCheckpoint checkpoint) {
+        return fTrace.createTimestamp(checkpoint.fTimestamp);
+    }
+}
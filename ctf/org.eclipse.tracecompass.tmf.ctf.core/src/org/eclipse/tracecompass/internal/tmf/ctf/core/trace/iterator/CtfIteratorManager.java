@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,17 +12,18 @@
 
 package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocation;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocationInfo;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
 import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
@@ -37,89 +38,132 @@ import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
  * @author Matthew Khouzam
  */
 public class CtfIteratorManager {
-    /*
-     * Cache size. Under 1023 on linux32 systems. Number of file handles
-     * created.
+
+    /**
+     * Default maximum number of iterators, and so of sets of file handles.
+     * Under 1023 on linux32 systems.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    /**
+     * System property to override the maximum number of iterators of a trace
+     */
+    public static final String MAX_SIZE_PROPERTY = "org.eclipse.tracecompass.tmf.ctf.core.maxIterators"; //$NON-NLS-1$
+
+    /**
+     * Number of least recently used iterators among which the one closest to
+     * the location of a new context is taken
+     */
+    private static final int REUSE_CANDIDATES = 8;
+
+    /**
+     * An iterator assigned to a context. It is invalidated when the iterator
+     * is taken back from the context.
      */
-    private static final int MAX_SIZE = 100;
+    private static final class Assignment {
+        private final CtfTmfContext fContext;
+        private final CtfIterator fIterator;
+        private volatile long fLastUsed;
+        private volatile boolean fValid = true;
 
-    /** The map of the cache */
-    private final Map<CtfTmfContext, CtfIterator> fMap;
+        public Assignment(CtfTmfContext context, CtfIterator iterator) {
+            fContext = context;
+            fIterator = iterator;
+        }
+    }
 
-    /** An array pointing to the same cache. this allows fast "random" accesses */
-    private final List<CtfTmfContext> fRandomAccess;
+    /** The assignments of the contexts, guarded by the lock */
+    private final Map<CtfTmfContext, Assignment> fMap = new HashMap<>();
 
-    /** Lock for when we access the two previous data structures */
+    /** Lock for when we access the map */
     private final Lock fAccessLock = new ReentrantLock();
 
+    /**
+     * The last assignment used by every thread, which is found without
+     * locking. It is weakly referenced so that it does not keep a trace alive
+     * for the lifetime of a thread.
+     */
+    private final ThreadLocal<WeakReference<Assignment>> fLastAssignment = new ThreadLocal<>();
+
     /** The parent trace */
     private final CtfTmfTrace fTrace;
 
-    /** Random number generator */
-    private final Random fRnd;
+    /** Maximum number of iterators */
+    private final int fMaxSize;
+
+    /** Logical clock of the uses of the iterators */
+    private final AtomicLong fClock = new AtomicLong();
+
+    private final AtomicLong fHits = new AtomicLong();
+    private final AtomicLong fSeeks = new AtomicLong();
+    private final AtomicLong fEvictions = new AtomicLong();
 
     /**
-     * Constructor
+     * Constructor, with the maximum number of iterators set by the
+     * {@link #MAX_SIZE_PROPERTY} system property, or {@link #DEFAULT_MAX_SIZE}
      *
      * @param trace
      *            The trace whose iterators this manager will manage
      */
     public CtfIteratorManager(CtfTmfTrace trace) {
-        fMap = new HashMap<>();
-        fRandomAccess = new ArrayList<>();
-        fRnd = new Random(System.nanoTime());
+        this(trace, Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace whose iterators this manager will manage
+     * @param maxSize
+     *            The maximum number of iterators
+     */
+    public CtfIteratorManager(CtfTmfTrace trace, int maxSize) {
         fTrace = trace;
+        fMaxSize = Math.max(1, maxSize);
     }
 
     /**
-     * This needs explaining: the iterator table is effectively a cache.
-     * Originally the contexts had a 1 to 1 structure with the file handles of a
-     * trace. This failed since there is a limit to how many file handles we can
-     * have opened simultaneously. Then a round-robin scheme was implemented,
-     * this lead up to a two competing contexts syncing up and using the same
-     * file handler, causing horrible slowdowns. Now a random replacement
-     * algorithm is selected. This is the same as used by arm processors, and it
-     * works quite well when many cores so this looks promising for very
-     * multi-threaded systems.
+     * Get the iterator of a context. The iterators are a cache of positioned
+     * readers: a context keeps its iterator until it is disposed, or until
+     * its iterator is taken back for another context because there are too
+     * many iterators. The context will then get a new iterator, seeked to
+     * its location, the next time it is used.
+     *
+     * The iterator taken back is the least recently used one. To spare a
+     * seek, or at least to stay in the packets that are already mapped, the
+     * one closest to the location of the new context is preferred among the
+     * few least recently used ones.
+     *
+     * Every thread remembers the last iterator it used, so that a thread
+     * reading a context does not take the lock for every event.
      *
      * @param context
      *            the context to look up
      * @return the iterator referring to the context
      */
     public CtfIterator getIterator(final CtfTmfContext context) {
-        /*
-         * if the element is in the map, we don't need to do anything else.
-         */
-        CtfIterator iter = fMap.get(context);
-        if (iter == null) {
-
-            fAccessLock.lock();
-            try {
-                /*
-                 * Assign an iterator to a context.
-                 */
-                if (fRandomAccess.size() < MAX_SIZE) {
-                    /*
-                     * if we're not full yet, just add an element.
-                     */
-                    iter = (CtfIterator) fTrace.createIterator();
-                    addElement(context, iter);
-
-                } else {
-                    /*
-                     * if we're full, randomly replace an element
-                     */
-                    iter = replaceRandomElement(context);
-                }
-                if (context.getLocation() != null) {
-                    final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
-                    iter.seek(location);
-                }
-            } finally {
-                fAccessLock.unlock();
+        WeakReference<Assignment> lastRef = fLastAssignment.get();
+        Assignment last = (lastRef == null) ? null : lastRef.get();
+        if (last != null && last.fContext == context && last.fValid) {
+            last.fLastUsed = fClock.incrementAndGet();
+            fHits.incrementAndGet();
+            return last.fIterator;
+        }
+
+        fAccessLock.lock();
+        try {
+            Assignment assignment = fMap.get(context);
+            if (assignment == null) {
+                assignment = assign(context);
+            } else {
+                fHits.incrementAndGet();
             }
+            assignment.fLastUsed = fClock.incrementAndGet();
+            fLastAssignment.set(new WeakReference<>(assignment));
+            return assignment.fIterator;
+        } finally {
+            fAccessLock.unlock();
         }
-        return iter;
     }
 
     /**
@@ -131,74 +175,158 @@ public class CtfIteratorManager {
     public void removeIterator(CtfTmfContext context) {
         fAccessLock.lock();
         try {
-            /* The try below is only to auto-call CtfIterator.close() */
-            try (CtfIterator removed = fMap.remove(context)) {
-                // try with resource
+            Assignment removed = fMap.remove(context);
+            if (removed != null) {
+                removed.fValid = false;
+                removed.fIterator.dispose();
             }
-            fRandomAccess.remove(context);
-
         } finally {
             fAccessLock.unlock();
         }
     }
 
     /**
-     * Add a pair of context and element to the hashmap and the arraylist.
+     * Assign an iterator to a context, seeked to the location of the context.
+     * Must be called with the lock held.
      *
      * @param context
      *            the context
-     * @param elem
-     *            the iterator
+     * @return the new assignment
      */
-    private void addElement(final CtfTmfContext context,
-            final CtfIterator elem) {
-        fAccessLock.lock();
-        try {
-            fMap.put(context, elem);
-            fRandomAccess.add(context);
+    private Assignment assign(final CtfTmfContext context) {
+        CtfLocationInfo target = getLocationInfo(context);
+        CtfIterator iterator;
+        if (fMap.size() < fMaxSize) {
+            /* If we're not full yet, just add an iterator */
+            iterator = (CtfIterator) fTrace.createIterator();
+        } else {
+            iterator = takeBack(target);
+        }
+        Assignment assignment = new Assignment(context, iterator);
+        fMap.put(context, assignment);
 
-        } finally {
-            fAccessLock.unlock();
+        iterator.setRequiredFields(context.getRequiredFields());
+        if (target != null) {
+            if (!target.equals(iterator.getLocation().getLocationInfo())) {
+                fSeeks.incrementAndGet();
+            }
+            iterator.seek(target);
         }
+        return assignment;
     }
 
     /**
-     * Replace a random element
+     * Take back the iterator of another context, preferring the one closest
+     * to a location among the least recently used ones. Must be called with
+     * the lock held.
      *
-     * @param context
-     *            the context to swap in
-     * @return the iterator of the removed elements.
-     */
-    private CtfIterator replaceRandomElement(final CtfTmfContext context) {
-        /*
-         * This needs some explanation too: We need to select a random victim
-         * and remove it. The order of the elements is not important, so instead
-         * of just calling arraylist.remove(element) which has an O(n)
-         * complexity, we pick an random number. The element is swapped out of
-         * the array and removed and replaced in the hashmap.
-         */
-        fAccessLock.lock(); // just in case, should only be called when already locked
-        try {
-            final int size = fRandomAccess.size();
-            final int pos = fRnd.nextInt(size);
-            final CtfTmfContext victim = fRandomAccess.get(pos);
-            fRandomAccess.set(pos, context);
-            CtfIterator elem = checkNotNull(fMap.remove(victim));
-            if (elem.isClosed()) {
-                /*
-                 * In case the iterator streams have been closed, we need to
-                 * replace it by a fresh new one to access the trace. We also
-                 * report that as an error as it should not happen.
-                 */
-                Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + victim.getTrace()); //$NON-NLS-1$
-
-                elem.dispose();
-                elem = (CtfIterator) fTrace.createIterator();
+     * @param target
+     *            the location the iterator will be seeked to, can be null
+     * @return the iterator
+     */
+    private CtfIterator takeBack(CtfLocationInfo target) {
+        List<Assignment> candidates = new ArrayList<>(fMap.values());
+        candidates.sort((a, b) -> Long.compare(a.fLastUsed, b.fLastUsed));
+        int nbCandidates = Math.min(REUSE_CANDIDATES, candidates.size());
+
+        Assignment victim = candidates.get(0);
+        if (target != null) {
+            long bestDistance = Long.MAX_VALUE;
+            for (int i = 0; i < nbCandidates; i++) {
+                Assignment candidate = candidates.get(i);
+                long distance = distance(candidate.fIterator.getLocation().getLocationInfo(), target);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    victim = candidate;
+                }
             }
-            fMap.put(context, elem);
-            victim.dispose();
-            return elem;
+        }
+
+        fMap.remove(victim.fContext);
+        victim.fValid = false;
+        fEvictions.incrementAndGet();
+        CtfIterator iterator = victim.fIterator;
+        if (iterator.isClosed()) {
+            /*
+             * In case the iterator streams have been closed, we need to
+             * replace it by a fresh new one to access the trace. We also
+             * report that as an error as it should not happen.
+             */
+            Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + victim.fContext.getTrace()); //$NON-NLS-1$
+
+            iterator.dispose();
+            iterator = (CtfIterator) fTrace.createIterator();
+        }
+        return iterator;
+    }
+
+    private static CtfLocationInfo getLocationInfo(CtfTmfContext context) {
+        ITmfLocation location = context.getLocation();
+        if (location == null) {
+            return null;
+        }
+        return (CtfLocationInfo) location.getLocationInfo();
+    }
+
+    /**
+     * Distance between the location of an iterator and a target location, 0
+     * if no seek is needed at all
+     */
+    private static long distance(CtfLocationInfo current, CtfLocationInfo target) {
+        if (current.equals(target)) {
+            return 0;
+        }
+        if (current.equals(CtfLocation.INVALID_LOCATION)) {
+            return Long.MAX_VALUE;
+        }
+        long diff = Math.abs(current.getTimestamp() - target.getTimestamp());
+        /* Still farther than an exact match */
+        return (diff == Long.MAX_VALUE) ? diff : diff + 1;
+    }
 
+    // ------------------------------------------------------------------------
+    // Statistics
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the number of lookups that found the iterator of the context
+     * already assigned to it
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return fHits.get();
+    }
+
+    /**
+     * Get the number of iterators that had to be seeked to the location of a
+     * context when they were assigned to it
+     *
+     * @return the number of seeks
+     */
+    public long getSeekCount() {
+        return fSeeks.get();
+    }
+
+    /**
+     * Get the number of iterators that were taken back from a context to be
+     * assigned to another one
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return fEvictions.get();
+    }
+
+    /**
+     * Get the number of iterators currently assigned to contexts
+     *
+     * @return the number of iterators
+     */
+    public int size() {
+        fAccessLock.lock();
+        try {
+            return fMap.size();
         } finally {
             fAccessLock.unlock();
         }
@@ -211,14 +339,14 @@ public class CtfIteratorManager {
     public void dispose() {
         fAccessLock.lock();
         try {
-            for (CtfIterator iterator : fMap.values()) {
-                iterator.dispose();
+            for (Assignment assignment : fMap.values()) {
+                assignment.fValid = false;
+                assignment.fIterator.dispose();
             }
             fMap.clear();
-            fRandomAccess.clear();
 
         } finally {
             fAccessLock.unlock();
         }
     }
-}
\ No newline at end of file
+}
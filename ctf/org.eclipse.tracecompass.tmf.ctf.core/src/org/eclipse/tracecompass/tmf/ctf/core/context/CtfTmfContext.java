@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -13,6 +13,10 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -36,6 +40,8 @@ public class CtfTmfContext implements ITmfContext {
 
     private final CtfTmfTrace fTrace;
 
+    private @Nullable Map<String, Set<String>> fRequiredFields;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -112,6 +118,35 @@ public class CtfTmfContext implements ITmfContext {
         return fTrace;
     }
 
+    /**
+     * Get the payload fields to decode per event name when reading from this
+     * context
+     *
+     * @return the names of the required fields per event name, or null to
+     *         decode all the fields of every event
+     * @since 2.1
+     */
+    public synchronized @Nullable Map<String, Set<String>> getRequiredFields() {
+        return fRequiredFields;
+    }
+
+    /**
+     * Set the payload fields to decode per event name when reading from this
+     * context. The current event is not affected.
+     *
+     * @param requiredFields
+     *            the names of the required fields per event name, or null to
+     *            decode all the fields of every event
+     * @since 2.1
+     */
+    public synchronized void setRequiredFields(@Nullable Map<String, Set<String>> requiredFields) {
+        fRequiredFields = requiredFields;
+        /* An iterator assigned later gets the fields from the manager */
+        if (fCurLocation != null && !CtfLocation.INVALID_LOCATION.equals(fCurLocation.getLocationInfo())) {
+            getIterator().setRequiredFields(requiredFields);
+        }
+    }
+
     /**
      * Gets the current event. Wrapper to help CtfTmfTrace
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -15,20 +15,22 @@ package org.eclipse.tracecompass.tmf.ctf.core.event;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
-import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.tmf.core.event.ITmfCustomAttributes;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -81,10 +83,10 @@ public class CtfTmfEvent extends TmfEvent
     private final String fEventName;
 
     /** Lazy-loaded field containing the event's payload */
-    private transient @Nullable ITmfEventField fContent;
+    private transient volatile @Nullable ITmfEventField fContent;
 
     /** Lazy-loaded field for the type, overriding TmfEvent's field */
-    private transient @Nullable CtfTmfEventType fEventType;
+    private transient volatile @Nullable CtfTmfEventType fEventType;
 
     private final @Nullable ICTFStream fStream;
     private final Map<String, Object> fPacketAttributes;
@@ -252,11 +254,20 @@ public class CtfTmfEvent extends TmfEvent
         return (CtfTmfTrace) super.getTrace();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The type only holds the names of the fields declared for the event, it
+     * does not need the content of the event to be built. The fields that the
+     * reader did not decode are part of the type.
+     */
     @Override
-    public synchronized ITmfEventType getType() {
+    public ITmfEventType getType() {
         CtfTmfEventType type = fEventType;
         if (type == null) {
-            type = new CtfTmfEventType(fEventName, getContent());
+            /* Concurrent callers may each create an equal type, which is harmless */
+            Collection<String> fieldNames = getDeclaredFieldNames();
+            type = new CtfTmfEventType(fEventName, TmfEventField.makeRoot(fieldNames.toArray(new String[fieldNames.size()])));
 
             /*
              * Register the event type in the owning trace, but only if there is
@@ -268,48 +279,106 @@ public class CtfTmfEvent extends TmfEvent
         return type;
     }
 
+    /**
+     * Get the names of the fields declared for this event: the fields of the
+     * payload, then the fields of the stream and event contexts, in the order
+     * of the content.
+     */
+    private Collection<String> getDeclaredFieldNames() {
+        Set<String> fieldNames = new LinkedHashSet<>();
+        IEventDeclaration declaration = fEventDeclaration;
+        if (declaration == null) {
+            return fieldNames;
+        }
+        StructDeclaration fields = declaration.getFields();
+        if (fields != null) {
+            for (String fieldName : fields.getFieldsList()) {
+                fieldNames.add(fieldName);
+            }
+        }
+        ICTFStream stream = fStream;
+        StructDeclaration streamContext = (stream == null ? null : stream.getEventContextDecl());
+        if (streamContext != null) {
+            for (String fieldName : streamContext.getFieldsList()) {
+                fieldNames.add(CtfConstants.CONTEXT_FIELD_PREFIX + fieldName);
+            }
+        }
+        StructDeclaration eventContext = declaration.getContext();
+        if (eventContext != null) {
+            for (String fieldName : eventContext.getFieldsList()) {
+                fieldNames.add(CtfConstants.CONTEXT_FIELD_PREFIX + fieldName);
+            }
+        }
+        return fieldNames;
+    }
+
     @Override
     public String getName() {
         return fEventName;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The fields of the content are read from the event definition when they
+     * are looked up. The whole tree of fields is only built if all the fields
+     * are requested.
+     */
     @Override
-    public synchronized ITmfEventField getContent() {
+    public ITmfEventField getContent() {
         ITmfEventField content = fContent;
         if (content == null) {
-            content = new TmfEventField(
-                    ITmfEventField.ROOT_FIELD_ID, null, parseFields(fEvent));
+            content = new CtfTmfEventContent(fEvent);
             fContent = content;
         }
         return content;
     }
 
     /**
-     * Extract the field information from the structDefinition haze-inducing
-     * mess, and put them into something ITmfEventField can cope with.
+     * Read the value of an integer or enumeration field directly from the
+     * event definition, without building the content of the event. The fields
+     * of the event context are read with the
+     * {@link CtfConstants#CONTEXT_FIELD_PREFIX} prefix.
+     *
+     * @param name
+     *            The name of the field
+     * @param defaultValue
+     *            The value to return if the event has no such integer field
+     * @return The value of the field
+     * @since 2.1
      */
-    private static CtfTmfEventField[] parseFields(IEventDefinition eventDef) {
-        List<CtfTmfEventField> fields = new ArrayList<>();
-
-        ICompositeDefinition structFields = eventDef.getFields();
-        if (structFields != null) {
-            if (structFields.getFieldNames() != null) {
-                for (String fn : structFields.getFieldNames()) {
-                    fields.add(CtfTmfEventField.parseField((IDefinition) structFields.getDefinition(fn), fn));
-                }
-            }
+    public long getLongFieldValue(String name, long defaultValue) {
+        IDefinition definition = CtfTmfEventContent.getDefinition(fEvent, name);
+        if (definition instanceof IntegerDefinition) {
+            return ((IntegerDefinition) definition).getValue();
         }
-        /* Add context information as CtfTmfEventField */
-        ICompositeDefinition structContext = eventDef.getContext();
-        if (structContext != null) {
-            for (String contextName : structContext.getFieldNames()) {
-                /* Prefix field name */
-                String curContextName = CtfConstants.CONTEXT_FIELD_PREFIX + contextName;
-                fields.add(CtfTmfEventField.parseField((IDefinition) structContext.getDefinition(contextName), curContextName));
-            }
+        if (definition instanceof EnumDefinition) {
+            return ((EnumDefinition) definition).getIntegerValue();
         }
+        return defaultValue;
+    }
 
-        return fields.toArray(new @NonNull CtfTmfEventField[fields.size()]);
+    /**
+     * Read the value of a string field, or the label of an enumeration field,
+     * directly from the event definition, without building the content of the
+     * event. The fields of the event context are read with the
+     * {@link CtfConstants#CONTEXT_FIELD_PREFIX} prefix.
+     *
+     * @param name
+     *            The name of the field
+     * @return The value of the field, or null if the event has no such string
+     *         field
+     * @since 2.1
+     */
+    public @Nullable String getStringFieldValue(String name) {
+        IDefinition definition = CtfTmfEventContent.getDefinition(fEvent, name);
+        if (definition instanceof StringDefinition) {
+            return ((StringDefinition) definition).getValue();
+        }
+        if (definition instanceof EnumDefinition) {
+            return ((EnumDefinition) definition).getValue();
+        }
+        return null;
     }
 
     // ------------------------------------------------------------------------
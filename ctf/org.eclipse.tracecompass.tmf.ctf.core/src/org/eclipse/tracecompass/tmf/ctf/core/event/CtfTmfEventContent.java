@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.ctf.core.CtfConstants;
+
+/**
+ * Root field of the content of a CTF event. A field looked up by name is
+ * converted alone from the event definition, the whole tree of
+ * {@link CtfTmfEventField} is only built when all the fields are needed, for
+ * example to display them or to compare two contents.
+ */
+@NonNullByDefault
+final class CtfTmfEventContent implements ITmfEventField {
+
+    private final IEventDefinition fEvent;
+
+    /** Lazy-loaded tree of all the fields */
+    private volatile @Nullable ITmfEventField fContent;
+
+    /**
+     * Constructor
+     *
+     * @param event
+     *            The event definition
+     */
+    public CtfTmfEventContent(IEventDefinition event) {
+        fEvent = event;
+    }
+
+    /**
+     * Get the definition of a field of an event, or of its context if the name
+     * has the context prefix
+     *
+     * @param event
+     *            The event definition
+     * @param name
+     *            The name of the field
+     * @return The definition, or null if the event has no such field
+     */
+    public static @Nullable IDefinition getDefinition(IEventDefinition event, String name) {
+        ICompositeDefinition structFields = event.getFields();
+        if (structFields != null) {
+            IDefinition definition = structFields.getDefinition(name);
+            if (definition != null) {
+                return definition;
+            }
+        }
+        ICompositeDefinition structContext = event.getContext();
+        if (structContext != null && name.startsWith(CtfConstants.CONTEXT_FIELD_PREFIX)) {
+            return structContext.getDefinition(name.substring(CtfConstants.CONTEXT_FIELD_PREFIX.length()));
+        }
+        return null;
+    }
+
+    private ITmfEventField getContent() {
+        ITmfEventField content = fContent;
+        if (content == null) {
+            content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, parseFields(fEvent));
+            fContent = content;
+        }
+        return content;
+    }
+
+    /**
+     * Extract the field information from the structDefinition haze-inducing
+     * mess, and put them into something ITmfEventField can cope with.
+     */
+    private static CtfTmfEventField[] parseFields(IEventDefinition eventDef) {
+        List<CtfTmfEventField> fields = new ArrayList<>();
+
+        ICompositeDefinition structFields = eventDef.getFields();
+        if (structFields != null) {
+            if (structFields.getFieldNames() != null) {
+                for (String fn : structFields.getFieldNames()) {
+                    /* Fields that were not required by the reader are not decoded */
+                    IDefinition definition = (IDefinition) structFields.getDefinition(fn);
+                    if (definition != null) {
+                        fields.add(CtfTmfEventField.parseField(definition, fn));
+                    }
+                }
+            }
+        }
+        /* Add context information as CtfTmfEventField */
+        ICompositeDefinition structContext = eventDef.getContext();
+        if (structContext != null) {
+            for (String contextName : structContext.getFieldNames()) {
+                /* Prefix field name */
+                String curContextName = CtfConstants.CONTEXT_FIELD_PREFIX + contextName;
+                fields.add(CtfTmfEventField.parseField((IDefinition) structContext.getDefinition(contextName), curContextName));
+            }
+        }
+
+        return fields.toArray(new @NonNull CtfTmfEventField[fields.size()]);
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfEventField
+    // ------------------------------------------------------------------------
+
+    @Override
+    public String getName() {
+        return ITmfEventField.ROOT_FIELD_ID;
+    }
+
+    @Override
+    public @Nullable Object getValue() {
+        return null;
+    }
+
+    @Override
+    public String getFormattedValue() {
+        return getContent().getFormattedValue();
+    }
+
+    @Override
+    public Collection<String> getFieldNames() {
+        ITmfEventField content = fContent;
+        if (content != null) {
+            return content.getFieldNames();
+        }
+        List<String> names = new ArrayList<>();
+        ICompositeDefinition structFields = fEvent.getFields();
+        if (structFields != null) {
+            for (String fn : structFields.getFieldNames()) {
+                if (structFields.getDefinition(fn) != null) {
+                    names.add(fn);
+                }
+            }
+        }
+        ICompositeDefinition structContext = fEvent.getContext();
+        if (structContext != null) {
+            for (String contextName : structContext.getFieldNames()) {
+                names.add(CtfConstants.CONTEXT_FIELD_PREFIX + contextName);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public Collection<? extends ITmfEventField> getFields() {
+        return getContent().getFields();
+    }
+
+    @Override
+    public @Nullable ITmfEventField getField(String... path) {
+        if (path.length == 0) {
+            return null;
+        }
+        ITmfEventField content = fContent;
+        if (content != null) {
+            return content.getField(path);
+        }
+        String name = path[0];
+        IDefinition definition = getDefinition(fEvent, name);
+        if (definition == null) {
+            return null;
+        }
+        ITmfEventField field = CtfTmfEventField.parseField(definition, name);
+        for (int i = 1; i < path.length && field != null; i++) {
+            field = field.getField(path[i]);
+        }
+        return field;
+    }
+
+    // ------------------------------------------------------------------------
+    // Object
+    // ------------------------------------------------------------------------
+
+    @Override
+    public int hashCode() {
+        return getContent().hashCode();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CtfTmfEventContent)) {
+            return false;
+        }
+        return getContent().equals(((CtfTmfEventContent) obj).getContent());
+    }
+
+    @Override
+    public String toString() {
+        return getContent().toString();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2011, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -37,6 +37,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.VariantDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.ByteArrayDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.IntegerArrayDefinition;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.ctf.core.CtfEnumPair;
@@ -153,6 +154,18 @@ public abstract class CtfTmfEventField extends TmfEventField {
                             elemIntType.getBase(),
                             elemIntType.isSigned());
 
+                } else if (arrayDef instanceof IntegerArrayDefinition) {
+                    IntegerArrayDefinition integerArrayDefinition = (IntegerArrayDefinition) arrayDef;
+                    /* it's a CTFIntegerArrayField, decoded in bulk */
+                    int size = arrayDef.getLength();
+                    long[] values = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = integerArrayDefinition.getValue(i);
+                    }
+                    field = new CTFIntegerArrayField(fieldName, values,
+                            elemIntType.getBase(),
+                            elemIntType.isSigned());
+
                 } else {
                     /* it's a CTFIntegerArrayField */
                     int size = arrayDef.getLength();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2012, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,6 +16,8 @@ package org.eclipse.tracecompass.tmf.ctf.core.trace;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -30,19 +32,26 @@ import java.util.Set;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.CTFClock;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.ctf.core.trace.Metadata;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.indexer.CtfTmfTraceIndexer;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIteratorManager;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -52,16 +61,20 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceConcurrentReading;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceKnownSize;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -86,7 +99,7 @@ import com.google.common.collect.ImmutableSet;
  */
 public class CtfTmfTrace extends TmfTrace
         implements ITmfPropertiesProvider, ITmfPersistentlyIndexable,
-        ITmfTraceWithPreDefinedEvents, ITmfTraceKnownSize {
+        ITmfTraceWithPreDefinedEvents, ITmfTraceKnownSize, ITmfTraceConcurrentReading {
 
     // -------------------------------------------
     // Constants
@@ -99,6 +112,14 @@ public class CtfTmfTrace extends TmfTrace
      */
     public static final String CLOCK_OFFSET = "clock_offset"; //$NON-NLS-1$
 
+    /**
+     * System property to decode the events of the streams of the traces ahead
+     * of their readers, on worker threads, by default
+     *
+     * @since 2.1
+     */
+    public static final String READ_AHEAD_PROPERTY = "org.eclipse.tracecompass.tmf.ctf.core.readAhead"; //$NON-NLS-1$
+
     /**
      * Default cache size for CTF traces
      */
@@ -151,6 +172,12 @@ public class CtfTmfTrace extends TmfTrace
     /** Reference to the CTF Trace */
     private CTFTrace fTrace;
 
+    /** Whether the iterators decode the events ahead */
+    private volatile boolean fReadAhead = Boolean.getBoolean(READ_AHEAD_PROPERTY);
+
+    /** The job following the trace while it is written, if any */
+    private volatile @Nullable Job fTailingJob = null;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -204,7 +231,10 @@ public class CtfTmfTrace extends TmfTrace
         super.initTrace(resource, path, eventType);
 
         try {
-            this.fTrace = new CTFTrace(path);
+            /* Reuse the packet indexes of the previous sessions */
+            this.fTrace = new CTFTrace(new File(path), new File(TmfTraceManager.getSupplementaryFileDir(this)));
+            /* Index the packets of all the stream files at once */
+            this.fTrace.indexPackets();
             CtfTmfContext ctx;
             /* Set the start and (current) end times for this trace */
             ctx = (CtfTmfContext) seekEvent(0L);
@@ -272,6 +302,7 @@ public class CtfTmfTrace extends TmfTrace
 
     @Override
     public synchronized void dispose() {
+        cancelTailing();
         fIteratorManager.dispose();
         if (fTrace != null) {
             fTrace = null;
@@ -406,6 +437,20 @@ public class CtfTmfTrace extends TmfTrace
         return context;
     }
 
+    /**
+     * The payload fields required by the request are passed to the context,
+     * so that the other fields of its events are not decoded.
+     */
+    @Override
+    public synchronized ITmfContext armRequest(final ITmfEventRequest request) {
+        ITmfContext context = super.armRequest(request);
+        Map<String, Set<String>> requiredFields = request.getRequiredFields();
+        if (requiredFields != null && context instanceof CtfTmfContext) {
+            ((CtfTmfContext) context).setRequiredFields(requiredFields);
+        }
+        return context;
+    }
+
     /**
      * Method readNextEvent.
      *
@@ -437,6 +482,58 @@ public class CtfTmfTrace extends TmfTrace
         return event;
     }
 
+    // -------------------------------------------
+    // ITmfTraceConcurrentReading
+    // -------------------------------------------
+
+    /**
+     * The private context is an iterator of its own, outside of the pool of
+     * the iterator manager, so reading it does not need the trace lock. The
+     * timestamp is shifted back by the offset of the trace's transform at that
+     * time, which is exact for constant offsets.
+     *
+     * @since 2.1
+     */
+    @Override
+    public synchronized @Nullable ITmfContext createPrivateContext(ITmfTimestamp timestamp) {
+        if (fTrace == null) {
+            return null;
+        }
+        ITmfContext context = createIterator();
+        if (!(context instanceof CtfIterator)) {
+            return null;
+        }
+        CtfIterator iterator = (CtfIterator) context;
+        if (timestamp.compareTo(getStartTime()) > 0) {
+            long time = timestamp.toNanos();
+            long offset = getTimestampTransform().transform(time) - time;
+            iterator.seek(new CtfLocationInfo(time - offset, 0L));
+        }
+        iterator.setRank(ITmfContext.UNKNOWN_RANK);
+        return iterator;
+    }
+
+    /**
+     * @since 2.1
+     */
+    @Override
+    public @Nullable CtfTmfEvent readNext(ITmfContext context) {
+        if (!(context instanceof CtfIterator)) {
+            return null;
+        }
+        CtfIterator iterator = (CtfIterator) context;
+        if (CtfLocation.INVALID_LOCATION.equals(iterator.getLocation().getLocationInfo())) {
+            return null;
+        }
+        CtfTmfEvent event = iterator.getCurrentEvent();
+        if (event != null) {
+            /* Only the time range of the trace is updated under the lock */
+            updateAttributes(context, event);
+            iterator.advance();
+        }
+        return event;
+    }
+
     /**
      * Ctf traces have a clock with a unique uuid that will be used to identify
      * the host. Traces with the same clock uuid will be known to have been made
@@ -522,6 +619,65 @@ public class CtfTmfTrace extends TmfTrace
         return fTrace.timestampNanoToCycles(nanos);
     }
 
+    /**
+     * Get the packets of all the stream files of the trace that are indexed
+     * so far
+     *
+     * @return the packet descriptors, sorted by increasing begin timestamp in
+     *         every stream file
+     * @since 2.1
+     */
+    public List<@NonNull ICTFPacketDescriptor> getPacketDescriptors() {
+        CTFTrace trace = fTrace;
+        List<@NonNull ICTFPacketDescriptor> packets = new ArrayList<>();
+        if (trace == null) {
+            return packets;
+        }
+        for (ICTFStream stream : trace.getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                for (ICTFPacketDescriptor packet : streamInput.getPacketDescriptors()) {
+                    packets.add(checkNotNull(packet));
+                }
+            }
+        }
+        return packets;
+    }
+
+    /**
+     * Read the timestamp of the last event of the trace. Only the last packet
+     * that contains events is read in every stream, the others are found with
+     * the packet indexes.
+     *
+     * @return the timestamp of the last event, or null if the trace has no
+     *         events or could not be read
+     * @since 2.1
+     */
+    public @Nullable ITmfTimestamp readEndTime() {
+        CTFTrace trace = fTrace;
+        if (trace == null) {
+            return null;
+        }
+        IEventDefinition lastEvent = null;
+        for (ICTFStream stream : trace.getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                try (CTFStreamInputReader reader = new CTFStreamInputReader(streamInput)) {
+                    reader.goToLastEvent();
+                    IEventDefinition event = reader.getCurrentEvent();
+                    if (event != null && (lastEvent == null || event.getTimestamp() > lastEvent.getTimestamp())) {
+                        lastEvent = event;
+                    }
+                } catch (CTFException | IOException e) {
+                    Activator.getDefault().logError(e.getMessage(), e);
+                    return null;
+                }
+            }
+        }
+        if (lastEvent == null) {
+            return null;
+        }
+        return createTimestamp(timestampCyclesToNanos(lastEvent.getTimestamp()));
+    }
+
     /**
      * Gets the list of declared events
      */
@@ -531,7 +687,8 @@ public class CtfTmfTrace extends TmfTrace
     }
 
     /**
-     * Register an event type to this trace.
+     * Register an event type to this trace. If a type of the same name is
+     * already registered, it is kept.
      *
      * Public visibility so that {@link CtfTmfEvent#getType} can call it.
      *
@@ -541,7 +698,7 @@ public class CtfTmfTrace extends TmfTrace
      *            The event type to register
      */
     public void registerEventType(CtfTmfEventType eventType) {
-        fContainedEventTypes.put(eventType.getName(), eventType);
+        fContainedEventTypes.putIfAbsent(eventType.getName(), eventType);
     }
 
     // -------------------------------------------
@@ -579,6 +736,31 @@ public class CtfTmfTrace extends TmfTrace
         return fEventFactory;
     }
 
+    /**
+     * Set whether the iterators created from now on decode the events of the
+     * streams ahead, on worker threads shared by all the traces. The default
+     * is set by the {@link #READ_AHEAD_PROPERTY} system property. It pays off
+     * when the events are read sequentially, for example by event requests,
+     * and not when the iterators mostly seek.
+     *
+     * @param readAhead
+     *            true to decode the events ahead
+     * @since 2.1
+     */
+    public void setReadAhead(boolean readAhead) {
+        fReadAhead = readAhead;
+    }
+
+    /**
+     * Get whether the iterators created from now on decode the events ahead
+     *
+     * @return true if the events are decoded ahead
+     * @since 2.1
+     */
+    public boolean isReadAhead() {
+        return fReadAhead;
+    }
+
     /**
      * Get an iterator to the trace
      *
@@ -586,7 +768,9 @@ public class CtfTmfTrace extends TmfTrace
      */
     public ITmfContext createIterator() {
         try {
-            return new CtfIterator(fTrace, this);
+            CtfIterator iterator = new CtfIterator(fTrace, this);
+            iterator.setReadAhead(fReadAhead);
+            return iterator;
         } catch (CTFException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
@@ -605,7 +789,9 @@ public class CtfTmfTrace extends TmfTrace
      */
     public ITmfContext createIterator(CtfLocationInfo ctfLocationData, long rank) {
         try {
-            return new CtfIterator(fTrace, this, ctfLocationData, rank);
+            CtfIterator iterator = new CtfIterator(fTrace, this, ctfLocationData, rank);
+            iterator.setReadAhead(fReadAhead);
+            return iterator;
         } catch (CTFException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
@@ -666,7 +852,7 @@ public class CtfTmfTrace extends TmfTrace
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        return new TmfBTreeTraceIndexer(this, interval);
+        return new CtfTmfTraceIndexer(this, interval);
     }
 
     @Override
@@ -676,6 +862,9 @@ public class CtfTmfTrace extends TmfTrace
 
     @Override
     public boolean isComplete() {
+        if (fTailingJob != null) {
+            return false;
+        }
         if (getResource() == null) {
             return true;
         }
@@ -710,6 +899,129 @@ public class CtfTmfTrace extends TmfTrace
         }
     }
 
+    // -------------------------------------------
+    // Live tailing
+    // -------------------------------------------
+
+    /**
+     * Follow the trace while it is being written. The trace directory is
+     * polled for new stream files and new complete packets, and the new time
+     * range of the trace is signaled when it grows, so that the indexer and
+     * the analyses read the new events from where they stopped. The trace is
+     * not complete until {@link #stopTailing()} is called.
+     *
+     * @param pollingInterval
+     *            the time between two polls of the trace directory, in
+     *            milliseconds
+     * @since 2.1
+     */
+    public synchronized void startTailing(final long pollingInterval) {
+        if (fTailingJob != null) {
+            return;
+        }
+        Job job = new Job("Tailing " + getName()) { //$NON-NLS-1$
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                refresh();
+                schedule(pollingInterval);
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        fTailingJob = job;
+        job.schedule();
+    }
+
+    /**
+     * Stop following the trace. The data written since the last poll is read,
+     * then the trace is complete and the analyses can finish.
+     *
+     * @since 2.1
+     */
+    public void stopTailing() {
+        if (!cancelTailing()) {
+            return;
+        }
+        refresh();
+        ITmfTimestamp endTime = readEndTime();
+        if (endTime == null) {
+            endTime = getEndTime();
+        }
+        broadcast(new TmfTraceRangeUpdatedSignal(this, this, new TmfTimeRange(getStartTime(), endTime)));
+    }
+
+    private boolean cancelTailing() {
+        Job job;
+        synchronized (this) {
+            job = fTailingJob;
+            fTailingJob = null;
+        }
+        if (job == null) {
+            return false;
+        }
+        job.cancel();
+        try {
+            job.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * Look for the data written to the trace since it was opened, or since
+     * the last refresh, and signal the new time range of the trace if it ends
+     * after the events read so far. This is done at every poll while the trace
+     * is tailed.
+     *
+     * @return true if new packets or stream files were found
+     * @since 2.1
+     */
+    public boolean refresh() {
+        CTFTrace trace = fTrace;
+        if (trace == null) {
+            return false;
+        }
+        int nbStreamInputs = countStreamInputs(trace);
+        boolean updated = trace.indexNewPackets();
+        if (countStreamInputs(trace) != nbStreamInputs) {
+            /* The pooled iterators only read the stream files they were opened with */
+            synchronized (this) {
+                fIteratorManager.dispose();
+            }
+        }
+        if (getStartTime().equals(TmfTimestamp.BIG_BANG)) {
+            /* The trace was empty until now */
+            CtfTmfContext ctx = (CtfTmfContext) seekEvent(0L);
+            CtfTmfEvent event = getNext(ctx);
+            ctx.dispose();
+            if (event == null) {
+                return updated;
+            }
+            setStartTime(event.getTimestamp());
+        }
+        /*
+         * Signal the range once the indexer is done with the previous one, a
+         * range signaled while it is indexing is ignored
+         */
+        ITmfTimestamp endTime = readEndTime();
+        if (endTime != null && endTime.compareTo(getEndTime()) > 0 && !getIndexer().isIndexing()) {
+            broadcast(new TmfTraceRangeUpdatedSignal(this, this, new TmfTimeRange(getStartTime(), endTime)));
+        }
+        return updated;
+    }
+
+    private static int countStreamInputs(CTFTrace trace) {
+        int count = 0;
+        for (ICTFStream stream : trace.getStreams()) {
+            count += stream.getStreamInputs().size();
+        }
+        return count;
+    }
+
     /**
      * @return the number of estimated chunks of events read. This reads the
      *         file size of the trace and divides it by a factor and the average
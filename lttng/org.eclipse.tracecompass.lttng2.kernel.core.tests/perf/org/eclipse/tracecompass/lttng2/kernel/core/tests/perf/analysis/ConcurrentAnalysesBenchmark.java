@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.kernel.core.tests.perf.analysis;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
+import org.eclipse.tracecompass.analysis.os.linux.core.tid.TidAnalysisModule;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.latency.SystemCallLatencyAnalysis;
+import org.eclipse.tracecompass.lttng2.kernel.core.trace.LttngKernelTrace;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsModule;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestHelper;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Benchmarks the kernel, statistics, thread id and system call analyses
+ * running together on a trace, so their requests are coalesced and the events
+ * are read once for all of them. The events are dispatched to the analyses in
+ * series, or through a queue per analysis.
+ */
+@RunWith(Parameterized.class)
+public class ConcurrentAnalysesBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass#Concurrent analyses#";
+    private static final int LOOP_COUNT = 10;
+
+    private final String fName;
+    private final int fDispatchQueueSize;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     *            A name for the dispatch mode, to display in the header
+     * @param dispatchQueueSize
+     *            The size of the queue of each analysis, or 0 to dispatch the
+     *            events in series
+     */
+    public ConcurrentAnalysesBenchmark(String name, int dispatchQueueSize) {
+        fName = name;
+        fDispatchQueueSize = dispatchQueueSize;
+    }
+
+    /**
+     * @return The arrays of parameters
+     */
+    @Parameters(name = "{index}: {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[][] {
+                { "In series", 0 },
+                { "Parallel dispatch", 1000 }
+        });
+    }
+
+    /**
+     * Run the benchmark with "trace2"
+     */
+    @Test
+    public void testTrace2() {
+        runTest(CtfTestTrace.TRACE2, "Trace2");
+    }
+
+    /**
+     * Run the benchmark with "many threads"
+     */
+    @Test
+    public void testManyThreads() {
+        runTest(CtfTestTrace.MANY_THREADS, "Many threads");
+    }
+
+    /**
+     * Run the benchmark with "django httpd"
+     */
+    @Test
+    public void testDjangoHttpd() {
+        runTest(CtfTestTrace.DJANGO_HTTPD, "Django httpd");
+    }
+
+    private static List<IAnalysisModule> createModules(LttngKernelTrace trace) throws TmfAnalysisException {
+        List<IAnalysisModule> modules = new ArrayList<>();
+        KernelAnalysisModule kernel = new KernelAnalysisModule();
+        kernel.setId("test.kernel");
+        modules.add(kernel);
+        TmfStatisticsModule statistics = new TmfStatisticsModule();
+        statistics.setId("test.statistics");
+        modules.add(statistics);
+        TidAnalysisModule tid = new TidAnalysisModule();
+        tid.setId("test.tid");
+        modules.add(tid);
+        modules.add(new SystemCallLatencyAnalysis());
+        for (IAnalysisModule module : modules) {
+            module.setTrace(trace);
+        }
+        return modules;
+    }
+
+    private void runTest(@NonNull CtfTestTrace testTrace, String testName) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName + " (" + fName + ')');
+        perf.tagAsSummary(pm, "Concurrent analyses: " + testName + " (" + fName + ')', Dimension.ELAPSED_PROCESS);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            LttngKernelTrace trace = null;
+            List<IAnalysisModule> modules = new ArrayList<>();
+            String path = CtfTmfTestTraceUtils.getTrace(testTrace).getPath();
+
+            try {
+                trace = new LttngKernelTrace();
+                trace.initTrace(null, path, CtfTmfEvent.class);
+                trace.setDispatchQueueSize(fDispatchQueueSize);
+                modules = createModules(trace);
+
+                List<Callable<Boolean>> analyses = new ArrayList<>();
+                for (IAnalysisModule module : modules) {
+                    analyses.add(() -> TmfTestHelper.executeAnalysis(module));
+                }
+
+                pm.start();
+                List<Future<Boolean>> results = executor.invokeAll(analyses);
+                pm.stop();
+
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+
+                /*
+                 * Delete the supplementary files, so that the next iteration
+                 * rebuilds the analyses.
+                 */
+                File suppDir = new File(TmfTraceManager.getSupplementaryFileDir(trace));
+                for (File file : suppDir.listFiles()) {
+                    file.delete();
+                }
+
+            } catch (TmfAnalysisException | TmfTraceException | ExecutionException e) {
+                fail(e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e.getMessage());
+            } finally {
+                for (IAnalysisModule module : modules) {
+                    module.dispose();
+                }
+                if (trace != null) {
+                    trace.dispose();
+                }
+            }
+        }
+        executor.shutdown();
+        pm.commit();
+        CtfTmfTestTraceUtils.dispose(testTrace);
+    }
+}
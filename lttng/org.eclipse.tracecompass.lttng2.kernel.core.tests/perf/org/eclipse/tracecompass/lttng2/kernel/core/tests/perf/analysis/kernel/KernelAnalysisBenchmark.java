@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 École Polytechnique de Montréal
+ * Copyright (c) 2014, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -56,7 +56,8 @@ public class KernelAnalysisBenchmark {
     private enum TestModule {
 
         NORMAL_EXECUTION(""),
-        NULL_BACKEND("(Data not saved to disk)");
+        NULL_BACKEND("(Data not saved to disk)"),
+        ALL_FIELDS("(All event fields decoded)");
 
         private final String fName;
 
@@ -74,6 +75,8 @@ public class KernelAnalysisBenchmark {
                 return new KernelAnalysisModule();
             case NULL_BACKEND:
                 return new KernelAnalysisModuleNullBeStub();
+            case ALL_FIELDS:
+                return new KernelAnalysisModuleAllFieldsStub();
             default:
                 throw new IllegalStateException();
             }
@@ -99,7 +102,8 @@ public class KernelAnalysisBenchmark {
     public static Iterable<Object[]> getParameters() {
         return Arrays.asList(new Object[][] {
                 { TestModule.NORMAL_EXECUTION.name(), TestModule.NORMAL_EXECUTION },
-                { TestModule.NULL_BACKEND.name(), TestModule.NULL_BACKEND }
+                { TestModule.NULL_BACKEND.name(), TestModule.NULL_BACKEND },
+                { TestModule.ALL_FIELDS.name(), TestModule.ALL_FIELDS }
         });
     }
 
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.kernel.core.tests.perf.analysis.kernel;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.KernelStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+
+/**
+ * This class is an extension of {@link KernelAnalysisModule} whose state
+ * provider does not declare the event fields it reads, so that every field of
+ * every event is decoded. This allows to benchmark the analysis without the
+ * field projection.
+ */
+public class KernelAnalysisModuleAllFieldsStub extends KernelAnalysisModule {
+
+    @Override
+    protected @NonNull ITmfStateProvider createStateProvider() {
+        IKernelTrace trace = (IKernelTrace) checkNotNull(getTrace());
+        return new KernelStateProvider(trace, trace.getKernelEventLayout()) {
+            @Override
+            public @Nullable Map<String, Set<String>> getRequiredFields() {
+                return null;
+            }
+        };
+    }
+
+}
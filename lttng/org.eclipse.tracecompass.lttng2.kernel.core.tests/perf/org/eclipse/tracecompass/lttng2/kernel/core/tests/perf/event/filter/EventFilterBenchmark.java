@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.kernel.core.tests.perf.event.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompiler;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Benchmarks typical filters of the events table on kernel traces, matched
+ * with the filter tree or with the compiled filter. The events are read before
+ * each iteration, so the time spent reading them is not measured.
+ */
+@RunWith(Parameterized.class)
+public class EventFilterBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass#Event filter#";
+    private static final int LOOP_COUNT = 10;
+    private static final int MAX_EVENTS = 500000;
+
+    private final String fName;
+    private final boolean fCompiled;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     *            A name for the filtering mode, to display in the header
+     * @param compiled
+     *            True to match the events with the compiled filter, false to
+     *            match them with the filter tree
+     */
+    public EventFilterBenchmark(String name, boolean compiled) {
+        fName = name;
+        fCompiled = compiled;
+    }
+
+    /**
+     * @return The arrays of parameters
+     */
+    @Parameters(name = "{index}: {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[][] {
+                { "Filter tree", false },
+                { "Compiled filter", true }
+        });
+    }
+
+    /**
+     * Run the benchmark with "trace2"
+     */
+    @Test
+    public void testTrace2() {
+        runTest(CtfTestTrace.TRACE2, "Trace2");
+    }
+
+    /**
+     * Run the benchmark with "django httpd"
+     */
+    @Test
+    public void testDjangoHttpd() {
+        runTest(CtfTestTrace.DJANGO_HTTPD, "Django httpd");
+    }
+
+    // ------------------------------------------------------------------------
+    // Filters
+    // ------------------------------------------------------------------------
+
+    private static TmfFilterEqualsNode eventType(ITmfFilterTreeNode parent, String type) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(parent);
+        node.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        node.setValue(type);
+        return node;
+    }
+
+    private static Map<String, ITmfFilterTreeNode> createFilters() {
+        Map<String, ITmfFilterTreeNode> filters = new LinkedHashMap<>();
+
+        /* Event type */
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        eventType(root, "sched_switch");
+        filters.put("Event type", root);
+
+        /* Field comparison of an event type, with the event type last */
+        root = new TmfFilterRootNode();
+        TmfFilterAndNode and = new TmfFilterAndNode(root);
+        TmfFilterCompareNode compare = new TmfFilterCompareNode(and);
+        compare.setEventAspect(TmfBaseAspects.getContentsAspect().forField("prev_state"));
+        compare.setType(Type.NUM);
+        compare.setValue("0");
+        compare.setResult(0);
+        compare.setNot(true);
+        eventType(and, "sched_switch");
+        filters.put("Field of event type", root);
+
+        /* Any of the scheduling event types */
+        root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        for (String type : new String[] { "sched_switch", "sched_wakeup", "sched_wakeup_new", "sched_process_fork", "sched_process_exit" }) {
+            eventType(or, type);
+        }
+        filters.put("Event types", root);
+
+        /* Regex on a field */
+        root = new TmfFilterRootNode();
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(root);
+        matches.setEventAspect(TmfBaseAspects.getContentsAspect().forField("next_comm"));
+        matches.setRegex("^(bash|lttng)");
+        filters.put("Field regex", root);
+
+        /* Text in the contents */
+        root = new TmfFilterRootNode();
+        TmfFilterContainsNode contains = new TmfFilterContainsNode(root);
+        contains.setEventAspect(TmfBaseAspects.getContentsAspect());
+        contains.setValue("httpd");
+        contains.setIgnoreCase(true);
+        filters.put("Contents", root);
+
+        return filters;
+    }
+
+    // ------------------------------------------------------------------------
+    // Benchmark
+    // ------------------------------------------------------------------------
+
+    private static List<ITmfEvent> readEvents(CtfTmfTrace trace) {
+        List<ITmfEvent> events = new ArrayList<>();
+        ITmfContext context = trace.seekEvent(0L);
+        ITmfEvent event = trace.getNext(context);
+        while (event != null && events.size() < MAX_EVENTS) {
+            events.add(event);
+            event = trace.getNext(context);
+        }
+        context.dispose();
+        return events;
+    }
+
+    private static int countMatches(List<ITmfEvent> events, Predicate<ITmfEvent> filter) {
+        int count = 0;
+        for (ITmfEvent event : events) {
+            if (filter.test(event)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void runTest(@NonNull CtfTestTrace testTrace, String testName) {
+        CtfTmfTrace trace = CtfTmfTestTraceUtils.getTrace(testTrace);
+        Performance perf = Performance.getDefault();
+
+        for (Entry<String, ITmfFilterTreeNode> entry : createFilters().entrySet()) {
+            String name = testName + ": " + entry.getKey() + " (" + fName + ')';
+            PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + name);
+            perf.tagAsSummary(pm, "Event filter: " + name, Dimension.CPU_TIME);
+
+            ITmfFilterTreeNode filter = entry.getValue();
+            for (int i = 0; i < LOOP_COUNT; i++) {
+                /* Read the events again, so their lazy fields are not parsed yet */
+                List<ITmfEvent> events = readEvents(trace);
+
+                pm.start();
+                Predicate<ITmfEvent> predicate = (fCompiled ? TmfFilterCompiler.compile(filter) : filter::matches);
+                int count = countMatches(events, predicate);
+                pm.stop();
+
+                assertEquals(countMatches(events, filter::matches), count);
+            }
+            pm.commit();
+        }
+        CtfTmfTestTraceUtils.dispose(testTrace);
+    }
+}
@@ -12,6 +12,7 @@ package org.eclipse.tracecompass.segmentstore.core.tests.treemap;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -20,6 +21,7 @@ import java.util.List;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
 import org.eclipse.tracecompass.segmentstore.core.treemap.TreeMapStore;
 import org.junit.After;
 import org.junit.Before;
@@ -287,6 +289,43 @@ public class TreeMapStoreTest {
         assertEquals(0, Iterables.size(intersectingElements));
     }
 
+    /**
+     * Test the getSortedElements() method with the segment comparators
+     */
+    @Test
+    public void testGetSortedElements() {
+        List<ISegment> byStart = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_START_COMPARATOR);
+        assertEquals(SEGMENTS, byStart);
+
+        List<ISegment> byEnd = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_END_COMPARATOR);
+        assertEquals(ImmutableList.of(SEGMENT_2_6, SEGMENT_4_6, SEGMENT_4_8, SEGMENT_6_8, SEGMENT_10_14), byEnd);
+
+        List<ISegment> byLength = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
+        assertEquals(ImmutableList.of(SEGMENT_4_6, SEGMENT_6_8, SEGMENT_2_6, SEGMENT_4_8, SEGMENT_10_14), byLength);
+
+        /* Random access by rank */
+        assertEquals(SEGMENT_2_6, byLength.get(2));
+        assertEquals(SEGMENT_10_14, byLength.get(byLength.size() - 1));
+    }
+
+    /**
+     * Test that the sorted indexes are cached, and invalidated when the store
+     * is modified
+     */
+    @Test
+    public void testSortedElementsCache() {
+        List<ISegment> byLength = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
+        assertSame(byLength, fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR));
+
+        ISegment segment = new BasicSegment(1, 2);
+        fSegmentStore.add(segment);
+        List<ISegment> newByLength = fSegmentStore.getSortedElements(SegmentComparators.INTERVAL_LENGTH_COMPARATOR);
+        assertEquals(SEGMENTS.size() + 1, newByLength.size());
+        assertEquals(segment, newByLength.get(0));
+        /* The previous snapshot is not modified */
+        assertEquals(SEGMENTS.size(), byLength.size());
+    }
+
     /**
      * Testing method getIntersectingElements(long start, long end)
      */
@@ -12,7 +12,11 @@
 
 package org.eclipse.tracecompass.segmentstore.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Interface for segment-storing backends.
@@ -54,6 +58,30 @@ public interface ISegmentStore<E extends ISegment> extends Collection<E> {
      */
     Iterable<E> getIntersectingElements(long start, long end);
 
+    /**
+     * Retrieve all the elements of this store, sorted using the given
+     * comparator. This is typically one of the {@link SegmentComparators}.
+     *
+     * The returned list is an unmodifiable snapshot of the store at the time
+     * of the call, and supports efficient random access by rank, so it can be
+     * used directly as the model of a virtual table. Implementations are
+     * encouraged to build such indexes lazily and cache them until the store
+     * is modified, so that sorting again by the same comparator is free.
+     *
+     * Descending orders can be obtained by reversing the returned list, which
+     * avoids building a second index.
+     *
+     * @param order
+     *            The comparator defining the order of the returned elements
+     * @return The elements of this store, sorted by the comparator
+     * @since 1.1
+     */
+    default List<E> getSortedElements(Comparator<ISegment> order) {
+        List<E> list = new ArrayList<>(this);
+        list.sort(order);
+        return Collections.unmodifiableList(list);
+    }
+
     /**
      * Dispose the data structure and release any system resources associated
      * with it.
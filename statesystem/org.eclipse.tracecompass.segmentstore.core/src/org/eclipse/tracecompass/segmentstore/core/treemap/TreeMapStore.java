@@ -14,9 +14,15 @@ package org.eclipse.tracecompass.segmentstore.core.treemap;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -46,6 +52,10 @@ import com.google.common.collect.TreeMultimap;
  * that if you want several segments with the same start and end times, make
  * sure their compareTo() differentiates them.
  *
+ * Sorted views requested through {@link #getSortedElements(Comparator)} are
+ * built lazily, using a parallel sort, and are cached until the store is
+ * modified.
+ *
  * Removal operations are not supported.
  *
  * @param <E>
@@ -62,7 +72,13 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
 
     private volatile long fSize;
 
-    private @Nullable transient Iterable<E> fLastSnapshot = null;
+    private @Nullable transient List<E> fLastSnapshot = null;
+
+    /**
+     * Cache of the sorted views of the store, per comparator. Any modification
+     * of the store invalidates all of them.
+     */
+    private final transient Map<Comparator<ISegment>, List<E>> fSortedIndexes = new ConcurrentHashMap<>();
 
     /**
      * Constructor
@@ -99,17 +115,25 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
     public Iterator<E> iterator() {
         fLock.readLock().lock();
         try {
-            Iterable<E> lastSnapshot = fLastSnapshot;
-            if (lastSnapshot == null) {
-                lastSnapshot = ImmutableList.copyOf(fStartTimesIndex.values());
-                fLastSnapshot = lastSnapshot;
-            }
-            return checkNotNull(lastSnapshot.iterator());
+            return checkNotNull(getSnapshot().iterator());
         } finally {
             fLock.readLock().unlock();
         }
     }
 
+    /**
+     * Get the list of all the elements ordered by start time. Should be called
+     * while holding the read lock.
+     */
+    private List<E> getSnapshot() {
+        List<E> lastSnapshot = fLastSnapshot;
+        if (lastSnapshot == null) {
+            lastSnapshot = ImmutableList.copyOf(fStartTimesIndex.values());
+            fLastSnapshot = lastSnapshot;
+        }
+        return lastSnapshot;
+    }
+
     @Override
     public boolean add(@Nullable E val) {
         if (val == null) {
@@ -122,6 +146,7 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
                 fEndTimesIndex.put(Long.valueOf(val.getEnd()), val);
                 fSize++;
                 fLastSnapshot = null;
+                fSortedIndexes.clear();
                 return true;
             }
             return false;
@@ -222,6 +247,8 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
             fSize = 0;
             fEndTimesIndex.clear();
             fStartTimesIndex.clear();
+            fLastSnapshot = null;
+            fSortedIndexes.clear();
         } finally {
             fLock.writeLock().unlock();
         }
@@ -259,6 +286,42 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
         }
     }
 
+    @Override
+    public List<E> getSortedElements(Comparator<ISegment> order) {
+        fLock.readLock().lock();
+        try {
+            List<E> index = fSortedIndexes.get(order);
+            if (index == null) {
+                index = buildSortedIndex(order);
+                fSortedIndexes.put(order, index);
+            }
+            return index;
+        } finally {
+            fLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Build a sorted view of the store. Should be called while holding the
+     * read lock.
+     */
+    private List<E> buildSortedIndex(Comparator<ISegment> order) {
+        List<E> snapshot = getSnapshot();
+        if (order == SegmentComparators.INTERVAL_START_COMPARATOR) {
+            /* The start times index is already in the requested order */
+            return snapshot;
+        }
+        /*
+         * Sort a copy of the start-ordered snapshot. The parallel sort is
+         * stable, so elements that compare equal will keep their start time
+         * ordering.
+         */
+        @SuppressWarnings("unchecked")
+        E[] elements = (E[]) snapshot.toArray(new ISegment[snapshot.size()]);
+        Arrays.parallelSort(elements, order);
+        return checkNotNull(Collections.unmodifiableList(Arrays.asList(elements)));
+    }
+
     @Override
     public void dispose() {
         fLock.writeLock().lock();
@@ -266,6 +329,8 @@ public class TreeMapStore<@NonNull E extends ISegment> implements ISegmentStore<
             fStartTimesIndex.clear();
             fEndTimesIndex.clear();
             fSize = 0;
+            fLastSnapshot = null;
+            fSortedIndexes.clear();
         } finally {
             fLock.writeLock().unlock();
         }
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompiler;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterCompiler} class. The compiled filters
+ * have to match the same events as the filter trees.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterCompilerTest {
+
+    // ------------------------------------------------------------------------
+    // Variables
+    // ------------------------------------------------------------------------
+
+    private static final TmfTraceStub TRACE = new TmfTraceStub();
+    private static final String FIELD = "field";
+    private static final String[] TYPES = { "sched_switch", "sched_wakeup", "irq_handler_entry", "Sched_Switch" };
+    private static final String[] VALUES = { "1", "5", "11", "1.5", "bash", "lttng-sessiond", "BaSh" };
+    private static final List<ITmfEvent> EVENTS = new ArrayList<>();
+
+    static {
+        int rank = 0;
+        for (String type : TYPES) {
+            for (String value : VALUES) {
+                ITmfEventField[] fields = new ITmfEventField[] { new TmfEventField(FIELD, value, null) };
+                ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+                EVENTS.add(new TmfEvent(TRACE, rank, TmfTimestamp.fromNanos(rank), new TmfEventType(type, content), content));
+                rank++;
+            }
+        }
+        /* An event without type or fields */
+        ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, null);
+        EVENTS.add(new TmfEvent(TRACE, rank, TmfTimestamp.fromNanos(rank), null, content));
+    }
+
+    @AfterClass
+    public static void disposeTrace() {
+        TRACE.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static int assertSameMatches(ITmfFilterTreeNode filter) {
+        Predicate<ITmfEvent> compiled = TmfFilterCompiler.compile(filter);
+        int count = 0;
+        for (ITmfEvent event : EVENTS) {
+            boolean matches = filter.matches(event);
+            assertEquals(event.toString(), matches, compiled.test(event));
+            if (matches) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static TmfFilterEqualsNode eventType(ITmfFilterTreeNode parent, String type) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(parent);
+        node.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        node.setValue(type);
+        return node;
+    }
+
+    private static TmfFilterCompareNode compare(ITmfFilterTreeNode parent, Type type, String value, int result) {
+        TmfFilterCompareNode node = new TmfFilterCompareNode(parent);
+        node.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+        node.setType(type);
+        node.setValue(value);
+        node.setResult(result);
+        return node;
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testEventType() {
+        TmfFilterEqualsNode filter = eventType(null, "sched_switch");
+        assertEquals(VALUES.length, assertSameMatches(filter));
+        filter.setIgnoreCase(true);
+        assertEquals(2 * VALUES.length, assertSameMatches(filter));
+        filter.setNot(true);
+        assertSameMatches(filter);
+    }
+
+    @Test
+    public void testEventTypeSet() {
+        TmfFilterOrNode filter = new TmfFilterOrNode(null);
+        for (String type : TYPES) {
+            eventType(filter, type);
+        }
+        assertEquals(EVENTS.size() - 1, assertSameMatches(filter));
+        filter.setNot(true);
+        assertEquals(0, assertSameMatches(filter));
+    }
+
+    @Test
+    public void testEmptyNodes() {
+        assertEquals(EVENTS.size(), assertSameMatches(new TmfFilterRootNode()));
+        assertEquals(EVENTS.size(), assertSameMatches(new TmfFilterAndNode(null)));
+        assertEquals(0, assertSameMatches(new TmfFilterOrNode(null)));
+        TmfFilterOrNode or = new TmfFilterOrNode(null);
+        or.setNot(true);
+        assertEquals(0, assertSameMatches(or));
+    }
+
+    @Test
+    public void testAnd() {
+        TmfFilterAndNode filter = new TmfFilterAndNode(null);
+        compare(filter, Type.NUM, "5", 1);
+        eventType(filter, "sched_switch");
+        assertEquals(1, assertSameMatches(filter));
+        filter.setNot(true);
+        assertEquals(EVENTS.size() - 1, assertSameMatches(filter));
+    }
+
+    @Test
+    public void testCompare() {
+        for (int result = -1; result <= 1; result++) {
+            assertSameMatches(compare(null, Type.NUM, "5", result));
+            assertSameMatches(compare(null, Type.NUM, "1.5", result));
+            assertSameMatches(compare(null, Type.NUM, "abc", result));
+            assertSameMatches(compare(null, Type.ALPHA, "5", result));
+            TmfFilterCompareNode timestamp = compare(null, Type.TIMESTAMP, "0.000000010", result);
+            timestamp.setEventAspect(TmfBaseAspects.getTimestampAspect());
+            assertSameMatches(timestamp);
+            timestamp.setNot(true);
+            assertSameMatches(timestamp);
+        }
+    }
+
+    @Test
+    public void testContains() {
+        TmfFilterContainsNode filter = new TmfFilterContainsNode(null);
+        filter.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+        filter.setValue("bash");
+        assertEquals(TYPES.length, assertSameMatches(filter));
+        filter.setIgnoreCase(true);
+        assertEquals(2 * TYPES.length, assertSameMatches(filter));
+        filter.setEventAspect(TmfBaseAspects.getEventTypeAspect());
+        filter.setValue("SWITCH");
+        assertEquals(2 * VALUES.length, assertSameMatches(filter));
+    }
+
+    @Test
+    public void testMatches() {
+        TmfFilterMatchesNode filter = new TmfFilterMatchesNode(null);
+        filter.setEventAspect(new TmfContentFieldAspect(FIELD, FIELD));
+        filter.setRegex("ash");
+        assertEquals(TYPES.length, assertSameMatches(filter));
+        filter.setRegex("^l.*d$");
+        assertEquals(TYPES.length, assertSameMatches(filter));
+        filter.setRegex("1.5");
+        assertEquals(TYPES.length, assertSameMatches(filter));
+        filter.setNot(true);
+        assertSameMatches(filter);
+    }
+
+    @Test
+    public void testTraceType() {
+        TmfFilterTraceTypeNode filter = new TmfFilterTraceTypeNode(null);
+        filter.setTraceClass(TmfTraceStub.class);
+        assertEquals(EVENTS.size(), assertSameMatches(filter));
+        eventType(filter, "sched_wakeup");
+        assertEquals(VALUES.length, assertSameMatches(filter));
+        filter.setTraceTypeId("unknown");
+        assertEquals(0, assertSameMatches(filter));
+    }
+
+    @Test
+    public void testUncompiledNodes() {
+        /* The order of the nodes that are not compiled is kept */
+        List<String> calls = new ArrayList<>();
+        TmfFilterOrNode filter = new TmfFilterOrNode(null);
+        filter.addChild(new TmfFilterRootNode() {
+            @Override
+            public boolean matches(ITmfEvent event) {
+                calls.add("first");
+                return false;
+            }
+        });
+        eventType(filter, "sched_switch");
+        Predicate<ITmfEvent> compiled = TmfFilterCompiler.compile(filter);
+        assertTrue(compiled.test(EVENTS.get(0)));
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void testNullEvent() {
+        TmfFilterRootNode filter = new TmfFilterRootNode();
+        eventType(filter, "sched_switch");
+        assertFalse(TmfFilterCompiler.compile(filter).test(null));
+    }
+}
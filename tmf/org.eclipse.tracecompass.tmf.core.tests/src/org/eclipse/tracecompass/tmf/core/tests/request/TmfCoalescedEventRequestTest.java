@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -24,6 +24,8 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.IllformedLocaleException;
 import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
@@ -357,6 +359,12 @@ public class TmfCoalescedEventRequestTest {
 
     private static final TmfTestTrace TEST_TRACE = TmfTestTrace.A_TEST_10K;
     private static final int NB_EVENTS = 5000;
+    private static final int QUEUE_SIZE = 1;
+    private static final int NB_HANDLED = 10;
+    private static final long TIMEOUT = 60;
+
+    private CountDownLatch fBlocked = new CountDownLatch(0);
+    private CountDownLatch fRelease = new CountDownLatch(0);
 
     // Initialize the test trace
     private TmfTraceStub fTrace = null;
@@ -405,6 +413,29 @@ public class TmfCoalescedEventRequestTest {
         }
     }
 
+    /** What a sub-request with a dispatch queue does with its events */
+    private enum Behavior {
+        /** Handle all the events */
+        NONE,
+        /** Block on the first event until released */
+        BLOCK,
+        /** Fail at the NB_HANDLED-th event */
+        FAIL,
+        /** Throw an exception at the NB_HANDLED-th event */
+        THROW
+    }
+
+    private static class TmfQueuedTriggerSignal extends TmfSignal {
+        public final Behavior fFirst;
+        public final Behavior fOthers;
+
+        public TmfQueuedTriggerSignal(Object source, Behavior first, Behavior others) {
+            super(source);
+            fFirst = first;
+            fOthers = others;
+        }
+    }
+
     @TmfSignalHandler
     public void trigger(final TmfTestTriggerSignal signal) {
 
@@ -477,9 +508,99 @@ public class TmfCoalescedEventRequestTest {
         providers[0].sendRequest(request1);
     }
 
+    /**
+     * @param signal
+     *            the trigger signal
+     */
+    @TmfSignalHandler
+    public void trigger(final TmfQueuedTriggerSignal signal) {
+        requestedEvents1 = new Vector<>();
+        requestedEvents2 = new Vector<>();
+        requestedEvents3 = new Vector<>();
+        request1 = createQueuedRequest(requestedEvents1, signal.fFirst);
+        request2 = createQueuedRequest(requestedEvents2, signal.fOthers);
+        request3 = createQueuedRequest(requestedEvents3, signal.fOthers);
+        providers = TmfProviderManager.getProviders(ITmfEvent.class, TmfTraceStub.class);
+        providers[0].sendRequest(request1);
+        providers[0].sendRequest(request2);
+        providers[0].sendRequest(request3);
+    }
+
+    private TmfEventRequest createQueuedRequest(final Vector<ITmfEvent> events, final Behavior behavior) {
+        return new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, NB_EVENTS, ExecutionType.FOREGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                if (isCompleted()) {
+                    return;
+                }
+                events.add(event);
+                switch (behavior) {
+                case BLOCK:
+                    if (events.size() == 1) {
+                        fBlocked.countDown();
+                        try {
+                            fRelease.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    break;
+                case FAIL:
+                    if (events.size() == NB_HANDLED) {
+                        fail(new Exception("Test failure"));
+                    }
+                    break;
+                case THROW:
+                    if (events.size() == NB_HANDLED) {
+                        throw new IllegalStateException("Test exception");
+                    }
+                    break;
+                case NONE:
+                default:
+                    break;
+                }
+            }
+        };
+    }
+
+    private void sendQueuedRequests(Behavior first, Behavior others) {
+        fTrace = setupTrace(TEST_TRACE.getFullPath());
+        fTrace.setDispatchQueueSize(QUEUE_SIZE);
+        TmfSignalManager.register(this);
+        TmfSignalManager.dispatchSignal(new TmfQueuedTriggerSignal(this, first, others));
+    }
+
+    private void waitForQueuedRequests() throws InterruptedException {
+        try {
+            request1.waitForCompletion();
+            request2.waitForCompletion();
+            request3.waitForCompletion();
+        } finally {
+            TmfSignalManager.deregister(this);
+            fTrace.dispose();
+            fTrace = null;
+        }
+    }
+
+    private void assertAllEvents(TmfEventRequest request, Vector<ITmfEvent> events) {
+        assertTrue("isCompleted", request.isCompleted());
+        assertFalse("isCancelled", request.isCancelled());
+        assertFalse("isFailed", request.isFailed());
+        assertEquals("nbEvents", NB_EVENTS, events.size());
+        for (int i = 0; i < NB_EVENTS; i++) {
+            assertEquals("Distinct events", i + 1, events.get(i).getTimestamp().getValue());
+        }
+    }
+
     public void runCoalescedRequest(long startIndex) throws InterruptedException {
+        runCoalescedRequest(startIndex, 0);
+    }
+
+    public void runCoalescedRequest(long startIndex, int dispatchQueueSize) throws InterruptedException {
 
         fTrace = setupTrace(TEST_TRACE.getFullPath());
+        fTrace.setDispatchQueueSize(dispatchQueueSize);
 
         TmfSignalManager.register(this);
         TmfTestTriggerSignal signal = new TmfTestTriggerSignal(this, startIndex, false);
@@ -523,6 +644,13 @@ public class TmfCoalescedEventRequestTest {
         runCoalescedRequest(5);
     }
 
+    @Test
+    public void testCoalescedRequestQueued() throws InterruptedException {
+        runCoalescedRequest(0, 1);
+        runCoalescedRequest(1, 16);
+        runCoalescedRequest(5, 1000);
+    }
+
     @Test
     public void testCancelCoalescedRequest() throws InterruptedException {
 
@@ -559,6 +687,82 @@ public class TmfCoalescedEventRequestTest {
         fTrace = null;
     }
 
+    @Test
+    public void testCancelQueuedSubRequest() throws InterruptedException {
+        fBlocked = new CountDownLatch(1);
+        fRelease = new CountDownLatch(1);
+        sendQueuedRequests(Behavior.BLOCK, Behavior.NONE);
+        try {
+            assertTrue(fBlocked.await(TIMEOUT, TimeUnit.SECONDS));
+            /* The reader waits for room in the full queue of request 1 */
+            assertTrue(requestedEvents2.size() <= QUEUE_SIZE + 2);
+            request1.cancel();
+            /* The cancelled request does not hold the reader anymore */
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+            while (requestedEvents3.size() < NB_EVENTS && System.nanoTime() < end) {
+                Thread.sleep(10);
+            }
+            assertEquals("Request3: nbEvents", NB_EVENTS, requestedEvents3.size());
+            assertEquals("Request1: nbEvents", 1, requestedEvents1.size());
+        } finally {
+            fRelease.countDown();
+        }
+        waitForQueuedRequests();
+
+        assertTrue("Request1: isCancelled", request1.isCancelled());
+        assertEquals("Request1: nbEvents", 1, requestedEvents1.size());
+        assertAllEvents(request2, requestedEvents2);
+        assertAllEvents(request3, requestedEvents3);
+    }
+
+    @Test
+    public void testCancelQueuedRequests() throws InterruptedException {
+        fBlocked = new CountDownLatch(3);
+        fRelease = new CountDownLatch(1);
+        sendQueuedRequests(Behavior.BLOCK, Behavior.BLOCK);
+        try {
+            /* Every request holds its thread, the reader waits on a full queue */
+            assertTrue(fBlocked.await(TIMEOUT, TimeUnit.SECONDS));
+            request1.cancel();
+            request2.cancel();
+            request3.cancel();
+        } finally {
+            fRelease.countDown();
+        }
+        waitForQueuedRequests();
+
+        for (TmfEventRequest request : new TmfEventRequest[] { request1, request2, request3 }) {
+            assertTrue("isCompleted", request.isCompleted());
+            assertTrue("isCancelled", request.isCancelled());
+        }
+        assertEquals("Request1: nbEvents", 1, requestedEvents1.size());
+        assertEquals("Request2: nbEvents", 1, requestedEvents2.size());
+        assertEquals("Request3: nbEvents", 1, requestedEvents3.size());
+    }
+
+    @Test
+    public void testFailQueuedSubRequest() throws InterruptedException {
+        sendQueuedRequests(Behavior.FAIL, Behavior.NONE);
+        waitForQueuedRequests();
+
+        assertTrue("Request1: isFailed", request1.isFailed());
+        assertEquals("Request1: nbEvents", NB_HANDLED, requestedEvents1.size());
+        assertAllEvents(request2, requestedEvents2);
+        assertAllEvents(request3, requestedEvents3);
+    }
+
+    @Test
+    public void testThrowingQueuedSubRequest() throws InterruptedException {
+        sendQueuedRequests(Behavior.THROW, Behavior.NONE);
+        waitForQueuedRequests();
+
+        /* The exception fails the request, the others are not affected */
+        assertTrue("Request1: isFailed", request1.isFailed());
+        assertEquals("Request1: nbEvents", NB_HANDLED, requestedEvents1.size());
+        assertAllEvents(request2, requestedEvents2);
+        assertAllEvents(request3, requestedEvents3);
+    }
+
     @Test
     public void testSingleTimeRequest() throws InterruptedException {
 
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.tests.stubs.component.TmfEventProviderStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the scheduling of the requests by the TmfRequestExecutor
+ * class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfRequestExecutorTest {
+
+    private static final long TIMEOUT = 10;
+
+    private TmfEventProviderStub fProvider;
+    private TmfRequestExecutor fExecutor;
+
+    /**
+     * Thread that runs until it is released, and records if it was suspended
+     */
+    private static class TestThread extends TmfEventThread {
+
+        private final CountDownLatch fStarted = new CountDownLatch(1);
+        private final CountDownLatch fRelease = new CountDownLatch(1);
+        private final CountDownLatch fFinished = new CountDownLatch(1);
+        private volatile boolean fWasPaused = false;
+
+        public TestThread(TmfEventProviderStub provider, ExecutionType priority) {
+            super(provider, new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, priority) {
+            });
+        }
+
+        @Override
+        public void run() {
+            fStarted.countDown();
+            try {
+                while (!fRelease.await(1, TimeUnit.MILLISECONDS)) {
+                    while (isPaused()) {
+                        fWasPaused = true;
+                        Thread.sleep(1);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            fFinished.countDown();
+        }
+
+        public boolean awaitStarted() throws InterruptedException {
+            return fStarted.await(TIMEOUT, TimeUnit.SECONDS);
+        }
+
+        public boolean isStarted() {
+            return fStarted.getCount() == 0;
+        }
+
+        public boolean finish() throws InterruptedException {
+            fRelease.countDown();
+            return fFinished.await(TIMEOUT, TimeUnit.SECONDS);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        fProvider = new TmfEventProviderStub();
+    }
+
+    @After
+    public void tearDown() {
+        if (fExecutor != null) {
+            fExecutor.stop();
+        }
+        fProvider.dispose();
+    }
+
+    private static void waitForSlots(TmfRequestExecutor executor, int nbRunning) throws InterruptedException {
+        for (int i = 0; i < TIMEOUT * 1000 && executor.getNbRunning() != nbRunning; i++) {
+            Thread.sleep(1);
+        }
+        assertEquals(nbRunning, executor.getNbRunning());
+    }
+
+    @Test
+    public void testConcurrentRequests() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(2);
+        TestThread first = new TestThread(fProvider, ExecutionType.BACKGROUND);
+        TestThread second = new TestThread(fProvider, ExecutionType.BACKGROUND);
+        TestThread third = new TestThread(fProvider, ExecutionType.BACKGROUND);
+        fExecutor.execute(first);
+        fExecutor.execute(second);
+        fExecutor.execute(third);
+
+        /* Two requests run at the same time, the third one waits */
+        assertTrue(first.awaitStarted());
+        assertTrue(second.awaitStarted());
+        assertFalse(third.isStarted());
+        assertEquals(2, fExecutor.getNbRunning());
+        assertEquals(1, fExecutor.getNbPending(ExecutionType.BACKGROUND));
+
+        /* The third request takes the first free slot */
+        assertTrue(first.finish());
+        assertTrue(third.awaitStarted());
+        assertTrue(second.finish());
+        assertTrue(third.finish());
+        waitForSlots(fExecutor, 0);
+        assertEquals(0, fExecutor.getNbPending(ExecutionType.BACKGROUND));
+        assertEquals(3, fExecutor.getNbScheduled());
+        assertTrue(fExecutor.getMaxWaitTime() >= fExecutor.getAverageWaitTime());
+    }
+
+    @Test
+    public void testPreemption() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1);
+        TestThread background = new TestThread(fProvider, ExecutionType.BACKGROUND);
+        TestThread foreground = new TestThread(fProvider, ExecutionType.FOREGROUND);
+        fExecutor.execute(background);
+        assertTrue(background.awaitStarted());
+
+        /* The foreground request suspends the background request */
+        fExecutor.execute(foreground);
+        assertTrue(foreground.awaitStarted());
+        assertTrue(background.isPaused());
+        assertEquals(1, fExecutor.getNbRunning());
+        assertEquals(1, fExecutor.getNbPending(ExecutionType.BACKGROUND));
+        for (int i = 0; i < TIMEOUT * 1000 && !background.fWasPaused; i++) {
+            Thread.sleep(1);
+        }
+        assertTrue(background.fWasPaused);
+
+        /* The background request resumes when the foreground one completes */
+        assertTrue(foreground.finish());
+        for (int i = 0; i < TIMEOUT * 1000 && background.isPaused(); i++) {
+            Thread.sleep(1);
+        }
+        assertFalse(background.isPaused());
+        assertEquals(0, fExecutor.getNbPending(ExecutionType.BACKGROUND));
+        assertTrue(background.finish());
+        waitForSlots(fExecutor, 0);
+    }
+
+    @Test
+    public void testForegroundFirst() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1);
+        TestThread running = new TestThread(fProvider, ExecutionType.FOREGROUND);
+        TestThread background = new TestThread(fProvider, ExecutionType.BACKGROUND);
+        TestThread foreground = new TestThread(fProvider, ExecutionType.FOREGROUND);
+        fExecutor.execute(running);
+        assertTrue(running.awaitStarted());
+        fExecutor.execute(background);
+        fExecutor.execute(foreground);
+
+        /* The pending foreground request goes before the background one */
+        assertTrue(foreground.awaitStarted());
+        assertFalse(background.isStarted());
+        assertTrue(foreground.finish());
+
+        /* The suspended foreground request resumes before the background one */
+        assertTrue(running.finish());
+        assertTrue(background.awaitStarted());
+        assertTrue(background.finish());
+    }
+
+    @Test
+    public void testForegroundTimeSlices() throws InterruptedException {
+        fExecutor = new TmfRequestExecutor(1);
+        TestThread longForeground = new TestThread(fProvider, ExecutionType.FOREGROUND);
+        TestThread shortForeground = new TestThread(fProvider, ExecutionType.FOREGROUND);
+        fExecutor.execute(longForeground);
+        assertTrue(longForeground.awaitStarted());
+
+        /* The short request gets the slot at the end of the time slice */
+        fExecutor.execute(shortForeground);
+        assertTrue(shortForeground.awaitStarted());
+        assertTrue(longForeground.isPaused());
+        assertEquals(1, fExecutor.getNbRunning());
+        assertEquals(1, fExecutor.getNbPending(ExecutionType.FOREGROUND));
+
+        /* The long request resumes when the short one completes */
+        assertTrue(shortForeground.finish());
+        for (int i = 0; i < TIMEOUT * 1000 && longForeground.isPaused(); i++) {
+            Thread.sleep(1);
+        }
+        assertFalse(longForeground.isPaused());
+        assertEquals(0, fExecutor.getNbPending(ExecutionType.FOREGROUND));
+        assertTrue(longForeground.finish());
+        waitForSlots(fExecutor, 0);
+    }
+}
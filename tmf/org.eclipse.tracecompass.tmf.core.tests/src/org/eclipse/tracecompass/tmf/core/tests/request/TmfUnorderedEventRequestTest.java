@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfUnorderedEventRequest;
+import org.eclipse.tracecompass.tmf.core.tests.TmfCoreTestPlugin;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the TmfUnorderedEventRequest class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfUnorderedEventRequestTest {
+
+    private static final TmfTestTrace TEST_TRACE = TmfTestTrace.A_TEST_10K;
+    private static final int NB_EVENTS = 10000;
+
+    private TmfTraceStub fTrace;
+
+    /**
+     * Request that collects the timestamps of the events, so the merged
+     * result is in order only if the partitions are merged in order.
+     */
+    private static class TimestampsRequest extends TmfUnorderedEventRequest<List<Long>> {
+
+        public TimestampsRequest(TmfTimeRange range, int nbPartitions) {
+            super(ITmfEvent.class, range, nbPartitions, ExecutionType.BACKGROUND);
+        }
+
+        @Override
+        protected List<Long> createAccumulator() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        protected void accumulate(List<Long> timestamps, ITmfEvent event) {
+            timestamps.add(event.getTimestamp().getValue());
+        }
+
+        @Override
+        protected List<Long> merge(List<Long> first, List<Long> second) {
+            first.addAll(second);
+            return first;
+        }
+    }
+
+    @Before
+    public void setUp() throws TmfTraceException, URISyntaxException, IOException {
+        URL location = FileLocator.find(TmfCoreTestPlugin.getDefault().getBundle(), new Path(TEST_TRACE.getFullPath()), null);
+        File test = new File(FileLocator.toFileURL(location).toURI());
+        fTrace = new TmfTraceStub(test.getPath(), 500, false, null);
+        fTrace.indexTrace(true);
+    }
+
+    @After
+    public void tearDown() {
+        fTrace.dispose();
+    }
+
+    private List<Long> sendAndWait(TimestampsRequest request) throws InterruptedException {
+        fTrace.sendRequest(request);
+        request.waitForCompletion();
+        assertTrue(request.isCompleted());
+        List<Long> result = request.getResult();
+        assertNotNull(result);
+        return result;
+    }
+
+    private static void assertTimestamps(long first, long last, List<Long> timestamps) {
+        assertEquals(last - first + 1, timestamps.size());
+        for (int i = 0; i < timestamps.size(); i++) {
+            assertEquals(first + i, timestamps.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testPartitions() throws InterruptedException {
+        TimestampsRequest request = new TimestampsRequest(TmfTimeRange.ETERNITY, 4);
+        List<Long> timestamps = sendAndWait(request);
+        assertEquals(NB_EVENTS, request.getNbRead());
+        assertTimestamps(1, NB_EVENTS, timestamps);
+    }
+
+    @Test
+    public void testSinglePartition() throws InterruptedException {
+        TimestampsRequest request = new TimestampsRequest(TmfTimeRange.ETERNITY, 1);
+        List<Long> timestamps = sendAndWait(request);
+        assertEquals(NB_EVENTS, request.getNbRead());
+        assertTimestamps(1, NB_EVENTS, timestamps);
+    }
+
+    @Test
+    public void testRange() throws InterruptedException {
+        TmfTimeRange range = new TmfTimeRange(TmfTimestamp.create(1000, ITmfTimestamp.MILLISECOND_SCALE),
+                TmfTimestamp.create(2000, ITmfTimestamp.MILLISECOND_SCALE));
+        TimestampsRequest request = new TimestampsRequest(range, 7);
+        List<Long> timestamps = sendAndWait(request);
+        assertTimestamps(1000, 2000, timestamps);
+    }
+
+    @Test
+    public void testOrderedFallback() {
+        /* A request handled in order accumulates everything in one partition */
+        TimestampsRequest request = new TimestampsRequest(TmfTimeRange.ETERNITY, 4);
+        for (long i = 1; i <= 10; i++) {
+            request.handleData(new TmfEvent(fTrace, i - 1, TmfTimestamp.create(i, ITmfTimestamp.MILLISECOND_SCALE), null, null));
+        }
+        request.done();
+        assertEquals(10, request.getNbRead());
+        List<Long> result = request.getResult();
+        assertNotNull(result);
+        assertTimestamps(1, 10, result);
+    }
+}
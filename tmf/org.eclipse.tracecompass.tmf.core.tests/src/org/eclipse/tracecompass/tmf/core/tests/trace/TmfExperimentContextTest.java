@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.junit.Test;
+
+/**
+ * Test suite for the merge of the traces events in the TmfExperimentContext
+ * class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfExperimentContextTest {
+
+    private static ITmfEvent event(ITmfTimestamp timestamp) {
+        return new TmfEvent(null, 0, timestamp, null, null);
+    }
+
+    private static ITmfEvent event(long nanos) {
+        return event(TmfTimestamp.fromNanos(nanos));
+    }
+
+    @Test
+    public void testEmpty() {
+        TmfExperimentContext context = new TmfExperimentContext(3);
+        assertEquals(TmfExperimentContext.NO_TRACE, context.getNextTrace());
+    }
+
+    @Test
+    public void testOrder() {
+        TmfExperimentContext context = new TmfExperimentContext(3);
+        context.setEvent(0, event(30));
+        context.setEvent(1, event(10));
+        context.setEvent(2, event(20));
+        assertEquals(1, context.getNextTrace());
+
+        context.setEvent(1, event(40));
+        assertEquals(2, context.getNextTrace());
+        context.setEvent(2, null);
+        assertEquals(0, context.getNextTrace());
+        context.setEvent(0, null);
+        assertEquals(1, context.getNextTrace());
+        context.setEvent(1, null);
+        assertEquals(TmfExperimentContext.NO_TRACE, context.getNextTrace());
+    }
+
+    @Test
+    public void testSameTimestamp() {
+        TmfExperimentContext context = new TmfExperimentContext(3);
+        context.setEvent(2, event(10));
+        context.setEvent(1, event(10));
+        context.setEvent(0, event(20));
+        assertEquals(1, context.getNextTrace());
+
+        /* Sub-nanosecond timestamps are still ordered */
+        context.setEvent(0, event(TmfTimestamp.create(10001, -12)));
+        context.setEvent(1, event(TmfTimestamp.create(10000, -12)));
+        assertEquals(1, context.getNextTrace());
+    }
+
+    @Test
+    public void testMerge() {
+        final int nbTraces = 50;
+        Random random = new Random(42);
+        TmfExperimentContext context = new TmfExperimentContext(nbTraces);
+        long[] next = new long[nbTraces];
+        for (int i = 0; i < nbTraces; i++) {
+            next[i] = random.nextInt(1000);
+            context.setEvent(i, event(next[i]));
+        }
+
+        long last = Long.MIN_VALUE;
+        for (int n = 0; n < 10000; n++) {
+            int trace = context.getNextTrace();
+            /* The heap gives the same trace as a linear scan */
+            int expected = 0;
+            for (int i = 1; i < nbTraces; i++) {
+                if (next[i] < next[expected]) {
+                    expected = i;
+                }
+            }
+            assertEquals(expected, trace);
+            assertTrue(next[trace] >= last);
+            last = next[trace];
+            next[trace] += random.nextInt(100);
+            context.setEvent(trace, event(next[trace]));
+        }
+    }
+}
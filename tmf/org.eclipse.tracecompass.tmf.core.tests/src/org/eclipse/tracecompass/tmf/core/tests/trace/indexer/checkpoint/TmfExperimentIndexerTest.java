@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace.indexer.checkpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentIndexer;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfMemoryIndex;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.tests.TmfCoreTestPlugin;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the parallel indexing of the experiments by the
+ * TmfExperimentIndexer class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfExperimentIndexerTest {
+
+    // ------------------------------------------------------------------------
+    // Attributes
+    // ------------------------------------------------------------------------
+
+    private static final String EXPERIMENT = "MyExperiment";
+    private static final TmfTestTrace TEST_TRACE1 = TmfTestTrace.O_TEST_10K;
+    private static final TmfTestTrace TEST_TRACE2 = TmfTestTrace.E_TEST_10K;
+    private static final int NB_EVENTS = 20000;
+    private static final int BLOCK_SIZE = 1000;
+
+    private ITmfTrace[] fTestTraces;
+    private TestExperiment fExperiment;
+
+    private static class TestIndexer extends TmfExperimentIndexer {
+        public TestIndexer(TmfExperiment experiment, int interval) {
+            super(experiment, interval);
+        }
+
+        @Override
+        protected ITmfCheckpointIndex createIndex(ITmfTrace trace) {
+            return new TmfMemoryIndex(trace);
+        }
+
+        public ITmfCheckpointIndex getCheckpoints() {
+            return getTraceIndex();
+        }
+    }
+
+    private static class TestExperiment extends TmfExperiment {
+        public TestExperiment(ITmfTrace[] traces) {
+            super(ITmfEvent.class, EXPERIMENT, traces, BLOCK_SIZE, null);
+        }
+
+        @Override
+        protected ITmfTraceIndexer createIndexer(int interval) {
+            return new TestIndexer(this, interval);
+        }
+
+        @Override
+        public TestIndexer getIndexer() {
+            return (TestIndexer) super.getIndexer();
+        }
+    }
+
+    /** A trace that counts the events it parses */
+    private static class CountingTraceStub extends TmfTraceStub {
+        private final AtomicLong fNbParsed = new AtomicLong();
+
+        public CountingTraceStub(String path) throws TmfTraceException {
+            super(path, 0, false, null);
+        }
+
+        @Override
+        public ITmfEvent parseEvent(ITmfContext context) {
+            fNbParsed.incrementAndGet();
+            return super.parseEvent(context);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Housekeeping
+    // ------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws TmfTraceException, URISyntaxException, IOException {
+        fTestTraces = new ITmfTrace[] { createTrace(TEST_TRACE1), createTrace(TEST_TRACE2) };
+        fExperiment = new TestExperiment(fTestTraces);
+        fExperiment.getIndexer().buildIndex(0, TmfTimeRange.ETERNITY, true);
+    }
+
+    @After
+    public void tearDown() {
+        fExperiment.dispose();
+        for (ITmfTrace trace : fTestTraces) {
+            trace.dispose();
+        }
+    }
+
+    private static ITmfTrace createTrace(TmfTestTrace testTrace) throws TmfTraceException, URISyntaxException, IOException {
+        return new TmfTraceStub(getPath(testTrace), 0, false, null);
+    }
+
+    private static String getPath(TmfTestTrace testTrace) throws URISyntaxException, IOException {
+        URL location = FileLocator.find(TmfCoreTestPlugin.getDefault().getBundle(), new Path(testTrace.getFullPath()), null);
+        File test = new File(FileLocator.toFileURL(location).toURI());
+        return test.getPath();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testIndexing() {
+        assertFalse(fExperiment.getIndexer().isIndexing());
+        assertEquals(NB_EVENTS, fExperiment.getNbEvents());
+        assertEquals(1, fExperiment.getStartTime().getValue());
+        assertEquals(NB_EVENTS, fExperiment.getEndTime().getValue());
+
+        /* Each child was indexed by its own indexer */
+        for (ITmfTrace trace : fTestTraces) {
+            assertEquals(NB_EVENTS / 2, trace.getNbEvents());
+        }
+    }
+
+    @Test
+    public void testCheckpoints() {
+        ITmfCheckpointIndex checkpoints = fExperiment.getIndexer().getCheckpoints();
+        assertTrue(checkpoints.size() >= NB_EVENTS / (2 * BLOCK_SIZE));
+
+        /* The events of the two traces alternate, the event at rank r is at time r + 1 */
+        long previousRank = -1;
+        for (int i = 0; i < checkpoints.size(); i++) {
+            ITmfCheckpoint checkpoint = checkpoints.get(i);
+            ITmfContext context = fExperiment.seekEvent(checkpoint.getLocation());
+            long rank = context.getRank();
+            ITmfEvent event = fExperiment.getNext(context);
+            context.dispose();
+            assertNotNull(event);
+            assertEquals(0, checkpoint.getTimestamp().compareTo(event.getTimestamp()));
+            assertEquals(rank + 1, event.getTimestamp().getValue());
+            if (i == 0) {
+                assertEquals(0, rank);
+            } else {
+                assertTrue(rank > previousRank);
+                assertTrue(rank - previousRank <= 2 * BLOCK_SIZE);
+            }
+            previousRank = rank;
+        }
+        assertTrue(NB_EVENTS - previousRank <= 2 * BLOCK_SIZE);
+    }
+
+    @Test
+    public void testSeekRank() {
+        long[] ranks = { 0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, 12345, NB_EVENTS - 1 };
+        for (long rank : ranks) {
+            ITmfContext context = fExperiment.seekEvent(rank);
+            assertEquals(rank, context.getRank());
+            ITmfEvent event = fExperiment.getNext(context);
+            context.dispose();
+            assertNotNull(event);
+            assertEquals(rank + 1, event.getTimestamp().getValue());
+        }
+    }
+
+    @Test
+    public void testSeekTimestamp() {
+        long[] times = { 1, 2, BLOCK_SIZE, BLOCK_SIZE + 1, 12345, NB_EVENTS };
+        for (long time : times) {
+            ITmfContext context = fExperiment.seekEvent(TmfTimestamp.create(time, -3));
+            assertEquals(time - 1, context.getRank());
+            ITmfEvent event = fExperiment.getNext(context);
+            context.dispose();
+            assertNotNull(event);
+            assertEquals(time, event.getTimestamp().getValue());
+        }
+    }
+
+    @Test
+    public void testChildrenReadOnce() throws TmfTraceException, URISyntaxException, IOException {
+        CountingTraceStub[] traces = { new CountingTraceStub(getPath(TEST_TRACE1)), new CountingTraceStub(getPath(TEST_TRACE2)) };
+        TestExperiment experiment = new TestExperiment(traces);
+        try {
+            experiment.getIndexer().buildIndex(0, TmfTimeRange.ETERNITY, true);
+            assertEquals(NB_EVENTS, experiment.getNbEvents());
+            assertTrue(experiment.getIndexer().getCheckpoints().size() >= NB_EVENTS / (2 * BLOCK_SIZE));
+
+            /*
+             * Each child is read once by its indexer, and only in part to
+             * find its positions at the checkpoints of the experiment
+             */
+            for (CountingTraceStub trace : traces) {
+                assertTrue(trace.fNbParsed.get() < 2 * trace.getNbEvents());
+            }
+        } finally {
+            experiment.dispose();
+            for (ITmfTrace trace : traces) {
+                trace.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateIndexContiguous() {
+        TestExperiment experiment = new TestExperiment(fTestTraces);
+        try {
+            TestIndexer indexer = experiment.getIndexer();
+            /* A reader ahead of the indexing updates the index at rank 3 * BLOCK_SIZE first */
+            long[] ranks = { 0, 3 * BLOCK_SIZE, BLOCK_SIZE, 2 * BLOCK_SIZE + 1, 2 * BLOCK_SIZE, 3 * BLOCK_SIZE };
+            for (long rank : ranks) {
+                ITmfContext context = fExperiment.seekEvent(rank);
+                indexer.updateIndex(context, TmfTimestamp.create(rank + 1, -3));
+                context.dispose();
+            }
+
+            /* No checkpoint was skipped */
+            ITmfCheckpointIndex checkpoints = indexer.getCheckpoints();
+            assertEquals(4, checkpoints.size());
+            for (int i = 0; i < checkpoints.size(); i++) {
+                assertEquals(i * BLOCK_SIZE + 1, checkpoints.get(i).getTimestamp().getValue());
+            }
+        } finally {
+            experiment.dispose();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,7 +14,14 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
@@ -23,7 +30,13 @@ import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfUnorderedEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceConcurrentReading;
 
 /**
  * Provides the core event request processor. It also has support for suspending
@@ -38,6 +51,11 @@ public class TmfEventThread implements Runnable {
     // Attributes
     // ------------------------------------------------------------------------
 
+    /**
+     * The worker threads reading the partitions of the unordered requests
+     */
+    private static final ExecutorService PARTITION_EXECUTOR = Executors.newCachedThreadPool();
+
     /**
      * The event provider
      */
@@ -168,6 +186,12 @@ public class TmfEventThread implements Runnable {
 
         // Extract the generic information
         fRequest.start();
+
+        if (fRequest instanceof TmfUnorderedEventRequest && fProvider instanceof ITmfTrace) {
+            runPartitions((TmfUnorderedEventRequest<?>) fRequest, (ITmfTrace) fProvider);
+            return;
+        }
+
         int nbRequested = fRequest.getNbRequested();
         int nbRead = 0;
 
@@ -192,10 +216,7 @@ public class TmfEventThread implements Runnable {
                 }
 
                 // Pause execution if requested
-                while (fIsPaused) {
-                    CountDownLatch latch = fLatch;
-                    latch.await();
-                }
+                waitWhilePaused();
 
                 // To avoid an unnecessary read passed the last event requested
                 if (++nbRead < nbRequested) {
@@ -221,6 +242,146 @@ public class TmfEventThread implements Runnable {
         context.dispose();
     }
 
+    private void waitWhilePaused() throws InterruptedException {
+        while (fIsPaused) {
+            CountDownLatch latch = fLatch;
+            // Let a work-stealing pool use a spare worker meanwhile
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    latch.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return latch.getCount() == 0;
+                }
+            });
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Unordered requests
+    // ------------------------------------------------------------------------
+
+    /**
+     * Split the time range of an unordered request in partitions, and read
+     * each one from its own context on a worker thread
+     */
+    private <A> void runPartitions(TmfUnorderedEventRequest<A> request, ITmfTrace trace) {
+        ITmfTimestamp[] bounds = getPartitionBounds(request, trace);
+        int nbPartitions = bounds.length - 1;
+        TmfCoreTracer.traceRequest(request.getRequestId(), "split in " + nbPartitions + " partitions"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        List<Future<?>> partitions = new ArrayList<>();
+        for (int i = 0; i < nbPartitions; i++) {
+            A accumulator = request.startPartition();
+            ITmfTimestamp start = bounds[i];
+            ITmfTimestamp end = bounds[i + 1];
+            boolean isLast = (i == nbPartitions - 1);
+            partitions.add(PARTITION_EXECUTOR.submit(() -> {
+                readPartition(request, trace, start, end, isLast, accumulator);
+                return null;
+            }));
+        }
+
+        // Wait for all the partitions, even if one of them fails
+        Throwable error = null;
+        for (Future<?> partition : partitions) {
+            try {
+                partition.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                request.cancel();
+                Thread.currentThread().interrupt();
+                isCompleted = true;
+                return;
+            }
+        }
+
+        isCompleted = true;
+
+        if (error != null) {
+            Activator.logError("Error in " + fProvider.getName() + " handling " + request, error); //$NON-NLS-1$ //$NON-NLS-2$
+            request.fail(error instanceof Exception ? (Exception) error : new RuntimeException(error));
+        } else if (request.isCancelled()) {
+            request.cancel();
+        } else {
+            request.done();
+        }
+    }
+
+    /**
+     * Get the bounds of the partitions of the time range of a request, split
+     * evenly over the part of the trace it covers. The events of a partition
+     * are at or after its start and before its end, except for the last one
+     * which includes its end.
+     */
+    private static ITmfTimestamp[] getPartitionBounds(TmfUnorderedEventRequest<?> request, ITmfTrace trace) {
+        TmfTimeRange range = request.getRange();
+        ITmfTimestamp start = range.getStartTime();
+        ITmfTimestamp end = range.getEndTime();
+        int nbPartitions = request.getNbPartitions();
+        if (nbPartitions <= 1 || trace.getNbEvents() == 0 || trace.getStartTime().equals(TmfTimestamp.BIG_BANG)) {
+            return new ITmfTimestamp[] { start, end };
+        }
+
+        long first = Math.max(start.toNanos(), trace.getStartTime().toNanos());
+        long last = Math.min(end.toNanos(), trace.getEndTime().toNanos());
+        if (last - first < nbPartitions) {
+            return new ITmfTimestamp[] { start, end };
+        }
+
+        ITmfTimestamp[] bounds = new ITmfTimestamp[nbPartitions + 1];
+        bounds[0] = start;
+        for (int i = 1; i < nbPartitions; i++) {
+            bounds[i] = TmfTimestamp.fromNanos(first + (long) ((double) (last - first) * i / nbPartitions));
+        }
+        bounds[nbPartitions] = end;
+        return bounds;
+    }
+
+    /**
+     * Read the events of a partition. A trace that supports it is read from a
+     * private context without locking it, otherwise the partitions take turns
+     * in the synchronized {@link ITmfTrace#getNext(ITmfContext)} and only the
+     * handling of the events is concurrent.
+     */
+    private <A> void readPartition(TmfUnorderedEventRequest<A> request, ITmfTrace trace,
+            ITmfTimestamp start, ITmfTimestamp end, boolean isLast, A accumulator) throws InterruptedException {
+        ITmfTraceConcurrentReading reader = (trace instanceof ITmfTraceConcurrentReading) ? (ITmfTraceConcurrentReading) trace : null;
+        ITmfContext context = (reader != null) ? reader.createPrivateContext(start) : null;
+        if (context == null) {
+            reader = null;
+            context = trace.seekEvent(start);
+        }
+        try {
+            ITmfEvent event = readNext(reader, trace, context);
+            while (event != null && !request.isCancelled()) {
+                int comparison = event.getTimestamp().compareTo(end);
+                if (comparison > 0 || (comparison == 0 && !isLast)) {
+                    break;
+                }
+                /* A private context can be seeked slightly before the start */
+                if (event.getTimestamp().compareTo(start) >= 0 && request.getDataType().isInstance(event)) {
+                    request.handleData(accumulator, event);
+                }
+                waitWhilePaused();
+                event = readNext(reader, trace, context);
+            }
+        } finally {
+            context.dispose();
+        }
+    }
+
+    private static ITmfEvent readNext(ITmfTraceConcurrentReading reader, ITmfTrace trace, ITmfContext context) {
+        return (reader != null) ? reader.readNext(context) : trace.getNext(context);
+    }
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,21 +15,40 @@
 package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * The TMF coalesced event request
+ * <p>
+ * By default, each event is dispatched to the sub-requests in series, on the
+ * thread that reads the events. With a dispatch queue size, each sub-request
+ * instead gets a bounded queue of events, consumed by its own thread, so a
+ * slow sub-request does not hold back the others. The reader blocks when a
+ * queue is full. The sub-requests then read the same event instances
+ * concurrently, so the events must not be modified once they are read, see
+ * {@link org.eclipse.tracecompass.tmf.core.component.TmfEventProvider#setDispatchQueueSize(int)}.
  *
  * @author Francois Chouinard
  */
@@ -53,6 +72,15 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
      */
     private Map<String, Set<ITmfEventRequest>> fRequestsCache = new HashMap<>();
 
+    /**
+     * The size of the event queues of the sub-requests, or 0 to dispatch the
+     * events in series
+     */
+    private int fDispatchQueueSize = 0;
+
+    /** The dispatchers of the sub-requests, when they have their own queues */
+    private volatile Map<ITmfEventRequest, EventDispatcher> fDispatchers = Collections.emptyMap();
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -105,6 +133,30 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         return fRange;
     }
 
+    /**
+     * The coalesced request reads the union of the fields of its
+     * sub-requests, or all fields if any of them does not declare its fields.
+     */
+    @Override
+    public @Nullable Map<String, Set<String>> getRequiredFields() {
+        if (fRequests.isEmpty()) {
+            return null;
+        }
+        Map<String, ImmutableSet.Builder<String>> union = new HashMap<>();
+        for (ITmfEventRequest request : fRequests) {
+            Map<String, Set<String>> requiredFields = request.getRequiredFields();
+            if (requiredFields == null) {
+                return null;
+            }
+            for (Map.Entry<String, Set<String>> entry : requiredFields.entrySet()) {
+                union.computeIfAbsent(entry.getKey(), name -> ImmutableSet.builder()).addAll(entry.getValue());
+            }
+        }
+        ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builder();
+        union.forEach((name, fields) -> builder.put(name, fields.build()));
+        return builder.build();
+    }
+
     // ------------------------------------------------------------------------
     // Management
     // ------------------------------------------------------------------------
@@ -189,6 +241,19 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         }
     }
 
+    /**
+     * Set the size of the event queues of the sub-requests. The sub-requests
+     * get their own queue and thread only if there are more than one when the
+     * request starts.
+     *
+     * @param queueSize
+     *            The number of events each queue holds, or 0 to dispatch the
+     *            events in series on the reader thread
+     */
+    public void setDispatchQueueSize(int queueSize) {
+        fDispatchQueueSize = Math.max(0, queueSize);
+    }
+
     /**
      * @return The list of IDs of the sub-requests
      */
@@ -230,13 +295,21 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         }
 
         // dispatch event to relevant requests
+        Map<ITmfEventRequest, EventDispatcher> dispatchers = fDispatchers;
         for (ITmfEventRequest request : requests) {
             long start = request.getIndex();
-            if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
+            EventDispatcher dispatcher = dispatchers.get(request);
+            // The queued events are not read yet
+            long nbRead = (dispatcher == null ? request.getNbRead() : dispatcher.getNbQueued());
+            if (!request.isCompleted() && index >= start && nbRead < request.getNbRequested()) {
                 ITmfTimestamp ts = data.getTimestamp();
                 if (request.getRange().contains(ts)) {
                     if (request.getDataType().isInstance(data)) {
-                        request.handleData(data);
+                        if (dispatcher == null) {
+                            request.handleData(data);
+                        } else {
+                            dispatcher.queue(data);
+                        }
                     }
                 }
             }
@@ -250,11 +323,38 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
                 request.start();
             }
         }
+        if (fDispatchQueueSize > 0 && fRequests.size() > 1) {
+            Map<ITmfEventRequest, EventDispatcher> dispatchers = new HashMap<>();
+            for (ITmfEventRequest request : fRequests) {
+                if (!request.isCompleted()) {
+                    EventDispatcher dispatcher = new EventDispatcher(request, fDispatchQueueSize);
+                    dispatchers.put(request, dispatcher);
+                    dispatcher.start();
+                }
+            }
+            fDispatchers = dispatchers;
+        }
         super.start();
     }
 
+    /**
+     * Stop the dispatchers of the sub-requests
+     *
+     * @param drain
+     *            If the queued events are handled before stopping (true), or
+     *            discarded (false)
+     */
+    private void stopDispatchers(boolean drain) {
+        Map<ITmfEventRequest, EventDispatcher> dispatchers = fDispatchers;
+        fDispatchers = Collections.emptyMap();
+        for (EventDispatcher dispatcher : dispatchers.values()) {
+            dispatcher.stop(drain);
+        }
+    }
+
     @Override
     public synchronized void done() {
+        stopDispatchers(true);
         for (ITmfEventRequest request : fRequests) {
             if (!request.isCompleted()) {
                 request.done();
@@ -265,6 +365,9 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     @Override
     public void fail(Exception e) {
+        synchronized (this) {
+            stopDispatchers(false);
+        }
         for (ITmfEventRequest request : fRequests) {
             request.fail(e);
         }
@@ -273,6 +376,9 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     @Override
     public void cancel() {
+        synchronized (this) {
+            stopDispatchers(false);
+        }
         for (ITmfEventRequest request : fRequests) {
             if (!request.isCompleted()) {
                 request.cancel();
@@ -328,6 +434,110 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     }
 
+    // ------------------------------------------------------------------------
+    // Dispatch
+    // ------------------------------------------------------------------------
+
+    /**
+     * The bounded queue of events of a sub-request, and the thread that hands
+     * them to the sub-request
+     */
+    private static class EventDispatcher implements Runnable {
+
+        /** The marker of the end of the events */
+        private static final ITmfEvent END = new TmfEvent(null, ITmfContext.UNKNOWN_RANK, null, null, null);
+
+        private static final long OFFER_TIMEOUT = 100;
+
+        private final ITmfEventRequest fRequest;
+        private final BlockingQueue<ITmfEvent> fQueue;
+        private final Thread fThread;
+        private long fNbQueued = 0;
+        private volatile boolean fDiscard = false;
+
+        public EventDispatcher(ITmfEventRequest request, int queueSize) {
+            fRequest = request;
+            fQueue = new ArrayBlockingQueue<>(queueSize);
+            fThread = new Thread(this, "Event dispatcher for request " + request.getRequestId()); //$NON-NLS-1$
+            fThread.setDaemon(true);
+        }
+
+        public void start() {
+            fThread.start();
+        }
+
+        /**
+         * @return The number of events queued for the sub-request
+         */
+        public long getNbQueued() {
+            return fNbQueued;
+        }
+
+        /**
+         * Queue an event, waiting for room in the queue
+         */
+        public void queue(ITmfEvent event) {
+            fNbQueued++;
+            put(event, true);
+        }
+
+        /**
+         * @param dropIfCompleted
+         *            If the event is dropped when the sub-request is cancelled
+         *            while waiting, instead of holding the reader until the
+         *            thread handles the queued events
+         */
+        private void put(ITmfEvent event, boolean dropIfCompleted) {
+            try {
+                while (!fQueue.offer(event, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    // The sub-request failed or was cancelled, its events are not needed
+                    if (!fThread.isAlive() || (dropIfCompleted && fRequest.isCompleted())) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Stop the thread, after it handles the queued events or not
+         */
+        public void stop(boolean drain) {
+            if (!drain) {
+                fDiscard = true;
+                fQueue.clear();
+            }
+            put(END, false);
+            if (Thread.currentThread() != fThread) {
+                try {
+                    fThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            fQueue.clear();
+        }
+
+        @Override
+        public void run() {
+            try {
+                ITmfEvent event = fQueue.take();
+                while (event != END && !fDiscard) {
+                    if (!fRequest.isCompleted()) {
+                        fRequest.handleData(event);
+                    }
+                    event = fQueue.take();
+                }
+            } catch (InterruptedException e) {
+                // The events are discarded
+            } catch (RuntimeException e) {
+                Activator.logError("Error handling " + fRequest, e); //$NON-NLS-1$
+                fRequest.fail(e);
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
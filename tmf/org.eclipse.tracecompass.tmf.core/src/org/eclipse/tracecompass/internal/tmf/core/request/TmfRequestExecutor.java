@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -16,29 +16,39 @@ package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Queue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 
 /**
- * The request scheduler works with 5 slots with a specific time. It has 4 slots
- * for foreground requests and 1 slot for background requests, and it passes
- * through all the slots (foreground first and background after).
+ * The request scheduler runs up to a fixed number of requests concurrently on
+ * a work-stealing pool. The pending foreground requests are always started
+ * before the background ones, and when all the slots are taken, a new
+ * foreground request preempts a running background request. The preempted
+ * request is suspended, and resumed as soon as a slot frees up.
  *
- * Example: if we have one foreground and one background request, the foreground
- * request will be executed four times more often than the background request.
+ * When all the slots are taken by foreground requests, the foreground requests
+ * share them in turn: every time slice, a foreground request that ran for a
+ * whole slice is suspended and queued after the pending foreground requests,
+ * so that a short request does not wait for a long one to complete.
+ *
+ * The number of pending requests and the time they waited for a slot are
+ * kept, to monitor the load of the scheduler.
  *
  * @author Francois Chouinard
  * @author Simon Delisle
- * @version 1.1
+ * @version 1.2
  */
 public class TmfRequestExecutor implements Executor {
 
@@ -46,37 +56,60 @@ public class TmfRequestExecutor implements Executor {
     // Constants
     // ------------------------------------------------------------------------
 
-    private static final long REQUEST_TIME = 100;
-    private static final int FOREGROUND_SLOT = 4;
+    /** The default number of requests that run concurrently */
+    public static final int DEFAULT_NB_SLOTS = Runtime.getRuntime().availableProcessors();
+
+    /** The time, in milliseconds, a foreground request runs before yielding its slot */
+    private static final long TIME_SLICE = 100;
 
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
 
     // The request executor
-    private final ExecutorService fExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService fExecutor;
     private final String fExecutorName;
 
+    // The number of requests that run concurrently
+    private final int fNbSlots;
+
     // The request queues
-    private final Queue<TmfEventThread> fForegroundTasks = new ArrayBlockingQueue<>(10);
-    private final Queue<TmfEventThread> fBackgroundTasks = new ArrayBlockingQueue<>(10);
+    private final Deque<RequestTask> fForegroundTasks = new ArrayDeque<>();
+    private final Deque<RequestTask> fBackgroundTasks = new ArrayDeque<>();
 
-    // The tasks
-    private TmfEventThread fActiveTask;
+    // The running tasks, in the order they were started
+    private final List<RequestTask> fActiveTasks = new ArrayList<>();
 
-    private Timer fTimer;
-    private TimerTask fTimerTask;
+    // The timer of the time slices of the foreground requests, while they are needed
+    private Timer fTimer = null;
+    private TimerTask fTimeSliceTask = null;
 
-    private int fForegroundCycle = 0;
+    // The metrics
+    private long fNbScheduled = 0;
+    private long fTotalWaitTime = 0;
+    private long fMaxWaitTime = 0;
 
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
 
     /**
-     * Default constructor
+     * Default constructor, runs as many requests concurrently as there are
+     * processors
      */
     public TmfRequestExecutor() {
+        this(DEFAULT_NB_SLOTS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param nbSlots
+     *            The number of requests that run concurrently
+     */
+    public TmfRequestExecutor(int nbSlots) {
+        fNbSlots = Math.max(1, nbSlots);
+        fExecutor = Executors.newWorkStealingPool(fNbSlots);
         // We know the canonical name is not null because we use ExecutorService only
         String canonicalName = checkNotNull(fExecutor.getClass().getCanonicalName());
         fExecutorName = canonicalName.substring(canonicalName.lastIndexOf('.') + 1);
@@ -103,23 +136,56 @@ public class TmfRequestExecutor implements Executor {
         return fExecutor.isTerminated();
     }
 
-    // ------------------------------------------------------------------------
-    // Operations
-    // ------------------------------------------------------------------------
+    /**
+     * @return the number of requests that run concurrently
+     */
+    public int getNbSlots() {
+        return fNbSlots;
+    }
 
     /**
-     * Initialize the executor
+     * @return the number of requests currently running
      */
-    public void init() {
-        if (fTimer != null) {
-            return;
-        }
-        // Initialize the timer for the schedSwitch
-        fTimerTask = new SchedSwitch();
-        fTimer = new Timer(true);
-        fTimer.schedule(fTimerTask, 0, REQUEST_TIME);
+    public synchronized int getNbRunning() {
+        return fActiveTasks.size();
+    }
+
+    /**
+     * Get the queue depth for a priority, including the preempted requests
+     *
+     * @param priority
+     *            The request execution priority
+     * @return the number of requests waiting for a slot
+     */
+    public synchronized int getNbPending(ExecutionType priority) {
+        return (priority == ExecutionType.FOREGROUND ? fForegroundTasks : fBackgroundTasks).size();
+    }
+
+    /**
+     * @return the number of times a request was given a slot
+     */
+    public synchronized long getNbScheduled() {
+        return fNbScheduled;
+    }
+
+    /**
+     * @return the average time, in nanoseconds, the requests waited for a slot
+     */
+    public synchronized long getAverageWaitTime() {
+        return (fNbScheduled == 0 ? 0 : fTotalWaitTime / fNbScheduled);
     }
 
+    /**
+     * @return the longest time, in nanoseconds, a request waited for a slot
+     */
+    public synchronized long getMaxWaitTime() {
+        return fMaxWaitTime;
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
     @Override
     public synchronized void execute(final Runnable command) {
 
@@ -129,83 +195,87 @@ public class TmfRequestExecutor implements Executor {
             return;
         }
 
-        // Wrap the thread in a MyThread
-        TmfEventThread thread = (TmfEventThread) command;
-        TmfEventThread wrapper = new TmfEventThread(thread) {
-            @Override
-            public void run() {
-                try {
-                    command.run();
-                } finally {
-                    scheduleNext();
-                }
-            }
-        };
+        // Wrap the thread in a task that frees its slot when it completes
+        RequestTask task = new RequestTask((TmfEventThread) command);
 
         // Add the thread to the appropriate queue
-        ExecutionType priority = thread.getExecType();
-
-        if (priority == ExecutionType.FOREGROUND) {
-            if (!fForegroundTasks.offer(wrapper)) {
-                wrapper.cancel();
-            }
+        if (task.getExecType() == ExecutionType.FOREGROUND) {
+            fForegroundTasks.offer(task);
         } else {
-            if (!fBackgroundTasks.offer(wrapper)) {
-                wrapper.cancel();
-            }
+            fBackgroundTasks.offer(task);
         }
+        task.queued();
+
+        scheduleNext();
     }
 
     /**
-     * Timer task to trigger scheduleNext()
+     * Starts or resumes the pending requests while there are free slots, and
+     * preempts the background requests for the pending foreground requests.
      */
-    private class SchedSwitch extends TimerTask {
+    protected synchronized void scheduleNext() {
+        if (isShutdown()) {
+            return;
+        }
 
-        SchedSwitch() {
+        while (fActiveTasks.size() < fNbSlots && (!fForegroundTasks.isEmpty() || !fBackgroundTasks.isEmpty())) {
+            RequestTask task = fForegroundTasks.isEmpty() ? fBackgroundTasks.poll() : fForegroundTasks.poll();
+            executeTask(task);
         }
 
-        @Override
-        public void run() {
-            scheduleNext();
+        while (!fForegroundTasks.isEmpty()) {
+            RequestTask victim = getLastBackgroundTask();
+            if (victim == null) {
+                break;
+            }
+            // The preempted request is the first to resume
+            fActiveTasks.remove(victim);
+            victim.getThread().suspend();
+            fBackgroundTasks.offerFirst(victim);
+            victim.queued();
+            executeTask(fForegroundTasks.poll());
+        }
+
+        // The foreground requests left share the slots in turn
+        if (!fForegroundTasks.isEmpty() && fTimeSliceTask == null) {
+            if (fTimer == null) {
+                fTimer = new Timer(fExecutorName + " time slices", true); //$NON-NLS-1$
+            }
+            fTimeSliceTask = new TimerTask() {
+                @Override
+                public void run() {
+                    timeSliceElapsed();
+                }
+            };
+            fTimer.schedule(fTimeSliceTask, TIME_SLICE, TIME_SLICE);
         }
     }
 
     /**
-     * Executes the next pending request, if applicable.
+     * Suspends the foreground requests that ran for a whole time slice, for
+     * the pending foreground requests. The suspended requests are queued
+     * after the pending ones.
      */
-    protected synchronized void scheduleNext() {
-        if (!isShutdown()) {
-            if (fActiveTask == null) {
-                schedule();
-            } else if (fActiveTask.getExecType() == ExecutionType.FOREGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fForegroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
+    private synchronized void timeSliceElapsed() {
+        if (fForegroundTasks.isEmpty() || isShutdown()) {
+            if (fTimeSliceTask != null) {
+                fTimeSliceTask.cancel();
+                fTimeSliceTask = null;
+            }
+            return;
+        }
 
-            } else if (fActiveTask.getExecType() == ExecutionType.BACKGROUND) {
-                if (fActiveTask.getThread().isCompleted()) {
-                    fActiveTask = null;
-                    schedule();
-                } else {
-                    if (hasTasks()) {
-                        fActiveTask.getThread().suspend();
-                        if (!fBackgroundTasks.offer(fActiveTask)) {
-                            fActiveTask.cancel();
-                            fActiveTask = null;
-                        }
-                        schedule();
-                    }
-                }
+        long now = System.nanoTime();
+        for (RequestTask task : new ArrayList<>(fActiveTasks)) {
+            if (fForegroundTasks.isEmpty()) {
+                break;
+            }
+            if (task.getExecType() == ExecutionType.FOREGROUND && task.getRunTime(now) >= TimeUnit.MILLISECONDS.toNanos(TIME_SLICE)) {
+                fActiveTasks.remove(task);
+                task.getThread().suspend();
+                fForegroundTasks.offer(task);
+                task.queued();
+                executeTask(fForegroundTasks.poll());
             }
         }
     }
@@ -214,23 +284,24 @@ public class TmfRequestExecutor implements Executor {
      * Stops the executor
      */
     public synchronized void stop() {
-        if (fTimerTask != null) {
-            fTimerTask.cancel();
-        }
-
+        List<RequestTask> tasks = new ArrayList<>(fActiveTasks);
+        tasks.addAll(fForegroundTasks);
+        tasks.addAll(fBackgroundTasks);
+        fActiveTasks.clear();
+        fForegroundTasks.clear();
+        fBackgroundTasks.clear();
         if (fTimer != null) {
             fTimer.cancel();
+            fTimer = null;
+            fTimeSliceTask = null;
         }
 
-        if (fActiveTask != null) {
-            fActiveTask.cancel();
-        }
-
-        while ((fActiveTask = fForegroundTasks.poll()) != null) {
-            fActiveTask.cancel();
-        }
-        while ((fActiveTask = fBackgroundTasks.poll()) != null) {
-            fActiveTask.cancel();
+        for (RequestTask task : tasks) {
+            task.cancel();
+            // Let the preempted threads see the cancellation and terminate
+            if (task.getThread().isPaused()) {
+                task.getThread().resume();
+            }
         }
 
         fExecutor.shutdown();
@@ -244,58 +315,87 @@ public class TmfRequestExecutor implements Executor {
     // ------------------------------------------------------------------------
 
     /**
-     * Determine which type of request (foreground or background) we schedule
-     * next
+     * Execute or resume a task in a free slot
      */
-    private void schedule() {
-        if (!fForegroundTasks.isEmpty()) {
-            scheduleNextForeground();
-        } else {
-            scheduleNextBackground();
+    private void executeTask(RequestTask task) {
+        fActiveTasks.add(task);
+        task.started();
+        long waitTime = task.getWaitTime();
+        fNbScheduled++;
+        fTotalWaitTime += waitTime;
+        fMaxWaitTime = Math.max(fMaxWaitTime, waitTime);
+        if (TmfCoreTracer.isRequestTraced()) {
+            TmfCoreTracer.traceRequest(task.getRequest().getRequestId(), "SCHEDULED after " + waitTime / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
         }
-    }
 
-    /**
-     * Schedule the next foreground request
-     */
-    private void scheduleNextForeground() {
-        if (fForegroundCycle < FOREGROUND_SLOT || fBackgroundTasks.isEmpty()) {
-            ++fForegroundCycle;
-            fActiveTask = fForegroundTasks.poll();
-            executefActiveTask();
+        if (task.getThread().isPaused()) {
+            task.getThread().resume();
         } else {
-            fActiveTask = null;
-            scheduleNextBackground();
+            fExecutor.execute(task);
         }
     }
 
     /**
-     * Schedule the next background request
+     * Get the most recently started background task, the one to preempt
      */
-    private void scheduleNextBackground() {
-        fForegroundCycle = 0;
-        if (!fBackgroundTasks.isEmpty()) {
-            fActiveTask = fBackgroundTasks.poll();
-            executefActiveTask();
+    private RequestTask getLastBackgroundTask() {
+        for (int i = fActiveTasks.size() - 1; i >= 0; i--) {
+            RequestTask task = fActiveTasks.get(i);
+            if (task.getExecType() == ExecutionType.BACKGROUND) {
+                return task;
+            }
         }
+        return null;
     }
 
     /**
-     * Execute or resume the active task
+     * Free the slot of a completed task
      */
-    private void executefActiveTask() {
-        if (fActiveTask.getThread().isPaused()) {
-            fActiveTask.getThread().resume();
-        } else {
-            fExecutor.execute(fActiveTask);
-        }
+    private synchronized void completed(RequestTask task) {
+        fActiveTasks.remove(task);
+        // A task can complete just as it gets preempted
+        fForegroundTasks.remove(task);
+        fBackgroundTasks.remove(task);
+        scheduleNext();
     }
 
     /**
-     * Check if the scheduler has tasks
+     * The wrapper of a request thread, that keeps the time it was queued and
+     * the time it was last started or resumed
      */
-    private boolean hasTasks() {
-        return !(fForegroundTasks.isEmpty() && fBackgroundTasks.isEmpty());
+    private class RequestTask extends TmfEventThread {
+
+        private long fQueuedTime;
+        private long fStartedTime;
+
+        RequestTask(TmfEventThread thread) {
+            super(thread);
+        }
+
+        void queued() {
+            fQueuedTime = System.nanoTime();
+        }
+
+        long getWaitTime() {
+            return System.nanoTime() - fQueuedTime;
+        }
+
+        void started() {
+            fStartedTime = System.nanoTime();
+        }
+
+        long getRunTime(long now) {
+            return now - fStartedTime;
+        }
+
+        @Override
+        public void run() {
+            try {
+                getThread().run();
+            } finally {
+                completed(this);
+            }
+        }
     }
 
     // ------------------------------------------------------------------------
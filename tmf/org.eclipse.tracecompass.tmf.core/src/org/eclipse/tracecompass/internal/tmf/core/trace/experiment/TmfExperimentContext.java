@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,6 +15,7 @@
 package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -33,6 +34,12 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
  * <p>
  * The last trace refers to the trace from which the last event was "consumed"
  * at the experiment level.
+ * <p>
+ * The traces that have a next event are kept in a binary min-heap ordered by
+ * the timestamps of their events, so that replacing the event of a trace and
+ * finding the next trace to read from take O(log n) for n traces. The heap
+ * belongs to the context, so different contexts of the same experiment can be
+ * read concurrently.
  */
 public final class TmfExperimentContext extends TmfContext {
 
@@ -53,6 +60,14 @@ public final class TmfExperimentContext extends TmfContext {
     private final List<ITmfEvent> fEvents;
     private int fLastTraceRead;
 
+    /** The indexes of the traces that have an event, as a min-heap */
+    private final int[] fHeap;
+    /** The position of every trace in the heap, or -1 if it has no event */
+    private final int[] fHeapPositions;
+    /** The timestamps of the events of the traces, in nanoseconds */
+    private final long[] fTimestamps;
+    private int fHeapSize;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -75,6 +90,12 @@ public final class TmfExperimentContext extends TmfContext {
             fContexts.add(null);
             fEvents.add(null);
         }
+
+        fHeap = new int[nbTraces];
+        fHeapPositions = new int[nbTraces];
+        Arrays.fill(fHeapPositions, -1);
+        fTimestamps = new long[nbTraces];
+        fHeapSize = 0;
     }
 
     @Override
@@ -146,6 +167,35 @@ public final class TmfExperimentContext extends TmfContext {
      */
     public void setEvent(int traceIndex, ITmfEvent event) {
         fEvents.set(traceIndex, event);
+        int position = fHeapPositions[traceIndex];
+        if (event == null) {
+            if (position >= 0) {
+                removeFromHeap(position);
+            }
+            return;
+        }
+        fTimestamps[traceIndex] = event.getTimestamp().toNanos();
+        if (position < 0) {
+            position = fHeapSize++;
+            fHeap[position] = traceIndex;
+            fHeapPositions[traceIndex] = position;
+            siftUp(position);
+        } else {
+            siftUp(position);
+            siftDown(fHeapPositions[traceIndex]);
+        }
+    }
+
+    /**
+     * Get the index of the trace whose current event is the next one of the
+     * experiment, the earliest one. Events with the same timestamp are read in
+     * the order of the traces.
+     *
+     * @return The index of the trace, or {@link #NO_TRACE} if no trace has
+     *         events left
+     */
+    public int getNextTrace() {
+        return (fHeapSize == 0) ? NO_TRACE : fHeap[0];
     }
 
     /**
@@ -168,6 +218,78 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = newIndex;
     }
 
+    // ------------------------------------------------------------------------
+    // Heap operations
+    // ------------------------------------------------------------------------
+
+    private boolean isBefore(int trace, int other) {
+        long timestamp = fTimestamps[trace];
+        long otherTimestamp = fTimestamps[other];
+        if (timestamp != otherTimestamp) {
+            return timestamp < otherTimestamp;
+        }
+        /* Same nanosecond, compare the full timestamps then the trace order */
+        ITmfEvent event = fEvents.get(trace);
+        ITmfEvent otherEvent = fEvents.get(other);
+        int comparison = event.getTimestamp().compareTo(otherEvent.getTimestamp());
+        if (comparison != 0) {
+            return comparison < 0;
+        }
+        return trace < other;
+    }
+
+    private void siftUp(int position) {
+        int pos = position;
+        int trace = fHeap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = fHeap[parentPos];
+            if (!isBefore(trace, parent)) {
+                break;
+            }
+            fHeap[pos] = parent;
+            fHeapPositions[parent] = pos;
+            pos = parentPos;
+        }
+        fHeap[pos] = trace;
+        fHeapPositions[trace] = pos;
+    }
+
+    private void siftDown(int position) {
+        int pos = position;
+        int trace = fHeap[pos];
+        int half = fHeapSize >>> 1;
+        while (pos < half) {
+            int childPos = 2 * pos + 1;
+            int child = fHeap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < fHeapSize && isBefore(fHeap[rightPos], child)) {
+                childPos = rightPos;
+                child = fHeap[childPos];
+            }
+            if (!isBefore(child, trace)) {
+                break;
+            }
+            fHeap[pos] = child;
+            fHeapPositions[child] = pos;
+            pos = childPos;
+        }
+        fHeap[pos] = trace;
+        fHeapPositions[trace] = pos;
+    }
+
+    private void removeFromHeap(int position) {
+        int trace = fHeap[position];
+        fHeapPositions[trace] = -1;
+        int last = fHeap[--fHeapSize];
+        if (position != fHeapSize) {
+            fHeap[position] = last;
+            fHeapPositions[last] = position;
+            siftUp(position);
+            siftDown(fHeapPositions[last]);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
@@ -0,0 +1,662 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.Messages;
+import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * The indexer of the experiments. The first time an experiment is indexed,
+ * its children are indexed in parallel, each one by its own indexer, instead
+ * of reading the merged events of the experiment in a single request.
+ * <p>
+ * The checkpoints of the children are then merged by timestamp, which gives
+ * an estimate of the number of events of the experiment before any time. The
+ * checkpoints of the experiment are taken at the times where this estimate
+ * crosses a multiple of the interval. Each child is positioned at these times
+ * in parallel, seeking its own index when a time is past its next checkpoint
+ * and reading forward otherwise, so that no child is read twice. A checkpoint
+ * of the experiment is added as soon as all the children reached its time.
+ * The checkpoints of the experiment are thus about one interval apart, but
+ * not exactly, and the rank of a checkpoint is the sum of the ranks of the
+ * children in its location.
+ * <p>
+ * The incremental updates, of a streaming experiment for example, read the
+ * merged events and add a checkpoint every interval as before.
+ */
+public class TmfExperimentIndexer extends TmfCheckpointIndexer {
+
+    /** How often the checkpoints found so far are added, in milliseconds */
+    private static final long PUBLISH_INTERVAL = 500;
+
+    private final TmfExperiment fExperiment;
+    private final int fInterval;
+
+    /** Whether the children are being indexed in parallel */
+    private volatile boolean fIsParallelIndexing = false;
+
+    /** The parallel indexing job */
+    private volatile @Nullable Job fJob = null;
+
+    /** The rank of the next checkpoint to add, or -1 if not known yet. Guarded by the index. */
+    private long fNextCheckpointRank = -1;
+
+    /**
+     * Constructor
+     *
+     * @param experiment
+     *            the experiment to index
+     * @param interval
+     *            the checkpoints interval
+     */
+    public TmfExperimentIndexer(TmfExperiment experiment, int interval) {
+        super(experiment, interval);
+        fExperiment = experiment;
+        fInterval = interval;
+    }
+
+    @Override
+    protected ITmfCheckpointIndex createIndex(ITmfTrace trace) {
+        if (trace instanceof TmfExperiment && ((TmfExperiment) trace).getCheckpointSize() > 0) {
+            return new TmfBTreeTraceIndex(trace);
+        }
+        return super.createIndex(trace);
+    }
+
+    @Override
+    public void dispose() {
+        Job job = fJob;
+        if (job != null) {
+            job.cancel();
+        }
+        super.dispose();
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return fIsParallelIndexing || super.isIndexing();
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfTraceIndexer - buildIndex
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void buildIndex(long offset, TmfTimeRange range, boolean waitForCompletion) {
+        boolean parallel;
+        synchronized (getTraceIndex()) {
+            if (fIsParallelIndexing) {
+                return;
+            }
+            parallel = !super.isIndexing() && isFirstIndexing(offset, range);
+            fIsParallelIndexing = parallel;
+        }
+        if (!parallel) {
+            super.buildIndex(offset, range, waitForCompletion);
+            return;
+        }
+
+        TmfCoreTracer.traceIndexer("buildIndex. indexing the " + fExperiment.getNbChildren() + " children in parallel"); //$NON-NLS-1$ //$NON-NLS-2$
+        Job job = new Job(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName()) {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                IStatus status;
+                try {
+                    status = indexChildren(SubMonitor.convert(monitor));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    status = Status.CANCEL_STATUS;
+                } catch (ExecutionException e) {
+                    status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage(), e.getCause());
+                } finally {
+                    fIsParallelIndexing = false;
+                }
+                if (status.getSeverity() == IStatus.ERROR) {
+                    /*
+                     * Read the merged events instead, the checkpoints added
+                     * so far are kept and the next ones follow them
+                     */
+                    Activator.log(status);
+                    TmfExperimentIndexer.super.buildIndex(0, TmfTimeRange.ETERNITY, true);
+                    return Status.OK_STATUS;
+                }
+                return status;
+            }
+        };
+        fJob = job;
+        job.schedule();
+        if (waitForCompletion) {
+            try {
+                job.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Check if the whole experiment is to be indexed from its start, with
+     * nothing but its first event read so far
+     */
+    private boolean isFirstIndexing(long offset, TmfTimeRange range) {
+        ITmfCheckpointIndex index = getTraceIndex();
+        return fExperiment.getNbChildren() > 1 && offset <= 1 &&
+                TmfTimestamp.BIG_CRUNCH.equals(range.getEndTime()) &&
+                index.isCreatedFromScratch() && index.size() <= 1;
+    }
+
+    private IStatus indexChildren(SubMonitor monitor) throws InterruptedException, ExecutionException {
+        List<ITmfTrace> children = fExperiment.getChildren(ITmfTrace.class);
+        int nbChildren = children.size();
+        monitor.beginTask("", 2 * nbChildren); //$NON-NLS-1$
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(nbChildren, Runtime.getRuntime().availableProcessors()));
+        try {
+            /* Index every child with its own indexer, and sample its checkpoints */
+            List<Future<ChildCheckpoints>> indexings = new ArrayList<>();
+            for (ITmfTrace child : children) {
+                indexings.add(executor.submit(() -> ChildCheckpoints.index(child)));
+            }
+            List<ChildCheckpoints> checkpoints = new ArrayList<>();
+            for (Future<ChildCheckpoints> indexing : indexings) {
+                checkpoints.add(indexing.get());
+                monitor.worked(1);
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            updateTimeRange(children);
+
+            /* Find where the children are at the times of the checkpoints */
+            long[] times = ChildCheckpoints.merge(checkpoints, fInterval);
+            monitor.setWorkRemaining(nbChildren * times.length);
+            List<ChildPositions> positions = new ArrayList<>();
+            List<Future<?>> readings = new ArrayList<>();
+            for (int i = 0; i < nbChildren; i++) {
+                ITmfTrace child = children.get(i);
+                ChildCheckpoints childCheckpoints = checkpoints.get(i);
+                ChildPositions childPositions = new ChildPositions(times.length);
+                positions.add(childPositions);
+                readings.add(executor.submit(() -> childPositions.read(child, childCheckpoints, times, monitor)));
+            }
+            CheckpointPublisher publisher = new CheckpointPublisher(positions, monitor);
+            for (Future<?> reading : readings) {
+                while (true) {
+                    try {
+                        reading.get(PUBLISH_INTERVAL, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        /* Add the checkpoints that all the children reached */
+                        publisher.publish();
+                    }
+                }
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            publisher.publish();
+        } finally {
+            executor.shutdownNow();
+            monitor.done();
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Update the time range and number of events of the experiment from the
+     * indexed children, before the checkpoints are added
+     */
+    private void updateTimeRange(List<ITmfTrace> children) {
+        long nbEvents = 0;
+        ITmfTimestamp startTime = TmfTimestamp.BIG_CRUNCH;
+        ITmfTimestamp endTime = TmfTimestamp.BIG_BANG;
+        for (ITmfTrace child : children) {
+            if (child.getNbEvents() == 0) {
+                continue;
+            }
+            nbEvents += child.getNbEvents();
+            if (child.getStartTime().compareTo(startTime) < 0) {
+                startTime = child.getStartTime();
+            }
+            if (child.getEndTime().compareTo(endTime) > 0) {
+                endTime = child.getEndTime();
+            }
+        }
+        if (nbEvents == 0) {
+            return;
+        }
+        TmfTimeRange range = new TmfTimeRange(startTime, endTime);
+        ITmfCheckpointIndex index = getTraceIndex();
+        synchronized (index) {
+            index.setTimeRange(range);
+            index.setNbEvents(nbEvents);
+        }
+        TmfCoreTracer.traceIndexer("Children indexed. nbEvents: " + nbEvents + " time range: " + range); //$NON-NLS-1$ //$NON-NLS-2$
+        fTrace.broadcast(new TmfTraceUpdatedSignal(this, fTrace, range, nbEvents));
+    }
+
+    /**
+     * Adds the checkpoints of the experiment as the children reach their
+     * times, and reports the progress. Only used by the indexing job.
+     */
+    private final class CheckpointPublisher {
+
+        private final List<ChildPositions> fPositions;
+        private final SubMonitor fMonitor;
+        private long fLastRank;
+        private int fNbPublished = 0;
+        private int fWorked = 0;
+
+        public CheckpointPublisher(List<ChildPositions> positions, SubMonitor monitor) {
+            fPositions = positions;
+            fMonitor = monitor;
+            /* The first checkpoint may have been added when the experiment was opened */
+            fLastRank = getTraceIndex().isEmpty() ? -1 : 0;
+        }
+
+        public void publish() {
+            int nbReached = Integer.MAX_VALUE;
+            int worked = 0;
+            for (ChildPositions child : fPositions) {
+                int nbDone = child.getNbDone();
+                nbReached = Math.min(nbReached, nbDone);
+                worked += nbDone;
+            }
+            fMonitor.worked(worked - fWorked);
+            fWorked = worked;
+            insertCheckpoints(nbReached);
+        }
+
+        /**
+         * Add the checkpoints at the positions of the children, up to the
+         * given one
+         */
+        private void insertCheckpoints(int end) {
+            int nbChildren = fPositions.size();
+            ITmfCheckpointIndex index = getTraceIndex();
+            synchronized (index) {
+                for (int i = fNbPublished; i < end; i++) {
+                    ITmfLocation[] locations = new ITmfLocation[nbChildren];
+                    long[] ranks = new long[nbChildren];
+                    long rank = 0;
+                    ITmfTimestamp timestamp = null;
+                    for (int j = 0; j < nbChildren; j++) {
+                        ChildPositions child = fPositions.get(j);
+                        locations[j] = child.fLocations[i];
+                        ranks[j] = child.fRanks[i];
+                        rank += ranks[j];
+                        ITmfTimestamp next = child.fTimestamps[i];
+                        if (next != null && (timestamp == null || next.compareTo(timestamp) < 0)) {
+                            timestamp = next;
+                        }
+                    }
+                    /* The children are all at their end when there is no timestamp */
+                    if (timestamp != null && rank > fLastRank) {
+                        TmfExperimentLocation location = new TmfExperimentLocation(new TmfLocationArray(locations, ranks));
+                        TmfCheckpoint checkpoint = new TmfCheckpoint(timestamp, location, index.size());
+                        TmfCoreTracer.traceIndexer("Inserting checkpoint: " + checkpoint); //$NON-NLS-1$
+                        index.insert(checkpoint);
+                        fLastRank = rank;
+                    }
+                }
+                fNbPublished = Math.max(fNbPublished, end);
+                fNextCheckpointRank = -1;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfTraceIndexer - updateIndex
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void updateIndex(ITmfContext context, ITmfTimestamp timestamp) {
+        if (fIsParallelIndexing) {
+            return;
+        }
+        ITmfCheckpointIndex index = getTraceIndex();
+        /* Same lock as insertCheckpoints(), which resets the next rank */
+        synchronized (index) {
+            if (fNextCheckpointRank < 0) {
+                fNextCheckpointRank = index.isEmpty() ? 0 : getRank(index.get(index.size() - 1)) + fInterval;
+            }
+            /*
+             * Only the context at the next checkpoint adds it, so that a
+             * reader ahead of the indexing does not skip the checkpoints in
+             * between
+             */
+            if (context.getRank() != fNextCheckpointRank) {
+                return;
+            }
+            TmfCheckpoint checkpoint = new TmfCheckpoint(timestamp, context.getLocation(), index.size());
+            TmfCoreTracer.traceIndexer("Inserting checkpoint: " + checkpoint); //$NON-NLS-1$
+            index.insert(checkpoint);
+            fNextCheckpointRank += fInterval;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfTraceIndexer - seekIndex
+    // ------------------------------------------------------------------------
+
+    @Override
+    public synchronized ITmfContext seekIndex(ITmfTimestamp timestamp) {
+
+        // A null timestamp indicates to seek the first event
+        if (timestamp == null) {
+            return fTrace.seekEvent(0);
+        }
+
+        // Find the checkpoint before the requested timestamp, as in the
+        // checkpoint indexer
+        long index = getTraceIndex().binarySearch(new TmfCheckpoint(timestamp, null, 0));
+        if (index < 0) {
+            index = Math.max(0, -(index + 2));
+        } else {
+            index = Math.max(0, index - 1);
+        }
+        return restoreCheckpoint(index);
+    }
+
+    @Override
+    public ITmfContext seekIndex(long rank) {
+
+        // A rank < 0 indicates to seek the first event
+        if (rank < 0) {
+            return fTrace.seekEvent(0);
+        }
+
+        // The checkpoints are not at fixed intervals, find the last one at or
+        // before the requested rank
+        ITmfCheckpointIndex index = getTraceIndex();
+        long checkpointIndex = 0;
+        synchronized (index) {
+            long low = 0;
+            long high = index.size() - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                if (getRank(index.get(mid)) <= rank) {
+                    checkpointIndex = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+        }
+        return restoreCheckpoint(checkpointIndex);
+    }
+
+    /**
+     * Position the experiment at the given checkpoint. The experiment sets the
+     * rank of the context from the ranks of the children in the location.
+     */
+    private ITmfContext restoreCheckpoint(long checkpointIndex) {
+        ITmfLocation location = null;
+        ITmfCheckpointIndex index = getTraceIndex();
+        synchronized (index) {
+            if (!index.isEmpty()) {
+                ITmfCheckpoint checkpoint = index.get(Math.min(checkpointIndex, index.size() - 1));
+                TmfCoreTracer.traceIndexer("Restored checkpoint: " + checkpoint); //$NON-NLS-1$
+                if (checkpoint != null) {
+                    location = checkpoint.getLocation();
+                }
+            }
+        }
+        return fTrace.seekEvent(location);
+    }
+
+    private static long getRank(@Nullable ITmfCheckpoint checkpoint) {
+        long rank = 0;
+        if (checkpoint != null && checkpoint.getLocation() instanceof TmfExperimentLocation) {
+            TmfLocationArray locationArray = ((TmfExperimentLocation) checkpoint.getLocation()).getLocationInfo();
+            for (int i = 0; i < locationArray.size(); i++) {
+                rank += locationArray.getRank(i);
+            }
+        }
+        return rank;
+    }
+
+    // ------------------------------------------------------------------------
+    // Children
+    // ------------------------------------------------------------------------
+
+    /**
+     * The timestamps (in nanoseconds) and ranks of the checkpoints of a child,
+     * used to estimate how many of its events are before a given time
+     */
+    private static final class ChildCheckpoints {
+
+        private final long[] fTimes;
+        private final long[] fRanks;
+
+        private ChildCheckpoints(long[] times, long[] ranks) {
+            fTimes = times;
+            fRanks = ranks;
+        }
+
+        /**
+         * Index a child with its own indexer, and read the event at each of
+         * its checkpoints
+         */
+        public static ChildCheckpoints index(ITmfTrace child) {
+            child.indexTrace(true);
+            long nbEvents = child.getNbEvents();
+            int interval = Math.max(1, child.getCacheSize());
+            int nbCheckpoints = (int) ((nbEvents + interval - 1) / interval);
+            long[] times = new long[nbCheckpoints + 1];
+            long[] ranks = new long[nbCheckpoints + 1];
+            int size = 0;
+            for (long rank = 0; rank < nbEvents; rank += interval) {
+                ITmfContext context = child.seekEvent(rank);
+                ITmfEvent event = child.getNext(context);
+                context.dispose();
+                if (event == null) {
+                    break;
+                }
+                long time = event.getTimestamp().toNanos();
+                /* Of the checkpoints at the same time, keep the first one */
+                if (size == 0 || time > times[size - 1]) {
+                    times[size] = time;
+                    ranks[size] = rank;
+                    size++;
+                }
+            }
+            if (size > 0) {
+                /* All the events are before the end time */
+                times[size] = Math.max(child.getEndTime().toNanos(), times[size - 1]) + 1;
+                ranks[size] = nbEvents;
+                size++;
+            }
+            return new ChildCheckpoints(Arrays.copyOf(times, size), Arrays.copyOf(ranks, size));
+        }
+
+        /**
+         * Estimate the number of events before a time, by interpolating
+         * between the checkpoints around it
+         */
+        public double estimate(long time) {
+            if (fTimes.length == 0) {
+                return 0;
+            }
+            int i = Arrays.binarySearch(fTimes, time);
+            if (i >= 0) {
+                return fRanks[i];
+            }
+            int next = -(i + 1);
+            if (next == 0) {
+                return fRanks[0];
+            }
+            if (next == fTimes.length) {
+                return fRanks[fTimes.length - 1];
+            }
+            int prev = next - 1;
+            return fRanks[prev] + (double) (fRanks[next] - fRanks[prev]) * (time - fTimes[prev]) / (fTimes[next] - fTimes[prev]);
+        }
+
+        /**
+         * Get the rank of the last checkpoint at or before a time, from which
+         * the child reads forward when it is seeked at that time. The last
+         * time is after the end of the child, which is not seeked past its
+         * last checkpoint.
+         */
+        public long rankBefore(long time) {
+            int i = Arrays.binarySearch(fTimes, 0, Math.max(0, fTimes.length - 1), time);
+            int last = (i >= 0) ? i : -(i + 1) - 1;
+            return last < 0 ? 0 : fRanks[last];
+        }
+
+        /**
+         * Merge the checkpoints of the children by timestamp, and find the
+         * times where the estimated number of events of the experiment crosses
+         * each multiple of the interval. The first time is before any event.
+         */
+        public static long[] merge(List<ChildCheckpoints> children, int interval) {
+            int nbTimes = 0;
+            for (ChildCheckpoints child : children) {
+                nbTimes += child.fTimes.length;
+            }
+            long[] times = new long[nbTimes];
+            int pos = 0;
+            for (ChildCheckpoints child : children) {
+                System.arraycopy(child.fTimes, 0, times, pos, child.fTimes.length);
+                pos += child.fTimes.length;
+            }
+            Arrays.sort(times);
+
+            List<Long> cuts = new ArrayList<>();
+            cuts.add(Long.MIN_VALUE);
+            long target = interval;
+            double prevEstimate = 0;
+            for (int i = 0; i < nbTimes; i++) {
+                if (i > 0 && times[i] == times[i - 1]) {
+                    continue;
+                }
+                double estimate = 0;
+                for (ChildCheckpoints child : children) {
+                    estimate += child.estimate(times[i]);
+                }
+                /* The estimate is linear between two consecutive times */
+                while (i > 0 && target <= estimate) {
+                    long cut = times[i - 1] + (long) Math.ceil((target - prevEstimate) * (times[i] - times[i - 1]) / (estimate - prevEstimate));
+                    cut = Math.min(cut, times[i]);
+                    if (cut > cuts.get(cuts.size() - 1)) {
+                        cuts.add(cut);
+                    }
+                    target += interval;
+                }
+                prevEstimate = estimate;
+            }
+
+            long[] result = new long[cuts.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = cuts.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The location and rank of a child at a series of times, that is before
+     * its first event at or after each time. The positions are filled in
+     * order by a worker thread while the indexing job reads the ones that are
+     * done.
+     */
+    private static final class ChildPositions {
+
+        private final ITmfLocation[] fLocations;
+        private final long[] fRanks;
+        private final @Nullable ITmfTimestamp[] fTimestamps;
+        /** The number of positions filled, published after them */
+        private volatile int fNbDone = 0;
+
+        public ChildPositions(int nbTimes) {
+            fLocations = new ITmfLocation[nbTimes];
+            fRanks = new long[nbTimes];
+            fTimestamps = new ITmfTimestamp[nbTimes];
+        }
+
+        public int getNbDone() {
+            return fNbDone;
+        }
+
+        /**
+         * Find the position of a child at each time. The child is seeked by
+         * time through its own index when it has a checkpoint after the
+         * previous position and before the time, and is read forward from the
+         * previous position otherwise, so the child is read at most once.
+         */
+        public void read(ITmfTrace child, ChildCheckpoints checkpoints, long[] times, IProgressMonitor monitor) {
+            ITmfContext context = null;
+            ITmfLocation location = null;
+            long rank = 0;
+            ITmfEvent event = null;
+            try {
+                for (int i = 0; i < times.length && !monitor.isCanceled(); i++) {
+                    long time = times[i];
+                    if (context == null || checkpoints.rankBefore(time) > rank) {
+                        if (context != null) {
+                            context.dispose();
+                        }
+                        context = (time == Long.MIN_VALUE) ? child.seekEvent(0L) : child.seekEvent(TmfTimestamp.fromNanos(time));
+                        location = context.getLocation();
+                        rank = context.getRank();
+                        if (rank == ITmfContext.UNKNOWN_RANK) {
+                            throw new IllegalStateException("Unknown rank after seeking " + child.getName()); //$NON-NLS-1$
+                        }
+                        event = child.getNext(context);
+                    }
+                    while (event != null && event.getTimestamp().toNanos() < time) {
+                        location = context.getLocation();
+                        rank = context.getRank();
+                        event = child.getNext(context);
+                    }
+                    fLocations[i] = location;
+                    fRanks[i] = rank;
+                    fTimestamps[i] = (event == null) ? null : event.getTimestamp();
+                    fNbDone = i + 1;
+                }
+            } finally {
+                if (context != null) {
+                    context.dispose();
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -36,6 +36,7 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfUnorderedEventRequest;
 import org.eclipse.tracecompass.tmf.core.signal.TmfEndSynchSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfStartSynchSignal;
@@ -88,6 +89,9 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
 
     private boolean fIsTimerEnabled;
 
+    /** The size of the event queues of the coalesced sub-requests */
+    private int fDispatchQueueSize = 0;
+
     /**
      * The parent event provider.
      */
@@ -134,7 +138,6 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
     public void init(String name, Class<? extends ITmfEvent> type) {
         super.init(name);
         fType = type;
-        fExecutor.init();
 
         fSignalDepth = 0;
 
@@ -178,6 +181,31 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
         return fType;
     }
 
+    /**
+     * Set how the events read once for coalesced requests are dispatched to
+     * each of them. With a queue size, each request gets a bounded queue of
+     * events consumed by its own thread, so the requests handle the events in
+     * parallel and a slow one does not hold back the others.
+     * <p>
+     * The same event instances are handed to the threads of all the requests,
+     * which can read them at the same time. A queue size must only be set on
+     * providers whose events are not modified once they are read, or are safe
+     * to read from several threads. The events that complete themselves
+     * lazily when their content is first read, like the events of the custom
+     * text and XML parsers, must be dispatched in series.
+     *
+     * @param queueSize
+     *            The number of events in the queue of each coalesced request,
+     *            or 0 (the default) to dispatch the events to the requests in
+     *            series, on the thread that reads them
+     * @since 2.1
+     */
+    public void setDispatchQueueSize(int queueSize) {
+        synchronized (fLock) {
+            fDispatchQueueSize = queueSize;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ITmfRequestHandler
     // ------------------------------------------------------------------------
@@ -194,6 +222,12 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
                 request.setProviderFilter(this);
             }
 
+            if (request instanceof TmfUnorderedEventRequest) {
+                /* The partitions are read from their own contexts, nothing to share */
+                queueRequest(request);
+                return;
+            }
+
             if (sendWithParent(request)) {
                 return;
             }
@@ -302,6 +336,7 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
                     request.getDependencyLevel());
             coalescedRequest.addRequest(request);
             coalescedRequest.setProviderFilter(this);
+            coalescedRequest.setDispatchQueueSize(fDispatchQueueSize);
             if (TmfCoreTracer.isRequestTraced()) {
                 TmfCoreTracer.traceRequest(request.getRequestId(), "COALESCED with " + coalescedRequest.getRequestId()); //$NON-NLS-1$
                 TmfCoreTracer.traceRequest(coalescedRequest.getRequestId(), "now contains " + coalescedRequest.getSubRequestIds()); //$NON-NLS-1$
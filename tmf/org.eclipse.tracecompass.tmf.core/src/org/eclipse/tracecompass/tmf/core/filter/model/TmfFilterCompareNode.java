@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 Ericsson
+ * Copyright (c) 2010, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -136,6 +136,21 @@ public class TmfFilterCompareNode extends TmfFilterAspectNode {
         }
     }
 
+    /**
+     * @return the comparison value parsed as a number, for the NUM type
+     */
+    Number getValueNumber() {
+        return fValueNumber;
+    }
+
+    /**
+     * @return the comparison value parsed as a timestamp, for the TIMESTAMP
+     *         type
+     */
+    ITmfTimestamp getValueTimestamp() {
+        return fValueTimestamp;
+    }
+
     /**
      * @return true if the value is valid for the comparison type
      */
@@ -192,7 +207,7 @@ public class TmfFilterCompareNode extends TmfFilterAspectNode {
         return false;
     }
 
-    private static Number toNumber(Object value) {
+    static Number toNumber(Object value) {
         if (value instanceof Number) {
             return (Number) value;
         }
@@ -207,7 +222,7 @@ public class TmfFilterCompareNode extends TmfFilterAspectNode {
         return null;
     }
 
-    private ITmfTimestamp toTimestamp(Object value) {
+    ITmfTimestamp toTimestamp(Object value) {
         if (value instanceof ITmfTimestamp) {
             return (ITmfTimestamp) value;
         }
@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.filter.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfBaseAspects;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Compiles a filter tree into a predicate, to match many events against the
+ * same filter. The constant values of the nodes are parsed once, the event
+ * type checks use the event name instead of resolving the event type aspect,
+ * and the children of the AND and OR nodes are evaluated from the cheapest to
+ * the most expensive. The compiled predicate matches the same events as the
+ * filter tree.
+ * <p>
+ * The predicate is a snapshot of the filter tree: the tree has to be compiled
+ * again after it is modified. Filters and nodes of other types are not
+ * compiled, their own matches() method is called instead.
+ *
+ * @since 2.1
+ */
+public final class TmfFilterCompiler {
+
+    /*
+     * The relative costs of evaluating the nodes, to order the children of
+     * the AND and OR nodes
+     */
+    private static final int TRACE_TYPE_COST = 1;
+    private static final int EVENT_TYPE_COST = 2;
+    private static final int ASPECT_COST = 4;
+    private static final int CONTAINS_COST = 6;
+    private static final int REGEX_COST = 10;
+    private static final int OPAQUE_COST = 100;
+
+    /** The minimum number of event type names to look up in a set */
+    private static final int MIN_EVENT_TYPE_SET_SIZE = 3;
+
+    /** The characters with a special meaning in a regex */
+    private static final String REGEX_META_CHARACTERS = "\\.[]{}()<>*+-=!?^$|"; //$NON-NLS-1$
+
+    /**
+     * A compiled node of the filter tree
+     */
+    private static final class CompiledNode {
+
+        private final Predicate<ITmfEvent> fPredicate;
+        private final int fCost;
+
+        /**
+         * False if the node is not compiled, so it may have side effects and
+         * its evaluation order has to be kept
+         */
+        private final boolean fPure;
+
+        /**
+         * The event type name if the node only matches the events of this
+         * type, with a case-sensitive comparison
+         */
+        private final String fEventTypeName;
+
+        public CompiledNode(Predicate<ITmfEvent> predicate, int cost, boolean pure, String eventTypeName) {
+            fPredicate = predicate;
+            fCost = cost;
+            fPure = pure;
+            fEventTypeName = eventTypeName;
+        }
+
+        public CompiledNode(Predicate<ITmfEvent> predicate, int cost) {
+            this(predicate, cost, true, null);
+        }
+    }
+
+    private TmfFilterCompiler() {
+    }
+
+    /**
+     * Compile a filter into a predicate
+     *
+     * @param filter
+     *            The filter, usually a filter tree
+     * @return The predicate that matches the same events as the filter
+     */
+    public static Predicate<ITmfEvent> compile(ITmfFilter filter) {
+        Predicate<ITmfEvent> predicate = compileNode(filter).fPredicate;
+        // The nodes handle a null event differently, leave it to the tree
+        return event -> (event == null ? filter.matches(event) : predicate.test(event));
+    }
+
+    private static CompiledNode compileNode(ITmfFilter filter) {
+        /* Subclasses may override matches(), only compile the known nodes */
+        Class<?> type = filter.getClass();
+        if (type == TmfFilterRootNode.class) {
+            return compileAll(((ITmfFilterTreeNode) filter).getChildren(), false);
+        } else if (type == TmfFilterNode.class || type == TmfFilterObjectNode.class) {
+            return compileAny(((ITmfFilterTreeNode) filter).getChildren(), false);
+        } else if (type == TmfFilterAndNode.class) {
+            TmfFilterAndNode node = (TmfFilterAndNode) filter;
+            return compileAll(node.getChildren(), node.isNot());
+        } else if (type == TmfFilterOrNode.class) {
+            TmfFilterOrNode node = (TmfFilterOrNode) filter;
+            return compileAny(node.getChildren(), node.isNot());
+        } else if (type == TmfFilterTraceTypeNode.class) {
+            return compileTraceType((TmfFilterTraceTypeNode) filter);
+        } else if (type == TmfFilterEqualsNode.class) {
+            return compileEquals((TmfFilterEqualsNode) filter);
+        } else if (type == TmfFilterContainsNode.class) {
+            return compileContains((TmfFilterContainsNode) filter);
+        } else if (type == TmfFilterMatchesNode.class) {
+            return compileMatches((TmfFilterMatchesNode) filter);
+        } else if (type == TmfFilterCompareNode.class) {
+            return compileCompare((TmfFilterCompareNode) filter);
+        }
+        return opaque(filter);
+    }
+
+    private static CompiledNode opaque(ITmfFilter filter) {
+        return new CompiledNode(filter::matches, OPAQUE_COST, false, null);
+    }
+
+    private static CompiledNode constant(boolean result) {
+        return new CompiledNode(event -> result, 0);
+    }
+
+    // ------------------------------------------------------------------------
+    // Logical nodes
+    // ------------------------------------------------------------------------
+
+    /**
+     * Compile the children of a node, ordered by cost if none of them has to
+     * keep its evaluation order
+     */
+    private static List<CompiledNode> compileChildren(ITmfFilterTreeNode[] children) {
+        List<CompiledNode> nodes = new ArrayList<>(children.length);
+        boolean pure = true;
+        for (ITmfFilterTreeNode child : children) {
+            CompiledNode node = compileNode(child);
+            nodes.add(node);
+            pure &= node.fPure;
+        }
+        if (pure) {
+            nodes.sort(Comparator.comparingInt(node -> node.fCost));
+        }
+        return nodes;
+    }
+
+    private static int getCost(List<CompiledNode> nodes) {
+        int cost = 0;
+        for (CompiledNode node : nodes) {
+            cost = Math.min(OPAQUE_COST, cost + node.fCost);
+        }
+        return cost;
+    }
+
+    private static boolean isPure(List<CompiledNode> nodes) {
+        for (CompiledNode node : nodes) {
+            if (!node.fPure) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Predicate<ITmfEvent>[] getPredicates(List<CompiledNode> nodes) {
+        @SuppressWarnings("unchecked")
+        Predicate<ITmfEvent>[] predicates = new Predicate[nodes.size()];
+        for (int i = 0; i < predicates.length; i++) {
+            predicates[i] = nodes.get(i).fPredicate;
+        }
+        return predicates;
+    }
+
+    /**
+     * Matches if all the children match, like the root and AND nodes
+     */
+    private static CompiledNode compileAll(ITmfFilterTreeNode[] children, boolean not) {
+        List<CompiledNode> nodes = compileChildren(children);
+        Predicate<ITmfEvent>[] predicates = getPredicates(nodes);
+        Predicate<ITmfEvent> predicate;
+        if (predicates.length == 1 && !not) {
+            predicate = predicates[0];
+        } else {
+            predicate = event -> {
+                for (Predicate<ITmfEvent> child : predicates) {
+                    if (!child.test(event)) {
+                        return not;
+                    }
+                }
+                return !not;
+            };
+        }
+        return new CompiledNode(predicate, getCost(nodes), isPure(nodes), null);
+    }
+
+    /**
+     * Matches if any child matches, like the OR node. The OR node never
+     * matches when none of its children matches, even if it is negated.
+     */
+    private static CompiledNode compileAny(ITmfFilterTreeNode[] children, boolean not) {
+        List<CompiledNode> nodes = compileChildren(children);
+
+        /* Look up the event type names in a set */
+        Set<String> eventTypeNames = new HashSet<>();
+        for (CompiledNode node : nodes) {
+            if (node.fEventTypeName == null) {
+                eventTypeNames = null;
+                break;
+            }
+            eventTypeNames.add(node.fEventTypeName);
+        }
+        if (eventTypeNames != null && nodes.size() >= MIN_EVENT_TYPE_SET_SIZE) {
+            Set<String> names = eventTypeNames;
+            Predicate<ITmfEvent> predicate = event -> names.contains(event.getName()) && !not;
+            return new CompiledNode(predicate, EVENT_TYPE_COST);
+        }
+
+        Predicate<ITmfEvent>[] predicates = getPredicates(nodes);
+        Predicate<ITmfEvent> predicate;
+        if (predicates.length == 1 && !not) {
+            predicate = predicates[0];
+        } else {
+            predicate = event -> {
+                for (Predicate<ITmfEvent> child : predicates) {
+                    if (child.test(event)) {
+                        return !not;
+                    }
+                }
+                return false;
+            };
+        }
+        String eventTypeName = (nodes.size() == 1 && !not ? nodes.get(0).fEventTypeName : null);
+        return new CompiledNode(predicate, getCost(nodes), isPure(nodes), eventTypeName);
+    }
+
+    private static CompiledNode compileTraceType(TmfFilterTraceTypeNode node) {
+        Class<? extends ITmfTrace> traceClass = node.getTraceClass();
+        String traceTypeId = node.getTraceTypeId();
+        Predicate<ITmfEvent> traceType = event -> {
+            ITmfTrace trace = event.getTrace();
+            return trace.getClass().equals(traceClass) &&
+                    (traceTypeId == null || traceTypeId.equals(trace.getTraceTypeId()));
+        };
+        CompiledNode children = compileAll(node.getChildren(), false);
+        Predicate<ITmfEvent> childrenPredicate = children.fPredicate;
+        return new CompiledNode(event -> traceType.test(event) && childrenPredicate.test(event),
+                TRACE_TYPE_COST + children.fCost, children.fPure, null);
+    }
+
+    // ------------------------------------------------------------------------
+    // Aspect nodes
+    // ------------------------------------------------------------------------
+
+    /**
+     * Check if an aspect node compares the event type name with a value.
+     * TmfEvent.getName() is the name of the event type, without resolving the
+     * event type aspect.
+     */
+    private static boolean isEventTypeName(ITmfEventAspect<?> aspect, String value) {
+        return aspect == TmfBaseAspects.getEventTypeAspect() && value != null && !value.isEmpty();
+    }
+
+    private static CompiledNode compileEquals(TmfFilterEqualsNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        String value = node.getValue();
+        boolean not = node.isNot();
+        if (aspect == null) {
+            return constant(not);
+        }
+        if (isEventTypeName(aspect, value)) {
+            if (node.isIgnoreCase()) {
+                return new CompiledNode(event -> event.getName().equalsIgnoreCase(value) ^ not, EVENT_TYPE_COST);
+            }
+            return new CompiledNode(event -> event.getName().equals(value) ^ not, EVENT_TYPE_COST, true, not ? null : value);
+        }
+        Predicate<ITmfEvent> predicate;
+        if (node.isIgnoreCase()) {
+            predicate = event -> {
+                Object eventValue = aspect.resolve(event);
+                return (eventValue != null && eventValue.toString().equalsIgnoreCase(value)) ^ not;
+            };
+        } else {
+            predicate = event -> {
+                Object eventValue = aspect.resolve(event);
+                return (eventValue != null && eventValue.toString().equals(value)) ^ not;
+            };
+        }
+        return new CompiledNode(predicate, ASPECT_COST);
+    }
+
+    private static CompiledNode compileContains(TmfFilterContainsNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        String value = node.getValue();
+        boolean not = node.isNot();
+        if (aspect == null) {
+            return constant(not);
+        }
+        if (value == null) {
+            return opaque(node);
+        }
+        if (node.isIgnoreCase()) {
+            String upperCaseValue = value.toUpperCase();
+            if (isEventTypeName(aspect, value)) {
+                return new CompiledNode(event -> event.getName().toUpperCase().contains(upperCaseValue) ^ not, EVENT_TYPE_COST);
+            }
+            return new CompiledNode(event -> {
+                Object eventValue = aspect.resolve(event);
+                return (eventValue != null && eventValue.toString().toUpperCase().contains(upperCaseValue)) ^ not;
+            }, CONTAINS_COST);
+        }
+        if (isEventTypeName(aspect, value)) {
+            return new CompiledNode(event -> event.getName().contains(value) ^ not, EVENT_TYPE_COST);
+        }
+        return new CompiledNode(event -> {
+            Object eventValue = aspect.resolve(event);
+            return (eventValue != null && eventValue.toString().contains(value)) ^ not;
+        }, CONTAINS_COST);
+    }
+
+    private static CompiledNode compileMatches(TmfFilterMatchesNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        Pattern pattern = node.getPattern();
+        boolean not = node.isNot();
+        if (aspect == null || pattern == null) {
+            return constant(not);
+        }
+        String regex = pattern.pattern();
+        if (isLiteral(regex)) {
+            /* Finding a literal regex is a plain substring search */
+            return new CompiledNode(event -> {
+                Object eventValue = aspect.resolve(event);
+                return (eventValue != null && eventValue.toString().contains(regex)) ^ not;
+            }, CONTAINS_COST);
+        }
+        return new CompiledNode(event -> {
+            Object eventValue = aspect.resolve(event);
+            return (eventValue != null && pattern.matcher(eventValue.toString()).find()) ^ not;
+        }, REGEX_COST);
+    }
+
+    private static boolean isLiteral(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static CompiledNode compileCompare(TmfFilterCompareNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        if (aspect == null) {
+            return constant(false);
+        }
+        int result = node.getResult();
+        boolean not = node.isNot();
+        Type type = node.getType();
+        if (type == Type.NUM) {
+            Number valueNumber = node.getValueNumber();
+            if (valueNumber == null) {
+                return constant(false);
+            }
+            double doubleValue = valueNumber.doubleValue();
+            if (valueNumber instanceof Double) {
+                return new CompiledNode(event -> {
+                    Object eventValue = aspect.resolve(event);
+                    Number eventNumber = (eventValue == null ? null : TmfFilterCompareNode.toNumber(eventValue));
+                    return eventNumber != null && ((Double.compare(eventNumber.doubleValue(), doubleValue) == result) ^ not);
+                }, ASPECT_COST);
+            }
+            long longValue = valueNumber.longValue();
+            return new CompiledNode(event -> {
+                Object eventValue = aspect.resolve(event);
+                Number eventNumber = (eventValue == null ? null : TmfFilterCompareNode.toNumber(eventValue));
+                if (eventNumber instanceof Double || eventNumber instanceof Float) {
+                    return (Double.compare(eventNumber.doubleValue(), doubleValue) == result) ^ not;
+                }
+                return eventNumber != null && ((Long.compare(eventNumber.longValue(), longValue) == result) ^ not);
+            }, ASPECT_COST);
+        } else if (type == Type.ALPHA) {
+            String value = node.getValue();
+            if (value == null) {
+                return opaque(node);
+            }
+            return new CompiledNode(event -> {
+                Object eventValue = aspect.resolve(event);
+                return eventValue != null && (((int) Math.signum(eventValue.toString().compareTo(value)) == result) ^ not);
+            }, ASPECT_COST);
+        } else if (type == Type.TIMESTAMP) {
+            ITmfTimestamp valueTimestamp = node.getValueTimestamp();
+            if (valueTimestamp == null) {
+                return constant(false);
+            }
+            return new CompiledNode(event -> {
+                Object eventValue = aspect.resolve(event);
+                ITmfTimestamp eventTimestamp = (eventValue == null ? null : node.toTimestamp(eventValue));
+                return eventTimestamp != null && (((int) Math.signum(eventTimestamp.compareTo(valueTimestamp)) == result) ^ not);
+            }, ASPECT_COST);
+        }
+        return constant(false);
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,6 +13,9 @@
 
 package org.eclipse.tracecompass.tmf.core.request;
 
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -99,6 +102,21 @@ public interface ITmfEventRequest {
      */
     TmfTimeRange getRange();
 
+    /**
+     * Gets the payload fields this request reads, per event name. Traces that
+     * support it may skip decoding the other fields, which are then absent
+     * from the content of the events. Events whose name is not in the map
+     * may have none of their fields, but they are still sent to the request:
+     * this only selects the fields that are decoded, not the events.
+     *
+     * @return the names of the fields read per event name, or null if any
+     *         field of any event may be read
+     * @since 2.1
+     */
+    default @Nullable Map<String, Set<String>> getRequiredFields() {
+        return null;
+    }
+
     /**
      * @return the event provider filter to verify if an event is provided by
      *         the relevant event provider.
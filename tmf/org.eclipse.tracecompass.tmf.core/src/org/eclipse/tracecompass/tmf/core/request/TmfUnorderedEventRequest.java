@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+
+/**
+ * An event request for the analyses that do not need the events in order, like
+ * the ones that count them. A trace splits the time range of such a request in
+ * partitions, each one read from its own context on a worker thread, so the
+ * events of different partitions are handled concurrently. They are also
+ * decoded concurrently if the trace implements
+ * {@link org.eclipse.tracecompass.tmf.core.trace.ITmfTraceConcurrentReading},
+ * otherwise the partitions take turns reading the trace. The request is never
+ * coalesced with other requests.
+ * <p>
+ * The events of each partition are accumulated in the partition's own
+ * accumulator, so accumulating them needs no synchronization. When the request
+ * completes, the accumulators are merged in the time order of their partitions
+ * into the result.
+ *
+ * <pre>
+ * TmfUnorderedEventRequest&lt;long[]&gt; request = new TmfUnorderedEventRequest&lt;long[]&gt;(ITmfEvent.class,
+ *         TmfTimeRange.ETERNITY, ExecutionType.BACKGROUND) {
+ *     protected long[] createAccumulator() {
+ *         return new long[1];
+ *     }
+ *
+ *     protected void accumulate(long[] count, ITmfEvent event) {
+ *         count[0]++;
+ *     }
+ *
+ *     protected long[] merge(long[] first, long[] second) {
+ *         first[0] += second[0];
+ *         return first;
+ *     }
+ * };
+ * trace.sendRequest(request);
+ * request.waitForCompletion();
+ * long count = request.getResult()[0];
+ * </pre>
+ *
+ * @param <A>
+ *            The type of the accumulators
+ * @since 2.1
+ */
+public abstract class TmfUnorderedEventRequest<A> extends TmfEventRequest {
+
+    private final int fNbPartitions;
+    private final List<A> fAccumulators = new ArrayList<>();
+    private final AtomicInteger fNbRead = new AtomicInteger();
+
+    /** The accumulator of the events handled in order, if any */
+    private @Nullable A fOrderedAccumulator = null;
+
+    private volatile @Nullable A fResult = null;
+
+    /**
+     * Request all the events of a given type in the given time range, in as
+     * many partitions as there are processors.
+     *
+     * @param dataType
+     *            The requested data type
+     * @param range
+     *            The time range of the requested events
+     * @param priority
+     *            The requested execution priority
+     */
+    public TmfUnorderedEventRequest(Class<? extends ITmfEvent> dataType,
+            TmfTimeRange range,
+            ExecutionType priority) {
+        this(dataType, range, Runtime.getRuntime().availableProcessors(), priority);
+    }
+
+    /**
+     * Request all the events of a given type in the given time range, in the
+     * given number of partitions.
+     *
+     * @param dataType
+     *            The requested data type
+     * @param range
+     *            The time range of the requested events
+     * @param nbPartitions
+     *            The maximum number of partitions to read concurrently
+     * @param priority
+     *            The requested execution priority
+     */
+    public TmfUnorderedEventRequest(Class<? extends ITmfEvent> dataType,
+            TmfTimeRange range,
+            int nbPartitions,
+            ExecutionType priority) {
+        super(dataType, range, 0, ALL_DATA, priority);
+        fNbPartitions = Math.max(1, nbPartitions);
+    }
+
+    // ------------------------------------------------------------------------
+    // Accumulators
+    // ------------------------------------------------------------------------
+
+    /**
+     * Create an empty accumulator, for a new partition
+     *
+     * @return The new accumulator
+     */
+    protected abstract A createAccumulator();
+
+    /**
+     * Accumulate an event in the accumulator of its partition. The events of
+     * different partitions are accumulated concurrently.
+     *
+     * @param accumulator
+     *            The accumulator of the partition
+     * @param event
+     *            The event
+     */
+    protected abstract void accumulate(A accumulator, ITmfEvent event);
+
+    /**
+     * Merge the accumulators of two consecutive partitions
+     *
+     * @param first
+     *            The accumulator of the earlier events
+     * @param second
+     *            The accumulator of the later events
+     * @return The merged accumulator, which can be one of the two
+     */
+    protected abstract A merge(A first, A second);
+
+    // ------------------------------------------------------------------------
+    // Accessors
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return The maximum number of partitions to read concurrently
+     */
+    public int getNbPartitions() {
+        return fNbPartitions;
+    }
+
+    /**
+     * Get the merged accumulators of all the partitions
+     *
+     * @return The result, or null if the request is not completed
+     */
+    public @Nullable A getResult() {
+        return fResult;
+    }
+
+    @Override
+    public int getNbRead() {
+        return fNbRead.get();
+    }
+
+    // ------------------------------------------------------------------------
+    // Operators
+    // ------------------------------------------------------------------------
+
+    /**
+     * Start a new partition. The partitions have to be started in the time
+     * order of their events.
+     *
+     * @return The accumulator of the new partition
+     */
+    public A startPartition() {
+        A accumulator = createAccumulator();
+        synchronized (fAccumulators) {
+            fAccumulators.add(accumulator);
+        }
+        return accumulator;
+    }
+
+    /**
+     * Handle an event of a partition. This can be called concurrently for
+     * different partitions.
+     *
+     * @param accumulator
+     *            The accumulator of the partition
+     * @param event
+     *            The event
+     */
+    public void handleData(A accumulator, ITmfEvent event) {
+        fNbRead.incrementAndGet();
+        accumulate(accumulator, event);
+    }
+
+    /**
+     * Handle an event when the request is served in order, as a single
+     * partition, by a provider that cannot split it.
+     */
+    @Override
+    public void handleData(ITmfEvent event) {
+        A accumulator = fOrderedAccumulator;
+        if (accumulator == null) {
+            accumulator = startPartition();
+            fOrderedAccumulator = accumulator;
+        }
+        handleData(accumulator, event);
+    }
+
+    @Override
+    public void handleCompleted() {
+        A result = null;
+        synchronized (fAccumulators) {
+            for (A accumulator : fAccumulators) {
+                result = (result == null ? accumulator : merge(result, accumulator));
+            }
+        }
+        fResult = (result == null ? createAccumulator() : result);
+        super.handleCompleted();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  * Copyright (c) 2010, 2011 École Polytechnique de Montréal
  * Copyright (c) 2010, 2011 Alexandre Montplaisir <alexandre.montplaisir@gmail.com>
  *
@@ -12,6 +12,9 @@
 
 package org.eclipse.tracecompass.tmf.core.statesystem;
 
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -118,4 +121,17 @@ public interface ITmfStateProvider {
      * @since 2.1
      */
     default void done() {}
+
+    /**
+     * Get the payload fields this state provider reads, per event name. The
+     * trace may then skip decoding the other fields of the events it sends.
+     * All the events are still sent, whether their name is in the map or not.
+     *
+     * @return the names of the fields read per event name, or null if any
+     *         field of any event may be read
+     * @since 2.1
+     */
+    default @Nullable Map<String, Set<String>> getRequiredFields() {
+        return null;
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.io.FileUtils;
@@ -42,7 +43,6 @@ import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
-import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceCompleteness;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
@@ -456,7 +456,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
         fTimeRange = TmfTimeRange.ETERNITY;
         final ITmfTrace trace = provider.getTrace();
-        if (!isCompleteTrace(trace)) {
+        if (!TmfTraceUtils.isCompleteTrace(trace)) {
             fTimeRange = trace.getTimeRange();
         }
 
@@ -500,6 +500,11 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
         }
 
+        @Override
+        public @Nullable Map<String, Set<String>> getRequiredFields() {
+            return sci.getRequiredFields();
+        }
+
         @Override
         public void handleData(final ITmfEvent event) {
             super.handleData(event);
@@ -521,7 +526,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         @Override
         public void handleSuccess() {
             super.handleSuccess();
-            if (isCompleteTrace(trace)) {
+            if (TmfTraceUtils.isCompleteTrace(trace)) {
                 disposeProvider(false);
             } else {
                 fNbRead += getNbRead();
@@ -601,10 +606,6 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         fRequest = request;
     }
 
-    private static boolean isCompleteTrace(ITmfTrace trace) {
-        return !(trace instanceof ITmfTraceCompleteness) || ((ITmfTraceCompleteness) trace).isComplete();
-    }
-
     // ------------------------------------------------------------------------
     // ITmfPropertiesProvider
     // ------------------------------------------------------------------------
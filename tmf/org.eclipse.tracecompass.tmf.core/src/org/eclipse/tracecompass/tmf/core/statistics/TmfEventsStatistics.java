@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,18 +14,19 @@ package org.eclipse.tracecompass.tmf.core.statistics;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfUnorderedEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
@@ -100,7 +101,7 @@ public class TmfEventsStatistics implements ITmfStatistics {
         StatsTotalRequest request = new StatsTotalRequest(trace, TmfTimeRange.ETERNITY);
         sendAndWait(request);
 
-        long total = request.getResult();
+        long total = request.getTotal();
         return total;
     }
 
@@ -121,7 +122,7 @@ public class TmfEventsStatistics implements ITmfStatistics {
         StatsTotalRequest request = new StatsTotalRequest(trace, range);
         sendAndWait(request);
 
-        long total =  request.getResult();
+        long total =  request.getTotal();
         return total;
     }
 
@@ -149,54 +150,63 @@ public class TmfEventsStatistics implements ITmfStatistics {
 
 
     /**
-     * Event request to get the total number of events
+     * Event request to get the total number of events. The events do not need
+     * to be counted in order, each partition of the trace counts its own.
      */
-    private class StatsTotalRequest extends TmfEventRequest {
-
-        /* Total number of events the request has found */
-        private long total;
+    private class StatsTotalRequest extends TmfUnorderedEventRequest<long[]> {
 
         public StatsTotalRequest(ITmfTrace trace, TmfTimeRange range) {
-            super(trace.getEventType(), range, 0, ITmfEventRequest.ALL_DATA,
+            super(trace.getEventType(), range,
                     ITmfEventRequest.ExecutionType.BACKGROUND);
-            total = 0;
         }
 
-        public long getResult() {
-            return total;
+        public long getTotal() {
+            long[] total = getResult();
+            return (total == null ? 0 : total[0]);
         }
 
         @Override
-        public void handleData(final ITmfEvent event) {
-            super.handleData(event);
+        protected long[] createAccumulator() {
+            return new long[1];
+        }
+
+        @Override
+        protected void accumulate(long[] total, ITmfEvent event) {
             if (!(event instanceof ITmfLostEvent) && event.getTrace() == trace) {
-                total += 1;
+                total[0] += 1;
             }
         }
+
+        @Override
+        protected long[] merge(long[] first, long[] second) {
+            first[0] += second[0];
+            return first;
+        }
     }
 
 
     /**
      * Event request to get the counts per event type
      */
-    private class StatsPerTypeRequest extends TmfEventRequest {
-
-        /* Map in which the results are saved */
-        private final Map<@NonNull String, @NonNull Long> stats;
+    private class StatsPerTypeRequest extends TmfUnorderedEventRequest<Map<@NonNull String, @NonNull Long>> {
 
         public StatsPerTypeRequest(ITmfTrace trace, TmfTimeRange range) {
-            super(trace.getEventType(), range, 0, ITmfEventRequest.ALL_DATA,
+            super(trace.getEventType(), range,
                     ITmfEventRequest.ExecutionType.BACKGROUND);
-            this.stats = new HashMap<>();
         }
 
         public Map<@NonNull String, @NonNull Long> getResults() {
-            return stats;
+            Map<@NonNull String, @NonNull Long> stats = getResult();
+            return (stats == null ? new HashMap<>() : stats);
+        }
+
+        @Override
+        protected Map<@NonNull String, @NonNull Long> createAccumulator() {
+            return new HashMap<>();
         }
 
         @Override
-        public void handleData(final ITmfEvent event) {
-            super.handleData(event);
+        protected void accumulate(Map<@NonNull String, @NonNull Long> stats, ITmfEvent event) {
             if (event.getTrace() == trace) {
                 String eventType = event.getName();
                 /*
@@ -205,16 +215,24 @@ public class TmfEventsStatistics implements ITmfStatistics {
                  */
                 if (event instanceof ITmfLostEvent) {
                     ITmfLostEvent le = (ITmfLostEvent) event;
-                    incrementStats(eventType, le.getNbLostEvents());
+                    incrementStats(stats, eventType, le.getNbLostEvents());
                     return;
                 }
 
                 /* For standard event types, just increment by one */
-                incrementStats(eventType, 1L);
+                incrementStats(stats, eventType, 1L);
+            }
+        }
+
+        @Override
+        protected Map<@NonNull String, @NonNull Long> merge(Map<@NonNull String, @NonNull Long> first, Map<@NonNull String, @NonNull Long> second) {
+            for (Map.Entry<@NonNull String, @NonNull Long> entry : second.entrySet()) {
+                incrementStats(first, entry.getKey(), entry.getValue());
             }
+            return first;
         }
 
-        private void incrementStats(@NonNull String key, long count) {
+        private void incrementStats(Map<@NonNull String, @NonNull Long> stats, @NonNull String key, long count) {
             if (stats.containsKey(key)) {
                 long curValue = checkNotNull(stats.get(key));
                 stats.put(key, curValue + count);
@@ -227,12 +245,12 @@ public class TmfEventsStatistics implements ITmfStatistics {
     /**
      * Event request for histogram queries. It is much faster to do one event
      * request then set the results accordingly than doing thousands of them one
-     * by one.
+     * by one. Each partition of the trace fills its own copy of the histogram.
      */
-    private class HistogramQueryRequest extends TmfEventRequest {
+    private class HistogramQueryRequest extends TmfUnorderedEventRequest<long[]> {
 
-        /** Map of <borders, number of events> */
-        private final TreeMap<Long, Long> results;
+        /** The borders of the histogram, in ascending order */
+        private final long[] borders;
 
         /**
          * New histogram request
@@ -249,37 +267,45 @@ public class TmfEventsStatistics implements ITmfStatistics {
                     new TmfTimeRange(
                             TmfTimestamp.create(borders[0], SCALE),
                             TmfTimestamp.create(endTime, SCALE)),
-                    0,
-                    ITmfEventRequest.ALL_DATA,
                     ITmfEventRequest.ExecutionType.BACKGROUND);
+            this.borders = borders;
+        }
 
-            /* Prepare the results map, with all counts at 0 */
-            results = new TreeMap<>();
-            for (long border : borders) {
-                results.put(border, 0L);
+        public List<Long> getResults() {
+            long[] counts = getResult();
+            List<Long> results = new ArrayList<>();
+            for (int i = 0; i < borders.length; i++) {
+                results.add(counts == null ? 0L : counts[i]);
             }
+            return results;
         }
 
-        public Collection<Long> getResults() {
-            return results.values();
+        @Override
+        protected long[] createAccumulator() {
+            return new long[borders.length];
         }
 
         @Override
-        public void handleData(ITmfEvent event) {
-            super.handleData(event);
+        protected void accumulate(long[] counts, ITmfEvent event) {
             if (event.getTrace() == trace) {
                 long ts = event.getTimestamp().toNanos();
-                Long key = results.floorKey(ts);
-                if (key != null) {
-                    incrementValue(key);
+                int index = Arrays.binarySearch(borders, ts);
+                /* The border at or before the timestamp */
+                if (index < 0) {
+                    index = -(index + 2);
+                }
+                if (index >= 0) {
+                    counts[index]++;
                 }
             }
         }
 
-        private void incrementValue(Long key) {
-            long value = checkNotNull(results.get(key));
-            value++;
-            results.put(key, value);
+        @Override
+        protected long[] merge(long[] first, long[] second) {
+            for (int i = 0; i < first.length; i++) {
+                first[i] += second[i];
+            }
+            return first;
         }
     }
 
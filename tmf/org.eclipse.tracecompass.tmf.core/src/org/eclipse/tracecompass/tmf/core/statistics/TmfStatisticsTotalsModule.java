@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,6 +14,10 @@ package org.eclipse.tracecompass.tmf.core.statistics;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.StateSystemBuilderUtils;
@@ -108,6 +112,12 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
             return new StatsProviderTotals(this.getTrace());
         }
 
+        @Override
+        public Map<String, Set<String>> getRequiredFields() {
+            /* Every event is counted, but none of their fields are read */
+            return Collections.emptyMap();
+        }
+
         @Override
         protected void eventHandle(ITmfEvent event) {
             /* Do not count lost events in the total */
@@ -0,0 +1,49 @@
+/**********************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+
+/**
+ * An interface that trace classes can implement if several threads can read
+ * them at the same time, each one from a private context, without going
+ * through the synchronized {@link ITmfTrace#getNext(ITmfContext)}. The
+ * partitions of the unordered event requests are read this way.
+ *
+ * @since 2.1
+ */
+public interface ITmfTraceConcurrentReading {
+
+    /**
+     * Create a private context pointing at the first event at or after a
+     * timestamp. The context has an unknown rank, and is only read by the
+     * thread that created it, with {@link #readNext(ITmfContext)}.
+     *
+     * @param timestamp
+     *            the timestamp to seek
+     * @return the new context, to be disposed by the caller, or null if the
+     *         trace cannot be read this way
+     */
+    @Nullable ITmfContext createPrivateContext(ITmfTimestamp timestamp);
+
+    /**
+     * Read the event at the current position of a private context, and move
+     * the context to the next one. The event is decoded without locking the
+     * trace, only the update of the trace's time range is synchronized.
+     *
+     * @param context
+     *            a context created by
+     *            {@link #createPrivateContext(ITmfTimestamp)}
+     * @return the event, or null at the end of the trace
+     */
+    @Nullable ITmfEvent readNext(ITmfContext context);
+}
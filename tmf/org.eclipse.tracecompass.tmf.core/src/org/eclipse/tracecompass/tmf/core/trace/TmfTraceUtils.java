@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -181,6 +181,20 @@ public final class TmfTraceUtils {
         return true;
     }
 
+    /**
+     * Checks whether a trace is complete, i.e. no more events will be added to
+     * it. Traces that do not implement {@link ITmfTraceCompleteness} are
+     * always complete.
+     *
+     * @param trace
+     *            the trace to check
+     * @return true if the trace is complete
+     * @since 2.1
+     */
+    public static boolean isCompleteTrace(ITmfTrace trace) {
+        return !(trace instanceof ITmfTraceCompleteness) || ((ITmfTraceCompleteness) trace).isComplete();
+    }
+
     // ------------------------------------------------------------------------
     // Event matching methods
     // ------------------------------------------------------------------------
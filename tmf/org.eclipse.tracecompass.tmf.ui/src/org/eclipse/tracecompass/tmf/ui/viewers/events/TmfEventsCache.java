@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -28,6 +28,7 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompiler;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -182,7 +183,8 @@ public class TmfEventsCache {
      * @since 2.0
      */
     public void applyFilter(ITmfFilter filter, boolean collapseFilterEnabled) {
-        fFilter = filter;
+        /* The filter is compiled again each time it is modified and applied */
+        fFilter = (filter == null ? null : TmfFilterCompiler.compile(filter)::test);
         fCollapseFilterEnabled = collapseFilterEnabled;
         clear();
     }
@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -138,6 +139,7 @@ import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfModelLookup;
 import org.eclipse.tracecompass.tmf.core.event.lookup.ITmfSourceLookup;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
 import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompiler;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
@@ -2116,6 +2118,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
      */
     protected class FilterThread extends Thread {
         private final ITmfFilterTreeNode filter;
+        private final Predicate<ITmfEvent> compiledFilter;
         private TmfCollapseFilter collapseFilter = null;
         private TmfEventRequest request;
         private boolean refreshBusy = false;
@@ -2131,6 +2134,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         public FilterThread(final ITmfFilterTreeNode filter) {
             super("Filter Thread"); //$NON-NLS-1$
             this.filter = filter;
+            this.compiledFilter = TmfFilterCompiler.compile(filter);
         }
 
         @Override
@@ -2154,7 +2158,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                         return;
                     }
                     boolean refresh = false;
-                    if (filter.matches(event)) {
+                    if (compiledFilter.test(event)) {
                         if (collapseFilter == null || collapseFilter.matches(event)) {
                             final long rank = fFilterCheckCount;
                             final int index = (int) fFilterMatchCount;
@@ -2321,8 +2325,9 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
      */
     protected class SearchThread extends Job {
 
-        private ITmfFilterTreeNode searchFilter;
         private ITmfFilterTreeNode eventFilter;
+        private final Predicate<ITmfEvent> compiledSearchFilter;
+        private final Predicate<ITmfEvent> compiledEventFilter;
         private int startIndex;
         private int direction;
         private long rank;
@@ -2348,8 +2353,9 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                 final ITmfFilterTreeNode eventFilter, final int startIndex,
                 final long currentRank, final int direction) {
             super(Messages.TmfEventsTable_SearchingJobName);
-            this.searchFilter = searchFilter;
             this.eventFilter = eventFilter;
+            this.compiledSearchFilter = TmfFilterCompiler.compile(searchFilter);
+            this.compiledEventFilter = (eventFilter == null ? null : TmfFilterCompiler.compile(eventFilter));
             this.startIndex = startIndex;
             this.rank = currentRank;
             this.direction = direction;
@@ -2378,7 +2384,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                         break;
                     }
                     rank = event.rank;
-                    if (searchFilter.matches(event.event) && ((eventFilter == null) || eventFilter.matches(event.event))) {
+                    if (compiledSearchFilter.test(event.event) && ((compiledEventFilter == null) || compiledEventFilter.test(event.event))) {
                         foundRank = event.rank;
                         foundTimestamp = event.event.getTimestamp();
                         break;
@@ -2417,7 +2423,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     @Override
                     public void handleData(final ITmfEvent event) {
                         super.handleData(event);
-                        if (searchFilter.matches(event) && ((eventFilter == null) || eventFilter.matches(event))) {
+                        if (compiledSearchFilter.test(event) && ((compiledEventFilter == null) || compiledEventFilter.test(event))) {
                             foundRank = currentRank;
                             foundTimestamp = event.getTimestamp();
                             if (direction == Direction.FORWARD) {